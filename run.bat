@@ -1,3 +1,3 @@
 @echo off
 cd /d C:\Users\ADMIN\Documents\working\credit-card-service
-call mvn clean spring-boot:run
+call mvn clean spring-boot:run -Dspring-boot.run.profiles=dev
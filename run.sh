@@ -1 +1 @@
-cd c:\Users\ADMIN\Documents\working\credit-card-service && mvn spring-boot:run
+cd c:\Users\ADMIN\Documents\working\credit-card-service && mvn spring-boot:run -Dspring-boot.run.profiles=dev
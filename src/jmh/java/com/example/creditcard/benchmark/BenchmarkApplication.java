@@ -0,0 +1,120 @@
+package com.example.creditcard.benchmark;
+
+import com.example.creditcard.CreditCardApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The application context a benchmark runs against: in-memory H2, with or
+ * without a web server, seeded with a given number of cards whose limit is high
+ * enough that authorizations are never declined.
+ */
+public final class BenchmarkApplication implements AutoCloseable {
+
+    static final BigDecimal CREDIT_LIMIT = new BigDecimal("1000000000000.00");
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final ConfigurableApplicationContext context;
+    private final long[] cardIds;
+
+    private BenchmarkApplication(ConfigurableApplicationContext context, long[] cardIds) {
+        this.context = context;
+        this.cardIds = cardIds;
+    }
+
+    /**
+     * Start the application without a web server and seed it with cards.
+     *
+     * @param cards the number of cards to create
+     * @param properties extra {@code key=value} application properties
+     * @return the running application
+     */
+    public static BenchmarkApplication start(int cards, String... properties) {
+        return start(false, cards, properties);
+    }
+
+    /**
+     * Start the application with its web server on a random port and seed it
+     * with cards.
+     *
+     * @param cards the number of cards to create
+     * @param properties extra {@code key=value} application properties
+     * @return the running application
+     */
+    public static BenchmarkApplication startServer(int cards, String... properties) {
+        return start(true, cards, properties);
+    }
+
+    private static BenchmarkApplication start(boolean web, int cards, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID(),
+                "spring.main.web-application-type=" + (web ? "servlet" : "none"),
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "spring.jpa.open-in-view=false",
+                "logging.level.root=WARN"));
+        all.addAll(List.of(properties));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CreditCardApplication.class)
+                .properties(all.toArray(String[]::new))
+                .run();
+        // The pool hands out connections with auto-commit off, so seed inside a transaction
+        long[] cardIds = context.getBean(TransactionTemplate.class)
+                .execute(status -> seed(context.getBean(JdbcTemplate.class), cards));
+        return new BenchmarkApplication(context, cardIds);
+    }
+
+    private static long[] seed(JdbcTemplate jdbcTemplate, int cards) {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < cards; i++) {
+            batch.add(new Object[]{String.format("9%015d", i), CREDIT_LIMIT, CREDIT_LIMIT});
+            if (batch.size() == INSERT_BATCH_SIZE || i == cards - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO credit_cards "
+                        + "(id, card_number, credit_limit, available_limit, captured_total, escrow_stripes, version) "
+                        + "VALUES (NEXT VALUE FOR credit_cards_seq, ?, ?, ?, 0, 0, 0)", batch);
+                batch.clear();
+            }
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM credit_cards WHERE card_number LIKE '9%' ORDER BY id", Long.class)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * @return the base URI of the web server started by {@link #startServer}
+     */
+    public URI baseUri() {
+        return URI.create("http://localhost:" + context.getEnvironment().getRequiredProperty("local.server.port"));
+    }
+
+    public long[] cardIds() {
+        return cardIds;
+    }
+
+    /**
+     * @return a uniformly chosen seeded card
+     */
+    public long randomCardId() {
+        return cardIds[ThreadLocalRandom.current().nextInt(cardIds.length)];
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.creditcard.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks once per thread count (1, 8, 64 and 256 by default),
+ * measuring throughput and sampled latency (for p99) with the GC profiler
+ * attached for allocation per operation. Results are written as JSON to
+ * {@code target/jmh/}, one file per thread count.
+ *
+ * Standard JMH command line options are accepted and take precedence over
+ * these defaults, e.g.
+ * {@code HotPathBenchmark.summary -p cards=1 -p engine=conditional-update}.
+ * The thread counts can be replaced with {@code -Dbenchmark.threads=1,16}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String[] threadCounts = System.getProperty("benchmark.threads", "1,8,64,256").split(",");
+        File resultDir = new File("target/jmh");
+        resultDir.mkdirs();
+
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDir, "results-" + threads + "-threads.json").getPath());
+            // Options on this builder override the command line, so only fill in what it left unset
+            if (commandLine.getBenchModes().isEmpty()) {
+                options.mode(Mode.Throughput).mode(Mode.SampleTime);
+            }
+            if (!commandLine.getForkCount().hasValue()) {
+                options.forks(1);
+            }
+            if (!commandLine.getWarmupIterations().hasValue()) {
+                options.warmupIterations(3);
+            }
+            if (!commandLine.getWarmupTime().hasValue()) {
+                options.warmupTime(TimeValue.seconds(5));
+            }
+            if (!commandLine.getMeasurementIterations().hasValue()) {
+                options.measurementIterations(5);
+            }
+            if (!commandLine.getMeasurementTime().hasValue()) {
+                options.measurementTime(TimeValue.seconds(10));
+            }
+            if (commandLine.getIncludes().isEmpty()) {
+                options.include(HotPathBenchmark.class.getSimpleName());
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
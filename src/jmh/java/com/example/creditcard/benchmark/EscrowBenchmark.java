@@ -0,0 +1,56 @@
+package com.example.creditcard.benchmark;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.TransactionService;
+import com.example.creditcard.service.escrow.EscrowService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+
+/**
+ * Authorizations on a single card, with its limit split across {@code stripes}
+ * escrow stripes. {@code 0} leaves the card out of escrow mode, so every
+ * authorization locks the card row as with the pessimistic strategy.
+ *
+ * Thread counts, modes and profilers are set by {@link BenchmarkRunner}.
+ */
+public class EscrowBenchmark {
+
+    private static final Money AMOUNT = Money.parse("0.01");
+
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        @Param({"0", "4", "16", "64"})
+        public int stripes;
+
+        BenchmarkApplication application;
+        TransactionService transactionService;
+        long cardId;
+
+        @Setup(Level.Trial)
+        public void start() {
+            application = BenchmarkApplication.start(1);
+            transactionService = application.bean(TransactionService.class);
+            cardId = application.randomCardId();
+            if (stripes > 0) {
+                application.bean(EscrowService.class).enable(cardId, stripes);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            application.close();
+        }
+    }
+
+    @Benchmark
+    public Object authorize(Application state) {
+        return state.transactionService.authorize(state.cardId, AMOUNT);
+    }
+}
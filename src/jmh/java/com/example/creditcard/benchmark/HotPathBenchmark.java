@@ -0,0 +1,89 @@
+package com.example.creditcard.benchmark;
+
+import com.example.creditcard.controller.CardController;
+import com.example.creditcard.controller.CardSummaryResponse;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Authorize, capture and card summary, called on the Spring beans directly.
+ *
+ * {@code cards} spreads the load over one card (every thread contends on the
+ * same row) or over many. {@code engine} selects a reservation strategy by its
+ * configuration name, or {@code ledger} for the in-memory ledger.
+ *
+ * Thread counts, modes and profilers are set by {@link BenchmarkRunner}.
+ */
+public class HotPathBenchmark {
+
+    private static final Money AMOUNT = Money.parse("1.00");
+
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        @Param({"1", "100000"})
+        public int cards;
+
+        @Param({"pessimistic"})
+        public String engine;
+
+        BenchmarkApplication application;
+        TransactionService transactionService;
+        CardController cardController;
+
+        @Setup(Level.Trial)
+        public void start() {
+            application = "ledger".equals(engine)
+                    ? BenchmarkApplication.start(cards, "creditcard.ledger.enabled=true")
+                    : BenchmarkApplication.start(cards, "creditcard.reservation.strategy=" + engine);
+            transactionService = application.bean(TransactionService.class);
+            cardController = application.bean(CardController.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            application.close();
+        }
+    }
+
+    /**
+     * An authorized transaction for the capture benchmark, created outside the
+     * measured section before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class PendingCapture {
+
+        Long transactionId;
+
+        @Setup(Level.Invocation)
+        public void authorize(Application state) {
+            transactionId = state.transactionService
+                    .authorize(state.application.randomCardId(), AMOUNT)
+                    .transaction()
+                    .getId();
+        }
+    }
+
+    @Benchmark
+    public Object authorize(Application state) {
+        return state.transactionService.authorize(state.application.randomCardId(), AMOUNT);
+    }
+
+    @Benchmark
+    public Object capture(Application state, PendingCapture pending) {
+        return state.transactionService.captureTransaction(pending.transactionId);
+    }
+
+    @Benchmark
+    public ResponseEntity<CardSummaryResponse> summary(Application state) {
+        return state.cardController.getCardSummary(state.application.randomCardId());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.creditcard.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tail latency over HTTP when a burst of authorizations against one hot card
+ * runs next to summary reads for other cards.
+ *
+ * The {@code mixed} group sends authorizations for the first seeded card from
+ * {@code hotAuthorize} threads while {@code coldSummary} threads read the
+ * summaries of the remaining cards. {@code threads} runs the request handlers
+ * on Tomcat's platform thread pool or on virtual threads. {@code tomcatThreads}
+ * sizes the platform pool below the size of the burst, as a full-size pool
+ * would be under production load; it has no effect on virtual threads. In both
+ * modes at most {@code spring.datasource.hikari.maximum-pool-size} requests run
+ * statements at once.
+ *
+ * Run with {@code -Dbenchmark.threads=64} so that one group runs at a time.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MixedTrafficBenchmark {
+
+    private static final String AUTHORIZE_BODY = "{\"cardId\":%d,\"amount\":1.00}";
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"platform", "virtual"})
+        public String threads;
+
+        @Param({"32"})
+        public int tomcatThreads;
+
+        @Param({"1000"})
+        public int cards;
+
+        BenchmarkApplication application;
+        HttpClient client;
+        URI baseUri;
+        URI authorizeUri;
+        long hotCardId;
+
+        @Setup(Level.Trial)
+        public void start() {
+            application = BenchmarkApplication.startServer(cards,
+                    "spring.threads.virtual.enabled=" + "virtual".equals(threads),
+                    "server.tomcat.threads.max=" + tomcatThreads);
+            client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .build();
+            baseUri = application.baseUri();
+            authorizeUri = baseUri.resolve("/transactions/authorize");
+            hotCardId = application.cardIds()[0];
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            application.close();
+        }
+
+        long coldCardId() {
+            long[] cardIds = application.cardIds();
+            return cardIds[1 + ThreadLocalRandom.current().nextInt(cardIds.length - 1)];
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(48)
+    public int hotAuthorize(Server server) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(server.authorizeUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(AUTHORIZE_BODY.formatted(server.hotCardId)))
+                .build();
+        return server.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(16)
+    public int coldSummary(Server server) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(
+                        server.baseUri.resolve("/cards/" + server.coldCardId() + "/summary"))
+                .GET()
+                .build();
+        return server.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.creditcard.benchmark;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.ledger.CardLimits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The limit check and reservation of a ledger shard on their own, without the
+ * database: {@code money} reserves from the shard's {@link CardLimits},
+ * {@code bigDecimal} does the same on a map of {@link BigDecimal} limits. With
+ * the GC profiler attached by {@link BenchmarkRunner}, {@code gc.alloc.rate.norm}
+ * of {@code money} should be zero bytes per operation.
+ *
+ * Every thread has its own limits, so this scales with the thread count.
+ */
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private static final Long CARD_ID = 1L;
+    private static final Money AMOUNT = Money.parse("12.34");
+    private static final BigDecimal DECIMAL_AMOUNT = AMOUNT.toBigDecimal();
+    private static final Money START = Money.ofMinor(Long.MAX_VALUE / 2);
+
+    private CardLimits limits;
+    private Map<Long, BigDecimal> decimalLimits;
+
+    @Setup(Level.Iteration)
+    public void load() {
+        limits = new CardLimits();
+        limits.load(CARD_ID, START);
+        decimalLimits = new HashMap<>();
+        decimalLimits.put(CARD_ID, START.toBigDecimal());
+    }
+
+    @Benchmark
+    public boolean money() {
+        return limits.tryReserve(CARD_ID, AMOUNT);
+    }
+
+    @Benchmark
+    public boolean bigDecimal() {
+        BigDecimal available = decimalLimits.get(CARD_ID);
+        if (available.compareTo(DECIMAL_AMOUNT) < 0) {
+            return false;
+        }
+        decimalLimits.put(CARD_ID, available.subtract(DECIMAL_AMOUNT));
+        return true;
+    }
+}
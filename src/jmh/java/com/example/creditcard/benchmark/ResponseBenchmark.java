@@ -0,0 +1,116 @@
+package com.example.creditcard.benchmark;
+
+import com.example.creditcard.controller.CardSummaryResponse;
+import com.example.creditcard.controller.TransactionResponse;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Building and writing the authorization, card summary and error response
+ * bodies with the application's {@link ObjectMapper}: {@code *Map} the way the
+ * controllers did with a {@link LinkedHashMap} per response, {@code *Record}
+ * with the response records they return now. Both produce the same JSON; with
+ * the GC profiler attached by {@link BenchmarkRunner}, {@code gc.alloc.rate.norm}
+ * compares the bytes allocated per response.
+ */
+@State(Scope.Thread)
+public class ResponseBenchmark {
+
+    private static final Long TRANSACTION_ID = 42L;
+    private static final Long CARD_ID = 1L;
+    private static final Money AMOUNT = Money.parse("100.00");
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 15, 10, 30, 0);
+
+    private BenchmarkApplication application;
+    private ObjectWriter mapWriter;
+    private ObjectWriter transactionWriter;
+    private ObjectWriter summaryWriter;
+    private ObjectWriter errorWriter;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.start(1);
+        ObjectMapper objectMapper = application.bean(ObjectMapper.class);
+        mapWriter = objectMapper.writerFor(Map.class);
+        transactionWriter = objectMapper.writerFor(TransactionResponse.class);
+        summaryWriter = objectMapper.writerFor(CardSummaryResponse.class);
+        errorWriter = objectMapper.writerFor(ErrorResponse.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public int transactionMap() throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("transactionId", TRANSACTION_ID);
+        response.put("cardId", CARD_ID);
+        response.put("amount", AMOUNT);
+        response.put("type", TransactionType.AUTHORIZED);
+        response.put("createdAt", CREATED_AT);
+        return write(mapWriter, response);
+    }
+
+    @Benchmark
+    public int transactionRecord() throws IOException {
+        return write(transactionWriter,
+                new TransactionResponse(TRANSACTION_ID, CARD_ID, AMOUNT, TransactionType.AUTHORIZED, CREATED_AT));
+    }
+
+    @Benchmark
+    public int summaryMap() throws IOException {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("cardId", CARD_ID);
+        summary.put("cardNumber", "4532****0366");
+        summary.put("creditLimit", AMOUNT);
+        summary.put("availableLimit", AMOUNT);
+        summary.put("totalCapturedAmount", Money.ZERO);
+        return write(mapWriter, summary);
+    }
+
+    @Benchmark
+    public int summaryRecord() throws IOException {
+        return write(summaryWriter,
+                new CardSummaryResponse(CARD_ID, "4532****0366", AMOUNT, AMOUNT, Money.ZERO));
+    }
+
+    @Benchmark
+    public int errorMap() throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", 400);
+        response.put("error", "Bad Request");
+        response.put("message", "Insufficient available limit");
+        return write(mapWriter, response);
+    }
+
+    @Benchmark
+    public int errorRecord() throws IOException {
+        return write(errorWriter,
+                new ErrorResponse(LocalDateTime.now(), 400, "Bad Request", "Insufficient available limit"));
+    }
+
+    private int write(ObjectWriter writer, Object response) throws IOException {
+        body.reset();
+        writer.writeValue(body, response);
+        return body.size();
+    }
+}
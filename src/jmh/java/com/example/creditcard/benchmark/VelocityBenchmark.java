@@ -0,0 +1,81 @@
+package com.example.creditcard.benchmark;
+
+import com.example.creditcard.service.velocity.VelocityCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The velocity check of an authorization on its own: {@code tryAdd} counts an
+ * authorization of a random card in the default 1 minute, 1 hour and 24 hour
+ * windows and checks it against their limits, and {@code tryAddAndRemove}
+ * also takes it back, as for an authorization declined afterwards. All
+ * threads share the counters.
+ *
+ * Setup fills the counters with one authorization for each of {@code cards}
+ * cards and prints the heap they take, so the memory per card can be read off
+ * the output. At the default 10 million cards this needs a heap of about 4 GB:
+ * pass {@code -p cards=1000000} on smaller machines.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsAppend = "-Xmx6g")
+public class VelocityBenchmark {
+
+    private static final Duration[] WINDOWS = {Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofHours(24)};
+    private static final long[] MAX_COUNTS = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+    private static final long[] MAX_AMOUNTS = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+    private static final long AMOUNT = 12_34;
+
+    @Param({"10000000"})
+    public int cards;
+
+    @Param({"12"})
+    public int buckets;
+
+    private VelocityCounters counters;
+
+    @Setup(Level.Trial)
+    public void load() {
+        long before = usedHeap();
+        counters = new VelocityCounters(WINDOWS, buckets, 64);
+        long now = System.currentTimeMillis();
+        for (long cardId = 1; cardId <= cards; cardId++) {
+            counters.tryAdd(cardId, AMOUNT, now, MAX_COUNTS, MAX_AMOUNTS);
+        }
+        long used = usedHeap() - before;
+        System.out.printf("%n%d cards with %d buckets per window take %d MB of heap, %d bytes per card%n",
+                counters.size(), buckets, used >> 20, used / cards);
+    }
+
+    @Benchmark
+    public int tryAdd() {
+        long cardId = ThreadLocalRandom.current().nextLong(1, cards + 1);
+        return counters.tryAdd(cardId, AMOUNT, System.currentTimeMillis(), MAX_COUNTS, MAX_AMOUNTS);
+    }
+
+    @Benchmark
+    public int tryAddAndRemove() {
+        long cardId = ThreadLocalRandom.current().nextLong(1, cards + 1);
+        long now = System.currentTimeMillis();
+        int exceeded = counters.tryAdd(cardId, AMOUNT, now, MAX_COUNTS, MAX_AMOUNTS);
+        counters.remove(cardId, AMOUNT, now);
+        return exceeded;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
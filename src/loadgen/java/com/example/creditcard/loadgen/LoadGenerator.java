@@ -0,0 +1,253 @@
+package com.example.creditcard.loadgen;
+
+import com.example.creditcard.CreditCardApplication;
+import com.example.creditcard.domain.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator for the REST API, runnable offline on one machine.
+ *
+ * Starts the application with its web server on a random port against a fresh
+ * in-memory database, creates the cards and then sends requests at a constant
+ * arrival rate, whatever the response times. Each request is sent from its own
+ * virtual thread at its scheduled time, so a slow server meets more requests
+ * in flight rather than a client that slows down with it. Latency is measured
+ * from the time a request was scheduled, which corrects for coordinated
+ * omission; the latency from the time it was actually sent is reported next
+ * to it.
+ *
+ * Operations are picked by the {@code --mix} weights and cards by a Zipf
+ * distribution, so that a few hot cards take most of the traffic. A capture
+ * takes the oldest approved authorization not yet captured, and is sent as an
+ * authorization while there is none. The report gives the latency percentiles
+ * and outcomes of each operation and the share of authorizations declined for
+ * insufficient limit, and the full distributions are written as {@code .hgrm}
+ * files. See {@link LoadOptions#USAGE} for the options.
+ */
+public final class LoadGenerator {
+
+    private static final String DECLINED_MESSAGE = "Insufficient available limit";
+
+    private final LoadOptions options;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final Queue<Long> authorized = new ConcurrentLinkedQueue<>();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final ZipfSampler cardSampler;
+
+    private URI baseUri;
+    private long[] cardIds;
+    private long measuredFrom;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(options.timeout())
+                .build();
+        this.operations = options.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += options.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.cardSampler = new ZipfSampler(options.cards(), options.zipf());
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats(operation.name().toLowerCase()));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try (ConfigurableApplicationContext context = startApplication(options.properties())) {
+            LoadGenerator generator = new LoadGenerator(options);
+            generator.baseUri = URI.create("http://localhost:"
+                    + context.getEnvironment().getRequiredProperty("local.server.port"));
+            generator.cardIds = context.getBean(TransactionTemplate.class)
+                    .execute(status -> seed(context.getBean(JdbcTemplate.class), options));
+            generator.run();
+            generator.report(System.out);
+        }
+    }
+
+    /**
+     * Start the application with its web server on a random port.
+     *
+     * @param overrides application properties set on the command line
+     */
+    static ConfigurableApplicationContext startApplication(List<String> overrides) {
+        List<String> properties = new ArrayList<>(List.of(
+                "spring.main.banner-mode=off",
+                "server.port=0",
+                "logging.level.root=WARN",
+                // Every decline is logged, and the console would slow the server down under load
+                "logging.level.com.example.creditcard=OFF"));
+        properties.addAll(overrides);
+        return new SpringApplicationBuilder(CreditCardApplication.class)
+                .properties(properties.toArray(String[]::new))
+                .run();
+    }
+
+    private static long[] seed(JdbcTemplate jdbcTemplate, LoadOptions options) {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < options.cards(); i++) {
+            batch.add(new Object[]{String.format("8%015d", i),
+                    options.creditLimit().toBigDecimal(), options.creditLimit().toBigDecimal()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO credit_cards "
+                + "(id, card_number, credit_limit, available_limit, captured_total, escrow_stripes, version) "
+                + "VALUES (NEXT VALUE FOR credit_cards_seq, ?, ?, ?, 0, 0, 0)", batch);
+        return jdbcTemplate.queryForList("SELECT id FROM credit_cards WHERE card_number LIKE '8%' ORDER BY id", Long.class)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    /**
+     * Send the warmup and then the measured traffic, and wait for the last response.
+     */
+    private void run() {
+        long intervalNanos = Math.round(1_000_000_000 / options.rate());
+        long start = System.nanoTime();
+        measuredFrom = start + options.warmup().toNanos();
+        long end = measuredFrom + options.duration().toNanos();
+        System.out.printf("Sending %.1f requests/s to %d cards for %s after a %s warmup%n",
+                options.rate(), cardIds.length, options.duration(), options.warmup());
+
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long scheduledAt = start + i * intervalNanos;
+                if (scheduledAt >= end) {
+                    break;
+                }
+                long wait = scheduledAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                requests.execute(() -> send(scheduledAt));
+            }
+        }
+    }
+
+    private void send(long scheduledAt) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation = pickOperation(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]));
+        Long transactionId = operation == Operation.CAPTURE ? authorized.poll() : null;
+        if (operation == Operation.CAPTURE && transactionId == null) {
+            operation = Operation.AUTHORIZE;
+        }
+        long cardId = cardIds[cardSampler.sample(random)];
+
+        HttpRequest request = switch (operation) {
+            case AUTHORIZE -> post("/transactions/authorize",
+                    "{\"cardId\":" + cardId + ",\"amount\":" + randomAmount(random) + "}");
+            case CAPTURE -> post("/transactions/capture/" + transactionId, "");
+            case SUMMARY -> HttpRequest.newBuilder(baseUri.resolve("/cards/" + cardId + "/summary"))
+                    .timeout(options.timeout())
+                    .GET()
+                    .build();
+        };
+
+        long sentAt = System.nanoTime();
+        OperationStats.Outcome outcome;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            outcome = outcome(operation, response);
+        } catch (IOException e) {
+            outcome = OperationStats.Outcome.ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (scheduledAt >= measuredFrom) {
+            stats.get(operation).record(scheduledAt, sentAt, System.nanoTime(), outcome);
+        }
+    }
+
+    private OperationStats.Outcome outcome(Operation operation, HttpResponse<String> response) throws IOException {
+        int status = response.statusCode();
+        if (operation == Operation.AUTHORIZE && status == 201) {
+            authorized.add(objectMapper.readTree(response.body()).get("transactionId").asLong());
+            return OperationStats.Outcome.OK;
+        }
+        if (operation == Operation.AUTHORIZE && status == 400 && response.body().contains(DECLINED_MESSAGE)) {
+            return OperationStats.Outcome.DECLINED;
+        }
+        return status == 200 ? OperationStats.Outcome.OK : OperationStats.Outcome.ERROR;
+    }
+
+    private Operation pickOperation(int weight) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private Money randomAmount(ThreadLocalRandom random) {
+        return Money.ofMinor(random.nextLong(options.minAmount().getMinorUnits(),
+                options.maxAmount().getMinorUnits() + 1));
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(options.timeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private void report(PrintStream out) throws IOException {
+        double seconds = options.duration().toNanos() / 1e9;
+        out.println();
+        for (OperationStats operationStats : stats.values()) {
+            operationStats.print(out, seconds);
+        }
+        long authorizations = stats.get(Operation.AUTHORIZE).requests();
+        out.printf("Decline ratio: %.2f%% of %d authorizations%n",
+                authorizations == 0 ? 0.0 : 100.0 * stats.get(Operation.AUTHORIZE).declined() / authorizations,
+                authorizations);
+        out.printf("Zipf exponent %.2f sends %.1f%% of card requests to the hottest 1%% of cards%n", options.zipf(),
+                100 * cardSampler.share(Math.max(1, cardIds.length / 100)));
+
+        Files.createDirectories(options.reportDirectory());
+        for (OperationStats operationStats : stats.values()) {
+            operationStats.write(options.reportDirectory());
+        }
+        out.println("Latency distributions written to " + options.reportDirectory());
+    }
+}
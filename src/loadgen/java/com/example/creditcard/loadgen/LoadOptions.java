@@ -0,0 +1,131 @@
+package com.example.creditcard.loadgen;
+
+import com.example.creditcard.domain.Money;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line of the {@link LoadGenerator}. Options have the form
+ * {@code --name=value}; any other {@code key=value} argument is an application property.
+ *
+ * @param cards number of cards to create
+ * @param rate requests sent per second, whatever the response times
+ * @param warmup how long to send traffic before measuring
+ * @param duration how long to measure
+ * @param mix relative weight of each operation
+ * @param zipf exponent of the Zipf distribution cards are picked with; 0 picks uniformly
+ * @param creditLimit credit limit of every card
+ * @param minAmount smallest authorization amount
+ * @param maxAmount largest authorization amount
+ * @param timeout how long to wait for a response before counting an error
+ * @param reportDirectory where the latency distributions are written
+ * @param properties application properties
+ */
+record LoadOptions(int cards,
+                   double rate,
+                   Duration warmup,
+                   Duration duration,
+                   Map<Operation, Integer> mix,
+                   double zipf,
+                   Money creditLimit,
+                   Money minAmount,
+                   Money maxAmount,
+                   Duration timeout,
+                   Path reportDirectory,
+                   List<String> properties) {
+
+    static final String USAGE = """
+            Options (defaults in brackets):
+              --cards=N              cards to create [10000]
+              --rate=N               requests per second [500]
+              --warmup=DURATION      traffic sent before measuring [10s]
+              --duration=DURATION    traffic measured [60s]
+              --mix=OP=W,...         weights of authorize, capture and summary [authorize=60,capture=30,summary=10]
+              --zipf=S               Zipf exponent of card popularity, 0 for uniform [1.0]
+              --credit-limit=AMOUNT  credit limit of every card [5000.00]
+              --min-amount=AMOUNT    smallest authorization [1.00]
+              --max-amount=AMOUNT    largest authorization [200.00]
+              --timeout=DURATION     response timeout, counted as an error [10s]
+              --report-dir=PATH      where .hgrm latency distributions are written [target/loadgen]
+            Any other key=value argument is passed to the application as a property.
+            """;
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "cards", "10000",
+                "rate", "500",
+                "warmup", "10s",
+                "duration", "60s",
+                "mix", "authorize=60,capture=30,summary=10",
+                "zipf", "1.0",
+                "credit-limit", "5000.00",
+                "min-amount", "1.00",
+                "max-amount", "200.00",
+                "timeout", "10s"));
+        options.put("report-dir", "target/loadgen");
+        List<String> properties = new ArrayList<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value or key=value: " + arg);
+            }
+            if (!arg.startsWith("--")) {
+                properties.add(arg);
+                continue;
+            }
+            String name = arg.substring(2, equals);
+            if (!options.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+
+        LoadOptions parsed = new LoadOptions(
+                Integer.parseInt(options.get("cards")),
+                Double.parseDouble(options.get("rate")),
+                DurationStyle.detectAndParse(options.get("warmup")),
+                DurationStyle.detectAndParse(options.get("duration")),
+                parseMix(options.get("mix")),
+                Double.parseDouble(options.get("zipf")),
+                Money.parse(options.get("credit-limit")),
+                Money.parse(options.get("min-amount")),
+                Money.parse(options.get("max-amount")),
+                DurationStyle.detectAndParse(options.get("timeout")),
+                Path.of(options.get("report-dir")),
+                List.copyOf(properties));
+        if (parsed.cards < 1 || parsed.rate <= 0 || parsed.zipf < 0) {
+            throw new IllegalArgumentException("cards and rate must be positive and zipf not negative");
+        }
+        if (!parsed.minAmount.isPositive() || parsed.maxAmount.isLessThan(parsed.minAmount)) {
+            throw new IllegalArgumentException("Amounts must satisfy 0 < min-amount <= max-amount");
+        }
+        return parsed;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight in --mix: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights in --mix must not be negative: " + entry);
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("--mix needs at least one positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.creditcard.loadgen;
+
+/**
+ * The API calls the load generator mixes.
+ */
+enum Operation {
+    /** {@code POST /transactions/authorize} */
+    AUTHORIZE,
+    /** {@code POST /transactions/capture/{id}} of an earlier approved authorization */
+    CAPTURE,
+    /** {@code GET /cards/{id}/summary} */
+    SUMMARY
+}
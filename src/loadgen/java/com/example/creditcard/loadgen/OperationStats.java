@@ -0,0 +1,133 @@
+package com.example.creditcard.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcomes and latencies of one operation, recorded concurrently by the request threads.
+ *
+ * Every request is recorded twice, in microseconds: from the time it was
+ * scheduled to be sent, which includes any time it spent waiting behind
+ * earlier requests and so is corrected for coordinated omission, and from the
+ * time it was actually sent, which is what a closed-model client would report.
+ */
+final class OperationStats {
+
+    enum Outcome { OK, DECLINED, ERROR }
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private static final String SCHEDULED_TAG = "scheduled";
+    private static final String SENT_TAG = "sent";
+
+    private final String name;
+    private final Histogram scheduled = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final Histogram sent = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param name the operation's name in reports and file names
+     */
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    void record(long scheduledAt, long sentAt, long completedAt, Outcome outcome) {
+        scheduled.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(completedAt - scheduledAt), MAX_LATENCY_MICROS));
+        sent.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(completedAt - sentAt), MAX_LATENCY_MICROS));
+        switch (outcome) {
+            case OK -> ok.increment();
+            case DECLINED -> declined.increment();
+            case ERROR -> errors.increment();
+        }
+    }
+
+    long requests() {
+        return scheduled.getTotalCount();
+    }
+
+    long declined() {
+        return declined.sum();
+    }
+
+    void print(PrintStream out, double seconds) {
+        out.printf("%-9s requests: %d (%.1f/s), ok: %d, declined: %d, errors: %d%n",
+                name, requests(), requests() / seconds, ok.sum(), declined.sum(), errors.sum());
+        if (requests() > 0) {
+            out.println("  latency ms         p50       p90       p99     p99.9       max");
+            printPercentiles(out, "  from scheduled", scheduled);
+            printPercentiles(out, "  from sent     ", sent);
+        }
+    }
+
+    /**
+     * Write both latency distributions in HdrHistogram's percentile format, in
+     * milliseconds, and together in an HdrHistogram log that {@link #printBaseline}
+     * reads back.
+     */
+    void write(Path directory) throws IOException {
+        writeDistribution(directory.resolve(name + "-scheduled.hgrm"), scheduled);
+        writeDistribution(directory.resolve(name + "-sent.hgrm"), sent);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hlog")))) {
+            HistogramLogWriter log = new HistogramLogWriter(out);
+            log.outputLogFormatVersion();
+            log.outputLegend();
+            log.outputIntervalHistogram(tagged(scheduled, SCHEDULED_TAG));
+            log.outputIntervalHistogram(tagged(sent, SENT_TAG));
+        }
+    }
+
+    /**
+     * Print the latency from scheduled that an earlier run wrote for the same
+     * operation with {@link #write}, under this run's, if that run had one.
+     *
+     * @param directory the report directory of the earlier run
+     */
+    void printBaseline(PrintStream out, Path directory) throws IOException {
+        Path file = directory.resolve(name + ".hlog");
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (HistogramLogReader reader = new HistogramLogReader(file.toFile())) {
+            for (EncodableHistogram histogram = reader.nextIntervalHistogram(); histogram != null;
+                 histogram = reader.nextIntervalHistogram()) {
+                if (SCHEDULED_TAG.equals(histogram.getTag()) && histogram instanceof Histogram baseline) {
+                    printPercentiles(out, "  baseline      ", baseline);
+                }
+            }
+        }
+    }
+
+    private static void printPercentiles(PrintStream out, String label, Histogram histogram) {
+        out.printf("%s %9.2f %9.2f %9.2f %9.2f %9.2f%n", label,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static Histogram tagged(Histogram histogram, String tag) {
+        Histogram copy = histogram.copy();
+        copy.setTag(tag);
+        return copy;
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.creditcard.loadgen;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line of the {@link TrafficReplay}, in the same form as {@link LoadOptions}.
+ *
+ * @param recording the traffic recording to replay
+ * @param speed how many times faster than recorded requests are sent; 0 sends them as fast as possible
+ * @param timeout how long to wait for a response before counting an error
+ * @param reportDirectory where the latency distributions are written
+ * @param baselineDirectory the report directory of an earlier run to compare latencies with, or null
+ * @param properties application properties
+ */
+record ReplayOptions(Path recording,
+                     double speed,
+                     Duration timeout,
+                     Path reportDirectory,
+                     Path baselineDirectory,
+                     List<String> properties) {
+
+    static final String USAGE = """
+            Options (defaults in brackets):
+              --recording=PATH       traffic recording to replay [data/traffic-capture.bin]
+              --speed=N|max          times faster than recorded, or max for as fast as possible [1]
+              --timeout=DURATION     response timeout, counted as an error [10s]
+              --report-dir=PATH      where .hgrm and .hlog latency distributions are written [target/replay]
+              --baseline=PATH        report directory of an earlier replay to compare latencies with [none]
+            Any other key=value argument is passed to the application as a property.
+            """;
+
+    static ReplayOptions parse(String[] args) {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "recording", "data/traffic-capture.bin",
+                "speed", "1",
+                "timeout", "10s",
+                "report-dir", "target/replay",
+                "baseline", ""));
+        List<String> properties = new ArrayList<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value or key=value: " + arg);
+            }
+            if (!arg.startsWith("--")) {
+                properties.add(arg);
+                continue;
+            }
+            String name = arg.substring(2, equals);
+            if (!options.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+
+        double speed = 0;
+        if (!options.get("speed").equalsIgnoreCase("max")) {
+            speed = Double.parseDouble(options.get("speed"));
+            if (!(speed > 0)) {
+                throw new IllegalArgumentException("--speed must be positive or max");
+            }
+        }
+        return new ReplayOptions(
+                Path.of(options.get("recording")),
+                speed,
+                DurationStyle.detectAndParse(options.get("timeout")),
+                Path.of(options.get("report-dir")),
+                options.get("baseline").isEmpty() ? null : Path.of(options.get("baseline")),
+                List.copyOf(properties));
+    }
+}
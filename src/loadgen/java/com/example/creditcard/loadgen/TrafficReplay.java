@@ -0,0 +1,403 @@
+package com.example.creditcard.loadgen;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.ledger.ShardedLedger;
+import com.example.creditcard.service.traffic.CardState;
+import com.example.creditcard.service.traffic.TrafficEvent;
+import com.example.creditcard.service.traffic.TrafficRecorder;
+import com.example.creditcard.service.traffic.TrafficRecordingReader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Replays a traffic recording, taken with {@code creditcard.traffic-capture.enabled=true},
+ * against a fresh in-process instance and compares the outcome with the recording.
+ *
+ * The instance's cards are replaced by the recording's, with the ids and limits
+ * they had when the recording started and generated card numbers; a card that
+ * was in escrow mode starts with its stripes folded back onto the card. Requests
+ * are then sent at their recorded times divided by {@code --speed}, or as fast
+ * as possible, each from its own virtual thread. Requests for one card are sent
+ * in recorded order, each once the previous one has been answered, and batch
+ * authorizations wait for every card they contain; requests for different cards
+ * overlap. A capture is sent for the transaction the replay authorized in place
+ * of the recorded one, and skipped if the replay declined it or the recording
+ * does not contain the authorization. Hold expiry is turned off, as the replay
+ * compresses time.
+ *
+ * The report gives the latency percentiles and outcomes of each operation, under
+ * each the latency of an earlier replay given with {@code --baseline}, how many
+ * authorizations the recording and the replay approved, and the cards whose
+ * available limit at the end differs from the one recorded at shutdown. See
+ * {@link ReplayOptions#USAGE} for the options.
+ */
+public final class TrafficReplay {
+
+    private static final String DECLINED_MESSAGE = "Insufficient available limit";
+    private static final int MAX_REPORTED_MISMATCHES = 10;
+
+    private final ReplayOptions options;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, OperationStats> stats = new LinkedHashMap<>();
+    private final LongAdder unmatchedCaptures = new LongAdder();
+    private final LongAdder skippedCaptures = new LongAdder();
+
+    /** Recorded transaction id to the authorization that was approved with it */
+    private final Map<Long, Authorization> recordedAuthorizations = new HashMap<>();
+    /** Authorization number to the transaction id the replay was approved with */
+    private final Map<Long, Long> replayedTransactions = new ConcurrentHashMap<>();
+    /** Card id to its last request sent; only touched by the dispatching thread */
+    private final Map<Long, CompletableFuture<Void>> lanes = new HashMap<>();
+
+    private URI baseUri;
+    private ExecutorService requests;
+
+    private record Authorization(long index, long cardId) {
+    }
+
+    private TrafficReplay(ReplayOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(options.timeout())
+                .build();
+        for (String name : List.of("authorize", "batch", "capture", "summary", "history", "escrow")) {
+            stats.put(name, new OperationStats(name));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ReplayOptions options;
+        try {
+            options = ReplayOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(ReplayOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        TrafficReplay replay = new TrafficReplay(options);
+        List<CardState> initialCards;
+        try (TrafficRecordingReader reader = new TrafficRecordingReader(options.recording())) {
+            initialCards = reader.getInitialCards();
+            replay.index(reader);
+        }
+
+        List<String> properties = new ArrayList<>(List.of(
+                "creditcard.hold-expiry.enabled=false",
+                "creditcard.traffic-capture.enabled=false",
+                // A journaled ledger must not recover another run's authorizations
+                "creditcard.ledger.journal.directory=" + Files.createTempDirectory("replay-ledger-journal")));
+        properties.addAll(options.properties());
+        try (ConfigurableApplicationContext context = LoadGenerator.startApplication(properties)) {
+            replay.baseUri = URI.create("http://localhost:"
+                    + context.getEnvironment().getRequiredProperty("local.server.port"));
+            context.getBean(TransactionTemplate.class)
+                    .executeWithoutResult(status -> seed(context.getBean(JdbcTemplate.class), initialCards));
+            ShardedLedger ledger = context.getBean(ShardedLedger.class);
+            if (ledger.isEnabled()) {
+                // The ledger loaded the cards the instance started with
+                ledger.stop();
+                ledger.start();
+            }
+
+            List<CardState> recordedCards;
+            long elapsed;
+            try (TrafficRecordingReader reader = new TrafficRecordingReader(options.recording())) {
+                elapsed = replay.run(reader);
+                recordedCards = reader.getFinalCards().orElse(null);
+            }
+
+            if (ledger.isJournaled()) {
+                ledger.awaitFlushed();
+            }
+            List<CardState> replayedCards = new ArrayList<>();
+            context.getBean(TrafficRecorder.class).readCards(replayedCards::add);
+            replay.report(System.out, elapsed, recordedCards, replayedCards);
+        }
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, List<CardState> cards) {
+        jdbcTemplate.update("DELETE FROM card_limit_stripes");
+        jdbcTemplate.update("DELETE FROM card_transactions");
+        jdbcTemplate.update("DELETE FROM credit_cards");
+        List<Object[]> batch = new ArrayList<>();
+        for (CardState card : cards) {
+            batch.add(new Object[]{card.cardId(), String.format("8%015d", card.cardId()),
+                    card.creditLimit().toBigDecimal(), card.availableLimit().toBigDecimal()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO credit_cards "
+                + "(id, card_number, credit_limit, available_limit, captured_total, escrow_stripes, version) "
+                + "VALUES (?, ?, ?, ?, 0, 0, 0)", batch);
+    }
+
+    /**
+     * Read the recording once to find which transaction each approved authorization was given.
+     */
+    private void index(TrafficRecordingReader reader) throws IOException {
+        Map<Long, Long> cardOfAuthorization = new HashMap<>();
+        for (TrafficEvent event = reader.next(); event != null; event = reader.next()) {
+            switch (event) {
+                case TrafficEvent.Authorize authorize -> cardOfAuthorization.put(authorize.index(), authorize.cardId());
+                case TrafficEvent.AuthorizeBatch batch -> {
+                    for (int i = 0; i < batch.entries().size(); i++) {
+                        cardOfAuthorization.put(batch.firstIndex() + i, batch.entries().get(i).cardId());
+                    }
+                }
+                case TrafficEvent.Authorized authorized -> {
+                    Long cardId = cardOfAuthorization.remove(authorized.index());
+                    if (cardId != null) {
+                        recordedAuthorizations.put(authorized.transactionId(),
+                                new Authorization(authorized.index(), cardId));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Send every recorded request and wait for the last response.
+     *
+     * @return the nanoseconds the replay took
+     */
+    private long run(TrafficRecordingReader reader) throws IOException {
+        System.out.printf("Replaying %s, recorded at %s, %s%n", options.recording(), reader.getStartedAt(),
+                options.speed() == 0 ? "as fast as possible" : "at " + options.speed() + "x");
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            requests = executor;
+            for (TrafficEvent event = reader.next(); event != null; event = reader.next()) {
+                long scheduledAt = options.speed() == 0
+                        ? System.nanoTime()
+                        : start + Math.round(event.time() * 1000 / options.speed());
+                long wait = scheduledAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                dispatch(event, scheduledAt);
+            }
+            CompletableFuture.allOf(lanes.values().toArray(CompletableFuture[]::new)).join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void dispatch(TrafficEvent event, long scheduledAt) {
+        switch (event) {
+            case TrafficEvent.Authorize authorize -> send(List.of(authorize.cardId()), "authorize", scheduledAt, () -> {
+                HttpRequest.Builder request = post("/transactions/authorize",
+                        "{\"cardId\":" + authorize.cardId() + ",\"amount\":" + authorize.amount() + "}");
+                if (authorize.idempotencyKey() != null) {
+                    request.header("Idempotency-Key", authorize.idempotencyKey());
+                }
+                return request.build();
+            }, response -> authorized(authorize.index(), response));
+            case TrafficEvent.AuthorizeBatch batch -> send(
+                    batch.entries().stream().map(TrafficEvent.AuthorizeBatch.Entry::cardId).distinct().toList(),
+                    "batch", scheduledAt,
+                    () -> post("/transactions/authorize/batch", batch.entries().stream()
+                            .map(entry -> "{\"cardId\":" + entry.cardId() + ",\"amount\":" + entry.amount() + "}")
+                            .collect(Collectors.joining(",", "[", "]"))).build(),
+                    response -> authorizedBatch(batch.firstIndex(), response));
+            case TrafficEvent.Capture capture -> {
+                Authorization authorization = recordedAuthorizations.get(capture.transactionId());
+                if (authorization == null) {
+                    // Authorized before the recording started, or never
+                    unmatchedCaptures.increment();
+                    return;
+                }
+                send(List.of(authorization.cardId()), "capture", scheduledAt, () -> {
+                    Long transactionId = replayedTransactions.get(authorization.index());
+                    if (transactionId == null) {
+                        skippedCaptures.increment();
+                        return null;
+                    }
+                    return post("/transactions/capture/" + transactionId + (capture.async() ? "?mode=async" : ""), "")
+                            .build();
+                }, this::ok);
+            }
+            case TrafficEvent.Summary summary -> send(List.of(summary.cardId()), "summary", scheduledAt,
+                    () -> get("/cards/" + summary.cardId() + "/summary"), this::ok);
+            case TrafficEvent.History history -> send(List.of(history.cardId()), "history", scheduledAt,
+                    () -> get("/cards/" + history.cardId() + "/transactions?limit=" + history.limit()), this::ok);
+            case TrafficEvent.Escrow escrow -> send(List.of(escrow.cardId()), "escrow", scheduledAt, () -> {
+                HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(
+                        "/cards/" + escrow.cardId() + "/escrow" + (escrow.stripes() == 0 ? "" : "?stripes=" + escrow.stripes())))
+                        .timeout(options.timeout());
+                return (escrow.stripes() == 0 ? request.DELETE() : request.PUT(HttpRequest.BodyPublishers.noBody()))
+                        .build();
+            }, this::ok);
+            case TrafficEvent.Authorized authorized -> {
+            }
+        }
+    }
+
+    /**
+     * Send a request once the previous requests for each of its cards have been answered.
+     *
+     * @param request builds the request when it is due, or returns null to skip it
+     * @param outcome classifies the response
+     */
+    private void send(List<Long> cardIds, String operation, long scheduledAt,
+                      RequestFactory request, ResponseHandler outcome) {
+        CompletableFuture<?>[] previous = cardIds.stream()
+                .map(lanes::get)
+                .filter(Objects::nonNull)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture<Void> sent = CompletableFuture.allOf(previous)
+                .thenRunAsync(() -> exchange(operation, scheduledAt, request, outcome), requests);
+        for (Long cardId : cardIds) {
+            lanes.put(cardId, sent);
+        }
+    }
+
+    private void exchange(String operation, long scheduledAt, RequestFactory request, ResponseHandler outcome) {
+        HttpRequest httpRequest = request.create();
+        if (httpRequest == null) {
+            return;
+        }
+        long sentAt = System.nanoTime();
+        OperationStats.Outcome result;
+        try {
+            result = outcome.apply(client.send(httpRequest, HttpResponse.BodyHandlers.ofString()));
+        } catch (IOException | RuntimeException e) {
+            result = OperationStats.Outcome.ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        stats.get(operation).record(scheduledAt, sentAt, System.nanoTime(), result);
+    }
+
+    private OperationStats.Outcome authorized(long index, HttpResponse<String> response) throws IOException {
+        if (response.statusCode() == 201) {
+            replayedTransactions.put(index, objectMapper.readTree(response.body()).get("transactionId").asLong());
+            return OperationStats.Outcome.OK;
+        }
+        if (response.statusCode() == 400 && response.body().contains(DECLINED_MESSAGE)) {
+            return OperationStats.Outcome.DECLINED;
+        }
+        return OperationStats.Outcome.ERROR;
+    }
+
+    private OperationStats.Outcome authorizedBatch(long firstIndex, HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200) {
+            return OperationStats.Outcome.ERROR;
+        }
+        JsonNode entries = objectMapper.readTree(response.body());
+        for (int i = 0; i < entries.size(); i++) {
+            JsonNode transactionId = entries.get(i).get("transactionId");
+            if (transactionId != null) {
+                replayedTransactions.put(firstIndex + i, transactionId.asLong());
+            }
+        }
+        return OperationStats.Outcome.OK;
+    }
+
+    private OperationStats.Outcome ok(HttpResponse<String> response) {
+        return response.statusCode() / 100 == 2 ? OperationStats.Outcome.OK : OperationStats.Outcome.ERROR;
+    }
+
+    private HttpRequest.Builder post(String path, String body) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(options.timeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(options.timeout())
+                .GET()
+                .build();
+    }
+
+    private void report(PrintStream out, long elapsedNanos, List<CardState> recordedCards,
+                        List<CardState> replayedCards) throws IOException {
+        double seconds = elapsedNanos / 1e9;
+        out.println();
+        for (OperationStats operationStats : stats.values()) {
+            if (operationStats.requests() > 0) {
+                operationStats.print(out, seconds);
+                if (options.baselineDirectory() != null) {
+                    operationStats.printBaseline(out, options.baselineDirectory());
+                }
+            }
+        }
+        long divergent = recordedAuthorizations.values().stream()
+                .filter(authorization -> !replayedTransactions.containsKey(authorization.index()))
+                .count();
+        out.printf("Authorizations approved: %d recorded, %d replayed, %d recorded approvals declined in the replay%n",
+                recordedAuthorizations.size(), replayedTransactions.size(), divergent);
+        out.printf("Captures not replayed: %d of transactions authorized before the recording, "
+                + "%d of authorizations the replay declined%n", unmatchedCaptures.sum(), skippedCaptures.sum());
+        compareLimits(out, recordedCards, replayedCards);
+
+        Files.createDirectories(options.reportDirectory());
+        for (OperationStats operationStats : stats.values()) {
+            if (operationStats.requests() > 0) {
+                operationStats.write(options.reportDirectory());
+            }
+        }
+        out.println("Latency distributions written to " + options.reportDirectory());
+    }
+
+    private static void compareLimits(PrintStream out, List<CardState> recordedCards, List<CardState> replayedCards) {
+        if (recordedCards == null) {
+            out.println("Available limits not compared: the recording was not closed cleanly");
+            return;
+        }
+        Map<Long, Money> replayed = replayedCards.stream()
+                .collect(Collectors.toMap(CardState::cardId, CardState::availableLimit));
+        List<String> mismatches = new ArrayList<>();
+        for (CardState recorded : recordedCards) {
+            Money limit = replayed.get(recorded.cardId());
+            if (!recorded.availableLimit().equals(limit)) {
+                mismatches.add(String.format("  card %d: recorded %s, replayed %s",
+                        recorded.cardId(), recorded.availableLimit(), limit == null ? "missing" : limit));
+            }
+        }
+        out.printf("Available limits: %d of %d cards match the recording%n",
+                recordedCards.size() - mismatches.size(), recordedCards.size());
+        mismatches.stream().limit(MAX_REPORTED_MISMATCHES).forEach(out::println);
+        if (mismatches.size() > MAX_REPORTED_MISMATCHES) {
+            out.printf("  ... and %d more%n", mismatches.size() - MAX_REPORTED_MISMATCHES);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        HttpRequest create();
+    }
+
+    @FunctionalInterface
+    private interface ResponseHandler {
+        OperationStats.Outcome apply(HttpResponse<String> response) throws IOException;
+    }
+}
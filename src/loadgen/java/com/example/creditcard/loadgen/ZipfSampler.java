@@ -0,0 +1,41 @@
+package com.example.creditcard.loadgen;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks an index in {@code [0, n)} with probability proportional to
+ * {@code 1 / (index + 1)^exponent}: index 0 is the hottest. An exponent of 0
+ * picks uniformly. Sampling is a binary search of the precomputed cumulative
+ * distribution, so it allocates nothing.
+ */
+final class ZipfSampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double exponent) {
+        cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    int sample(RandomGenerator random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int sampled = index >= 0 ? index : -index - 1;
+        return Math.min(sampled, cumulative.length - 1);
+    }
+
+    /**
+     * @param count a number of the hottest indexes
+     * @return the share of samples that fall on them
+     */
+    double share(int count) {
+        return cumulative[Math.min(count, cumulative.length) - 1];
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the job that archives old CAPTURED transactions, and for how long DECLINED ones are kept.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.archive")
+public class ArchiveProperties {
+
+    /**
+     * Run the archiver on a schedule.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Age after which a CAPTURED transaction is moved to the archive. Must exceed the longest velocity window.
+     */
+    private Duration retention = Duration.ofDays(90);
+
+    /**
+     * Age after which a DECLINED transaction is deleted by the prune job. Declines hold no limit and are not counted
+     * by velocity limits.
+     */
+    private Duration declinedRetention = Duration.ofDays(30);
+
+    /**
+     * Delay between the end of one run and the start of the next.
+     */
+    private Duration interval = Duration.ofHours(1);
+
+    /**
+     * Maximum number of transactions archived or deleted per transaction.
+     */
+    private int chunkSize = 500;
+}
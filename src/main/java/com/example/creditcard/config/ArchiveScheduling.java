@@ -0,0 +1,28 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.service.TransactionArchiver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Runs the {@link TransactionArchiver} every {@code creditcard.archive.interval}.
+ * Old declines are deleted by {@link PruneScheduling}.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "creditcard.archive.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ArchiveScheduling implements SchedulingConfigurer {
+
+    private final TransactionArchiver archiver;
+    private final ArchiveProperties properties;
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.addFixedDelayTask(archiver::archive, properties.getInterval());
+    }
+}
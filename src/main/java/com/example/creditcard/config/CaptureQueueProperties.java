@@ -0,0 +1,34 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for captures accepted with {@code ?mode=async} and applied in the background.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.capture-queue")
+public class CaptureQueueProperties {
+
+    /**
+     * Number of accepted captures that can wait to be applied. Further captures are refused with 503.
+     */
+    private int capacity = 10_000;
+
+    /**
+     * Maximum number of captures applied in one database transaction.
+     */
+    private int batchSize = 500;
+
+    /**
+     * How long the outcome of an asynchronous capture can be looked up.
+     */
+    private Duration statusTtl = Duration.ofMinutes(10);
+
+    /**
+     * Maximum number of capture outcomes held for lookup.
+     */
+    private long statusMaximumSize = 100_000;
+}
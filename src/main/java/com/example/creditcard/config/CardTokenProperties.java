@@ -0,0 +1,40 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the keyed-hash tokens that card numbers are looked up by.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.card-token")
+public class CardTokenProperties {
+
+    /**
+     * Secret HMAC-SHA256 key, at least 32 bytes. Changing it invalidates every stored token:
+     * clear {@code credit_cards.card_token} and run the backfill.
+     */
+    private String key;
+
+    /**
+     * Maximum number of card number tokens whose card id is kept in memory.
+     */
+    private long cacheMaximumSize = 100_000;
+
+    /**
+     * Time a resolved card id stays in memory after it was last used.
+     */
+    private Duration cacheTtl = Duration.ofHours(1);
+
+    /**
+     * Fill in the token of every card that has none at startup, such as cards inserted with plain SQL.
+     */
+    private boolean backfillOnStartup = false;
+
+    /**
+     * Maximum number of cards tokenized per transaction by the backfill.
+     */
+    private int chunkSize = 500;
+}
@@ -1,14 +1,13 @@
 package com.example.creditcard.config;
 
 import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
 import com.example.creditcard.repository.CardRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -26,8 +25,8 @@ public class DataInitializer implements CommandLineRunner {
             
             CreditCard creditCard = CreditCard.builder()
                     .cardNumber("4532015112830366")
-                    .creditLimit(new BigDecimal("10000.00"))
-                    .availableLimit(new BigDecimal("10000.00"))
+                    .creditLimit(Money.parse("10000.00"))
+                    .availableLimit(Money.parse("10000.00"))
                     .build();
             
             cardRepository.save(creditCard);
@@ -0,0 +1,377 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.service.token.CardNumberTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Seeds a large synthetic dataset of cards and transaction histories, for
+ * performance tests that need more than the single sample card.
+ *
+ * Rows are written with batched JDBC inserts, bypassing JPA, by
+ * {@code creditcard.seed.threads} workers that each insert one chunk of cards
+ * and their transactions per database transaction. Every card draws its data
+ * from a generator seeded with {@code creditcard.seed.seed} and its id, so the
+ * dataset, ids included, does not depend on the number of workers. Transaction
+ * counts follow a Pareto distribution, giving a few cards long histories.
+ * Timestamps are relative to the time of seeding.
+ *
+ * Generated cards and transactions are consistent: a card's available limit
+ * is its credit limit less its authorized and captured amounts, and its
+ * captured total is the sum of its captured amounts.
+ *
+ * Runs at startup, before the ledger and velocity limiter load cards and
+ * transactions, when {@code creditcard.seed.enabled} is set and the database
+ * has no cards.
+ */
+@Component
+@Slf4j
+public class DataSeeder implements SmartLifecycle {
+
+    /**
+     * Credit limits in minor units, one picked per card.
+     */
+    private static final long[] CREDIT_LIMITS = {100_000, 250_000, 500_000, 1_000_000, 2_500_000};
+    private static final long MIN_AMOUNT = 100;
+    private static final long MAX_AMOUNT = 50_000;
+
+    /**
+     * A card whose history reserves more than this share of its credit limit gets a higher limit.
+     */
+    private static final double MAX_UTILIZATION = 0.9;
+    private static final long LIMIT_STEP = 100_000;
+
+    private static final String INSERT_CARD = "INSERT INTO credit_cards "
+            + "(id, card_number, card_token, credit_limit, available_limit, captured_total, escrow_stripes, version) "
+            + "VALUES (?, ?, ?, ?, ?, ?, 0, 0)";
+    private static final String INSERT_TRANSACTION = "INSERT INTO card_transactions "
+            + "(id, card_id, amount, type, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final SeedProperties properties;
+    private final HoldExpiryProperties holdExpiryProperties;
+    private final CardNumberTokenizer tokenizer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private volatile boolean running;
+
+    public DataSeeder(SeedProperties properties, HoldExpiryProperties holdExpiryProperties,
+                      CardNumberTokenizer tokenizer, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.properties = properties;
+        this.holdExpiryProperties = holdExpiryProperties;
+        this.tokenizer = tokenizer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM credit_cards", Long.class);
+        if (existing != null && existing > 0) {
+            log.info("Database already has {} cards, skipping seeding", existing);
+            return;
+        }
+        seed();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Seed before the ledger (phase 0) and the velocity limiter (phase 1) load their state.
+     */
+    @Override
+    public int getPhase() {
+        return -1;
+    }
+
+    /**
+     * Insert the configured number of cards with their transactions into an
+     * empty database, then move the id sequences past the inserted ids.
+     *
+     * @return the number of rows inserted
+     */
+    public long seed() {
+        checkProperties();
+        long startedAt = System.nanoTime();
+        long now = System.currentTimeMillis();
+        int chunkSize = properties.getChunkSize();
+        int chunks = Math.toIntExact((properties.getCards() + chunkSize - 1) / chunkSize);
+
+        // Transaction counts come from each card's first random draw, so the ids
+        // of every chunk can be laid out before any chunk is generated
+        long[] firstTransactionIds = new long[chunks + 1];
+        firstTransactionIds[0] = 1;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            long count = 0;
+            for (long cardId = firstCardId(chunk); cardId < firstCardId(chunk + 1); cardId++) {
+                count += transactionCount(random(cardId));
+            }
+            firstTransactionIds[chunk + 1] = firstTransactionIds[chunk] + count;
+        }
+
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicInteger completedChunks = new AtomicInteger();
+        AtomicLong rows = new AtomicLong();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        int progressEvery = Math.max(1, chunks / 10);
+        Thread[] workers = new Thread[Math.min(properties.getThreads(), chunks)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> {
+                int chunk;
+                while (failure.get() == null && (chunk = nextChunk.getAndIncrement()) < chunks) {
+                    try {
+                        rows.addAndGet(seedChunk(chunk, firstTransactionIds[chunk], now));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        return;
+                    }
+                    int completed = completedChunks.incrementAndGet();
+                    if (completed % progressEvery == 0 && completed < chunks) {
+                        log.info("Seeded {} of {} card chunks, {} rows/s",
+                                completed, chunks, rowsPerSecond(rows.get(), startedAt));
+                    }
+                }
+            }, "data-seeder-" + i);
+            workers[i].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while seeding", e);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Seeding failed", failure.get());
+        }
+
+        jdbcTemplate.execute("ALTER SEQUENCE credit_cards_seq RESTART WITH " + (properties.getCards() + 1));
+        jdbcTemplate.execute("ALTER SEQUENCE card_transactions_seq RESTART WITH " + firstTransactionIds[chunks]);
+
+        log.info("Seeded {} cards and {} transactions in {} ms, {} rows/s",
+                properties.getCards(), firstTransactionIds[chunks] - 1,
+                (System.nanoTime() - startedAt) / 1_000_000, rowsPerSecond(rows.get(), startedAt));
+        return rows.get();
+    }
+
+    /**
+     * Insert the cards of one chunk, then their transactions, in one database transaction.
+     *
+     * @return the number of rows inserted
+     */
+    private long seedChunk(int chunk, long firstTransactionId, long now) {
+        long firstCardId = firstCardId(chunk);
+        long lastCardId = firstCardId(chunk + 1);
+        Long inserted = transactionTemplate.execute(status -> {
+            // Cards are generated twice: their limits depend on their transactions,
+            // but they must be inserted first for the foreign key
+            Object[][] cards = new Object[Math.toIntExact(lastCardId - firstCardId)][];
+            for (long cardId = firstCardId; cardId < lastCardId; cardId++) {
+                cards[(int) (cardId - firstCardId)] = cardRow(cardId, generate(cardId, now, null, 0));
+            }
+            jdbcTemplate.batchUpdate(INSERT_CARD, Arrays.asList(cards), properties.getBatchSize(),
+                    (ps, row) -> {
+                        for (int column = 0; column < row.length; column++) {
+                            ps.setObject(column + 1, row[column]);
+                        }
+                    });
+
+            TransactionBatch batch = new TransactionBatch(properties.getBatchSize());
+            long nextTransactionId = firstTransactionId;
+            for (long cardId = firstCardId; cardId < lastCardId; cardId++) {
+                nextTransactionId += generate(cardId, now, batch, nextTransactionId).transactions();
+            }
+            batch.flush();
+            return cards.length + nextTransactionId - firstTransactionId;
+        });
+        return inserted != null ? inserted : 0;
+    }
+
+    /**
+     * Generate a card's transactions, oldest first, and add them to the batch if one is given.
+     *
+     * @return the card's limits and captured total
+     */
+    private CardTotals generate(long cardId, long now, TransactionBatch batch, long firstTransactionId) {
+        SplittableRandom random = random(cardId);
+        int count = transactionCount(random);
+        long creditLimit = CREDIT_LIMITS[random.nextInt(CREDIT_LIMITS.length)];
+        long historyMillis = properties.getHistory().toMillis();
+        long holdTtlMillis = holdExpiryProperties.getTtl().toMillis();
+
+        long[] ages = new long[count];
+        for (int i = 0; i < count; i++) {
+            ages[i] = random.nextLong(historyMillis);
+        }
+        Arrays.sort(ages);
+
+        long reserved = 0;
+        long captured = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            long amount = random.nextLong(MIN_AMOUNT, MAX_AMOUNT + 1);
+            TransactionType type;
+            if (random.nextDouble() < properties.getCaptureRatio()) {
+                type = TransactionType.CAPTURED;
+                captured += amount;
+                reserved += amount;
+            } else if (ages[i] > holdTtlMillis) {
+                type = TransactionType.EXPIRED;
+            } else {
+                type = TransactionType.AUTHORIZED;
+                reserved += amount;
+            }
+            if (batch != null) {
+                batch.add(firstTransactionId + (count - 1 - i), cardId, amount, type, now - ages[i]);
+            }
+        }
+
+        if (reserved > creditLimit * MAX_UTILIZATION) {
+            creditLimit = ((long) Math.ceil(reserved / MAX_UTILIZATION / LIMIT_STEP)) * LIMIT_STEP;
+        }
+        return new CardTotals(creditLimit, creditLimit - reserved, captured, count);
+    }
+
+    private Object[] cardRow(long cardId, CardTotals totals) {
+        String cardNumber = cardNumber(cardId);
+        return new Object[]{cardId, cardNumber, tokenizer.tokenize(cardNumber),
+                BigDecimal.valueOf(totals.creditLimit(), 2), BigDecimal.valueOf(totals.availableLimit(), 2),
+                BigDecimal.valueOf(totals.capturedTotal(), 2)};
+    }
+
+    /**
+     * A card's generator. Its first draw is the card's transaction count.
+     */
+    private SplittableRandom random(long cardId) {
+        return new SplittableRandom(properties.getSeed() * 0x9E3779B97F4A7C15L + cardId);
+    }
+
+    private int transactionCount(SplittableRandom random) {
+        double skew = properties.getSkew();
+        double scale = properties.getTransactionsPerCard() * (skew - 1) / skew;
+        double count = scale / Math.pow(1.0 - random.nextDouble(), 1 / skew);
+        return (int) Math.min(properties.getMaxTransactionsPerCard(), count);
+    }
+
+    private long firstCardId(int chunk) {
+        return Math.min((long) chunk * properties.getChunkSize(), properties.getCards()) + 1;
+    }
+
+    /**
+     * A 16-digit card number holding the card id, with a valid Luhn check digit.
+     */
+    static String cardNumber(long cardId) {
+        String payload = "4" + String.format("%014d", cardId);
+        int sum = 0;
+        for (int i = payload.length() - 1, position = 0; i >= 0; i--, position++) {
+            int digit = payload.charAt(i) - '0';
+            if (position % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return payload + (10 - sum % 10) % 10;
+    }
+
+    private static long rowsPerSecond(long rows, long startedAt) {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startedAt);
+        return rows * 1_000_000_000L / elapsedNanos;
+    }
+
+    private void checkProperties() {
+        if (properties.getCards() < 1 || properties.getCards() > 99_999_999_999_999L) {
+            throw new IllegalStateException("creditcard.seed.cards must be between 1 and 99999999999999");
+        }
+        if (properties.getSkew() <= 1) {
+            throw new IllegalStateException("creditcard.seed.skew must be above 1");
+        }
+        if (properties.getChunkSize() < 1 || properties.getBatchSize() < 1 || properties.getThreads() < 1) {
+            throw new IllegalStateException("creditcard.seed chunk-size, batch-size and threads must be positive");
+        }
+    }
+
+    private record CardTotals(long creditLimit, long availableLimit, long capturedTotal, int transactions) {
+    }
+
+    /**
+     * Transaction rows waiting to be inserted, kept in primitive columns.
+     */
+    private final class TransactionBatch implements BatchPreparedStatementSetter {
+
+        private final long[] ids;
+        private final long[] cardIds;
+        private final long[] amounts;
+        private final TransactionType[] types;
+        private final long[] createdAts;
+        private int size;
+
+        TransactionBatch(int capacity) {
+            ids = new long[capacity];
+            cardIds = new long[capacity];
+            amounts = new long[capacity];
+            types = new TransactionType[capacity];
+            createdAts = new long[capacity];
+        }
+
+        void add(long id, long cardId, long amount, TransactionType type, long createdAt) {
+            ids[size] = id;
+            cardIds[size] = cardId;
+            amounts[size] = amount;
+            types[size] = type;
+            createdAts[size] = createdAt;
+            if (++size == ids.length) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (size > 0) {
+                jdbcTemplate.batchUpdate(INSERT_TRANSACTION, this);
+                size = 0;
+            }
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setLong(1, ids[i]);
+            ps.setLong(2, cardIds[i]);
+            ps.setBigDecimal(3, BigDecimal.valueOf(amounts[i], 2));
+            ps.setString(4, types[i].name());
+            ps.setTimestamp(5, new Timestamp(createdAts[i]));
+        }
+
+        @Override
+        public int getBatchSize() {
+            return size;
+        }
+    }
+}
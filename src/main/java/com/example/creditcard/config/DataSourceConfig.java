@@ -0,0 +1,77 @@
+package com.example.creditcard.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Connection pools for writes and for read-only transactions.
+ *
+ * Authorizations and captures run on the {@code write} pool, configured by
+ * {@code spring.datasource}, as do card summary loads, which are cached.
+ * Transactions marked read-only, such as transaction history reads, run on
+ * the {@code read} pool, so a
+ * burst of reads waits for read connections instead of taking the connections
+ * authorizations need. Both pools publish {@code hikaricp.*} meters tagged with
+ * their pool name.
+ */
+@Configuration(proxyBeanMethods = false)
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("write");
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "creditcard.read-datasource.enabled", havingValue = "true", matchIfMissing = true)
+    @ConfigurationProperties("creditcard.read-datasource.hikari")
+    public HikariDataSource readDataSource(DataSourceProperties properties, ReadDataSourceProperties read) {
+        DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create().type(HikariDataSource.class);
+        if (read.getUrl() != null) {
+            builder.url(read.getUrl()).username(read.getUsername()).password(read.getPassword());
+        } else {
+            builder.driverClassName(properties.determineDriverClassName())
+                    .url(properties.determineUrl())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword());
+        }
+        HikariDataSource dataSource = builder.build();
+        dataSource.setPoolName("read");
+        dataSource.setReadOnly(true);
+        // Hibernate is told the pool already disables auto-commit
+        dataSource.setAutoCommit(false);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+                                 @Qualifier("readDataSource") ObjectProvider<DataSource> readDataSource) {
+        DataSource read = readDataSource.getIfAvailable();
+        if (read == null) {
+            return writeDataSource;
+        }
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource();
+        routing.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.Route.READ, read,
+                ReadWriteRoutingDataSource.Route.WRITE, writeDataSource));
+        routing.setDefaultTargetDataSource(writeDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for splitting the available limit of hot cards into escrow stripes.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.escrow")
+public class EscrowProperties {
+
+    /**
+     * Largest number of stripes a card can be split into.
+     */
+    private int maxStripes = 64;
+
+    /**
+     * How long an instance keeps using the stripe count it last read for a card.
+     * Escrow changes made on another instance are picked up after at most this long.
+     */
+    private Duration flagTtl = Duration.ofSeconds(30);
+
+    /**
+     * Maximum number of cards whose stripe count is kept in memory.
+     */
+    private long maximumSize = 100_000;
+}
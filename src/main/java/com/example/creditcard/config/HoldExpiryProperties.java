@@ -0,0 +1,34 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the sweeper that expires authorization holds that were never captured.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.hold-expiry")
+public class HoldExpiryProperties {
+
+    /**
+     * Run the sweeper on a schedule.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Age after which an authorization that has not been captured expires and its amount is released.
+     */
+    private Duration ttl = Duration.ofDays(7);
+
+    /**
+     * Delay between the end of one sweep and the start of the next.
+     */
+    private Duration interval = Duration.ofMinutes(1);
+
+    /**
+     * Maximum number of expired holds read per chunk. Each card in a chunk is released in its own transaction.
+     */
+    private int chunkSize = 500;
+}
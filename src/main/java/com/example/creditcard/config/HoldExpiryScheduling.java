@@ -0,0 +1,27 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.service.HoldExpirySweeper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Runs the {@link HoldExpirySweeper} every {@code creditcard.hold-expiry.interval}.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "creditcard.hold-expiry.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class HoldExpiryScheduling implements SchedulingConfigurer {
+
+    private final HoldExpirySweeper sweeper;
+    private final HoldExpiryProperties properties;
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.addFixedDelayTask(sweeper::sweep, properties.getInterval());
+    }
+}
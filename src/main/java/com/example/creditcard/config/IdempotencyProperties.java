@@ -0,0 +1,34 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the in-memory cache in front of the idempotency key table, and for how long the table keeps keys.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Maximum number of keys kept in memory. Older keys are still found in the table.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Time a completed key stays in memory after its authorization finished.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Age after which a stored key is deleted by the prune job. A retry with the key after that is authorized again.
+     */
+    private Duration retention = Duration.ofDays(7);
+
+    /**
+     * Maximum number of stored keys deleted per transaction.
+     */
+    private int chunkSize = 500;
+}
@@ -0,0 +1,49 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.controller.AuthorizationFailureResponse;
+import com.example.creditcard.controller.CaptureStatusResponse;
+import com.example.creditcard.controller.CardSummaryResponse;
+import com.example.creditcard.controller.EscrowResponse;
+import com.example.creditcard.controller.TransactionPageResponse;
+import com.example.creditcard.controller.TransactionResponse;
+import com.example.creditcard.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Response serialization. The Blackbird module replaces Jackson's reflective
+ * accessor calls with generated lambdas, and the serializers of the response
+ * records are built, and cached by the shared {@link ObjectMapper}, at startup
+ * so that the first requests do not pay for the code generation.
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Every type the controllers and {@link com.example.creditcard.exception.GlobalExceptionHandler}
+     * write as a response body.
+     */
+    static final List<Class<?>> RESPONSE_TYPES = List.of(
+            TransactionResponse.class,
+            AuthorizationFailureResponse.class,
+            CaptureStatusResponse.class,
+            CardSummaryResponse.class,
+            TransactionPageResponse.class,
+            EscrowResponse.class,
+            ErrorResponse.class);
+
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public ApplicationRunner responseSerializerWarmup(ObjectMapper objectMapper) {
+        return args -> RESPONSE_TYPES.forEach(objectMapper::writerFor);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the sharded in-memory authorization ledger.
+ *
+ * The ledger is disabled by default; authorizations then go through the
+ * database row lock as before.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.ledger")
+public class LedgerProperties {
+
+    /**
+     * Route authorizations through the in-memory ledger instead of the card row lock.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of shards. Each shard owns a disjoint set of cards and has exactly one writer thread.
+     */
+    private int shards = 8;
+
+    /**
+     * Capacity of each shard's command queue. Callers block when it is full.
+     */
+    private int queueCapacity = 4096;
+
+    /**
+     * Maximum number of authorizations written to the database in one transaction.
+     */
+    private int maxBatchSize = 256;
+
+    /**
+     * When an authorization is confirmed: {@code database} once its batch is committed to the
+     * database, {@code journal} once its batch is synced to the shard's journal file.
+     */
+    private String durability = "database";
+
+    private final Journal journal = new Journal();
+
+    public boolean isJournaled() {
+        return "journal".equals(durability);
+    }
+
+    @Data
+    public static class Journal {
+
+        /**
+         * Directory holding one sub-directory of journal segments per shard.
+         */
+        private Path directory = Path.of("data", "ledger-journal");
+
+        /**
+         * Size of each memory-mapped segment file. A new segment is started when one is full.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Maximum number of journaled authorizations written to the database in one transaction.
+         */
+        private int flushBatchSize = 5000;
+
+        /**
+         * Wait before retrying a database flush that failed.
+         */
+        private Duration flushRetryInterval = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.domain.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link Money} as a JSON number with two decimal places, and reads it
+ * from a JSON number or string straight out of the parser's character buffer.
+ * Only numbers in exponent notation go through {@link java.math.BigDecimal}.
+ */
+@JsonComponent
+public class MoneyJsonComponent {
+
+    public static class Serializer extends JsonSerializer<Money> {
+
+        @Override
+        public void serialize(Money amount, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+            generator.writeNumber(amount.toString());
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            try {
+                if (token == JsonToken.VALUE_NUMBER_INT) {
+                    return Money.ofMinor(Math.multiplyExact(parser.getLongValue(), 100L));
+                }
+                if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_STRING) {
+                    char[] text = parser.getTextCharacters();
+                    int offset = parser.getTextOffset();
+                    int length = parser.getTextLength();
+                    if (token == JsonToken.VALUE_NUMBER_FLOAT && hasExponent(text, offset, length)) {
+                        return Money.of(parser.getDecimalValue());
+                    }
+                    return Money.parse(text, offset, length);
+                }
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                return (Money) context.handleWeirdStringValue(Money.class, parser.getText(), e.getMessage());
+            }
+            return (Money) context.handleUnexpectedToken(Money.class, parser);
+        }
+
+        private static boolean hasExponent(char[] text, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (text[i] == 'e' || text[i] == 'E') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the job that deletes rows past their retention, independently of archiving.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.prune")
+public class PruneProperties {
+
+    /**
+     * Run the prune job on a schedule.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Delay between the end of one run and the start of the next.
+     */
+    private Duration interval = Duration.ofHours(1);
+}
@@ -0,0 +1,48 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.service.IdempotentAuthorizationService;
+import com.example.creditcard.service.TransactionArchiver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Every {@code creditcard.prune.interval}, deletes DECLINED transactions older
+ * than {@code creditcard.archive.declined-retention}, whether or not archiving
+ * is enabled, and idempotency keys older than {@code creditcard.idempotency.retention}.
+ * Each prune is run even if the other failed; a failed one is logged and tried
+ * again on the next run.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "creditcard.prune.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class PruneScheduling implements SchedulingConfigurer {
+
+    private final TransactionArchiver archiver;
+    private final IdempotentAuthorizationService idempotentAuthorizationService;
+    private final PruneProperties properties;
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.addFixedDelayTask(this::prune, properties.getInterval());
+    }
+
+    private void prune() {
+        try {
+            archiver.pruneDeclined();
+        } catch (RuntimeException e) {
+            log.error("Deleting old declined transactions failed", e);
+        }
+        try {
+            idempotentAuthorizationService.pruneExpired();
+        } catch (RuntimeException e) {
+            log.error("Deleting old idempotency keys failed", e);
+        }
+    }
+}
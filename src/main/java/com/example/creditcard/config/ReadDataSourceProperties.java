@@ -0,0 +1,35 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the connection pool that read-only transactions use.
+ * Pool settings are bound from {@code creditcard.read-datasource.hikari}.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.read-datasource")
+public class ReadDataSourceProperties {
+
+    /**
+     * Run read-only transactions on their own pool. When disabled every transaction uses
+     * the {@code spring.datasource} pool.
+     */
+    private boolean enabled = true;
+
+    /**
+     * JDBC URL of a read replica. When unset the read pool opens read-only connections
+     * to the {@code spring.datasource} database.
+     */
+    private String url;
+
+    /**
+     * User of the read replica, used only with {@link #url}.
+     */
+    private String username;
+
+    /**
+     * Password of the read replica, used only with {@link #url}.
+     */
+    private String password;
+}
@@ -0,0 +1,22 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for backfilling and verifying the cards' captured totals.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.captured-total")
+public class ReconcilerProperties {
+
+    /**
+     * Recompute every card's captured total from its transactions at startup, then verify it.
+     */
+    private boolean backfillOnStartup = false;
+
+    /**
+     * Maximum number of cards recomputed per transaction.
+     */
+    private int chunkSize = 500;
+}
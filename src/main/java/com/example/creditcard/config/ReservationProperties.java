@@ -0,0 +1,40 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for how authorizations reserve limit on a card in the database.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.reservation")
+public class ReservationProperties {
+
+    /**
+     * Strategy used to reserve limit: {@code pessimistic}, {@code optimistic} or {@code conditional-update}.
+     */
+    private String strategy = "pessimistic";
+
+    private final Optimistic optimistic = new Optimistic();
+
+    @Data
+    public static class Optimistic {
+
+        /**
+         * Number of versioned update attempts before giving up.
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Wait before the first retry. Doubled on every further retry, with jitter.
+         */
+        private Duration initialBackoff = Duration.ofMillis(1);
+
+        /**
+         * Upper bound for the wait between retries.
+         */
+        private Duration maxBackoff = Duration.ofMillis(50);
+    }
+}
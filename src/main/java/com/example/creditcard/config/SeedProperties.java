@@ -0,0 +1,70 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for seeding a large synthetic dataset at startup.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.seed")
+public class SeedProperties {
+
+    /**
+     * Generate the dataset at startup if the database has no cards, instead of the single sample card.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Seed of the random generator. The same seed and settings always generate the same dataset.
+     */
+    private long seed = 42;
+
+    /**
+     * Number of cards to generate.
+     */
+    private long cards = 100_000;
+
+    /**
+     * Average number of transactions per card.
+     */
+    private double transactionsPerCard = 50;
+
+    /**
+     * Shape of the Pareto distribution transaction counts are drawn from, above 1.
+     * Lower values give a few cards far longer histories than the rest.
+     */
+    private double skew = 1.5;
+
+    /**
+     * Upper bound on the transactions of a single card.
+     */
+    private int maxTransactionsPerCard = 10_000;
+
+    /**
+     * Share of transactions that were captured. The others are authorized, or expired if older than the hold TTL.
+     */
+    private double captureRatio = 0.8;
+
+    /**
+     * Transactions are spread over this period before startup.
+     */
+    private Duration history = Duration.ofDays(365);
+
+    /**
+     * Number of cards, with their transactions, inserted per database transaction.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Number of rows per JDBC batch.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Number of chunks inserted at once, each on its own connection.
+     */
+    private int threads = 4;
+}
@@ -0,0 +1,29 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the card summary read-through cache.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.summary-cache")
+public class SummaryCacheProperties {
+
+    /**
+     * Serve card summaries from the cache. When disabled every request reads the database.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of cached summaries. Least recently used entries are evicted beyond it.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Time after which a cached summary is dropped even if the card did not change.
+     */
+    private Duration ttl = Duration.ofSeconds(30);
+}
@@ -0,0 +1,24 @@
+package com.example.creditcard.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for recording the requests the API receives, to be replayed against another instance.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.traffic-capture")
+public class TrafficCaptureProperties {
+
+    /**
+     * Whether requests are recorded.
+     */
+    private boolean enabled = false;
+
+    /**
+     * File the recording is written to. An existing file is replaced.
+     */
+    private Path file = Path.of("data/traffic-capture.bin");
+}
@@ -0,0 +1,77 @@
+package com.example.creditcard.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings for the per-card velocity limits checked on every authorization,
+ * such as at most 10 authorizations or 2000.00 in one minute.
+ */
+@Data
+@ConfigurationProperties(prefix = "creditcard.velocity")
+public class VelocityProperties {
+
+    /**
+     * Check velocity limits before the available limit is reserved.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Buckets each window is split into. A window slides one bucket at a time, so it
+     * counts the authorizations of its duration less up to one bucket.
+     */
+    private int buckets = 12;
+
+    /**
+     * Number of stripes the cards are spread over, a power of two.
+     */
+    private int stripes = 64;
+
+    /**
+     * Delay between sweeps that clear expired buckets and evict cards idle for the longest window.
+     */
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+    /**
+     * Limits of every card, one per window.
+     */
+    private List<Limit> limits = new ArrayList<>(List.of(
+            new Limit(Duration.ofMinutes(1), 10, new BigDecimal("5000.00")),
+            new Limit(Duration.ofHours(1), 60, new BigDecimal("20000.00")),
+            new Limit(Duration.ofHours(24), 200, new BigDecimal("50000.00"))));
+
+    /**
+     * Limits of particular cards by card id. Each replaces the limit with the same window.
+     */
+    private Map<Long, List<Limit>> cards = new HashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        /**
+         * Length of the sliding window.
+         */
+        private Duration window;
+
+        /**
+         * Most authorizations within the window; unlimited when not set.
+         */
+        private Integer maxCount;
+
+        /**
+         * Largest total amount authorized within the window; unlimited when not set.
+         */
+        private BigDecimal maxAmount;
+    }
+}
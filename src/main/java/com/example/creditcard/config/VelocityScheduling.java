@@ -0,0 +1,27 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.service.velocity.VelocityLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Runs the {@link VelocityLimiter} sweep every {@code creditcard.velocity.sweep-interval}.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "creditcard.velocity.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class VelocityScheduling implements SchedulingConfigurer {
+
+    private final VelocityLimiter limiter;
+    private final VelocityProperties properties;
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.addFixedDelayTask(limiter::sweep, properties.getSweepInterval());
+    }
+}
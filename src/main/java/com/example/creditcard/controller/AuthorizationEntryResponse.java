@@ -0,0 +1,8 @@
+package com.example.creditcard.controller;
+
+/**
+ * One entry of a batch authorization response: the authorized transaction, or
+ * the error a single authorization of that request would have returned.
+ */
+public sealed interface AuthorizationEntryResponse permits TransactionResponse, AuthorizationFailureResponse {
+}
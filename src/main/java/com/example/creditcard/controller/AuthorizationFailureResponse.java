@@ -0,0 +1,14 @@
+package com.example.creditcard.controller;
+
+import com.example.creditcard.domain.Money;
+
+/**
+ * A failed entry of a batch authorization, with the status, error and message
+ * {@link com.example.creditcard.exception.GlobalExceptionHandler} gives a single authorization.
+ */
+public record AuthorizationFailureResponse(Long cardId,
+                                           Money amount,
+                                           int status,
+                                           String error,
+                                           String message) implements AuthorizationEntryResponse {
+}
@@ -0,0 +1,15 @@
+package com.example.creditcard.controller;
+
+import com.example.creditcard.service.capture.CaptureStatus;
+
+/**
+ * The status of an asynchronous capture.
+ *
+ * @param message why the capture was rejected or failed, null otherwise
+ */
+public record CaptureStatusResponse(Long transactionId, CaptureStatus.State status, String message) {
+
+    static CaptureStatusResponse of(CaptureStatus status) {
+        return new CaptureStatusResponse(status.getTransactionId(), status.getState(), status.getMessage());
+    }
+}
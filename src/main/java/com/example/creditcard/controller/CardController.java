@@ -1,66 +1,201 @@
 package com.example.creditcard.controller;
 
-import com.example.creditcard.domain.CreditCard;
-import com.example.creditcard.service.CardService;
-import com.example.creditcard.service.TransactionService;
+import com.example.creditcard.service.CardSummary;
+import com.example.creditcard.service.CardSummaryService;
+import com.example.creditcard.service.TransactionHistoryService;
+import com.example.creditcard.service.TransactionPage;
+import com.example.creditcard.service.escrow.EscrowService;
+import com.example.creditcard.service.token.CardLookupService;
+import com.example.creditcard.service.traffic.TrafficRecorder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.math.BigDecimal;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 @RestController
 @RequestMapping("/cards")
 @RequiredArgsConstructor
 public class CardController {
 
-    private final CardService cardService;
-    private final TransactionService transactionService;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final CardSummaryService cardSummaryService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final EscrowService escrowService;
+    private final ObjectMapper objectMapper;
+    private final TrafficRecorder trafficRecorder;
+    private final CardLookupService cardLookupService;
 
     /**
      * Get a card summary including credit information and captured transaction totals.
      * 
-     * Card numbers are masked for security (PCI-DSS compliance).
+     * Card numbers are masked for security (PCI-DSS compliance); the masked
+     * number is cached with the summary.
+     * The captured total is maintained on the card by capture, so the summary
+     * is a single primary-key read, and summaries are served from a cache that
+     * authorizations and captures invalidate on commit.
      *
      * @param cardId the card ID
-     * @return a map containing card details and total captured amount
+     * @return the card details and total captured amount
      */
     @GetMapping("/{cardId}/summary")
-    public ResponseEntity<Map<String, Object>> getCardSummary(@PathVariable Long cardId) {
-        CreditCard card = cardService.getCardById(cardId);
-        BigDecimal totalCapturedAmount = transactionService.getTotalCapturedAmount(cardId);
-
-        Map<String, Object> summary = new LinkedHashMap<>();
-        summary.put("cardId", card.getId());
-        summary.put("cardNumber", maskCardNumber(card.getCardNumber()));
-        summary.put("creditLimit", card.getCreditLimit());
-        summary.put("availableLimit", card.getAvailableLimit());
-        summary.put("totalCapturedAmount", totalCapturedAmount);
-
-        return ResponseEntity.ok(summary);
+    public ResponseEntity<CardSummaryResponse> getCardSummary(@PathVariable Long cardId) {
+        trafficRecorder.summary(cardId);
+        CardSummary card = cardSummaryService.getCardSummary(cardId);
+
+        return ResponseEntity.ok(toResponse(card));
+    }
+
+    /**
+     * Get a card summary by card number instead of card ID.
+     * 
+     * The card number is sent in the body rather than the URL so that it does
+     * not appear in access logs. It is resolved to the card ID through its
+     * token, then served like {@link #getCardSummary}.
+     *
+     * @param request the card number
+     * @return the card details and total captured amount
+     */
+    @PostMapping("/summary/by-card-number")
+    public ResponseEntity<CardSummaryResponse> getCardSummaryByCardNumber(@Valid @RequestBody CardNumberRequest request) {
+        Long cardId = cardLookupService.resolveCardId(request.getCardNumber());
+        trafficRecorder.summary(cardId);
+        CardSummary card = cardSummaryService.getCardSummary(cardId);
+
+        return ResponseEntity.ok(toResponse(card));
     }
 
     /**
-     * Mask a card number for security purposes.
+     * List a card's transactions, newest first, one page at a time.
      * 
-     * Keeps the first 4 and last 4 digits, masks the middle.
-     * Example: 4532015112830366 → 4532****0366
+     * Pages are addressed by cursor rather than offset: each page carries the
+     * cursor of the next one, which is null on the last page.
      *
-     * @param cardNumber the full card number
-     * @return the masked card number
+     * @param cardId the card ID
+     * @param cursor the nextCursor of the previous page; omitted for the first page
+     * @param limit the page size, at most {@link TransactionHistoryService#MAX_PAGE_SIZE}
+     * @return the transactions and the next cursor
      */
-    private String maskCardNumber(String cardNumber) {
-        if (cardNumber == null || cardNumber.length() < 8) {
-            return "****"; // Fallback for invalid input
+    @GetMapping("/{cardId}/transactions")
+    public ResponseEntity<TransactionPageResponse> getTransactions(@PathVariable Long cardId,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(defaultValue = "50") int limit) {
+        if (cursor == null) {
+            // Later pages are not recorded: their cursors name this instance's transactions
+            trafficRecorder.history(cardId, limit);
         }
-        // Replace 8 middle digits with 4 asterisks
-        // For 16-digit card: XXXX(8 middle digits)XXXX → XXXX****XXXX
-        return cardNumber.substring(0, 4) + "****" + cardNumber.substring(12);
+        TransactionPage page = transactionHistoryService.getTransactions(cardId, cursor, limit);
+
+        return ResponseEntity.ok(new TransactionPageResponse(cardId,
+                page.getTransactions().stream().map(TransactionResponse::of).toList(), page.getNextCursor()));
     }
-}
 
+    /**
+     * Export all of a card's transactions, newest first, as newline-delimited JSON.
+     * 
+     * Rows are written as they are read from the database cursor, so the export
+     * never holds the whole history in memory.
+     *
+     * @param cardId the card ID
+     * @return the streamed export, one transaction per line
+     */
+    @GetMapping("/{cardId}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(@PathVariable Long cardId) {
+        transactionHistoryService.checkCardExists(cardId);
+
+        ObjectWriter writer = objectMapper.writerFor(TransactionResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.createGenerator(outputStream);
+            generator.setRootValueSeparator(null);
+            transactionHistoryService.exportTransactions(cardId, transaction -> {
+                try {
+                    writer.writeValue(generator, TransactionResponse.of(transaction));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        };
+
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Put a hot card in escrow mode, splitting its available limit across stripes
+     * so that concurrent authorizations do not all wait for the card row lock.
+     * Calling it again changes the number of stripes.
+     *
+     * @param cardId the card ID
+     * @param stripes the number of stripes
+     * @return the card ID and its stripe count
+     */
+    @PutMapping("/{cardId}/escrow")
+    public ResponseEntity<EscrowResponse> enableEscrow(@PathVariable Long cardId, @RequestParam int stripes) {
+        trafficRecorder.escrow(cardId, stripes);
+        escrowService.enable(cardId, stripes);
+        return ResponseEntity.ok(new EscrowResponse(cardId, stripes));
+    }
+
+    /**
+     * Take a card out of escrow mode, moving its stripes back onto the card.
+     *
+     * @param cardId the card ID
+     * @return the card ID and its stripe count
+     */
+    @DeleteMapping("/{cardId}/escrow")
+    public ResponseEntity<EscrowResponse> disableEscrow(@PathVariable Long cardId) {
+        trafficRecorder.escrow(cardId, 0);
+        escrowService.disable(cardId);
+        return ResponseEntity.ok(new EscrowResponse(cardId, 0));
+    }
+
+    private static CardSummaryResponse toResponse(CardSummary card) {
+        return new CardSummaryResponse(card.getCardId(), card.getMaskedCardNumber(),
+                card.getCreditLimit(), card.getAvailableLimit(), card.getTotalCapturedAmount());
+    }
+
+    /**
+     * Request DTO for card number lookups.
+     */
+    public static class CardNumberRequest {
+        @NotNull(message = "cardNumber is required")
+        @Pattern(regexp = "\\d{12,19}", message = "cardNumber must be 12 to 19 digits")
+        private String cardNumber;
+
+        public CardNumberRequest() {
+        }
+
+        public CardNumberRequest(String cardNumber) {
+            this.cardNumber = cardNumber;
+        }
+
+        public String getCardNumber() {
+            return cardNumber;
+        }
+
+        public void setCardNumber(String cardNumber) {
+            this.cardNumber = cardNumber;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.creditcard.controller;
+
+import com.example.creditcard.domain.Money;
+
+/**
+ * A card summary with its card number masked.
+ */
+public record CardSummaryResponse(Long cardId,
+                                  String cardNumber,
+                                  Money creditLimit,
+                                  Money availableLimit,
+                                  Money totalCapturedAmount) {
+}
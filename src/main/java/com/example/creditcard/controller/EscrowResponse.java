@@ -0,0 +1,7 @@
+package com.example.creditcard.controller;
+
+/**
+ * A card's escrow stripe count after it was changed; 0 when it has left escrow mode.
+ */
+public record EscrowResponse(Long cardId, int escrowStripes) {
+}
@@ -1,48 +1,153 @@
 package com.example.creditcard.controller;
 
 import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.exception.ErrorResponse;
+import com.example.creditcard.service.AuthorizationCommand;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.BatchAuthorizationResult;
+import com.example.creditcard.service.IdempotentAuthorizationService;
 import com.example.creditcard.service.TransactionService;
+import com.example.creditcard.service.capture.AsyncCaptureService;
+import com.example.creditcard.service.capture.CaptureStatus;
+import com.example.creditcard.service.token.CardLookupService;
+import com.example.creditcard.service.traffic.TrafficRecorder;
 import jakarta.validation.Valid;
-import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/transactions")
 @RequiredArgsConstructor
 public class TransactionController {
 
+    /**
+     * Upper bound on the number of authorizations accepted in one batch request.
+     */
+    static final int MAX_BATCH_SIZE = 1000;
+
     private final TransactionService transactionService;
+    private final IdempotentAuthorizationService idempotentAuthorizationService;
+    private final AsyncCaptureService asyncCaptureService;
+    private final TrafficRecorder trafficRecorder;
+    private final CardLookupService cardLookupService;
 
     /**
      * Authorize a credit card transaction.
      * 
      * Reserves the transaction amount from the card's available limit.
      * Authorization must complete before capture.
+     * 
+     * An amount over the available limit is declined with 400 Bad Request and
+     * the usual error body, built here rather than from an exception. The
+     * decline is recorded as a DECLINED transaction.
+     * 
+     * With an {@code Idempotency-Key} header the amount is reserved at most once
+     * per key: a retry gets the response of the original request, waiting for it
+     * if it is still running.
      *
      * @param request the authorization request containing cardId and amount
-     * @return the created transaction with AUTHORIZED status
+     * @param idempotencyKey optional client-chosen key identifying this authorization
+     * @return the created transaction with AUTHORIZED status, or the decline
      */
     @PostMapping("/authorize")
-    public ResponseEntity<Map<String, Object>> authorize(@Valid @RequestBody AuthorizeRequest request) {
-        CardTransaction transaction = transactionService.authorizeTransaction(request.getCardId(), request.getAmount());
+    public ResponseEntity<?> authorize(@Valid @RequestBody AuthorizeRequest request,
+                                       @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        String violation = validate(request);
+        if (violation != null) {
+            throw new IllegalArgumentException(violation);
+        }
+        long recorded = trafficRecorder.authorize(request.getCardId(), request.getAmount(), idempotencyKey);
+        AuthorizationResult result = idempotencyKey != null
+                ? idempotentAuthorizationService.authorize(idempotencyKey, request.getCardId(), request.getAmount())
+                : transactionService.authorize(request.getCardId(), request.getAmount());
+        if (result instanceof AuthorizationResult.Declined declined) {
+            return ResponseEntity.badRequest().body(ErrorResponse.of(HttpStatus.BAD_REQUEST, declined.reason().getMessage()));
+        }
+        trafficRecorder.authorized(recorded, result.transaction().getId());
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(TransactionResponse.of(result.transaction()));
+    }
+
+    /**
+     * Authorize a credit card transaction on the card with a card number.
+     * 
+     * The card number is resolved to the card ID through its token, then the
+     * authorization proceeds as in {@link #authorize}, including
+     * {@code Idempotency-Key} handling.
+     *
+     * @param request the authorization request containing cardNumber and amount
+     * @param idempotencyKey optional client-chosen key identifying this authorization
+     * @return the created transaction with AUTHORIZED status, or the decline
+     */
+    @PostMapping("/authorize/by-card-number")
+    public ResponseEntity<?> authorizeByCardNumber(@Valid @RequestBody AuthorizeByCardNumberRequest request,
+                                                   @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        Long cardId = cardLookupService.resolveCardId(request.getCardNumber());
+        return authorize(new AuthorizeRequest(cardId, request.getAmount()), idempotencyKey);
+    }
+
+    /**
+     * Authorize a batch of credit card transactions in one database transaction.
+     * 
+     * Each request is validated and authorized on its own: an invalid or declined
+     * request does not affect the others. The response holds one entry per
+     * request, in request order. Approved entries have the same fields as a single
+     * authorization; declined and failed entries carry the status, error and
+     * message a single authorization would have returned.
+     * 
+     * Cards are always locked with pessimistic row locks, once per card for the
+     * whole batch, whatever reservation strategy single authorizations use.
+     *
+     * @param requests the authorization requests
+     * @return one result per request
+     */
+    @PostMapping("/authorize/batch")
+    public ResponseEntity<List<AuthorizationEntryResponse>> authorizeBatch(@RequestBody List<AuthorizeRequest> requests) {
+        if (requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch must contain between 1 and " + MAX_BATCH_SIZE + " requests");
+        }
+
+        List<AuthorizationCommand> commands = new ArrayList<>(requests.size());
+        List<BatchAuthorizationResult> invalid = new ArrayList<>(requests.size());
+        for (AuthorizeRequest request : requests) {
+            String violation = validate(request);
+            if (violation == null) {
+                commands.add(new AuthorizationCommand(request.getCardId(), request.getAmount()));
+                invalid.add(null);
+            } else {
+                invalid.add(BatchAuthorizationResult.failed(request.getCardId(), request.getAmount(),
+                        new IllegalArgumentException(violation)));
+            }
+        }
+
+        long recorded = trafficRecorder.authorizeBatch(commands);
+        List<BatchAuthorizationResult> authorized = commands.isEmpty()
+                ? List.of() : transactionService.authorizeBatch(commands);
+        if (recorded != TrafficRecorder.NOT_RECORDED) {
+            for (int i = 0; i < authorized.size(); i++) {
+                if (authorized.get(i).isApproved()) {
+                    trafficRecorder.authorized(recorded + i, authorized.get(i).getTransaction().getId());
+                }
+            }
+        }
 
-        Map<String, Object> response = new LinkedHashMap<>();
-        response.put("transactionId", transaction.getId());
-        response.put("cardId", transaction.getCard().getId());
-        response.put("amount", transaction.getAmount());
-        response.put("type", transaction.getType());
-        response.put("createdAt", transaction.getCreatedAt());
+        List<AuthorizationEntryResponse> response = new ArrayList<>(requests.size());
+        int next = 0;
+        for (BatchAuthorizationResult rejected : invalid) {
+            response.add(toResponse(rejected != null ? rejected : authorized.get(next++)));
+        }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        return ResponseEntity.ok(response);
     }
 
     /**
@@ -54,25 +159,100 @@ public class TransactionController {
      * @return the captured transaction with CAPTURED status
      */
     @PostMapping("/capture/{transactionId}")
-    public ResponseEntity<Map<String, Object>> capture(@PathVariable Long transactionId) {
+    public ResponseEntity<TransactionResponse> capture(@PathVariable Long transactionId) {
+        trafficRecorder.capture(transactionId, false);
         CardTransaction transaction = transactionService.captureTransaction(transactionId);
 
-        Map<String, Object> response = new LinkedHashMap<>();
-        response.put("transactionId", transaction.getId());
-        response.put("cardId", transaction.getCard().getId());
-        response.put("amount", transaction.getAmount());
-        response.put("type", transaction.getType());
-        response.put("createdAt", transaction.getCreatedAt());
+        return ResponseEntity.ok(TransactionResponse.of(transaction));
+    }
 
-        return ResponseEntity.ok(response);
+    /**
+     * Accept a capture to be applied in the background, in a batch with others.
+     * 
+     * The transaction is not checked here: the returned status is PENDING, and
+     * becomes CAPTURED, or REJECTED if the transaction does not exist or is not
+     * AUTHORIZED, once the capture has been applied.
+     *
+     * @param transactionId the ID of the transaction to capture
+     * @return the capture's status, with 202 Accepted
+     */
+    @PostMapping(value = "/capture/{transactionId}", params = "mode=async")
+    public ResponseEntity<CaptureStatusResponse> captureAsync(@PathVariable Long transactionId) {
+        trafficRecorder.capture(transactionId, true);
+        CaptureStatus status = asyncCaptureService.submit(transactionId);
+
+        return ResponseEntity.accepted().body(CaptureStatusResponse.of(status));
+    }
+
+    /**
+     * Look up the status of an asynchronous capture.
+     *
+     * @param transactionId the ID of the transaction being captured
+     * @return the capture's status
+     */
+    @GetMapping("/capture/{transactionId}/status")
+    public ResponseEntity<CaptureStatusResponse> getCaptureStatus(@PathVariable Long transactionId) {
+        return ResponseEntity.ok(CaptureStatusResponse.of(asyncCaptureService.getStatus(transactionId)));
+    }
+
+    /**
+     * Check a request, or one batch entry, against the constraints declared on
+     * {@link AuthorizeRequest}.
+     *
+     * @return the message of the first violated constraint, or null if the request is valid
+     */
+    private String validate(AuthorizeRequest request) {
+        if (request.getCardId() == null) {
+            return "cardId is required";
+        }
+        if (request.getCardId() <= 0) {
+            return "cardId must be positive";
+        }
+        if (request.getAmount() == null) {
+            return "amount is required";
+        }
+        if (!request.getAmount().isPositive()) {
+            return "amount must be at least 0.01";
+        }
+        return null;
+    }
+
+    private AuthorizationEntryResponse toResponse(BatchAuthorizationResult result) {
+        if (result.isApproved()) {
+            return TransactionResponse.of(result.getTransaction());
+        }
+        if (result.isDeclined()) {
+            return new AuthorizationFailureResponse(result.getCardId(), result.getAmount(),
+                    HttpStatus.BAD_REQUEST.value(), HttpStatus.BAD_REQUEST.getReasonPhrase(),
+                    result.getDeclineReason().getMessage());
+        }
+
+        // Same status and message as GlobalExceptionHandler gives a single authorization
+        RuntimeException error = result.getError();
+        HttpStatus status;
+        String message = error.getMessage();
+        if (error instanceof NoSuchElementException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (error instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            message = "An unexpected error occurred";
+        }
+
+        return new AuthorizationFailureResponse(result.getCardId(), result.getAmount(),
+                status.value(), status.getReasonPhrase(), message);
     }
 
     /**
      * Request DTO for transaction authorization.
      * 
-     * All fields are validated:
+     * All fields are validated, by {@link #validate} for single and batch requests:
      * - cardId must be positive
-     * - amount must be positive and at least 0.01
+     * - amount must be at least 0.01
+     *
+     * The amount is read by {@link com.example.creditcard.config.MoneyJsonComponent}:
+     * one with more than two decimal places is rejected.
      */
     public static class AuthorizeRequest {
         @NotNull(message = "cardId is required")
@@ -80,13 +260,12 @@ public class TransactionController {
         private Long cardId;
 
         @NotNull(message = "amount is required")
-        @DecimalMin(value = "0.01", message = "amount must be at least 0.01")
-        private BigDecimal amount;
+        private Money amount;
 
         public AuthorizeRequest() {
         }
 
-        public AuthorizeRequest(Long cardId, BigDecimal amount) {
+        public AuthorizeRequest(Long cardId, Money amount) {
             this.cardId = cardId;
             this.amount = amount;
         }
@@ -99,11 +278,50 @@ public class TransactionController {
             this.cardId = cardId;
         }
 
-        public BigDecimal getAmount() {
+        public Money getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Money amount) {
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Request DTO for transaction authorization by card number.
+     *
+     * The card number must be 12 to 19 digits; the amount is read as in
+     * {@link AuthorizeRequest}.
+     */
+    public static class AuthorizeByCardNumberRequest {
+        @NotNull(message = "cardNumber is required")
+        @Pattern(regexp = "\\d{12,19}", message = "cardNumber must be 12 to 19 digits")
+        private String cardNumber;
+
+        @NotNull(message = "amount is required")
+        private Money amount;
+
+        public AuthorizeByCardNumberRequest() {
+        }
+
+        public AuthorizeByCardNumberRequest(String cardNumber, Money amount) {
+            this.cardNumber = cardNumber;
+            this.amount = amount;
+        }
+
+        public String getCardNumber() {
+            return cardNumber;
+        }
+
+        public void setCardNumber(String cardNumber) {
+            this.cardNumber = cardNumber;
+        }
+
+        public Money getAmount() {
             return amount;
         }
 
-        public void setAmount(BigDecimal amount) {
+        public void setAmount(Money amount) {
             this.amount = amount;
         }
     }
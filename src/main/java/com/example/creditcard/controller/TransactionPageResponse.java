@@ -0,0 +1,13 @@
+package com.example.creditcard.controller;
+
+import java.util.List;
+
+/**
+ * One page of a card's transaction history.
+ *
+ * @param nextCursor the cursor of the next page, null on the last page
+ */
+public record TransactionPageResponse(Long cardId,
+                                      List<TransactionResponse> transactions,
+                                      String nextCursor) {
+}
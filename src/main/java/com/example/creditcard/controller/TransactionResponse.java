@@ -0,0 +1,28 @@
+package com.example.creditcard.controller;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardTransactionView;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transaction as returned by the authorize, capture and transaction history endpoints.
+ */
+public record TransactionResponse(Long transactionId,
+                                  Long cardId,
+                                  Money amount,
+                                  TransactionType type,
+                                  LocalDateTime createdAt) implements AuthorizationEntryResponse {
+
+    static TransactionResponse of(CardTransaction transaction) {
+        return new TransactionResponse(transaction.getId(), transaction.getCard().getId(),
+                transaction.getAmount(), transaction.getType(), transaction.getCreatedAt());
+    }
+
+    static TransactionResponse of(CardTransactionView transaction) {
+        return new TransactionResponse(transaction.getId(), transaction.getCardId(),
+                transaction.getAmount(), transaction.getType(), transaction.getCreatedAt());
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.creditcard.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A CAPTURED transaction moved out of {@code card_transactions} once older than
+ * the archive retention. Its amount is counted in {@link CardCaptureRollup}.
+ */
+@Entity
+@Table(name = "card_transaction_archive", indexes = {
+        @Index(name = "idx_card_transaction_archive_card_created", columnList = "card_id, created_at, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedTransaction {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long cardId;
+
+    @Column(nullable = false)
+    private Money amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionType type;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,48 @@
+package com.example.creditcard.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Count and sum of a card's archived CAPTURED transactions created in one month.
+ * A card's captured total is the sum of its rollups plus its CAPTURED rows
+ * still in {@code card_transactions}.
+ */
+@Entity
+@Table(name = "card_capture_rollups")
+@IdClass(CardCaptureRollup.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardCaptureRollup {
+
+    @Id
+    private Long cardId;
+
+    /**
+     * First day of the month.
+     */
+    @Id
+    private LocalDate monthStart;
+
+    @Column(nullable = false)
+    private Long captureCount;
+
+    @Column(nullable = false)
+    private Money capturedAmount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long cardId;
+        private LocalDate monthStart;
+    }
+}
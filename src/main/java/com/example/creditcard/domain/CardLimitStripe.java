@@ -0,0 +1,40 @@
+package com.example.creditcard.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One escrow stripe of a hot card: a share of the card's available limit that
+ * authorizations can reserve from without locking the card row.
+ */
+@Entity
+@Table(name = "card_limit_stripes")
+@IdClass(CardLimitStripe.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardLimitStripe {
+
+    @Id
+    private Long cardId;
+
+    @Id
+    private Integer stripe;
+
+    @Column(nullable = false)
+    private Money availableLimit;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long cardId;
+        private Integer stripe;
+    }
+}
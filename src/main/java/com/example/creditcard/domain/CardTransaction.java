@@ -6,11 +6,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "card_transactions")
+@Table(name = "card_transactions", indexes = {
+        @Index(name = "idx_card_transactions_card_created", columnList = "card_id, created_at, id"),
+        @Index(name = "idx_card_transactions_type_created", columnList = "type, created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,7 +20,8 @@ import java.time.LocalDateTime;
 public class CardTransaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_transactions_seq")
+    @SequenceGenerator(name = "card_transactions_seq", sequenceName = "card_transactions_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -26,7 +29,7 @@ public class CardTransaction {
     private CreditCard card;
 
     @Column(nullable = false)
-    private BigDecimal amount;
+    private Money amount;
 
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
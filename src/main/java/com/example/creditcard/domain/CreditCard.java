@@ -1,12 +1,13 @@
 package com.example.creditcard.domain;
 
+import com.example.creditcard.service.token.CardTokenListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
-import java.math.BigDecimal;
 
 @Entity
 @Table(name = "credit_cards")
@@ -14,18 +15,47 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@DynamicUpdate
+@EntityListeners(CardTokenListener.class)
 public class CreditCard {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "credit_cards_seq")
+    @SequenceGenerator(name = "credit_cards_seq", sequenceName = "credit_cards_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 16)
     private String cardNumber;
 
+    /**
+     * Keyed hash of the card number, which cards are looked up by so that card
+     * numbers are never compared in SQL. Set when the card is saved through JPA.
+     */
+    @Column(unique = true, length = 64)
+    private String cardToken;
+
+    @Column(nullable = false)
+    private Money creditLimit;
+
     @Column(nullable = false)
-    private BigDecimal creditLimit;
+    private Money availableLimit;
 
+    /**
+     * Sum of all CAPTURED transaction amounts, maintained incrementally by capture.
+     */
     @Column(nullable = false)
-    private BigDecimal availableLimit;
+    @Builder.Default
+    private Money capturedTotal = Money.ZERO;
+
+    /**
+     * Number of escrow stripes the available limit is split across, or 0 if the
+     * card is not in escrow mode. While it is, {@code availableLimit} holds only
+     * the part of the limit that is not allocated to a stripe.
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer escrowStripes = 0;
+
+    @Version
+    private Long version;
 }
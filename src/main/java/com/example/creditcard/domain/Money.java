@@ -0,0 +1,194 @@
+package com.example.creditcard.domain;
+
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * An amount of money held as a {@code long} number of minor units (cents), with
+ * the fixed scale of the {@code DECIMAL(19, 2)} amount columns.
+ *
+ * Comparisons and the accessors allocate nothing. Arithmetic returns a new
+ * instance, which the JIT removes when it does not escape, and overflows throw
+ * instead of wrapping. Parsing reads the digits directly, without going through
+ * {@link BigDecimal}; {@link #toBigDecimal()} is only needed at the JDBC boundary.
+ */
+@EqualsAndHashCode
+public final class Money implements Comparable<Money>, Serializable {
+
+    /**
+     * Number of decimal places of every amount.
+     */
+    public static final int SCALE = 2;
+
+    public static final Money ZERO = new Money(0);
+
+    private static final long MINOR_UNITS_PER_UNIT = 100;
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * @param minorUnits the amount in cents
+     * @return the amount
+     */
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * @param amount the amount
+     * @return the amount
+     * @throws IllegalArgumentException if the amount has more than two decimal places or does not fit
+     */
+    public static Money of(BigDecimal amount) {
+        try {
+            return ofMinor(amount.movePointRight(SCALE).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most " + SCALE + " decimal places: " + amount, e);
+        }
+    }
+
+    /**
+     * @param amount a plain decimal such as {@code 12}, {@code -0.5} or {@code 1234.56}
+     * @return the amount
+     * @throws IllegalArgumentException if the text is not such a decimal, has more than
+     *         two decimal places or does not fit
+     */
+    public static Money parse(CharSequence amount) {
+        char[] chars = amount.toString().toCharArray();
+        return parse(chars, 0, chars.length);
+    }
+
+    /**
+     * Parse a plain decimal from part of a character buffer, such as the one a
+     * JSON parser reads numbers into, without allocating.
+     *
+     * @param text the characters
+     * @param offset the index of the first character of the amount
+     * @param length the number of characters of the amount
+     * @return the amount
+     * @throws IllegalArgumentException if the characters are not a plain decimal, have
+     *         more than two decimal places or do not fit
+     */
+    public static Money parse(char[] text, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = i < end && text[i] == '-';
+        if (negative || i < end && text[i] == '+') {
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            char c = text[i];
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || decimals == SCALE) {
+                throw invalid(text, offset, end);
+            }
+            if (units > (Long.MAX_VALUE - 9) / 10) {
+                throw invalid(text, offset, end);
+            }
+            units = units * 10 + (c - '0');
+            digits++;
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            throw invalid(text, offset, end);
+        }
+        for (int scale = Math.max(decimals, 0); scale < SCALE; scale++) {
+            if (units > Long.MAX_VALUE / 10) {
+                throw invalid(text, offset, end);
+            }
+            units *= 10;
+        }
+        return ofMinor(negative ? -units : units);
+    }
+
+    /**
+     * @return the amount in cents
+     */
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits));
+    }
+
+    /**
+     * @param count a divisor
+     * @return this amount divided into equal shares, rounded towards zero to whole cents
+     */
+    public Money divide(int count) {
+        return ofMinor(minorUnits / count);
+    }
+
+    /**
+     * @param count a factor
+     * @return this amount times the factor
+     */
+    public Money times(int count) {
+        return ofMinor(Math.multiplyExact(minorUnits, count));
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return minorUnits > other.minorUnits;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    /**
+     * @return the amount as a decimal with two decimal places
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    /**
+     * @return the amount as a plain decimal with two decimal places, e.g. {@code -1234.05}
+     */
+    @Override
+    public String toString() {
+        long units = Math.abs(minorUnits / MINOR_UNITS_PER_UNIT);
+        long cents = Math.abs(minorUnits % MINOR_UNITS_PER_UNIT);
+        return (minorUnits < 0 ? "-" : "") + units + (cents < 10 ? ".0" : ".") + cents;
+    }
+
+    private static IllegalArgumentException invalid(char[] text, int offset, int end) {
+        return new IllegalArgumentException("Invalid amount: " + new String(text, offset, end - offset));
+    }
+}
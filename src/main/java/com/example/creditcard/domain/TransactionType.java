@@ -2,5 +2,9 @@ package com.example.creditcard.domain;
 
 public enum TransactionType {
     AUTHORIZED,
-    CAPTURED
+    CAPTURED,
+    /** An authorization that was not captured in time; its amount was released back to the card */
+    EXPIRED,
+    /** An authorization declined for insufficient available limit; nothing was reserved */
+    DECLINED
 }
@@ -0,0 +1,15 @@
+package com.example.creditcard.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * The body of every error response.
+ */
+public record ErrorResponse(LocalDateTime timestamp, int status, String error, String message) {
+
+    public static ErrorResponse of(HttpStatus status, String message) {
+        return new ErrorResponse(LocalDateTime.now(), status.value(), status.getReasonPhrase(), message);
+    }
+}
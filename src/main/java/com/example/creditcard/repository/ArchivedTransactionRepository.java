@@ -0,0 +1,27 @@
+package com.example.creditcard.repository;
+
+import com.example.creditcard.domain.ArchivedTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface ArchivedTransactionRepository extends JpaRepository<ArchivedTransaction, Long> {
+
+    /**
+     * Copy those of the given transactions that are CAPTURED into the archive, in one statement.
+     *
+     * @param ids transaction IDs
+     * @param archivedAt the time of archiving
+     * @return the number of transactions copied
+     */
+    @Modifying
+    @Query(value = "INSERT INTO card_transaction_archive (id, card_id, amount, type, created_at, archived_at) "
+            + "SELECT id, card_id, amount, type, created_at, :archivedAt FROM card_transactions "
+            + "WHERE id IN (:ids) AND type = 'CAPTURED'", nativeQuery = true)
+    int copyCaptured(Collection<Long> ids, LocalDateTime archivedAt);
+}
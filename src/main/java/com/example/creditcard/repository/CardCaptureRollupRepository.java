@@ -0,0 +1,43 @@
+package com.example.creditcard.repository;
+
+import com.example.creditcard.domain.CardCaptureRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Repository
+public interface CardCaptureRollupRepository extends JpaRepository<CardCaptureRollup, CardCaptureRollup.Key> {
+
+    /**
+     * Add archived captures to an existing rollup.
+     *
+     * @param cardId the card ID
+     * @param monthStart first day of the month
+     * @param count the number of captures
+     * @param amount their sum
+     * @return 1 if the rollup exists, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "UPDATE card_capture_rollups SET capture_count = capture_count + :count, "
+            + "captured_amount = captured_amount + :amount WHERE card_id = :cardId AND month_start = :monthStart",
+            nativeQuery = true)
+    int add(Long cardId, LocalDate monthStart, long count, BigDecimal amount);
+
+    /**
+     * Create a rollup.
+     *
+     * @param cardId the card ID
+     * @param monthStart first day of the month
+     * @param count the number of captures
+     * @param amount their sum
+     * @return the number of inserted rows
+     */
+    @Modifying
+    @Query(value = "INSERT INTO card_capture_rollups (card_id, month_start, capture_count, captured_amount) "
+            + "VALUES (:cardId, :monthStart, :count, :amount)", nativeQuery = true)
+    int insert(Long cardId, LocalDate monthStart, long count, BigDecimal amount);
+}
@@ -0,0 +1,14 @@
+package com.example.creditcard.repository;
+
+import com.example.creditcard.domain.Money;
+
+/**
+ * Projection of a card's id and credit limit, used to tag metrics without
+ * loading full entities.
+ */
+public interface CardCreditLimitView {
+
+    Long getId();
+
+    Money getCreditLimit();
+}
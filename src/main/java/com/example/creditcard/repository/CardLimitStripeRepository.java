@@ -0,0 +1,62 @@
+package com.example.creditcard.repository;
+
+import com.example.creditcard.domain.CardLimitStripe;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CardLimitStripeRepository extends JpaRepository<CardLimitStripe, CardLimitStripe.Key> {
+
+    /**
+     * Lock one stripe if it holds at least an amount and no other transaction
+     * has it locked. Never waits: a stripe that is locked elsewhere, or holds
+     * too little, is skipped without being locked.
+     *
+     * @param cardId the card ID
+     * @param stripe the stripe number
+     * @param amount the amount to be reserved
+     * @return the stripe number if it is now locked by this transaction, empty otherwise
+     */
+    @Query(value = "SELECT stripe FROM card_limit_stripes WHERE card_id = :cardId AND stripe = :stripe "
+            + "AND available_limit >= :amount FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<Integer> lockIfAvailable(Long cardId, Integer stripe, BigDecimal amount);
+
+    /**
+     * Reserve an amount from a stripe locked by {@link #lockIfAvailable}.
+     *
+     * @param cardId the card ID
+     * @param stripe the stripe number
+     * @param amount the amount to reserve
+     * @return the number of stripes updated
+     */
+    @Modifying
+    @Query(value = "UPDATE card_limit_stripes SET available_limit = available_limit - :amount "
+            + "WHERE card_id = :cardId AND stripe = :stripe", nativeQuery = true)
+    int reserve(Long cardId, Integer stripe, BigDecimal amount);
+
+    /**
+     * Lock all stripes of a card, in stripe order so that two callers cannot deadlock.
+     *
+     * @param cardId the card ID
+     * @return the locked stripes, ordered by stripe number
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CardLimitStripe s WHERE s.cardId = :cardId ORDER BY s.stripe")
+    List<CardLimitStripe> findAllByCardIdForUpdate(Long cardId);
+
+    /**
+     * @param cardId the card ID
+     * @return the sum of the card's stripes, 0 if it has none
+     */
+    @Query(value = "SELECT COALESCE(SUM(available_limit), 0) FROM card_limit_stripes WHERE card_id = :cardId",
+            nativeQuery = true)
+    BigDecimal sumAvailableLimit(Long cardId);
+}
@@ -0,0 +1,14 @@
+package com.example.creditcard.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of a card's id and available limit, used to rebuild in-memory state
+ * without loading full entities.
+ */
+public interface CardLimitView {
+
+    Long getId();
+
+    BigDecimal getAvailableLimit();
+}
@@ -1,17 +1,28 @@
 package com.example.creditcard.repository;
 
 import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<CreditCard, Long> {
 
+    String STRIPES_SUM = "COALESCE((SELECT SUM(s.available_limit) FROM card_limit_stripes s WHERE s.card_id = c.id), 0)";
+
     /**
      * Find a card by ID with pessimistic write lock.
      * This prevents race conditions during authorization by ensuring
@@ -23,4 +34,173 @@ public interface CardRepository extends JpaRepository<CreditCard, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT c FROM CreditCard c WHERE c.id = :id")
     Optional<CreditCard> findByIdForUpdate(Long id);
+
+    /**
+     * Find several cards with pessimistic write locks, taken in id order so that
+     * two callers locking overlapping sets cannot deadlock.
+     *
+     * @param ids the card IDs
+     * @return the locked cards that exist, ordered by id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CreditCard c WHERE c.id IN :ids ORDER BY c.id")
+    List<CreditCard> findAllByIdForUpdate(Collection<Long> ids);
+
+    /**
+     * Read only the available limit of a card, including what is held in its escrow stripes.
+     *
+     * @param id the card ID
+     * @return Optional containing the available limit
+     */
+    @Query(value = "SELECT c.available_limit + " + STRIPES_SUM + " FROM credit_cards c WHERE c.id = :id",
+            nativeQuery = true)
+    Optional<BigDecimal> findAvailableLimitById(Long id);
+
+    /**
+     * Read the number of escrow stripes of a card.
+     *
+     * @param id the card ID
+     * @return Optional containing the stripe count, 0 if the card is not in escrow mode
+     */
+    @Query("SELECT c.escrowStripes FROM CreditCard c WHERE c.id = :id")
+    Optional<Integer> findEscrowStripesById(Long id);
+
+    /**
+     * Read only the credit limit of a card. Pending changes in the persistence
+     * context are not flushed first, so this can be called in the middle of an
+     * authorization without breaking up its batched writes.
+     *
+     * @param id the card ID
+     * @return Optional containing the credit limit
+     */
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query("SELECT c.creditLimit FROM CreditCard c WHERE c.id = :id")
+    Optional<Money> findCreditLimitById(Long id);
+
+    /**
+     * Read only the credit limits of several cards.
+     *
+     * @param ids the card IDs
+     * @return id and credit limit of the cards that exist
+     */
+    @Query("SELECT c.id AS id, c.creditLimit AS creditLimit FROM CreditCard c WHERE c.id IN :ids")
+    List<CardCreditLimitView> findCreditLimitsByIdIn(Collection<Long> ids);
+
+    /**
+     * Read the available limit of every card, including what is held in escrow stripes.
+     *
+     * @return id and available limit of all cards
+     */
+    @Query(value = "SELECT c.id AS \"id\", c.available_limit + " + STRIPES_SUM + " AS \"availableLimit\" "
+            + "FROM credit_cards c", nativeQuery = true)
+    List<CardLimitView> findAllAvailableLimits();
+
+    /**
+     * Add a delta to a card's available limit in a single statement, without
+     * reading the row first. A negative delta reserves limit, a positive one releases it.
+     *
+     * @param id the card ID
+     * @param delta the amount to add to the available limit
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query(value = "UPDATE credit_cards SET available_limit = available_limit + :delta, version = version + 1 WHERE id = :id",
+            nativeQuery = true)
+    int adjustAvailableLimit(Long id, BigDecimal delta);
+
+    /**
+     * Set a card's available limit only if its version is unchanged since it was read.
+     *
+     * @param id the card ID
+     * @param availableLimit the new available limit
+     * @param version the version the new limit was computed from
+     * @return 1 if the card was updated, 0 if it was changed concurrently
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CreditCard c SET c.availableLimit = :availableLimit, c.version = c.version + 1 "
+            + "WHERE c.id = :id AND c.version = :version")
+    int updateAvailableLimitIfVersion(Long id, Money availableLimit, Long version);
+
+    /**
+     * Check and reserve an amount in one statement.
+     *
+     * @param id the card ID
+     * @param amount the amount to reserve
+     * @return 1 if the amount was reserved, 0 if the card is missing or its limit is insufficient
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE credit_cards SET available_limit = available_limit - :amount, version = version + 1 "
+            + "WHERE id = :id AND available_limit >= :amount", nativeQuery = true)
+    int reserveIfAvailable(Long id, BigDecimal amount);
+
+    /**
+     * Add a captured amount to a card's captured total in a single statement.
+     * The card version is left alone: captures do not change the available limit.
+     *
+     * @param id the card ID
+     * @param amount the captured amount
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query(value = "UPDATE credit_cards SET captured_total = captured_total + :amount WHERE id = :id", nativeQuery = true)
+    int addCapturedTotal(Long id, BigDecimal amount);
+
+    /**
+     * Page through card ids in ascending order.
+     *
+     * @param afterId only ids greater than this are returned
+     * @param pageable the page size
+     * @return the next card ids
+     */
+    @Query("SELECT c.id FROM CreditCard c WHERE c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsAfter(Long afterId, Pageable pageable);
+
+    /**
+     * Find the id of the card with a card number token.
+     *
+     * @param cardToken the token of the card number
+     * @return Optional containing the card ID
+     */
+    @Query("SELECT c.id FROM CreditCard c WHERE c.cardToken = :cardToken")
+    Optional<Long> findIdByCardToken(String cardToken);
+
+    /**
+     * Find cards that have no card number token yet.
+     *
+     * @param pageable the page size
+     * @return the cards, ordered by id
+     */
+    @Query("SELECT c FROM CreditCard c WHERE c.cardToken IS NULL ORDER BY c.id")
+    List<CreditCard> findWithoutCardToken(Pageable pageable);
+
+    /**
+     * Set the card number token of a card. The card version is left alone.
+     *
+     * @param id the card ID
+     * @param cardToken the token of the card number
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query(value = "UPDATE credit_cards SET card_token = :cardToken WHERE id = :id", nativeQuery = true)
+    int setCardToken(Long id, String cardToken);
+
+    /**
+     * Recompute the captured total of the given cards from their archived and live CAPTURED transactions.
+     *
+     * @param ids the card IDs
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query(value = "UPDATE credit_cards c SET captured_total = " + TransactionRepository.CAPTURED_TOTAL
+            + " WHERE c.id IN (:ids)", nativeQuery = true)
+    int recomputeCapturedTotals(Collection<Long> ids);
+
+    /**
+     * Find cards whose captured total differs from the sum of their archived and live CAPTURED transactions.
+     *
+     * @return the ids of mismatching cards
+     */
+    @Query(value = "SELECT c.id FROM credit_cards c WHERE c.captured_total <> " + TransactionRepository.CAPTURED_TOTAL
+            + " ORDER BY c.id", nativeQuery = true)
+    List<Long> findIdsWithCapturedTotalMismatch();
 }
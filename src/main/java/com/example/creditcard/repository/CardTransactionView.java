@@ -0,0 +1,24 @@
+package com.example.creditcard.repository;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a transaction for history listings. Rows read through it are
+ * not managed entities, so reading many of them does not grow the persistence
+ * context.
+ */
+public interface CardTransactionView {
+
+    Long getId();
+
+    Long getCardId();
+
+    Money getAmount();
+
+    TransactionType getType();
+
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,34 @@
+package com.example.creditcard.repository;
+
+import com.example.creditcard.domain.IdempotencyRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * @param cutoff the time before which keys were stored
+     * @param pageable the page size
+     * @return the keys stored before the cutoff, oldest first
+     */
+    @Query("SELECT r.idempotencyKey FROM IdempotencyRecord r WHERE r.createdAt < :cutoff ORDER BY r.createdAt")
+    List<String> findKeysCreatedBefore(LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Delete stored keys in one statement.
+     *
+     * @param keys the keys
+     * @return the number of keys deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE idempotency_key IN (:keys)", nativeQuery = true)
+    int deleteByKeys(Collection<String> keys);
+}
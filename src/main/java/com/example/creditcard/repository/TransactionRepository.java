@@ -2,15 +2,188 @@ package com.example.creditcard.repository;
 
 import com.example.creditcard.domain.CardTransaction;
 import com.example.creditcard.domain.TransactionType;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<CardTransaction, Long> {
 
+    /**
+     * A card {@code c}'s captured total: its archived captures, rolled up by
+     * month, plus its CAPTURED transactions still in {@code card_transactions}.
+     */
+    String CAPTURED_TOTAL = "(COALESCE((SELECT SUM(r.captured_amount) FROM card_capture_rollups r WHERE r.card_id = c.id), 0) "
+            + "+ COALESCE((SELECT SUM(t.amount) FROM card_transactions t WHERE t.card_id = c.id AND t.type = 'CAPTURED'), 0))";
+
+    String VIEW_SELECT = "SELECT t.id AS id, t.card.id AS cardId, t.amount AS amount, t.type AS type, "
+            + "t.createdAt AS createdAt FROM CardTransaction t ";
+
+    /**
+     * Find a transaction by ID with pessimistic write lock, so that it cannot
+     * be captured twice or expired while it is being captured.
+     *
+     * @param id the transaction ID
+     * @return Optional containing the locked transaction
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM CardTransaction t WHERE t.id = :id")
+    Optional<CardTransaction> findByIdForUpdate(Long id);
+
     @Query("SELECT COALESCE(SUM(t.amount), 0) FROM CardTransaction t WHERE t.card.id = :cardId AND t.type = :type")
     BigDecimal sumByCardIdAndType(Long cardId, TransactionType type);
+
+    /**
+     * Sum a card's CAPTURED transactions, both archived and live, in one
+     * statement so that a concurrent archiving chunk is seen either entirely
+     * or not at all.
+     *
+     * @param cardId the card ID
+     * @return the card's monthly capture rollups plus its CAPTURED transactions
+     */
+    @Query(value = "SELECT " + CAPTURED_TOTAL + " FROM credit_cards c WHERE c.id = :cardId", nativeQuery = true)
+    BigDecimal sumCaptured(Long cardId);
+
+    /**
+     * Read the newest transactions of a card.
+     *
+     * @param cardId the card ID
+     * @param pageable the page size
+     * @return the transactions, newest first
+     */
+    @Query(VIEW_SELECT + "WHERE t.card.id = :cardId ORDER BY t.createdAt DESC, t.id DESC")
+    List<CardTransactionView> findHistory(Long cardId, Pageable pageable);
+
+    /**
+     * Read the transactions of a card that come after a cursor position, seeking
+     * on the (card_id, created_at, id) index instead of skipping over an offset.
+     *
+     * @param cardId the card ID
+     * @param createdAt creation time of the last transaction already read
+     * @param id id of the last transaction already read
+     * @param pageable the page size
+     * @return the transactions, newest first
+     */
+    @Query(VIEW_SELECT + "WHERE t.card.id = :cardId "
+            + "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id)) "
+            + "ORDER BY t.createdAt DESC, t.id DESC")
+    List<CardTransactionView> findHistoryBefore(Long cardId, LocalDateTime createdAt, Long id, Pageable pageable);
+
+    /**
+     * Read every transaction of a card through a forward-only cursor. The stream
+     * must be consumed inside a transaction and closed.
+     *
+     * @param cardId the card ID
+     * @return the transactions, newest first
+     */
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(VIEW_SELECT + "WHERE t.card.id = :cardId ORDER BY t.createdAt DESC, t.id DESC")
+    Stream<CardTransactionView> streamHistory(Long cardId);
+
+    /**
+     * Read the oldest transactions of a type created before a cutoff, using the
+     * (type, created_at) index.
+     *
+     * @param type the transaction type
+     * @param cutoff only transactions created before this are returned
+     * @param pageable the page size
+     * @return the transactions, oldest first
+     */
+    @Query(VIEW_SELECT + "WHERE t.type = :type AND t.createdAt < :cutoff ORDER BY t.createdAt, t.id")
+    List<CardTransactionView> findOlderThan(TransactionType type, LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Mark a transaction EXPIRED if it is still AUTHORIZED. A transaction
+     * captured in the meantime is left alone.
+     *
+     * @param id the transaction ID
+     * @return 1 if the transaction was expired, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "UPDATE card_transactions SET type = 'EXPIRED' WHERE id = :id AND type = 'AUTHORIZED'",
+            nativeQuery = true)
+    int expireIfAuthorized(Long id);
+
+    /**
+     * Lock those of the given transactions that are of a type, in id order.
+     *
+     * @param ids transaction IDs
+     * @param type the transaction type
+     * @return the locked transactions, ordered by id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(VIEW_SELECT + "WHERE t.id IN :ids AND t.type = :type ORDER BY t.id")
+    List<CardTransactionView> findByIdsAndTypeForUpdate(Collection<Long> ids, TransactionType type);
+
+    /**
+     * Delete those of the given transactions that are CAPTURED, once copied to the archive.
+     *
+     * @param ids transaction IDs
+     * @return the number of transactions deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM card_transactions WHERE id IN (:ids) AND type = 'CAPTURED'", nativeQuery = true)
+    int deleteCaptured(Collection<Long> ids);
+
+    /**
+     * Delete those of the given transactions that are DECLINED.
+     *
+     * @param ids transaction IDs
+     * @return the number of transactions deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM card_transactions WHERE id IN (:ids) AND type = 'DECLINED'", nativeQuery = true)
+    int deleteDeclined(Collection<Long> ids);
+
+    /**
+     * Mark transactions CAPTURED in one statement, leaving alone any that are no longer AUTHORIZED.
+     *
+     * @param ids transaction IDs
+     * @return the number of transactions captured
+     */
+    @Modifying
+    @Query(value = "UPDATE card_transactions SET type = 'CAPTURED' WHERE id IN (:ids) AND type = 'AUTHORIZED'",
+            nativeQuery = true)
+    int captureIfAuthorized(Collection<Long> ids);
+
+    /**
+     * @param id the transaction ID
+     * @return the transaction's type, or empty if it does not exist
+     */
+    @Query("SELECT t.type FROM CardTransaction t WHERE t.id = :id")
+    Optional<TransactionType> findTypeById(Long id);
+
+    /**
+     * Take the next block of transaction ids from the sequence, the same way
+     * Hibernate does for new entities: the value returned and the following
+     * {@code allocationSize - 1} ids belong to the caller.
+     *
+     * @return the first id of the block
+     */
+    @Query(value = "SELECT NEXT VALUE FOR card_transactions_seq", nativeQuery = true)
+    long nextIdBlock();
+
+    /**
+     * @param ids transaction IDs
+     * @return those of the IDs that already exist
+     */
+    @Query("SELECT t.id FROM CardTransaction t WHERE t.id IN :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
 }
@@ -0,0 +1,13 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.Money;
+import lombok.Value;
+
+/**
+ * One authorization of a batch: reserve {@code amount} on card {@code cardId}.
+ */
+@Value
+public class AuthorizationCommand {
+    Long cardId;
+    Money amount;
+}
@@ -0,0 +1,41 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.CardTransaction;
+
+/**
+ * Outcome of an authorization: the AUTHORIZED transaction if it was approved,
+ * or the DECLINED transaction recorded in its place and the reason.
+ *
+ * A decline is an expected answer, not an error, so it is returned rather
+ * than thrown.
+ */
+public sealed interface AuthorizationResult {
+
+    /**
+     * @return the transaction saved for this authorization, whatever its outcome
+     */
+    CardTransaction transaction();
+
+    record Approved(CardTransaction transaction) implements AuthorizationResult {
+    }
+
+    record Declined(CardTransaction transaction, DeclineReason reason) implements AuthorizationResult {
+    }
+
+    enum DeclineReason {
+        INSUFFICIENT_LIMIT("Insufficient available limit");
+
+        private final String message;
+
+        DeclineReason(String message) {
+            this.message = message;
+        }
+
+        /**
+         * @return the message returned to the client, the same one the exception used to carry
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcome of one authorization in a batch: the authorized transaction, the
+ * declined transaction and the reason, or the exception a single authorization
+ * would have thrown.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class BatchAuthorizationResult {
+
+    private final Long cardId;
+    private final Money amount;
+    private final CardTransaction transaction;
+    private final AuthorizationResult.DeclineReason declineReason;
+    private final RuntimeException error;
+
+    public static BatchAuthorizationResult approved(CardTransaction transaction) {
+        return new BatchAuthorizationResult(transaction.getCard().getId(), transaction.getAmount(), transaction,
+                null, null);
+    }
+
+    public static BatchAuthorizationResult declined(CardTransaction transaction,
+                                                    AuthorizationResult.DeclineReason reason) {
+        return new BatchAuthorizationResult(transaction.getCard().getId(), transaction.getAmount(), transaction,
+                reason, null);
+    }
+
+    public static BatchAuthorizationResult failed(Long cardId, Money amount, RuntimeException error) {
+        return new BatchAuthorizationResult(cardId, amount, null, null, error);
+    }
+
+    public boolean isApproved() {
+        return transaction != null && declineReason == null;
+    }
+
+    public boolean isDeclined() {
+        return declineReason != null;
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.creditcard.service;
 
 import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardLimitStripeRepository;
 import com.example.creditcard.repository.CardRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 @Service
@@ -16,19 +20,39 @@ import java.util.NoSuchElementException;
 public class CardService {
 
     private final CardRepository cardRepository;
+    private final CardLimitStripeRepository stripeRepository;
 
     /**
      * Get a card by ID. Standard read operation without locking.
+     * 
+     * Called on its own it runs in a read-only transaction on the read pool;
+     * within an authorization it joins the authorization's transaction.
      *
      * @param cardId the card ID
      * @return the credit card
      * @throws NoSuchElementException if card not found
      */
+    @Transactional(readOnly = true)
     public CreditCard getCardById(Long cardId) {
         return cardRepository.findById(cardId)
                 .orElseThrow(() -> new NoSuchElementException("Card not found with id: " + cardId));
     }
 
+    /**
+     * Get the available limit of a card. For a card in escrow mode this adds the
+     * amounts held in its stripes to the unallocated part on the card row.
+     *
+     * @param card the credit card
+     * @return the total available limit
+     */
+    @Transactional(readOnly = true)
+    public Money getAvailableLimit(CreditCard card) {
+        if (card.getEscrowStripes() == null || card.getEscrowStripes() == 0) {
+            return card.getAvailableLimit();
+        }
+        return card.getAvailableLimit().plus(Money.of(stripeRepository.sumAvailableLimit(card.getId())));
+    }
+
     /**
      * Get a card by ID with pessimistic write lock for updates.
      * 
@@ -44,6 +68,28 @@ public class CardService {
                 .orElseThrow(() -> new NoSuchElementException("Card not found with id: " + cardId));
     }
 
+    /**
+     * Get a reference to a card known to exist, without loading it.
+     *
+     * @param cardId the card ID
+     * @return the card, or a proxy for it
+     */
+    public CreditCard getCardReference(Long cardId) {
+        return cardRepository.getReferenceById(cardId);
+    }
+
+    /**
+     * Get several cards with pessimistic write locks, locked in id order.
+     * 
+     * Cards that do not exist are left out of the result.
+     *
+     * @param cardIds the card IDs
+     * @return the locked credit cards, ordered by id
+     */
+    public List<CreditCard> getCardsByIdForUpdate(Collection<Long> cardIds) {
+        return cardRepository.findAllByIdForUpdate(cardIds);
+    }
+
     /**
      * Save a card. Used after modifying available limit or other fields.
      *
@@ -53,4 +99,17 @@ public class CardService {
     public CreditCard saveCard(CreditCard card) {
         return cardRepository.save(card);
     }
+
+    /**
+     * Add a captured amount to the card's captured total.
+     * 
+     * Applied as a delta in one statement, so concurrent captures on the same
+     * card do not need to lock the card first.
+     *
+     * @param cardId the card ID
+     * @param amount the captured amount
+     */
+    public void addCapturedAmount(Long cardId, Money amount) {
+        cardRepository.addCapturedTotal(cardId, amount.toBigDecimal());
+    }
 }
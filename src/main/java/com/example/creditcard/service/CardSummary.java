@@ -0,0 +1,38 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.Money;
+import lombok.Value;
+
+/**
+ * Immutable snapshot of a card's credit position, as served by the card summary endpoint.
+ *
+ * Only the masked card number is kept, so it is computed once per cached
+ * summary rather than per request, and cached summaries never hold a full
+ * card number.
+ */
+@Value
+public class CardSummary {
+    Long cardId;
+    String maskedCardNumber;
+    Money creditLimit;
+    Money availableLimit;
+    Money totalCapturedAmount;
+
+    /**
+     * Mask a card number for security purposes.
+     * 
+     * Keeps the first 4 and last 4 digits, masks the middle.
+     * Example: 4532015112830366 → 4532****0366
+     *
+     * @param cardNumber the full card number
+     * @return the masked card number
+     */
+    public static String maskCardNumber(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 8) {
+            return "****"; // Fallback for invalid input
+        }
+        // Replace the middle digits with 4 asterisks
+        // For 16-digit card: XXXX(8 middle digits)XXXX → XXXX****XXXX
+        return cardNumber.substring(0, 4) + "****" + cardNumber.substring(cardNumber.length() - 4);
+    }
+}
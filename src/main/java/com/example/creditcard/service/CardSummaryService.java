@@ -0,0 +1,147 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.config.SummaryCacheProperties;
+import com.example.creditcard.domain.CreditCard;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through cache of card summaries.
+ *
+ * Every change to a card's limit or captured total must call
+ * {@link #evictAfterCommit}. The entry is dropped both just before and just
+ * after the writing transaction commits, so once the commit has returned no
+ * reader can see the old summary.
+ *
+ * A reader that loaded a summary from the database only stores it if the card
+ * was not invalidated while it was loading. Invalidations are counted in a
+ * fixed array of striped generation counters, and both the store and the
+ * invalidation run inside the cache's per-key compute, so the check and the
+ * store cannot interleave with an invalidation of the same card.
+ *
+ * A summary is loaded in one transaction on the write pool, not the read
+ * pool: a read replica may still return the row as it was before a commit
+ * that has already evicted it, and that stale row would then be cached for
+ * the whole TTL. The card and its escrow stripes are read in the same
+ * transaction, so they come from one snapshot.
+ *
+ * Hit, miss and eviction counts are published as {@code cache.*} meters
+ * tagged {@code cache=cardSummary}.
+ */
+@Service
+@Slf4j
+public class CardSummaryService {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final CardService cardService;
+    private final TransactionTemplate loader;
+    private final boolean enabled;
+    private final Cache<Long, CardSummary> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public CardSummaryService(CardService cardService, SummaryCacheProperties properties, MeterRegistry meterRegistry,
+                              PlatformTransactionManager transactionManager) {
+        this.cardService = cardService;
+        // Not read-only, so it runs on the write pool
+        this.loader = new TransactionTemplate(transactionManager);
+        this.enabled = properties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cardSummary");
+    }
+
+    /**
+     * Get the summary of a card, from the cache if present.
+     *
+     * @param cardId the card ID
+     * @return the card summary
+     * @throws NoSuchElementException if card not found
+     */
+    public CardSummary getCardSummary(Long cardId) {
+        if (!enabled) {
+            return load(cardId);
+        }
+
+        CardSummary cached = cache.getIfPresent(cardId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = generations.get(stripe(cardId));
+        CardSummary loaded = load(cardId);
+        cache.asMap().compute(cardId, (id, current) ->
+                generations.get(stripe(id)) == generation ? loaded : current);
+        return loaded;
+    }
+
+    /**
+     * Drop the cached summary of a card when the current transaction commits.
+     * Without an active transaction the entry is dropped immediately.
+     *
+     * @param cardId the card ID
+     */
+    public void evictAfterCommit(Long cardId) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(cardId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                evict(cardId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                evict(cardId);
+            }
+        });
+    }
+
+    /**
+     * Drop every cached summary, for bulk changes that touch many cards.
+     */
+    public void evictAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    private void evict(Long cardId) {
+        cache.asMap().compute(cardId, (id, current) -> {
+            generations.incrementAndGet(stripe(id));
+            return null;
+        });
+    }
+
+    private CardSummary load(Long cardId) {
+        return loader.execute(status -> {
+            CreditCard card = cardService.getCardById(cardId);
+            return new CardSummary(card.getId(), CardSummary.maskCardNumber(card.getCardNumber()),
+                    card.getCreditLimit(), cardService.getAvailableLimit(card), card.getCapturedTotal());
+        });
+    }
+
+    private static int stripe(Long cardId) {
+        return Math.floorMod(Long.hashCode(cardId), GENERATION_STRIPES);
+    }
+}
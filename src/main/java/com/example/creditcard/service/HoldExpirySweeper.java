@@ -0,0 +1,116 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.config.HoldExpiryProperties;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.CardTransactionView;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.ledger.ShardedLedger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Expires authorizations that were not captured within
+ * {@code creditcard.hold-expiry.ttl} and gives their amounts back to the cards.
+ *
+ * Expired holds are read oldest first in chunks. Each card in a chunk is
+ * released in its own short transaction: its holds are marked EXPIRED one by
+ * one, skipping any captured in the meantime, and the card's available limit
+ * is raised by the total in a single update. The card row is locked only by
+ * that last statement, just before commit, so authorizations on the card wait
+ * at most for one card's commit rather than for the whole sweep. Holds are
+ * locked before the card, in the same order a capture locks them, so a sweep
+ * and a capture of the same hold cannot deadlock.
+ *
+ * With the ledger enabled the card's in-memory limit is dropped once the
+ * release has committed, and reloaded from the database on next use. Adding
+ * the released total to it instead would count the release twice if the
+ * shard loaded the card between the commit and that update.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HoldExpirySweeper {
+
+    private final TransactionRepository transactionRepository;
+    private final CardRepository cardRepository;
+    private final CardSummaryService cardSummaryService;
+    private final ShardedLedger ledger;
+    private final TransactionTemplate transactionTemplate;
+    private final HoldExpiryProperties properties;
+
+    /**
+     * Expire every hold older than the TTL.
+     *
+     * @return the number of holds expired
+     */
+    public int sweep() {
+        long startedAt = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getTtl());
+        int expired = 0;
+        while (true) {
+            List<CardTransactionView> holds = transactionRepository.findOlderThan(
+                    TransactionType.AUTHORIZED, cutoff, PageRequest.ofSize(properties.getChunkSize()));
+            if (holds.isEmpty()) {
+                break;
+            }
+
+            Map<Long, List<CardTransactionView>> holdsByCard = holds.stream()
+                    .collect(Collectors.groupingBy(CardTransactionView::getCardId, TreeMap::new, Collectors.toList()));
+            int chunkExpired = 0;
+            for (Map.Entry<Long, List<CardTransactionView>> card : holdsByCard.entrySet()) {
+                chunkExpired += release(card.getKey(), card.getValue());
+            }
+            expired += chunkExpired;
+            if (chunkExpired == 0) {
+                // Everything in the chunk was captured concurrently; pick up the rest next time
+                break;
+            }
+        }
+        if (expired > 0) {
+            log.info("Expired {} authorization holds older than {} in {} ms",
+                expired, cutoff, (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        return expired;
+    }
+
+    private int release(Long cardId, List<CardTransactionView> holds) {
+        List<CardTransactionView> expired = transactionTemplate.execute(status -> {
+            List<CardTransactionView> expiredHolds = new ArrayList<>(holds.size());
+            for (CardTransactionView hold : holds) {
+                if (transactionRepository.expireIfAuthorized(hold.getId()) == 1) {
+                    expiredHolds.add(hold);
+                }
+            }
+            if (!expiredHolds.isEmpty()) {
+                cardRepository.adjustAvailableLimit(cardId, total(expiredHolds).toBigDecimal());
+                cardSummaryService.evictAfterCommit(cardId);
+            }
+            return expiredHolds;
+        });
+
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        if (ledger.isEnabled()) {
+            ledger.invalidate(cardId);
+        }
+        log.debug("Released {} expired holds on cardId: {}", expired.size(), cardId);
+        return expired.size();
+    }
+
+    private static Money total(List<CardTransactionView> holds) {
+        return holds.stream().map(CardTransactionView::getAmount).reduce(Money.ZERO, Money::plus);
+    }
+}
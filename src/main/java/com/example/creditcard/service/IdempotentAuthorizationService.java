@@ -0,0 +1,197 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.config.IdempotencyProperties;
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.IdempotencyRecord;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Authorizations keyed by a client-supplied {@code Idempotency-Key}, so that a
+ * retried request reserves the limit only once.
+ *
+ * The first request with a key registers a future for it in a bounded,
+ * expiring in-memory cache and runs the authorization. A request with the same
+ * key that arrives while the first is running waits on that future instead of
+ * authorizing again; one that arrives later is answered from the completed
+ * future without touching the card. The outcome is also stored in
+ * {@code idempotency_keys} in the authorization's own transaction, so keys
+ * evicted from memory, or first used on another instance, are still honoured.
+ * Stored keys are deleted by {@link #pruneExpired} once older than
+ * {@code creditcard.idempotency.retention}; a retry after that is authorized
+ * again.
+ *
+ * Declined and failed authorizations reserve nothing and are not remembered:
+ * the waiting requests get the same decline or error, and a later retry runs
+ * the authorization again.
+ */
+@Service
+@Slf4j
+public class IdempotentAuthorizationService {
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final TransactionService transactionService;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyProperties properties;
+    private final Cache<String, CompletableFuture<AuthorizationResult>> outcomes;
+
+    public IdempotentAuthorizationService(TransactionService transactionService,
+                                          IdempotencyRecordRepository idempotencyRecordRepository,
+                                          TransactionTemplate transactionTemplate,
+                                          IdempotencyProperties properties,
+                                          MeterRegistry meterRegistry) {
+        this.transactionService = transactionService;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, outcomes, "idempotency");
+    }
+
+    /**
+     * Authorize a transaction at most once per idempotency key.
+     *
+     * @param key the client's idempotency key
+     * @param cardId the credit card ID
+     * @param amount the transaction amount
+     * @return the transaction authorized for this key, possibly by an earlier request,
+     *         or the decline of this request or of one running with the same key
+     * @throws IllegalArgumentException if the key is invalid or was used for a different
+     *         card or amount, or if amount exceeds a velocity limit
+     * @throws NoSuchElementException if card not found
+     */
+    public AuthorizationResult authorize(String key, Long cardId, Money amount) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        CompletableFuture<AuthorizationResult> outcome = new CompletableFuture<>();
+        CompletableFuture<AuthorizationResult> existing = outcomes.asMap().putIfAbsent(key, outcome);
+        if (existing != null) {
+            log.info("Authorization replayed - idempotencyKey: {}, cardId: {}", key, cardId);
+            return checkSameRequest(await(existing), cardId, amount);
+        }
+
+        try {
+            AuthorizationResult result = authorizeOnce(key, cardId, amount);
+            if (result instanceof AuthorizationResult.Declined) {
+                outcomes.asMap().remove(key, outcome);
+            }
+            outcome.complete(result);
+            return checkSameRequest(result, cardId, amount);
+        } catch (RuntimeException e) {
+            outcomes.asMap().remove(key, outcome);
+            outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Delete every stored key older than the retention, oldest first, one chunk
+     * per transaction.
+     *
+     * @return the number of keys deleted
+     */
+    public int pruneExpired() {
+        long startedAt = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getRetention());
+        int deleted = 0;
+        while (true) {
+            Integer chunkDeleted = transactionTemplate.execute(status -> {
+                List<String> keys = idempotencyRecordRepository.findKeysCreatedBefore(
+                        cutoff, PageRequest.ofSize(properties.getChunkSize()));
+                return keys.isEmpty() ? 0 : idempotencyRecordRepository.deleteByKeys(keys);
+            });
+            if (chunkDeleted == null || chunkDeleted == 0) {
+                break;
+            }
+            deleted += chunkDeleted;
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} idempotency keys older than {} in {} ms",
+                deleted, cutoff, (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        return deleted;
+    }
+
+    private AuthorizationResult authorizeOnce(String key, Long cardId, Money amount) {
+        Optional<IdempotencyRecord> stored = idempotencyRecordRepository.findById(key);
+        if (stored.isPresent()) {
+            log.info("Authorization replayed from store - idempotencyKey: {}, cardId: {}", key, cardId);
+            return replay(stored.get());
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                AuthorizationResult result = transactionService.authorize(cardId, amount);
+                if (result instanceof AuthorizationResult.Approved approved) {
+                    CardTransaction transaction = approved.transaction();
+                    idempotencyRecordRepository.save(IdempotencyRecord.builder()
+                            .idempotencyKey(key)
+                            .cardId(cardId)
+                            .amount(amount)
+                            .transactionId(transaction.getId())
+                            .transactionCreatedAt(transaction.getCreatedAt())
+                            .build());
+                }
+                return result;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another instance committed the key first; this authorization was rolled back with it
+            return idempotencyRecordRepository.findById(key).map(this::replay).orElseThrow(() -> e);
+        }
+    }
+
+    private static AuthorizationResult await(CompletableFuture<AuthorizationResult> outcome) {
+        try {
+            return outcome.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static AuthorizationResult checkSameRequest(AuthorizationResult result, Long cardId, Money amount) {
+        CardTransaction transaction = result.transaction();
+        if (!transaction.getCard().getId().equals(cardId) || !transaction.getAmount().equals(amount)) {
+            throw new IllegalArgumentException("Idempotency-Key was already used for a different request");
+        }
+        return result;
+    }
+
+    private AuthorizationResult replay(IdempotencyRecord record) {
+        return new AuthorizationResult.Approved(CardTransaction.builder()
+                .id(record.getTransactionId())
+                .card(CreditCard.builder().id(record.getCardId()).build())
+                .amount(record.getAmount())
+                .type(TransactionType.AUTHORIZED)
+                .createdAt(record.getTransactionCreatedAt())
+                .build());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.config.ArchiveProperties;
+import com.example.creditcard.config.VelocityProperties;
+import com.example.creditcard.domain.CardCaptureRollup;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.ArchivedTransactionRepository;
+import com.example.creditcard.repository.CardCaptureRollupRepository;
+import com.example.creditcard.repository.CardTransactionView;
+import com.example.creditcard.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Moves CAPTURED transactions older than {@code creditcard.archive.retention}
+ * from {@code card_transactions} to {@code card_transaction_archive}, keeping
+ * a per-card, per-month count and sum of them in {@code card_capture_rollups}.
+ *
+ * Transactions are archived oldest first, one chunk per short transaction:
+ * the chunk is copied to the archive, deleted from the live table and added
+ * to its rollups together, so a captured total computed in one statement from
+ * the rollups and the live table is the same before and after. Captured rows
+ * never change again, and card rows are not touched, so authorizations and
+ * captures run alongside without waiting for the archiver.
+ *
+ * Archived transactions no longer appear in the card transaction history or
+ * export, and cannot be captured again.
+ *
+ * DECLINED transactions older than {@code creditcard.archive.declined-retention}
+ * are deleted outright by {@link #pruneDeclined}, in chunks of the same size,
+ * on the prune job's own schedule: they hold no limit, are
+ * not counted by velocity limits or captured totals, and would otherwise
+ * accumulate in the live table.
+ */
+@Service
+@Slf4j
+public class TransactionArchiver {
+
+    private static final Comparator<CardCaptureRollup.Key> ROLLUP_ORDER =
+            Comparator.comparing(CardCaptureRollup.Key::getCardId).thenComparing(CardCaptureRollup.Key::getMonthStart);
+
+    private final TransactionRepository transactionRepository;
+    private final ArchivedTransactionRepository archivedTransactionRepository;
+    private final CardCaptureRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ArchiveProperties properties;
+
+    public TransactionArchiver(TransactionRepository transactionRepository,
+                               ArchivedTransactionRepository archivedTransactionRepository,
+                               CardCaptureRollupRepository rollupRepository,
+                               TransactionTemplate transactionTemplate,
+                               ArchiveProperties properties, VelocityProperties velocityProperties) {
+        this.transactionRepository = transactionRepository;
+        this.archivedTransactionRepository = archivedTransactionRepository;
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+
+        // Velocity counts are rebuilt at startup from the transactions within the longest window
+        if (velocityProperties.isEnabled()) {
+            Duration longestWindow = Stream.concat(velocityProperties.getLimits().stream(),
+                            velocityProperties.getCards().values().stream().flatMap(List::stream))
+                    .map(VelocityProperties.Limit::getWindow)
+                    .max(Comparator.naturalOrder())
+                    .orElse(Duration.ZERO);
+            if (properties.getRetention().compareTo(longestWindow) < 0) {
+                throw new IllegalStateException("Archive retention must not be shorter than the longest velocity window "
+                        + longestWindow);
+            }
+        }
+    }
+
+    /**
+     * Archive every CAPTURED transaction older than the retention.
+     *
+     * @return the number of transactions archived
+     */
+    public int archive() {
+        long startedAt = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getRetention());
+        int archived = 0;
+        while (true) {
+            Integer chunkArchived = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            if (chunkArchived == null || chunkArchived == 0) {
+                break;
+            }
+            archived += chunkArchived;
+        }
+        if (archived > 0) {
+            log.info("Archived {} captured transactions older than {} in {} ms",
+                archived, cutoff, (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        return archived;
+    }
+
+    /**
+     * Delete every DECLINED transaction older than the declined retention.
+     *
+     * @return the number of transactions deleted
+     */
+    public int pruneDeclined() {
+        long startedAt = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getDeclinedRetention());
+        int deleted = 0;
+        while (true) {
+            Integer chunkDeleted = transactionTemplate.execute(status -> pruneDeclinedChunk(cutoff));
+            if (chunkDeleted == null || chunkDeleted == 0) {
+                break;
+            }
+            deleted += chunkDeleted;
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} declined transactions older than {} in {} ms",
+                deleted, cutoff, (System.nanoTime() - startedAt) / 1_000_000);
+        }
+        return deleted;
+    }
+
+    private int pruneDeclinedChunk(LocalDateTime cutoff) {
+        List<Long> ids = transactionRepository.findOlderThan(
+                        TransactionType.DECLINED, cutoff, PageRequest.ofSize(properties.getChunkSize()))
+                .stream()
+                .map(CardTransactionView::getId)
+                .toList();
+        // Declines never change, so no lock is needed; rows deleted by another archiver are just not counted
+        return ids.isEmpty() ? 0 : transactionRepository.deleteDeclined(ids);
+    }
+
+    private int archiveChunk(LocalDateTime cutoff) {
+        List<CardTransactionView> captured = transactionRepository.findOlderThan(
+                TransactionType.CAPTURED, cutoff, PageRequest.ofSize(properties.getChunkSize()));
+        if (captured.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = captured.stream().map(CardTransactionView::getId).toList();
+        int copied = archivedTransactionRepository.copyCaptured(ids, LocalDateTime.now());
+        int deleted = transactionRepository.deleteCaptured(ids);
+        if (copied != ids.size() || deleted != ids.size()) {
+            // Another archiver took some of the chunk; roll back and leave the rest to the next run
+            throw new IllegalStateException("Archived " + copied + " and deleted " + deleted
+                    + " of " + ids.size() + " captured transactions");
+        }
+
+        // Rollups are written in key order so that two chunks cannot deadlock on them
+        Map<CardCaptureRollup.Key, CardCaptureRollup> rollups = new TreeMap<>(ROLLUP_ORDER);
+        for (CardTransactionView transaction : captured) {
+            LocalDate monthStart = transaction.getCreatedAt().toLocalDate().withDayOfMonth(1);
+            rollups.merge(new CardCaptureRollup.Key(transaction.getCardId(), monthStart),
+                    new CardCaptureRollup(transaction.getCardId(), monthStart, 1L, transaction.getAmount()),
+                    (current, added) -> new CardCaptureRollup(current.getCardId(), current.getMonthStart(),
+                            current.getCaptureCount() + 1, current.getCapturedAmount().plus(added.getCapturedAmount())));
+        }
+        for (CardCaptureRollup rollup : rollups.values()) {
+            long count = rollup.getCaptureCount();
+            Money amount = rollup.getCapturedAmount();
+            if (rollupRepository.add(rollup.getCardId(), rollup.getMonthStart(), count, amount.toBigDecimal()) == 0) {
+                rollupRepository.insert(rollup.getCardId(), rollup.getMonthStart(), count, amount.toBigDecimal());
+            }
+        }
+        return ids.size();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.creditcard.service;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a card's transaction history: the creation time and id of the
+ * last transaction returned. Clients receive it as an opaque string.
+ */
+@Value
+public class TransactionCursor {
+    LocalDateTime createdAt;
+    Long id;
+
+    /**
+     * @return the cursor as an opaque, URL-safe string
+     */
+    public String encode() {
+        String position = createdAt + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor previously returned by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor
+     * @return the cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('_');
+            return new TransactionCursor(LocalDateTime.parse(position.substring(0, separator)),
+                    Long.valueOf(position.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.CardTransactionView;
+import com.example.creditcard.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads a card's transaction history, newest first.
+ *
+ * Pages are found by seeking to the position after the previous page on the
+ * (card_id, created_at, id) index, so reading page n costs the same as reading
+ * the first one. Exports read through a forward-only cursor and hand each row
+ * to the caller as it arrives.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+@Slf4j
+public class TransactionHistoryService {
+
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final TransactionRepository transactionRepository;
+    private final CardRepository cardRepository;
+
+    /**
+     * Get one page of a card's transactions.
+     *
+     * @param cardId the card ID
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of transactions to return
+     * @return the page and the cursor of the next one
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is out of range
+     * @throws NoSuchElementException if card not found
+     */
+    public TransactionPage getTransactions(Long cardId, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        TransactionCursor position = cursor != null ? TransactionCursor.decode(cursor) : null;
+        checkCardExists(cardId);
+
+        // One extra row tells whether there is a next page
+        PageRequest page = PageRequest.ofSize(limit + 1);
+        List<CardTransactionView> transactions = position == null
+                ? transactionRepository.findHistory(cardId, page)
+                : transactionRepository.findHistoryBefore(cardId, position.getCreatedAt(), position.getId(), page);
+
+        if (transactions.size() <= limit) {
+            return new TransactionPage(transactions, null);
+        }
+        List<CardTransactionView> content = new ArrayList<>(transactions.subList(0, limit));
+        CardTransactionView last = content.get(limit - 1);
+        return new TransactionPage(content, new TransactionCursor(last.getCreatedAt(), last.getId()).encode());
+    }
+
+    /**
+     * Pass every transaction of a card to a consumer, without holding more than
+     * one fetch of rows in memory. The read-only transaction, and its
+     * connection, stay open until the consumer has seen the last row.
+     *
+     * @param cardId the card ID
+     * @param consumer receives the transactions, newest first
+     * @return the number of transactions exported
+     */
+    public long exportTransactions(Long cardId, Consumer<CardTransactionView> consumer) {
+        long count = 0;
+        try (Stream<CardTransactionView> transactions = transactionRepository.streamHistory(cardId)) {
+            for (CardTransactionView transaction : (Iterable<CardTransactionView>) transactions::iterator) {
+                consumer.accept(transaction);
+                count++;
+            }
+        }
+        log.info("Transactions exported - cardId: {}, count: {}", cardId, count);
+        return count;
+    }
+
+    /**
+     * @param cardId the card ID
+     * @throws NoSuchElementException if card not found
+     */
+    public void checkCardExists(Long cardId) {
+        if (!cardRepository.existsById(cardId)) {
+            throw new NoSuchElementException("Card not found with id: " + cardId);
+        }
+    }
+}
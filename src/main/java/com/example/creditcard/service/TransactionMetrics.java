@@ -0,0 +1,304 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardCreditLimitView;
+import com.example.creditcard.repository.CardRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Timers and counters for the authorization and capture hot paths.
+ *
+ * Each phase of an authorization or capture has its own timer, published with
+ * a percentile histogram so that tail latencies can be aggregated across
+ * instances:
+ * <ul>
+ *   <li>{@code creditcard.authorization.reservation} - the limit check and
+ *       reservation, tagged with the reservation strategy. For the pessimistic
+ *       strategy this is dominated by the wait for the card's row lock.</li>
+ *   <li>{@code creditcard.authorization.commit} - the flush of the transaction
+ *       insert and card update, and the commit that releases the row lock.</li>
+ *   <li>{@code creditcard.capture.lookup}, {@code creditcard.capture.card-update}
+ *       and {@code creditcard.capture.commit} - the same split for captures.</li>
+ *   <li>{@code creditcard.capture.batch} - the application of a batch of
+ *       asynchronous captures, from the wait for the ledger's journal to the
+ *       commit.</li>
+ * </ul>
+ *
+ * {@code creditcard.authorizations} counts approvals and declines for
+ * insufficient limit, tagged with the tier of the card's credit limit. Tiers
+ * are cached per card, so the lookup costs one query per card per
+ * {@link #TIER_TTL}. A card that is not found is not cached, so one created
+ * meanwhile is tagged with its tier on its first authorization. Callers look the tier up before they lock the card, so
+ * that query never runs under a row lock, and it runs outside the caller's
+ * transaction, which therefore holds no connection for it. It uses the write
+ * pool, like the authorization itself. An approval is
+ * counted once its transaction commits; a rolled back one is not counted.
+ */
+@Component
+public class TransactionMetrics {
+
+    static final Duration TIER_TTL = Duration.ofMinutes(10);
+
+    private static final long TIER_CACHE_SIZE = 100_000;
+
+    private final MeterRegistry meterRegistry;
+    private final LoadingCache<Long, CardTier> tiers;
+    private final Map<String, Timer> reservationTimers = new ConcurrentHashMap<>();
+    private final Timer authorizationCommitTimer;
+    private final Timer captureLookupTimer;
+    private final Timer captureCardUpdateTimer;
+    private final Timer captureCommitTimer;
+    private final Timer captureBatchTimer;
+    private final Map<CardTier, Counter> approvedCounters = new EnumMap<>(CardTier.class);
+    private final Map<CardTier, Counter> declinedCounters = new EnumMap<>(CardTier.class);
+
+    public TransactionMetrics(MeterRegistry meterRegistry, CardRepository cardRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.meterRegistry = meterRegistry;
+        // A ledger authorization would otherwise keep the connection while it waits for its shard.
+        // Not read-only: authorizations must not depend on the read pool
+        TransactionTemplate lookup = new TransactionTemplate(transactionManager);
+        lookup.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        this.tiers = Caffeine.newBuilder()
+                .maximumSize(TIER_CACHE_SIZE)
+                .expireAfterWrite(TIER_TTL)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public CardTier load(Long cardId) {
+                        // Null for a missing card, which Caffeine does not cache
+                        return lookup.execute(status -> cardRepository.findCreditLimitById(cardId)
+                                .map(CardTier::of)
+                                .orElse(null));
+                    }
+
+                    @Override
+                    public Map<Long, CardTier> loadAll(Set<? extends Long> cardIds) {
+                        Map<Long, CardTier> loaded = new HashMap<>();
+                        lookup.executeWithoutResult(status -> {
+                            for (CardCreditLimitView card : cardRepository.findCreditLimitsByIdIn(Set.copyOf(cardIds))) {
+                                loaded.put(card.getId(), CardTier.of(card.getCreditLimit()));
+                            }
+                        });
+                        return loaded;
+                    }
+                });
+        this.authorizationCommitTimer = timer("creditcard.authorization.commit",
+                "Flush and commit of an authorization");
+        this.captureLookupTimer = timer("creditcard.capture.lookup",
+                "Load of the transaction being captured");
+        this.captureCardUpdateTimer = timer("creditcard.capture.card-update",
+                "Update of the card's captured total");
+        this.captureCommitTimer = timer("creditcard.capture.commit",
+                "Flush and commit of a capture");
+        this.captureBatchTimer = timer("creditcard.capture.batch",
+                "Application of a batch of asynchronous captures");
+        for (CardTier tier : CardTier.values()) {
+            approvedCounters.put(tier, outcomeCounter("approved", tier));
+            declinedCounters.put(tier, outcomeCounter("declined", tier));
+        }
+    }
+
+    /**
+     * Time the reservation of limit for an authorization.
+     *
+     * @param strategy the name of the strategy making the reservation
+     * @param reservation the reservation
+     * @return the reservation's result
+     */
+    public <T> T timeReservation(String strategy, Supplier<T> reservation) {
+        return reservationTimers.computeIfAbsent(strategy, name -> Timer.builder("creditcard.authorization.reservation")
+                        .description("Limit check and reservation of an authorization")
+                        .tag("strategy", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(reservation);
+    }
+
+    /**
+     * Time the commit of the current authorization transaction.
+     */
+    public void timeAuthorizationCommit() {
+        timeCommit(authorizationCommitTimer);
+    }
+
+    /**
+     * Time the load of the transaction being captured.
+     *
+     * @param lookup the lookup
+     * @return the lookup's result
+     */
+    public <T> T timeCaptureLookup(Supplier<T> lookup) {
+        return captureLookupTimer.record(lookup);
+    }
+
+    /**
+     * Time the update of the card's captured total.
+     *
+     * @param update the update
+     */
+    public void timeCaptureCardUpdate(Runnable update) {
+        captureCardUpdateTimer.record(update);
+    }
+
+    /**
+     * Time the commit of the current capture transaction.
+     */
+    public void timeCaptureCommit() {
+        timeCommit(captureCommitTimer);
+    }
+
+    /**
+     * Time the application of a batch of asynchronous captures.
+     *
+     * @param batch the application of the batch
+     * @return the batch's result
+     */
+    public <T> T timeCaptureBatch(Supplier<T> batch) {
+        return captureBatchTimer.record(batch);
+    }
+
+    /**
+     * Look up the tier of a card, querying its credit limit on a cache miss.
+     *
+     * @param cardId the card ID
+     * @return the card's tier, {@link CardTier#UNKNOWN} if the card does not exist
+     */
+    public CardTier tier(Long cardId) {
+        CardTier tier = tiers.get(cardId);
+        return tier != null ? tier : CardTier.UNKNOWN;
+    }
+
+    /**
+     * Look up the tiers of several cards, with one query for all cache misses.
+     *
+     * @param cardIds the card IDs
+     * @return the tier of every card, {@link CardTier#UNKNOWN} for those that do not exist
+     */
+    public Map<Long, CardTier> tiers(Collection<Long> cardIds) {
+        Map<Long, CardTier> found = tiers.getAll(cardIds);
+        if (found.size() == cardIds.size()) {
+            return found;
+        }
+        Map<Long, CardTier> all = new HashMap<>(found);
+        cardIds.forEach(cardId -> all.putIfAbsent(cardId, CardTier.UNKNOWN));
+        return all;
+    }
+
+    /**
+     * Count an approved authorization once the current transaction commits,
+     * or at once outside a transaction.
+     *
+     * @param tier the card's tier
+     */
+    public void recordApproved(CardTier tier) {
+        Counter counter = approvedCounters.get(tier);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counter.increment();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                counter.increment();
+            }
+        });
+    }
+
+    /**
+     * Count an authorization declined for insufficient limit or a velocity
+     * limit. Declines are counted at once: a velocity decline saves nothing
+     * and its transaction is rolled back.
+     *
+     * @param tier the card's tier
+     */
+    public void recordDeclined(CardTier tier) {
+        declinedCounters.get(tier).increment();
+    }
+
+    /**
+     * The timer is started just before the commit and stopped once it has
+     * succeeded, so it covers the flush of pending writes and the commit
+     * itself. Rolled back transactions are not recorded.
+     */
+    private void timeCommit(Timer timer) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private Timer.Sample sample;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                sample = Timer.start(meterRegistry);
+            }
+
+            @Override
+            public void afterCommit() {
+                if (sample != null) {
+                    sample.stop(timer);
+                }
+            }
+        });
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Counter outcomeCounter(String outcome, CardTier tier) {
+        return Counter.builder("creditcard.authorizations")
+                .description("Authorizations approved or declined for insufficient limit")
+                .tag("outcome", outcome)
+                .tag("tier", tier.tag)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Card tiers by credit limit. Kept coarse so that the counters stay few.
+     */
+    public enum CardTier {
+        STANDARD("standard"),
+        GOLD("gold"),
+        PLATINUM("platinum"),
+        UNKNOWN("unknown");
+
+        private static final Money GOLD_MINIMUM = Money.parse("5000");
+        private static final Money PLATINUM_MINIMUM = Money.parse("25000");
+
+        private final String tag;
+
+        CardTier(String tag) {
+            this.tag = tag;
+        }
+
+        static CardTier of(Money creditLimit) {
+            if (!creditLimit.isLessThan(PLATINUM_MINIMUM)) {
+                return PLATINUM;
+            }
+            return !creditLimit.isLessThan(GOLD_MINIMUM) ? GOLD : STANDARD;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.repository.CardTransactionView;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of a card's transaction history, newest first.
+ */
+@Value
+public class TransactionPage {
+    List<CardTransactionView> transactions;
+    /** Cursor of the next page, or null if this is the last page */
+    String nextCursor;
+}
@@ -1,16 +1,40 @@
 package com.example.creditcard.service;
 
+import com.example.creditcard.domain.CardLimitStripe;
 import com.example.creditcard.domain.CardTransaction;
 import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
 import com.example.creditcard.domain.TransactionType;
 import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.TransactionMetrics.CardTier;
+import com.example.creditcard.service.escrow.EscrowService;
+import com.example.creditcard.service.ledger.ShardedLedger;
+import com.example.creditcard.service.reservation.LimitReservationStrategy;
+import com.example.creditcard.service.velocity.VelocityLimiter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -18,39 +42,130 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class TransactionService {
 
+    private static final long DECLINE_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final TransactionRepository transactionRepository;
     private final CardService cardService;
+    private final ShardedLedger ledger;
+    private final LimitReservationStrategy reservationStrategy;
+    private final CardSummaryService cardSummaryService;
+    private final TransactionMetrics metrics;
+    private final EscrowService escrowService;
+    private final VelocityLimiter velocityLimiter;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicLong nextDeclineLogAt = new AtomicLong(System.nanoTime());
+    private final LongAdder unloggedDeclines = new LongAdder();
 
     /**
-     * Authorize a transaction with pessimistic locking.
+     * Authorize a transaction.
+     * 
+     * The amount is reserved from the card's available limit by the configured
+     * {@link LimitReservationStrategy}. The default strategy uses a pessimistic
+     * write lock to prevent race conditions where multiple concurrent requests
+     * could exceed the credit limit.
+     * 
+     * When the in-memory ledger is enabled the limit check and reservation are
+     * made by the card's ledger shard instead, and no row lock is taken.
+     * Otherwise cards in escrow mode reserve from one of their stripes through
+     * {@link EscrowService}, whatever the configured strategy.
+     * 
+     * An amount over the available limit is declined: a DECLINED transaction is
+     * saved in the same transaction instead of an AUTHORIZED one, and returned
+     * as a result rather than thrown. Declines are logged at most once per
+     * second, with a count of those not logged in between.
      * 
-     * Uses pessimistic write lock to prevent race conditions where multiple
-     * concurrent requests could exceed the credit limit. Only one authorization
-     * can proceed at a time for the same card.
+     * Before any of this the card's velocity limits are checked in memory by
+     * {@link VelocityLimiter}, so an authorization over them never waits for a
+     * row lock. It is given back if the authorization is declined or fails
+     * afterwards, or if the transaction rolls back after approving it.
+     * 
+     * The reservation and the commit are timed separately, and the outcome is
+     * counted, by {@link TransactionMetrics}.
      *
      * @param cardId the credit card ID
      * @param amount the transaction amount
-     * @return the authorized transaction
-     * @throws IllegalArgumentException if amount exceeds available limit
+     * @return the AUTHORIZED transaction, or the DECLINED one and the reason
+     * @throws IllegalArgumentException if amount is not positive or exceeds a velocity limit
      * @throws NoSuchElementException if card not found
      */
-    public CardTransaction authorizeTransaction(Long cardId, BigDecimal amount) {
-        // Load card with pessimistic lock to prevent concurrent authorization race condition
-        CreditCard card = cardService.getCardByIdForUpdate(cardId);
+    public AuthorizationResult authorize(Long cardId, Money amount) {
+        requirePositive(amount);
+        // Looked up before the card is locked: on a cache miss this is a query
+        CardTier tier = metrics.tier(cardId);
+        VelocityHold hold = holdVelocity(cardId, amount, acquireVelocity(cardId, amount, tier));
+        try {
+            AuthorizationResult result = authorizeWithinVelocity(cardId, amount, tier);
+            if (result instanceof AuthorizationResult.Declined) {
+                hold.release();
+            }
+            return result;
+        } catch (RuntimeException e) {
+            hold.release();
+            throw e;
+        }
+    }
+
+    /**
+     * A zero or negative amount would leave the available limit unchanged or
+     * raise it, so it is rejected before anything is reserved.
+     */
+    private static void requirePositive(Money amount) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("amount must be at least 0.01");
+        }
+    }
+
+    private long acquireVelocity(Long cardId, Money amount, CardTier tier) {
+        try {
+            return velocityLimiter.acquire(cardId, amount);
+        } catch (IllegalArgumentException e) {
+            metrics.recordDeclined(tier);
+            throw e;
+        }
+    }
+
+    /**
+     * Registers the acquired velocity to be given back if the transaction rolls
+     * back, so an approval whose commit fails does not keep counting against the
+     * card. Ledger authorizations are written by their shard whatever happens to
+     * the transaction, so theirs is only given back on decline or failure.
+     */
+    private VelocityHold holdVelocity(Long cardId, Money amount, long acquiredAt) {
+        VelocityHold hold = new VelocityHold(cardId, amount, acquiredAt);
+        if (acquiredAt != VelocityLimiter.NOT_ACQUIRED && !ledger.isEnabled()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(hold);
+        }
+        return hold;
+    }
 
-        if (card.getAvailableLimit().compareTo(amount) < 0) {
-            log.warn("Authorization failed for cardId: {} - Insufficient available limit", cardId);
-            throw new IllegalArgumentException("Insufficient available limit");
+    private AuthorizationResult authorizeWithinVelocity(Long cardId, Money amount, CardTier tier) {
+        if (ledger.isEnabled()) {
+            CardTransaction transaction = metrics.timeReservation("ledger", () -> ledger.authorizeAndWait(cardId, amount));
+            if (transaction.getType() == TransactionType.DECLINED) {
+                return declined(transaction, tier);
+            }
+            metrics.recordApproved(tier);
+            return new AuthorizationResult.Approved(transaction);
         }
 
-        // Reserve the amount (reduce available limit)
-        card.setAvailableLimit(card.getAvailableLimit().subtract(amount));
-        cardService.saveCard(card);
-        log.debug("Reserved amount {} for cardId: {}, new available limit: {}", 
-            amount, cardId, card.getAvailableLimit());
+        Optional<CreditCard> card = escrowService.isEscrowed(cardId)
+                ? metrics.timeReservation("escrow", () -> escrowService.reserve(cardId, amount))
+                : metrics.timeReservation(reservationStrategy.name(), () -> reservationStrategy.reserve(cardId, amount));
+        if (card.isEmpty()) {
+            return declined(transactionRepository.save(CardTransaction.builder()
+                    .card(cardService.getCardReference(cardId))
+                    .amount(amount)
+                    .type(TransactionType.DECLINED)
+                    .build()), tier);
+        }
+        metrics.recordApproved(tier);
+        metrics.timeAuthorizationCommit();
+        cardSummaryService.evictAfterCommit(cardId);
 
         CardTransaction transaction = CardTransaction.builder()
-                .card(card)
+                .card(card.get())
                 .amount(amount)
                 .type(TransactionType.AUTHORIZED)
                 .build();
@@ -59,22 +174,221 @@ public class TransactionService {
         log.info("Transaction authorized - transactionId: {}, cardId: {}, amount: {}", 
             savedTransaction.getId(), cardId, amount);
         
-        return savedTransaction;
+        return new AuthorizationResult.Approved(savedTransaction);
+    }
+
+    private AuthorizationResult.Declined declined(CardTransaction transaction, CardTier tier) {
+        metrics.recordDeclined(tier);
+        logDeclined(transaction);
+        return new AuthorizationResult.Declined(transaction, AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT);
+    }
+
+    private void logDeclined(CardTransaction transaction) {
+        long now = System.nanoTime();
+        long next = nextDeclineLogAt.get();
+        if (now - next < 0 || !nextDeclineLogAt.compareAndSet(next, now + DECLINE_LOG_INTERVAL_NANOS)) {
+            unloggedDeclines.increment();
+            return;
+        }
+        log.warn("Authorization declined - transactionId: {}, cardId: {}, amount: {} - Insufficient available limit "
+                + "({} more declined since the last one logged)",
+            transaction.getId(), transaction.getCard().getId(), transaction.getAmount(), unloggedDeclines.sumThenReset());
+    }
+
+    /**
+     * Authorize a batch of transactions in a single database transaction.
+     * 
+     * Every card in the batch is locked once, in id order, and the authorizations
+     * are then applied in request order against the locked cards. A declined or
+     * failed authorization does not affect the others: a decline is saved as a
+     * DECLINED transaction, as in {@link #authorize}, and a failure's result
+     * carries the exception a single authorization would have thrown. The
+     * inserts and card updates are sent to the database as JDBC batches. Escrow
+     * stripes of the locked cards are collected back onto the card rows first.
+     * 
+     * The batch always takes pessimistic row locks, whatever
+     * {@code creditcard.reservation.strategy} selects: locking each card once
+     * for all of its entries is what makes the batch cheaper than single
+     * authorizations, and an optimistic or conditional update per entry would
+     * give that up.
+     * 
+     * When the in-memory ledger is enabled each authorization goes to its card's
+     * ledger shard instead, and the shards group-commit them.
+     * 
+     * Amounts and velocity limits are checked for every command first, in request
+     * order; commands that are not positive or are over them fail without reaching the database or the ledger. As
+     * for a single authorization, an approval's velocity is given back if the
+     * transaction rolls back.
+     *
+     * @param commands the authorizations, in request order
+     * @return one result per command, in the same order
+     */
+    public List<BatchAuthorizationResult> authorizeBatch(List<AuthorizationCommand> commands) {
+        // Looked up before the cards are locked, with one query for all cache misses
+        Map<Long, CardTier> tiers = metrics.tiers(commands.stream()
+                .map(AuthorizationCommand::getCardId)
+                .collect(Collectors.toSet()));
+        BatchAuthorizationResult[] results = new BatchAuthorizationResult[commands.size()];
+        VelocityHold[] holds = new VelocityHold[commands.size()];
+        List<AuthorizationCommand> accepted = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            AuthorizationCommand command = commands.get(i);
+            try {
+                requirePositive(command.getAmount());
+                holds[i] = holdVelocity(command.getCardId(), command.getAmount(),
+                        velocityLimiter.acquire(command.getCardId(), command.getAmount()));
+                accepted.add(command);
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchAuthorizationResult.failed(command.getCardId(), command.getAmount(), e);
+            }
+        }
+
+        List<BatchAuthorizationResult> reserved;
+        try {
+            reserved = accepted.isEmpty() ? List.of()
+                    : ledger.isEnabled() ? authorizeBatchInLedger(accepted) : authorizeBatchInDatabase(accepted);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < commands.size(); i++) {
+                if (results[i] == null) {
+                    holds[i].release();
+                }
+            }
+            throw e;
+        }
+        for (int i = 0, next = 0; i < commands.size(); i++) {
+            if (results[i] == null) {
+                results[i] = reserved.get(next++);
+                if (!results[i].isApproved()) {
+                    holds[i].release();
+                }
+            }
+        }
+
+        for (BatchAuthorizationResult result : results) {
+            CardTier tier = tiers.get(result.getCardId());
+            if (result.isApproved()) {
+                metrics.recordApproved(tier);
+            } else if (result.isDeclined()) {
+                metrics.recordDeclined(tier);
+                logDeclined(result.getTransaction());
+            } else if (result.getError() instanceof IllegalArgumentException) {
+                metrics.recordDeclined(tier);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private List<BatchAuthorizationResult> authorizeBatchInDatabase(List<AuthorizationCommand> commands) {
+        TreeSet<Long> cardIds = commands.stream()
+                .map(AuthorizationCommand::getCardId)
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        // Escrow stripes are locked before their cards, in the order a single escrow authorization takes them
+        Map<Long, List<CardLimitStripe>> stripes = escrowService.lockStripes(cardIds);
+        Map<Long, CreditCard> cards = cardService.getCardsByIdForUpdate(cardIds)
+                .stream()
+                .collect(Collectors.toMap(CreditCard::getId, Function.identity()));
+        stripes.forEach((cardId, cardStripes) -> {
+            if (cards.containsKey(cardId)) {
+                escrowService.collect(cards.get(cardId), cardStripes);
+            }
+        });
+
+        List<BatchAuthorizationResult> results = new ArrayList<>(commands.size());
+        List<CardTransaction> transactions = new ArrayList<>(commands.size());
+        for (AuthorizationCommand command : commands) {
+            CreditCard card = cards.get(command.getCardId());
+            if (card == null) {
+                results.add(BatchAuthorizationResult.failed(command.getCardId(), command.getAmount(),
+                        new NoSuchElementException("Card not found with id: " + command.getCardId())));
+                continue;
+            }
+            if (card.getAvailableLimit().isLessThan(command.getAmount())) {
+                CardTransaction transaction = CardTransaction.builder()
+                        .card(card)
+                        .amount(command.getAmount())
+                        .type(TransactionType.DECLINED)
+                        .build();
+                transactions.add(transaction);
+                results.add(BatchAuthorizationResult.declined(transaction,
+                        AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT));
+                continue;
+            }
+
+            // Managed entity: the new limit is flushed with the inserts at commit
+            card.setAvailableLimit(card.getAvailableLimit().minus(command.getAmount()));
+            CardTransaction transaction = CardTransaction.builder()
+                    .card(card)
+                    .amount(command.getAmount())
+                    .type(TransactionType.AUTHORIZED)
+                    .build();
+            transactions.add(transaction);
+            results.add(BatchAuthorizationResult.approved(transaction));
+        }
+        transactions.stream()
+                .filter(transaction -> transaction.getType() == TransactionType.AUTHORIZED)
+                .map(transaction -> transaction.getCard().getId())
+                .distinct()
+                .forEach(cardSummaryService::evictAfterCommit);
+
+        transactionRepository.saveAll(transactions);
+        metrics.timeAuthorizationCommit();
+        log.info("Batch authorized - requests: {}, approved: {}, cards: {}",
+            commands.size(), results.stream().filter(BatchAuthorizationResult::isApproved).count(), cards.size());
+
+        return results;
+    }
+
+    private List<BatchAuthorizationResult> authorizeBatchInLedger(List<AuthorizationCommand> commands) {
+        List<CompletableFuture<CardTransaction>> futures = commands.stream()
+                .map(command -> ledger.authorize(command.getCardId(), command.getAmount()))
+                .toList();
+
+        List<BatchAuthorizationResult> results = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            AuthorizationCommand command = commands.get(i);
+            try {
+                CardTransaction transaction = futures.get(i).join();
+                results.add(transaction.getType() == TransactionType.DECLINED
+                        ? BatchAuthorizationResult.declined(transaction, AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT)
+                        : BatchAuthorizationResult.approved(transaction));
+            } catch (CompletionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException runtimeException
+                        ? runtimeException : e;
+                results.add(BatchAuthorizationResult.failed(command.getCardId(), command.getAmount(), cause));
+            }
+        }
+        return results;
     }
 
     /**
      * Capture a previously authorized transaction.
      * 
      * This finalizes the transaction. The available limit was already reduced
-     * during authorization, so this operation only updates the transaction status.
+     * during authorization, so this operation only updates the transaction status
+     * and adds the amount to the card's captured total in the same transaction.
+     * 
+     * The transaction row is locked first, so a concurrent capture or hold
+     * expiry of the same transaction sees it only after this one commits.
+     * When the ledger journals authorizations, a recent authorization may not be
+     * in the database yet. The capture then waits for its shard's flusher to
+     * write it before the database transaction starts, so the wait holds no
+     * connection the flushers need.
      *
      * @param transactionId the transaction ID to capture
      * @return the captured transaction
      * @throws IllegalArgumentException if transaction is not in AUTHORIZED state
      * @throws NoSuchElementException if transaction not found
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public CardTransaction captureTransaction(Long transactionId) {
-        CardTransaction transaction = transactionRepository.findById(transactionId)
+        ledger.awaitFlushed(transactionId);
+        return transactionTemplate.execute(status -> capture(transactionId));
+    }
+
+    private CardTransaction capture(Long transactionId) {
+        CardTransaction transaction = metrics.timeCaptureLookup(
+                        () -> transactionRepository.findByIdForUpdate(transactionId))
                 .orElseThrow(() -> new NoSuchElementException("Transaction not found with id: " + transactionId));
 
         if (transaction.getType() != TransactionType.AUTHORIZED) {
@@ -84,6 +398,10 @@ public class TransactionService {
 
         transaction.setType(TransactionType.CAPTURED);
         CardTransaction savedTransaction = transactionRepository.save(transaction);
+        metrics.timeCaptureCardUpdate(
+                () -> cardService.addCapturedAmount(transaction.getCard().getId(), transaction.getAmount()));
+        metrics.timeCaptureCommit();
+        cardSummaryService.evictAfterCommit(transaction.getCard().getId());
         log.info("Transaction captured - transactionId: {}, cardId: {}, amount: {}", 
             transactionId, transaction.getCard().getId(), transaction.getAmount());
         
@@ -91,13 +409,46 @@ public class TransactionService {
     }
 
     /**
-     * Get total captured amount for a card.
+     * Get total captured amount for a card, computed from its transactions.
+     * 
+     * The card summary reads the incrementally maintained
+     * {@link CreditCard#getCapturedTotal()} instead; this aggregate is the
+     * reference it is reconciled against. Archived captures are counted
+     * through their monthly rollups.
      * 
      * @param cardId the credit card ID
      * @return the sum of all captured transaction amounts
      */
-    public BigDecimal getTotalCapturedAmount(Long cardId) {
-        BigDecimal total = transactionRepository.sumByCardIdAndType(cardId, TransactionType.CAPTURED);
-        return total != null ? total : BigDecimal.ZERO;
+    @Transactional(readOnly = true)
+    public Money getTotalCapturedAmount(Long cardId) {
+        BigDecimal total = transactionRepository.sumCaptured(cardId);
+        return total != null ? Money.of(total) : Money.ZERO;
+    }
+
+    /**
+     * Velocity acquired for one authorization, given back at most once: when the
+     * authorization is declined or fails, or when its transaction rolls back.
+     */
+    @RequiredArgsConstructor
+    private final class VelocityHold implements TransactionSynchronization {
+
+        private final Long cardId;
+        private final Money amount;
+        private final long acquiredAt;
+        private boolean released;
+
+        void release() {
+            if (!released) {
+                released = true;
+                velocityLimiter.release(cardId, amount, acquiredAt);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_ROLLED_BACK) {
+                release();
+            }
+        }
     }
 }
@@ -0,0 +1,271 @@
+package com.example.creditcard.service.capture;
+
+import com.example.creditcard.config.CaptureQueueProperties;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardTransactionView;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.CardService;
+import com.example.creditcard.service.CardSummaryService;
+import com.example.creditcard.service.TransactionMetrics;
+import com.example.creditcard.service.TransactionService;
+import com.example.creditcard.service.ledger.ShardedLedger;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Captures accepted with {@code ?mode=async} and applied in the background,
+ * for merchants that send their captures in end-of-day waves and do not need
+ * each one confirmed.
+ *
+ * Accepted captures wait in a bounded ring buffer. When it is full a capture
+ * is refused rather than queued, and the caller gets 503 and may retry. A
+ * single consumer thread drains up to {@code creditcard.capture-queue.batch-size}
+ * captures at a time and applies them in one database transaction: those
+ * transactions that are still AUTHORIZED are locked in id order and marked
+ * CAPTURED by one set-based update, then each card's captured total is raised
+ * by the sum of its captures. Transactions are locked before their cards, as a
+ * synchronous capture and the hold expiry sweeper lock them. A batch that
+ * fails, for instance on a lock timeout, is applied again one capture at a
+ * time through {@link TransactionService#captureTransaction}.
+ *
+ * Each batch is timed by {@link TransactionMetrics}.
+ *
+ * The outcome of each capture can be looked up for
+ * {@code creditcard.capture-queue.status-ttl}; after that a captured
+ * transaction is still reported from the database.
+ */
+@Service
+@Slf4j
+public class AsyncCaptureService implements SmartLifecycle {
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionService transactionService;
+    private final CardService cardService;
+    private final CardSummaryService cardSummaryService;
+    private final ShardedLedger ledger;
+    private final TransactionTemplate transactionTemplate;
+    private final CaptureQueueProperties properties;
+    private final TransactionMetrics metrics;
+    private final BlockingQueue<Long> queue;
+    private final Cache<Long, CaptureStatus> statuses;
+
+    private volatile boolean running;
+    private Thread consumer;
+
+    public AsyncCaptureService(TransactionRepository transactionRepository,
+                               TransactionService transactionService,
+                               CardService cardService,
+                               CardSummaryService cardSummaryService,
+                               ShardedLedger ledger,
+                               TransactionTemplate transactionTemplate,
+                               CaptureQueueProperties properties,
+                               TransactionMetrics metrics,
+                               MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.transactionService = transactionService;
+        this.cardService = cardService;
+        this.cardSummaryService = cardSummaryService;
+        this.ledger = ledger;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(properties.getStatusMaximumSize())
+                .expireAfterWrite(properties.getStatusTtl())
+                .build();
+        Gauge.builder("creditcard.capture.queue", queue, Collection::size)
+                .description("Asynchronous captures waiting to be applied")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Accept a capture to be applied in the background. A capture of a
+     * transaction that is already waiting is not queued again.
+     *
+     * @param transactionId the transaction ID to capture
+     * @return the capture's status, PENDING until it has been applied
+     * @throws RejectedExecutionException if the queue is full or not running
+     */
+    public CaptureStatus submit(Long transactionId) {
+        if (!running) {
+            throw new RejectedExecutionException("Asynchronous capture is not running, please retry");
+        }
+        CaptureStatus previous = statuses.getIfPresent(transactionId);
+        if (previous != null && previous.getState() == CaptureStatus.State.PENDING) {
+            return previous;
+        }
+
+        CaptureStatus pending = CaptureStatus.pending(transactionId);
+        statuses.put(transactionId, pending);
+        if (!queue.offer(transactionId)) {
+            statuses.invalidate(transactionId);
+            log.warn("Capture refused for transactionId: {} - queue is full", transactionId);
+            throw new RejectedExecutionException("Capture queue is full, please retry");
+        }
+        log.debug("Capture queued - transactionId: {}", transactionId);
+        return pending;
+    }
+
+    /**
+     * @param transactionId the transaction ID
+     * @return the status of the transaction's asynchronous capture
+     * @throws NoSuchElementException if no capture of the transaction is known and it is not captured
+     */
+    public CaptureStatus getStatus(Long transactionId) {
+        CaptureStatus status = statuses.getIfPresent(transactionId);
+        if (status != null) {
+            return status;
+        }
+        return transactionRepository.findTypeById(transactionId)
+                .filter(type -> type == TransactionType.CAPTURED)
+                .map(type -> CaptureStatus.captured(transactionId))
+                .orElseThrow(() -> new NoSuchElementException(
+                        "No asynchronous capture found for transaction: " + transactionId));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        consumer = new Thread(this::consume, "capture-consumer");
+        consumer.start();
+    }
+
+    /**
+     * Apply the captures still queued, then wait for the consumer to exit.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (consumer != null) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start after the ledger and stop before it: a batch may wait for the ledger's journal to be flushed.
+     */
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+
+    private void consume() {
+        List<Long> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                Long first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                capture(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Capture consumer failed on a batch of {} captures", batch.size(), e);
+                batch.forEach(transactionId -> statuses.put(transactionId, CaptureStatus.failed(transactionId)));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void capture(List<Long> transactionIds) {
+        List<CardTransactionView> captured;
+        try {
+            captured = metrics.timeCaptureBatch(() -> {
+                // Recent authorizations may still be on their way from the journal to the database
+                transactionIds.forEach(ledger::awaitFlushed);
+                return transactionTemplate.execute(status -> captureBatch(transactionIds));
+            });
+        } catch (RuntimeException e) {
+            log.warn("Capture batch of {} failed, capturing one at a time", transactionIds.size(), e);
+            transactionIds.forEach(this::captureOne);
+            return;
+        }
+
+        Set<Long> rejected = new HashSet<>(transactionIds);
+        for (CardTransactionView transaction : captured) {
+            statuses.put(transaction.getId(), CaptureStatus.captured(transaction.getId()));
+            rejected.remove(transaction.getId());
+        }
+        if (!rejected.isEmpty()) {
+            Set<Long> existing = new HashSet<>(transactionRepository.findExistingIds(rejected));
+            for (Long transactionId : rejected) {
+                statuses.put(transactionId, CaptureStatus.rejected(transactionId, existing.contains(transactionId)
+                        ? "Only AUTHORIZED transactions can be captured"
+                        : "Transaction not found with id: " + transactionId));
+            }
+        }
+        log.info("Capture batch applied - queued: {}, captured: {}, rejected: {}",
+            transactionIds.size(), captured.size(), rejected.size());
+    }
+
+    private List<CardTransactionView> captureBatch(List<Long> transactionIds) {
+        List<CardTransactionView> authorized = transactionRepository.findByIdsAndTypeForUpdate(
+                transactionIds, TransactionType.AUTHORIZED);
+        if (authorized.isEmpty()) {
+            return authorized;
+        }
+
+        int updated = transactionRepository.captureIfAuthorized(
+                authorized.stream().map(CardTransactionView::getId).toList());
+        if (updated != authorized.size()) {
+            throw new IllegalStateException("Captured " + updated + " of " + authorized.size() + " locked transactions");
+        }
+
+        Map<Long, Money> totals = authorized.stream().collect(Collectors.groupingBy(
+                CardTransactionView::getCardId, TreeMap::new,
+                Collectors.reducing(Money.ZERO, CardTransactionView::getAmount, Money::plus)));
+        totals.forEach((cardId, total) -> {
+            cardService.addCapturedAmount(cardId, total);
+            cardSummaryService.evictAfterCommit(cardId);
+        });
+        return authorized;
+    }
+
+    private void captureOne(Long transactionId) {
+        try {
+            transactionService.captureTransaction(transactionId);
+            statuses.put(transactionId, CaptureStatus.captured(transactionId));
+        } catch (NoSuchElementException | IllegalArgumentException e) {
+            statuses.put(transactionId, CaptureStatus.rejected(transactionId, e.getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Capture failed for transactionId: {}", transactionId, e);
+            statuses.put(transactionId, CaptureStatus.failed(transactionId));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.creditcard.service.capture;
+
+import lombok.Value;
+
+/**
+ * Where an asynchronous capture stands.
+ */
+@Value
+public class CaptureStatus {
+
+    public enum State {
+        /** Accepted and waiting to be applied */
+        PENDING,
+        CAPTURED,
+        /** Not captured: the transaction does not exist or is not AUTHORIZED */
+        REJECTED,
+        /** Not captured because of an unexpected error; the capture may be retried */
+        FAILED
+    }
+
+    Long transactionId;
+    State state;
+    String message;
+
+    static CaptureStatus pending(Long transactionId) {
+        return new CaptureStatus(transactionId, State.PENDING, null);
+    }
+
+    static CaptureStatus captured(Long transactionId) {
+        return new CaptureStatus(transactionId, State.CAPTURED, null);
+    }
+
+    static CaptureStatus rejected(Long transactionId, String message) {
+        return new CaptureStatus(transactionId, State.REJECTED, message);
+    }
+
+    static CaptureStatus failed(Long transactionId) {
+        return new CaptureStatus(transactionId, State.FAILED, "An unexpected error occurred");
+    }
+}
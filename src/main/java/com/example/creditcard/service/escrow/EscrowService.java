@@ -0,0 +1,269 @@
+package com.example.creditcard.service.escrow;
+
+import com.example.creditcard.config.EscrowProperties;
+import com.example.creditcard.config.LedgerProperties;
+import com.example.creditcard.domain.CardLimitStripe;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardLimitStripeRepository;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.service.CardSummaryService;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Escrow mode for hot cards: the available limit is split across stripe rows
+ * in {@code card_limit_stripes} so that concurrent authorizations on one card
+ * do not all queue on the {@code credit_cards} row lock.
+ *
+ * An authorization reserves from the stripe picked by its thread, or from one
+ * of the next few if that one is busy or holds too little. Stripes are probed
+ * with {@code SKIP LOCKED}, so this never waits and never leaves a lock on a
+ * stripe it cannot use. When none of them will do, all of the card's stripes
+ * are locked in stripe order and then the card row, the amount is reserved
+ * from their combined total and what is left is spread evenly over the
+ * stripes again; cents that do not divide evenly stay on the card row.
+ *
+ * Stripes are always locked before the card row. Inserting the authorization
+ * checks its foreign key against the card row and waits while that is locked,
+ * so a request holding a stripe must never wait for one that holds the card
+ * and waits for the stripe. For the same reason the fast path must not use a
+ * conditional update: one that waits for a stripe and then finds it too low
+ * keeps the lock, and the rebalance that follows would take it out of order.
+ * Amounts only ever move between the card row and its stripes, and every
+ * reservation is checked against the row it comes from, so a card can never
+ * reserve more than its available limit in total.
+ *
+ * While a card is in escrow mode, {@code credit_cards.available_limit} holds
+ * only the unallocated part; its available limit is that plus the sum of its
+ * stripes. Anything that reserves from the card row directly should
+ * {@link #lockStripes lock} the stripes before the card and then
+ * {@link #collect} them onto it.
+ */
+@Service
+@Transactional
+@Slf4j
+public class EscrowService {
+
+    /** How many stripes an authorization tries before it rebalances. */
+    static final int MAX_PROBES = 4;
+
+    private final CardRepository cardRepository;
+    private final CardLimitStripeRepository stripeRepository;
+    private final CardSummaryService cardSummaryService;
+    private final LedgerProperties ledgerProperties;
+    private final EscrowProperties properties;
+    private final LoadingCache<Long, Integer> stripeCounts;
+
+    public EscrowService(CardRepository cardRepository,
+                         CardLimitStripeRepository stripeRepository,
+                         CardSummaryService cardSummaryService,
+                         LedgerProperties ledgerProperties,
+                         EscrowProperties properties) {
+        this.cardRepository = cardRepository;
+        this.stripeRepository = stripeRepository;
+        this.cardSummaryService = cardSummaryService;
+        this.ledgerProperties = ledgerProperties;
+        this.properties = properties;
+        this.stripeCounts = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getFlagTtl())
+                .build(cardId -> cardRepository.findEscrowStripesById(cardId).orElse(0));
+    }
+
+    /**
+     * @param cardId the card ID
+     * @return whether the card is in escrow mode, as last read within {@code creditcard.escrow.flag-ttl}
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public boolean isEscrowed(Long cardId) {
+        return stripeCounts.get(cardId) > 0;
+    }
+
+    /**
+     * Reserve an amount from a card in escrow mode. Runs in the caller's
+     * transaction, like a {@link com.example.creditcard.service.reservation.LimitReservationStrategy}.
+     *
+     * @param cardId the card ID
+     * @param amount the amount to reserve
+     * @return the card the authorization belongs to, or empty if amount exceeds
+     *         available limit, in which case nothing is reserved
+     * @throws NoSuchElementException if card not found
+     */
+    public Optional<CreditCard> reserve(Long cardId, Money amount) {
+        int stripes = stripeCounts.get(cardId);
+        int home = (int) Math.floorMod(Thread.currentThread().threadId(), (long) Math.max(stripes, 1));
+        for (int probe = 0; probe < Math.min(stripes, MAX_PROBES); probe++) {
+            int stripe = (home + probe) % stripes;
+            if (stripeRepository.lockIfAvailable(cardId, stripe, amount.toBigDecimal()).isPresent()) {
+                stripeRepository.reserve(cardId, stripe, amount.toBigDecimal());
+                log.debug("Reserved amount {} for cardId: {} from stripe {}", amount, cardId, stripe);
+                return Optional.of(cardRepository.getReferenceById(cardId));
+            }
+        }
+        return rebalanceAndReserve(cardId, amount);
+    }
+
+    /**
+     * Lock the stripes of those cards that are in escrow mode, in card and then
+     * stripe order. Call this before locking the cards themselves.
+     *
+     * @param cardIds the card IDs
+     * @return the locked stripes of each escrowed card
+     */
+    public Map<Long, List<CardLimitStripe>> lockStripes(Collection<Long> cardIds) {
+        Map<Long, List<CardLimitStripe>> stripes = new TreeMap<>();
+        for (Long cardId : new TreeSet<>(cardIds)) {
+            if (isEscrowed(cardId)) {
+                stripes.put(cardId, stripeRepository.findAllByCardIdForUpdate(cardId));
+            }
+        }
+        return stripes;
+    }
+
+    /**
+     * Move everything held in a card's stripes back to the card row. The stripes
+     * are refilled by the next authorization that finds its stripe empty.
+     *
+     * @param card the card, locked by the caller after its stripes
+     * @param stripes the card's stripes, as returned by {@link #lockStripes}
+     */
+    public void collect(CreditCard card, List<CardLimitStripe> stripes) {
+        Money collected = Money.ZERO;
+        for (CardLimitStripe stripe : stripes) {
+            collected = collected.plus(stripe.getAvailableLimit());
+            stripe.setAvailableLimit(Money.ZERO);
+        }
+        card.setAvailableLimit(card.getAvailableLimit().plus(collected));
+    }
+
+    /**
+     * @param cardId the card ID
+     * @return the part of the card's available limit held in its stripes
+     */
+    @Transactional(readOnly = true)
+    public Money stripedLimit(Long cardId) {
+        return Money.of(stripeRepository.sumAvailableLimit(cardId));
+    }
+
+    /**
+     * Split a card's available limit across a number of stripes, or change the
+     * number of stripes of a card already in escrow mode.
+     *
+     * @param cardId the card ID
+     * @param stripes the number of stripes
+     * @throws IllegalArgumentException if the stripe count is out of range or the ledger is enabled
+     * @throws NoSuchElementException if card not found
+     */
+    public void enable(Long cardId, int stripes) {
+        if (stripes < 1 || stripes > properties.getMaxStripes()) {
+            throw new IllegalArgumentException("Stripes must be between 1 and " + properties.getMaxStripes());
+        }
+        if (ledgerProperties.isEnabled()) {
+            throw new IllegalArgumentException("Escrow mode is not available while the ledger is enabled");
+        }
+
+        List<CardLimitStripe> existing = stripeRepository.findAllByCardIdForUpdate(cardId);
+        CreditCard card = lockCard(cardId);
+        collect(card, existing);
+
+        // Keep the rows of stripes that remain, add or remove the others
+        List<CardLimitStripe> kept = new ArrayList<>(stripes);
+        List<CardLimitStripe> added = new ArrayList<>();
+        for (int i = 0; i < stripes; i++) {
+            if (i < existing.size()) {
+                kept.add(existing.get(i));
+            } else {
+                CardLimitStripe stripe = CardLimitStripe.builder().cardId(cardId).stripe(i).build();
+                kept.add(stripe);
+                added.add(stripe);
+            }
+        }
+        stripeRepository.deleteAll(existing.subList(Math.min(stripes, existing.size()), existing.size()));
+        card.setAvailableLimit(spread(card.getAvailableLimit(), kept));
+        stripeRepository.saveAll(added);
+        card.setEscrowStripes(stripes);
+        changedAfterCommit(cardId);
+        log.info("Escrow enabled - cardId: {}, stripes: {}", cardId, stripes);
+    }
+
+    /**
+     * Move a card's stripes back to the card row and leave escrow mode.
+     *
+     * @param cardId the card ID
+     * @throws NoSuchElementException if card not found
+     */
+    public void disable(Long cardId) {
+        List<CardLimitStripe> stripes = stripeRepository.findAllByCardIdForUpdate(cardId);
+        CreditCard card = lockCard(cardId);
+        collect(card, stripes);
+        stripeRepository.deleteAll(stripes);
+        card.setEscrowStripes(0);
+        changedAfterCommit(cardId);
+        log.info("Escrow disabled - cardId: {}", cardId);
+    }
+
+    private Optional<CreditCard> rebalanceAndReserve(Long cardId, Money amount) {
+        List<CardLimitStripe> stripes = stripeRepository.findAllByCardIdForUpdate(cardId);
+        CreditCard card = lockCard(cardId);
+        Money total = stripes.stream()
+                .map(CardLimitStripe::getAvailableLimit)
+                .reduce(card.getAvailableLimit(), Money::plus);
+
+        if (total.isLessThan(amount)) {
+            log.debug("Insufficient available limit for cardId: {}", cardId);
+            return Optional.empty();
+        }
+
+        // Managed entities: the new balances are flushed at commit
+        card.setAvailableLimit(spread(total.minus(amount), stripes));
+        log.debug("Rebalanced {} stripes of cardId: {} to reserve amount {}", stripes.size(), cardId, amount);
+        return Optional.of(card);
+    }
+
+    /**
+     * Divide an amount evenly over stripes, in whole cents.
+     *
+     * @return the remainder that did not divide evenly
+     */
+    private static Money spread(Money amount, List<CardLimitStripe> stripes) {
+        if (stripes.isEmpty()) {
+            return amount;
+        }
+        Money share = amount.divide(stripes.size());
+        for (CardLimitStripe stripe : stripes) {
+            stripe.setAvailableLimit(share);
+        }
+        return amount.minus(share.times(stripes.size()));
+    }
+
+    private CreditCard lockCard(Long cardId) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new NoSuchElementException("Card not found with id: " + cardId));
+    }
+
+    private void changedAfterCommit(Long cardId) {
+        cardSummaryService.evictAfterCommit(cardId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                stripeCounts.invalidate(cardId);
+            }
+        });
+    }
+}
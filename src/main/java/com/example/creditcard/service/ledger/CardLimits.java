@@ -0,0 +1,93 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.Money;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The available limits of the cards a ledger shard has loaded, in minor units.
+ *
+ * Each card's limit is a mutable counter that reservations and releases change
+ * in place, so checking and reserving an amount allocates nothing. Not
+ * thread-safe: a shard only uses it from its writer thread.
+ */
+public class CardLimits {
+
+    private final Map<Long, Limit> limits = new HashMap<>();
+
+    /**
+     * Set the available limit of a card, replacing any loaded before.
+     *
+     * @param cardId the card ID
+     * @param availableLimit the available limit
+     */
+    public void load(Long cardId, Money availableLimit) {
+        limits.put(cardId, new Limit(availableLimit.getMinorUnits()));
+    }
+
+    /**
+     * @param cardId the card ID
+     * @return whether the card's limit is loaded
+     */
+    public boolean isLoaded(Long cardId) {
+        return limits.containsKey(cardId);
+    }
+
+    /**
+     * Reserve an amount if the card's available limit covers it.
+     *
+     * @param cardId the card ID, which must be loaded
+     * @param amount the amount to reserve
+     * @return true if the amount was reserved, false if the limit is insufficient
+     */
+    public boolean tryReserve(Long cardId, Money amount) {
+        Limit limit = limits.get(cardId);
+        if (limit.minorUnits < amount.getMinorUnits()) {
+            return false;
+        }
+        limit.minorUnits -= amount.getMinorUnits();
+        return true;
+    }
+
+    /**
+     * Give an amount back to a card, if its limit is loaded.
+     *
+     * @param cardId the card ID
+     * @param amount the amount released
+     */
+    public void release(Long cardId, Money amount) {
+        Limit limit = limits.get(cardId);
+        if (limit != null) {
+            limit.minorUnits = Math.addExact(limit.minorUnits, amount.getMinorUnits());
+        }
+    }
+
+    /**
+     * Forget a card's limit, so that it is loaded again on next use.
+     *
+     * @param cardId the card ID
+     */
+    public void remove(Long cardId) {
+        limits.remove(cardId);
+    }
+
+    /**
+     * @param cardId the card ID
+     * @return the card's available limit, or empty if it is not loaded
+     */
+    public Optional<Money> get(Long cardId) {
+        Limit limit = limits.get(cardId);
+        return limit != null ? Optional.of(Money.ofMinor(limit.minorUnits)) : Optional.empty();
+    }
+
+    private static final class Limit {
+
+        long minorUnits;
+
+        Limit(long minorUnits) {
+            this.minorUnits = minorUnits;
+        }
+    }
+}
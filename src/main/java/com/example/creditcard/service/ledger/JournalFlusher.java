@@ -0,0 +1,216 @@
+package com.example.creditcard.service.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the authorizations a shard has journaled to the database in the
+ * background, then moves the shard's journal checkpoint past them.
+ *
+ * Batches synced by the shard are queued in order and combined into database
+ * transactions of up to {@code flushBatchSize} records. A failed write is
+ * retried until it succeeds; the records stay in the journal meanwhile and are
+ * replayed on restart if the flusher is stopped first. The queue is bounded,
+ * so a shard that gets too far ahead of the database blocks until the flusher
+ * catches up.
+ *
+ * The shard's transaction ids increase in journal order, so the highest id
+ * written so far is a watermark: every record of the shard up to it is in the
+ * database. Callers waiting for one transaction wait for the watermark to pass
+ * it, without queueing anything.
+ */
+@Slf4j
+class JournalFlusher implements Runnable {
+
+    private final int index;
+    private final LedgerJournal journal;
+    private final LedgerWriter writer;
+    private final int batchSize;
+    private final Duration retryInterval;
+    private final BlockingQueue<JournaledBatch> batches;
+
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> waiting = new ConcurrentSkipListMap<>();
+
+    private volatile boolean running;
+    private volatile long flushedThrough;
+    private volatile RuntimeException abandoned;
+    private Thread thread;
+
+    JournalFlusher(int index, LedgerJournal journal, LedgerWriter writer,
+                   int queueCapacity, int batchSize, Duration retryInterval) {
+        this.index = index;
+        this.journal = journal;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.retryInterval = retryInterval;
+        this.batches = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "ledger-flusher-" + index);
+        thread.start();
+    }
+
+    /**
+     * Write out the queued batches, leaving any that fail in the journal, and wait for the thread to exit.
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Queue journaled records for the database, blocking while the queue is full.
+     *
+     * @param records the records, in journal order
+     * @param end the journal position just after the last record
+     */
+    void submit(List<JournalRecord> records, JournalPosition end) throws InterruptedException {
+        batches.put(new JournaledBatch(records, end, null));
+    }
+
+    /**
+     * @return a future completed once every batch queued before it is in the database
+     */
+    CompletableFuture<Void> barrier() throws InterruptedException {
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        batches.put(new JournaledBatch(List.of(), null, flushed));
+        return flushed;
+    }
+
+    /**
+     * @return the highest transaction id written to the database so far
+     */
+    long flushedThrough() {
+        return flushedThrough;
+    }
+
+    /**
+     * @param transactionId the id of a record queued to this flusher
+     * @return a future completed once the record is in the database
+     */
+    CompletableFuture<Void> awaitFlushed(long transactionId) {
+        if (flushedThrough >= transactionId) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> flushed = waiting.computeIfAbsent(transactionId, id -> new CompletableFuture<>());
+        // The watermark may have passed the id, or the flusher given up, before the future was added
+        RuntimeException failure = abandoned;
+        if (failure != null) {
+            flushed.completeExceptionally(failure);
+        } else if (flushedThrough >= transactionId) {
+            flushed.complete(null);
+        }
+        if (flushed.isDone()) {
+            waiting.remove(transactionId, flushed);
+        }
+        return flushed;
+    }
+
+    @Override
+    public void run() {
+        List<JournaledBatch> taken = new ArrayList<>();
+        while (running || !batches.isEmpty()) {
+            try {
+                JournaledBatch first = batches.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                taken.add(first);
+                int records = first.records().size();
+                while (records < batchSize && batches.peek() != null) {
+                    JournaledBatch next = batches.poll();
+                    taken.add(next);
+                    records += next.records().size();
+                }
+                flush(taken);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                taken.clear();
+            }
+        }
+    }
+
+    private void flush(List<JournaledBatch> taken) throws InterruptedException {
+        List<JournalRecord> records = new ArrayList<>();
+        JournalPosition end = null;
+        for (JournaledBatch batch : taken) {
+            records.addAll(batch.records());
+            if (batch.end() != null) {
+                end = batch.end();
+            }
+        }
+
+        // Once a write has been given up, later ones must not move the checkpoint past it
+        RuntimeException failure = abandoned;
+        if (failure == null && end != null) {
+            failure = write(records, end);
+            if (failure == null) {
+                advance(records.get(records.size() - 1).getTransactionId());
+            } else {
+                abandon(failure);
+            }
+        }
+        for (JournaledBatch batch : taken) {
+            if (batch.flushed() != null) {
+                if (failure == null) {
+                    batch.flushed().complete(null);
+                } else {
+                    batch.flushed().completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private void advance(long transactionId) {
+        flushedThrough = transactionId;
+        Map<Long, CompletableFuture<Void>> flushed = waiting.headMap(transactionId, true);
+        flushed.values().forEach(future -> future.complete(null));
+        flushed.clear();
+    }
+
+    private void abandon(RuntimeException failure) {
+        abandoned = failure;
+        waiting.values().forEach(future -> future.completeExceptionally(failure));
+        waiting.clear();
+    }
+
+    private RuntimeException write(List<JournalRecord> records, JournalPosition end) throws InterruptedException {
+        while (true) {
+            try {
+                writer.writeJournaled(records);
+                journal.checkpoint(end);
+                log.debug("Ledger flusher {} wrote {} journaled authorizations", index, records.size());
+                return null;
+            } catch (RuntimeException | IOException e) {
+                if (!running) {
+                    log.error("Ledger flusher {} stopped with {} authorizations unwritten; they will be replayed "
+                            + "from the journal on restart", index, records.size(), e);
+                    return new IllegalStateException("Journaled authorizations were not written to the database", e);
+                }
+                // Writes skip transactions already in the table, so retrying after a partial failure is safe
+                log.error("Ledger flusher {} failed to write {} journaled authorizations, retrying in {}",
+                        index, records.size(), retryInterval, e);
+                Thread.sleep(retryInterval.toMillis());
+            }
+        }
+    }
+
+    private record JournaledBatch(List<JournalRecord> records, JournalPosition end, CompletableFuture<Void> flushed) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.creditcard.service.ledger;
+
+import lombok.Value;
+
+/**
+ * A position in a ledger journal: a segment number and a byte offset within it.
+ */
+@Value
+class JournalPosition implements Comparable<JournalPosition> {
+
+    static final JournalPosition START = new JournalPosition(0, 0);
+
+    long segment;
+    int offset;
+
+    @Override
+    public int compareTo(JournalPosition other) {
+        int bySegment = Long.compare(segment, other.segment);
+        return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+    }
+}
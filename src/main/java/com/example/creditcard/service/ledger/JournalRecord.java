@@ -0,0 +1,22 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transaction as written to a ledger shard's journal, before it reaches
+ * {@code card_transactions}. The id is allocated from the transaction sequence
+ * up front, so the row written later has the id the caller was given.
+ */
+@Value
+public class JournalRecord {
+
+    Long transactionId;
+    Long cardId;
+    Money amount;
+    TransactionType type;
+    LocalDateTime createdAt;
+}
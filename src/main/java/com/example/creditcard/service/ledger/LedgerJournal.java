@@ -0,0 +1,246 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal of one ledger shard, kept in fixed-size memory-mapped
+ * segment files numbered in the order they were started.
+ *
+ * Every record has the same size: type, transaction id, card id, amount in
+ * cents, creation time in microseconds and a CRC32C of the rest. A zero type
+ * byte marks the end of the written part of a segment, and a record whose
+ * checksum does not match was torn by a crash and ends the segment too.
+ *
+ * The shard thread appends and syncs. The flusher thread moves the checkpoint,
+ * the position before which every record is in the database, and deletes the
+ * segments that lie entirely before it.
+ */
+@Slf4j
+class LedgerJournal implements Closeable {
+
+    static final int RECORD_SIZE = 1 + Long.BYTES * 4 + Integer.BYTES;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private long segmentNumber;
+    private MappedByteBuffer segment;
+    private int syncedOffset;
+
+    /**
+     * Open the journal in a directory, creating it if needed. Appends go to a
+     * new segment after any that already exist.
+     *
+     * @param directory the shard's journal directory
+     * @param segmentSize the size of each segment file in bytes, rounded down to whole records
+     */
+    LedgerJournal(Path directory, long segmentSize) throws IOException {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("Journal segment size must be at least " + RECORD_SIZE + " bytes");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segmentSize = (int) (Math.min(segmentSize, Integer.MAX_VALUE) / RECORD_SIZE * RECORD_SIZE);
+        this.segmentNumber = Math.max(readCheckpoint().getSegment(),
+                segmentNumbers().stream().mapToLong(Long::longValue).max().orElse(0));
+    }
+
+    /**
+     * Read every record after the checkpoint, in the order they were appended.
+     *
+     * @return the records not yet confirmed as written to the database
+     */
+    List<JournalRecord> recover() throws IOException {
+        JournalPosition checkpoint = readCheckpoint();
+        List<JournalRecord> records = new ArrayList<>();
+        for (long number : segmentNumbers()) {
+            if (number < checkpoint.getSegment()) {
+                continue;
+            }
+            int from = number == checkpoint.getSegment() ? checkpoint.getOffset() : 0;
+            readSegment(number, from, records);
+        }
+        return records;
+    }
+
+    /**
+     * Move the checkpoint past everything read by {@link #recover}.
+     */
+    void markRecovered() throws IOException {
+        checkpoint(new JournalPosition(segmentNumber + 1, 0));
+    }
+
+    /**
+     * Write records to the current segment, starting a new one whenever it is full.
+     * They are not durable until {@link #sync} returns.
+     *
+     * @param records the records to append
+     * @return the position just after the last record
+     */
+    JournalPosition append(List<JournalRecord> records) throws IOException {
+        for (JournalRecord record : records) {
+            if (segment == null || segment.remaining() < RECORD_SIZE) {
+                roll();
+            }
+            write(segment, record);
+        }
+        return new JournalPosition(segmentNumber, segment.position());
+    }
+
+    /**
+     * Force everything appended since the last sync to disk, with one call for the whole batch.
+     */
+    void sync() {
+        if (segment != null && segment.position() > syncedOffset) {
+            segment.force(syncedOffset, segment.position() - syncedOffset);
+            syncedOffset = segment.position();
+        }
+    }
+
+    /**
+     * Record that every record before a position is in the database and delete
+     * the segments that are no longer needed.
+     *
+     * @param position the position after the last record written to the database
+     */
+    void checkpoint(JournalPosition position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES)
+                .putLong(position.getSegment())
+                .putInt(position.getOffset())
+                .flip();
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long number : segmentNumbers()) {
+            if (number < position.getSegment()) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        sync();
+        segment = null;
+    }
+
+    private void roll() throws IOException {
+        // The previous segment must be durable before records go to the next one
+        sync();
+        segmentNumber++;
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentNumber), CREATE_NEW, READ, WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        syncedOffset = 0;
+        log.debug("Started journal segment {} in {}", segmentNumber, directory);
+    }
+
+    private void readSegment(long number, int from, List<JournalRecord> records) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(number), READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position(Math.min(from, buffer.limit()));
+            while (buffer.remaining() >= RECORD_SIZE) {
+                JournalRecord record = read(buffer);
+                if (record == null) {
+                    break;
+                }
+                records.add(record);
+            }
+        }
+    }
+
+    private JournalPosition readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return JournalPosition.START;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        return new JournalPosition(buffer.getLong(), buffer.getInt());
+    }
+
+    private List<Long> segmentNumbers() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+    }
+
+    private static void write(ByteBuffer buffer, JournalRecord record) {
+        int start = buffer.position();
+        LocalDateTime createdAt = record.getCreatedAt();
+        buffer.put((byte) (record.getType().ordinal() + 1))
+                .putLong(record.getTransactionId())
+                .putLong(record.getCardId())
+                .putLong(record.getAmount().getMinorUnits())
+                .putLong(createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + createdAt.getNano() / 1_000)
+                .putInt(checksum(buffer, start));
+    }
+
+    private static JournalRecord read(ByteBuffer buffer) {
+        int start = buffer.position();
+        int type = buffer.get(start);
+        if (type == 0) {
+            return null;
+        }
+        if (type < 0 || type > TYPES.length
+                || buffer.getInt(start + RECORD_SIZE - Integer.BYTES) != checksum(buffer, start)) {
+            log.warn("Ignoring torn journal record at offset {}", start);
+            return null;
+        }
+
+        buffer.position(start + 1);
+        long transactionId = buffer.getLong();
+        long cardId = buffer.getLong();
+        long cents = buffer.getLong();
+        long micros = buffer.getLong();
+        buffer.getInt();
+        return new JournalRecord(transactionId, cardId, Money.ofMinor(cents), TYPES[type - 1],
+                LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                        Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC));
+    }
+
+    private static int checksum(ByteBuffer buffer, int start) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start, RECORD_SIZE - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One shard of the ledger.
+ *
+ * All state of a shard is confined to its single writer thread: callers only
+ * enqueue commands. The writer applies a run of queued commands against the
+ * in-memory limits, then writes every reservation and decline made in that
+ * run to the database in one transaction before completing the callers' futures.
+ *
+ * With a journal, the run is appended to the shard's journal and synced with
+ * one call instead, and the futures complete as soon as that returns. The
+ * journaled records are then handed to the shard's flusher for the database.
+ * The shard keeps the transaction id blocks it has journaled from until they
+ * are flushed, so a caller can tell whether a transaction is one of its own
+ * still on its way to the database.
+ */
+@Slf4j
+class LedgerShard implements Runnable {
+
+    private final int index;
+    private final CardRepository cardRepository;
+    private final LedgerWriter writer;
+    private final int maxBatchSize;
+    private final BlockingQueue<Runnable> commands;
+    private final LedgerJournal journal;
+    private final JournalFlusher flusher;
+
+    private final CardLimits availableLimits = new CardLimits();
+    private final List<PendingAuthorization> pending = new ArrayList<>();
+
+    private final ConcurrentSkipListSet<Long> unflushedIdBlocks = new ConcurrentSkipListSet<>();
+
+    private long nextTransactionId;
+    private long transactionIdLimit;
+    private volatile long journaledThrough;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param journal the shard's journal, or null to write every batch to the database directly
+     * @param flusher the flusher for the journal, or null without one
+     */
+    LedgerShard(int index, CardRepository cardRepository, LedgerWriter writer, int queueCapacity, int maxBatchSize,
+                LedgerJournal journal, JournalFlusher flusher) {
+        this.index = index;
+        this.cardRepository = cardRepository;
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.commands = new ArrayBlockingQueue<>(queueCapacity);
+        this.journal = journal;
+        this.flusher = flusher;
+    }
+
+    /**
+     * Seed the available limit of a card. Only called before the shard is started.
+     */
+    void load(Long cardId, Money availableLimit) {
+        availableLimits.load(cardId, availableLimit);
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "ledger-shard-" + index);
+        thread.start();
+    }
+
+    /**
+     * Stop accepting work, finish the queued commands and wait for the writer thread to exit.
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    void submit(Runnable command) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Ledger shard " + index + " is not running");
+        }
+        commands.put(command);
+    }
+
+    @Override
+    public void run() {
+        List<Runnable> batch = new ArrayList<>(maxBatchSize);
+        while (running || !commands.isEmpty()) {
+            try {
+                Runnable first = commands.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                commands.drainTo(batch, maxBatchSize - 1);
+                for (Runnable command : batch) {
+                    command.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+                flush();
+            }
+        }
+    }
+
+    void reserve(Long cardId, Money amount, CompletableFuture<CardTransaction> result) {
+        try {
+            if (!availableLimits.isLoaded(cardId)) {
+                Optional<BigDecimal> loaded = cardRepository.findAvailableLimitById(cardId);
+                if (loaded.isEmpty()) {
+                    result.completeExceptionally(new NoSuchElementException("Card not found with id: " + cardId));
+                    return;
+                }
+                availableLimits.load(cardId, Money.of(loaded.get()));
+            }
+
+            // A decline is written with the batch like an authorization, without reserving anything
+            TransactionType type = availableLimits.tryReserve(cardId, amount)
+                    ? TransactionType.AUTHORIZED : TransactionType.DECLINED;
+            pending.add(new PendingAuthorization(cardId, amount, type, result));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    void release(Long cardId, Money amount) {
+        availableLimits.release(cardId, amount);
+    }
+
+    void invalidate(Long cardId) {
+        // Write out reservations first, so the next load from the database includes them
+        flush();
+        if (flusher != null) {
+            try {
+                flusher.barrier().join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ledger shard {} kept cardId: {} as its journal could not be flushed", index, cardId, e);
+                return;
+            }
+        }
+        availableLimits.remove(cardId);
+    }
+
+    Optional<Money> availableLimit(Long cardId) {
+        return availableLimits.get(cardId);
+    }
+
+    /**
+     * Called from any thread.
+     *
+     * @param transactionId a transaction id
+     * @return a future completed once the transaction is in the database, or null if it
+     *         is not one this shard has journaled and not yet flushed
+     */
+    CompletableFuture<Void> awaitFlushed(long transactionId) {
+        if (flusher == null || transactionId > journaledThrough) {
+            return null;
+        }
+        Long block = unflushedIdBlocks.floor(transactionId);
+        if (block == null || transactionId >= block + LedgerWriter.TRANSACTION_ID_BLOCK_SIZE) {
+            return null;
+        }
+        return flusher.awaitFlushed(transactionId);
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            flushToJournal();
+            return;
+        }
+        try {
+            List<CardTransaction> saved = writer.write(pending);
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).getResult().complete(saved.get(i));
+            }
+            log.debug("Ledger shard {} wrote {} authorizations", index, pending.size());
+        } catch (RuntimeException e) {
+            log.error("Ledger shard {} failed to write {} authorizations", index, pending.size(), e);
+            for (PendingAuthorization failed : pending) {
+                // The database is the source of truth again for these cards: reload on next use
+                availableLimits.remove(failed.getCardId());
+                failed.getResult().completeExceptionally(e);
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    private void flushToJournal() {
+        List<JournalRecord> records = new ArrayList<>(pending.size());
+        JournalPosition end;
+        try {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            for (PendingAuthorization authorization : pending) {
+                records.add(new JournalRecord(nextTransactionId(), authorization.getCardId(),
+                        authorization.getAmount(), authorization.getType(), now));
+            }
+            end = journal.append(records);
+            journal.sync();
+        } catch (IOException | RuntimeException e) {
+            // Part of the batch may still have reached the journal; replay then turns it
+            // into holds that expire, never into authorizations the caller was told succeeded
+            log.error("Ledger shard {} failed to journal {} authorizations", index, pending.size(), e);
+            for (PendingAuthorization failed : pending) {
+                if (failed.getType() == TransactionType.AUTHORIZED) {
+                    availableLimits.release(failed.getCardId(), failed.getAmount());
+                }
+                failed.getResult().completeExceptionally(e);
+            }
+            pending.clear();
+            return;
+        }
+
+        try {
+            // Queue the records before confirming them, so that a barrier a caller takes
+            // once confirmed (ShardedLedger#awaitFlushed) is queued after them
+            flusher.submit(records, end);
+            // Moved only once queued: callers wait for ids up to here to be written
+            journaledThrough = records.get(records.size() - 1).getTransactionId();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Ledger shard {} interrupted; {} journaled authorizations will be replayed on restart",
+                    index, records.size());
+        }
+        // A block the flusher has written in full is no longer needed to tell this shard's ids apart
+        unflushedIdBlocks.headSet(flusher.flushedThrough() - LedgerWriter.TRANSACTION_ID_BLOCK_SIZE + 1, true).clear();
+
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).getResult().complete(toTransaction(records.get(i)));
+        }
+        log.debug("Ledger shard {} journaled {} authorizations", index, pending.size());
+        pending.clear();
+    }
+
+    private long nextTransactionId() {
+        if (nextTransactionId == transactionIdLimit) {
+            nextTransactionId = writer.allocateTransactionIds();
+            transactionIdLimit = nextTransactionId + LedgerWriter.TRANSACTION_ID_BLOCK_SIZE;
+            unflushedIdBlocks.add(nextTransactionId);
+        }
+        return nextTransactionId++;
+    }
+
+    private static CardTransaction toTransaction(JournalRecord record) {
+        return CardTransaction.builder()
+                .id(record.getTransactionId())
+                .card(CreditCard.builder().id(record.getCardId()).build())
+                .amount(record.getAmount())
+                .type(record.getType())
+                .createdAt(record.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.CardSummaryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes reserved authorizations from a ledger shard to the database.
+ *
+ * A whole batch is written in one transaction: one insert per authorization and
+ * one {@code available_limit} update per card. The update applies a delta instead
+ * of an absolute value, so no row lock is taken before the write.
+ *
+ * With journal durability the shard writes its batches to the journal instead,
+ * and its flusher passes them here later, already carrying their ids.
+ */
+@Component
+@RequiredArgsConstructor
+public class LedgerWriter {
+
+    /**
+     * Ids handed out per {@link #allocateTransactionIds} call; the increment of {@code card_transactions_seq}.
+     */
+    public static final int TRANSACTION_ID_BLOCK_SIZE = 50;
+
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO card_transactions (id, card_id, amount, type, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final CardSummaryService cardSummaryService;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Persist a batch of reserved and declined authorizations.
+     *
+     * @param batch the authorizations, in the order they were reserved or declined
+     * @return the saved transactions, in the same order as the batch
+     */
+    @Transactional
+    public List<CardTransaction> write(List<PendingAuthorization> batch) {
+        List<CardTransaction> transactions = new ArrayList<>(batch.size());
+        Map<Long, Money> reservedPerCard = new LinkedHashMap<>();
+
+        for (PendingAuthorization pending : batch) {
+            CardTransaction transaction = CardTransaction.builder()
+                    .card(cardRepository.getReferenceById(pending.getCardId()))
+                    .amount(pending.getAmount())
+                    .type(pending.getType())
+                    .build();
+            transactions.add(transaction);
+            if (pending.getType() == TransactionType.AUTHORIZED) {
+                reservedPerCard.merge(pending.getCardId(), pending.getAmount(), Money::plus);
+            }
+        }
+
+        List<CardTransaction> saved = transactionRepository.saveAll(transactions);
+        reservedPerCard.forEach((cardId, reserved) -> {
+            cardRepository.adjustAvailableLimit(cardId, reserved.negate().toBigDecimal());
+            cardSummaryService.evictAfterCommit(cardId);
+        });
+        return saved;
+    }
+
+    /**
+     * Persist journaled transactions under the ids they were given. Transactions
+     * already in the table were written by an earlier attempt and are skipped
+     * along with their limit change, so a batch can be written again safely.
+     *
+     * @param records the journaled transactions, in journal order
+     * @return the number of transactions written
+     */
+    @Transactional
+    public int writeJournaled(List<JournalRecord> records) {
+        Set<Long> existing = new HashSet<>(transactionRepository.findExistingIds(
+                records.stream().map(JournalRecord::getTransactionId).toList()));
+        List<JournalRecord> missing = records.stream()
+                .filter(record -> !existing.contains(record.getTransactionId()))
+                .toList();
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Money> reservedPerCard = new LinkedHashMap<>();
+        List<Object[]> rows = new ArrayList<>(missing.size());
+        for (JournalRecord record : missing) {
+            rows.add(new Object[]{record.getTransactionId(), record.getCardId(), record.getAmount().toBigDecimal(),
+                    record.getType().name(), Timestamp.valueOf(record.getCreatedAt())});
+            if (record.getType() == TransactionType.AUTHORIZED) {
+                reservedPerCard.merge(record.getCardId(), record.getAmount(), Money::plus);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION, rows);
+        reservedPerCard.forEach((cardId, reserved) -> {
+            cardRepository.adjustAvailableLimit(cardId, reserved.negate().toBigDecimal());
+            cardSummaryService.evictAfterCommit(cardId);
+        });
+        return missing.size();
+    }
+
+    /**
+     * Take a block of {@link #TRANSACTION_ID_BLOCK_SIZE} transaction ids for journaled authorizations.
+     *
+     * @return the first id of the block
+     */
+    @Transactional
+    public long allocateTransactionIds() {
+        return transactionRepository.nextIdBlock();
+    }
+}
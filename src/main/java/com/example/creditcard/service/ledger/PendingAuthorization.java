@@ -0,0 +1,23 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An authorization that has been reserved in memory by a shard, or declined by
+ * it, and is waiting to be written to the database as AUTHORIZED or DECLINED.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PendingAuthorization {
+
+    private final Long cardId;
+    private final Money amount;
+    private final TransactionType type;
+    private final CompletableFuture<CardTransaction> result;
+}
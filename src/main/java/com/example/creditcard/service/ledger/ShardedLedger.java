@@ -0,0 +1,337 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.config.LedgerProperties;
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardLimitView;
+import com.example.creditcard.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * In-memory authorization ledger, split into shards by card id.
+ *
+ * Each card belongs to exactly one shard and each shard has one writer thread,
+ * so limit checks and reservations need no locks and never touch the card row
+ * lock. Reservations are written to {@code card_transactions} and
+ * {@code credit_cards} by the shard in group-committed batches; the caller's
+ * future completes once its batch is committed.
+ *
+ * With {@code creditcard.ledger.durability=journal} a shard confirms a batch
+ * once it is synced to the shard's memory-mapped journal instead, and a
+ * background flusher per shard writes the journal to the database in larger
+ * batches. Until then the new transactions are not visible in the database.
+ *
+ * On startup, journal records not yet flushed are first written to the
+ * database; then the available limits of all cards are loaded from
+ * {@code credit_cards}. Cards created later are loaded on first use.
+ *
+ * Anything that changes {@code available_limit} in the database outside the
+ * ledger must call {@link #release} or {@link #invalidate} so the in-memory
+ * value stays in step.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShardedLedger implements SmartLifecycle {
+
+    private final LedgerProperties properties;
+    private final CardRepository cardRepository;
+    private final LedgerWriter writer;
+
+    private LedgerShard[] shards;
+    private LedgerJournal[] journals;
+    private JournalFlusher[] flushers;
+    private volatile boolean running;
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * @return whether authorizations are confirmed before they are written to the database
+     */
+    public boolean isJournaled() {
+        return properties.isEnabled() && properties.isJournaled();
+    }
+
+    /**
+     * Reserve an amount on a card.
+     *
+     * @param cardId the credit card ID
+     * @param amount the transaction amount
+     * @return a future completed with the saved transaction, DECLINED if the limit
+     *         is insufficient, or exceptionally with
+     *         {@link java.util.NoSuchElementException} if the card does not exist
+     */
+    public CompletableFuture<CardTransaction> authorize(Long cardId, Money amount) {
+        CompletableFuture<CardTransaction> result = new CompletableFuture<>();
+        LedgerShard shard = shardFor(cardId);
+        submit(shard, () -> shard.reserve(cardId, amount, result));
+        return result;
+    }
+
+    /**
+     * Reserve an amount on a card and wait until it is committed.
+     *
+     * @param cardId the credit card ID
+     * @param amount the transaction amount
+     * @return the saved transaction, AUTHORIZED or, if amount exceeds available limit, DECLINED
+     * @throws java.util.NoSuchElementException if card not found
+     */
+    public CardTransaction authorizeAndWait(Long cardId, Money amount) {
+        try {
+            return authorize(cardId, amount).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ledger authorization", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * Give an amount back to a card's in-memory limit. The caller is responsible
+     * for the matching database update.
+     *
+     * @param cardId the credit card ID
+     * @param amount the amount released
+     */
+    public void release(Long cardId, Money amount) {
+        LedgerShard shard = shardFor(cardId);
+        submit(shard, () -> shard.release(cardId, amount));
+    }
+
+    /**
+     * Drop a card's in-memory limit so it is reloaded from the database on next use.
+     *
+     * @param cardId the credit card ID
+     */
+    public void invalidate(Long cardId) {
+        LedgerShard shard = shardFor(cardId);
+        submit(shard, () -> shard.invalidate(cardId));
+    }
+
+    /**
+     * Wait until every authorization confirmed so far has been written to the
+     * database. Returns at once unless the ledger journals authorizations.
+     *
+     * @throws IllegalStateException if a flusher gave up writing to the database
+     */
+    public void awaitFlushed() {
+        if (flushers == null) {
+            return;
+        }
+        List<CompletableFuture<Void>> barriers = new ArrayList<>(flushers.length);
+        try {
+            for (JournalFlusher flusher : flushers) {
+                barriers.add(flusher.barrier());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the ledger journal", e);
+        }
+        CompletableFuture.allOf(barriers.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Wait until one authorization is in the database, if the ledger confirmed
+     * it from the journal and has not written it yet. Only the shard that made
+     * the authorization is waited for, and only until its flusher has written
+     * that far; otherwise this returns at once.
+     *
+     * @param transactionId the transaction ID
+     * @throws IllegalStateException if the shard's flusher gave up writing to the database
+     */
+    public void awaitFlushed(long transactionId) {
+        if (flushers == null) {
+            return;
+        }
+        for (LedgerShard shard : shards) {
+            CompletableFuture<Void> flushed = shard.awaitFlushed(transactionId);
+            if (flushed == null) {
+                continue;
+            }
+            try {
+                flushed.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Read a card's in-memory available limit, in order with the shard's other commands.
+     *
+     * @param cardId the credit card ID
+     * @return the available limit, or empty if the card is not loaded
+     */
+    public Optional<Money> getAvailableLimit(Long cardId) {
+        CompletableFuture<Optional<Money>> result = new CompletableFuture<>();
+        LedgerShard shard = shardFor(cardId);
+        submit(shard, () -> result.complete(shard.availableLimit(cardId)));
+        return result.join();
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        shards = new LedgerShard[properties.getShards()];
+        if (properties.isJournaled()) {
+            openJournals();
+        }
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LedgerShard(i, cardRepository, writer,
+                    properties.getQueueCapacity(), properties.getMaxBatchSize(),
+                    journals != null ? journals[i] : null, flushers != null ? flushers[i] : null);
+        }
+
+        int loaded = 0;
+        for (CardLimitView card : cardRepository.findAllAvailableLimits()) {
+            shardFor(card.getId()).load(card.getId(), Money.of(card.getAvailableLimit()));
+            loaded++;
+        }
+
+        if (flushers != null) {
+            for (JournalFlusher flusher : flushers) {
+                flusher.start();
+            }
+        }
+        for (LedgerShard shard : shards) {
+            shard.start();
+        }
+        running = true;
+        log.info("Ledger started with {} shards, recovered {} cards", shards.length, loaded);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            for (LedgerShard shard : shards) {
+                shard.stop();
+            }
+            if (flushers != null) {
+                for (JournalFlusher flusher : flushers) {
+                    flusher.stop();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (journals != null) {
+                for (LedgerJournal journal : journals) {
+                    journal.close();
+                }
+            }
+            journals = null;
+            flushers = null;
+        }
+        log.info("Ledger stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start before the web server accepts requests and stop after it has shut down.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * Replay every shard directory found under the journal directory, including
+     * those of shards that no longer exist, then open a journal and flusher for
+     * each current shard.
+     */
+    private void openJournals() {
+        LedgerProperties.Journal settings = properties.getJournal();
+        long segmentSize = settings.getSegmentSize().toBytes();
+        journals = new LedgerJournal[shards.length];
+        flushers = new JournalFlusher[shards.length];
+        int replayed = 0;
+        try {
+            Files.createDirectories(settings.getDirectory());
+            List<Path> shardDirectories;
+            try (Stream<Path> files = Files.list(settings.getDirectory())) {
+                shardDirectories = files.filter(file -> file.getFileName().toString().startsWith("shard-")).toList();
+            }
+            for (Path shardDirectory : shardDirectories) {
+                LedgerJournal journal = new LedgerJournal(shardDirectory, segmentSize);
+                replayed += replay(journal, settings.getFlushBatchSize());
+                int index = Integer.parseInt(shardDirectory.getFileName().toString().substring("shard-".length()));
+                if (index < journals.length) {
+                    journals[index] = journal;
+                } else {
+                    journal.close();
+                }
+            }
+            for (int i = 0; i < journals.length; i++) {
+                if (journals[i] == null) {
+                    journals[i] = new LedgerJournal(settings.getDirectory().resolve("shard-" + i), segmentSize);
+                }
+                flushers[i] = new JournalFlusher(i, journals[i], writer, properties.getQueueCapacity(),
+                        settings.getFlushBatchSize(), settings.getFlushRetryInterval());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the ledger journal in " + settings.getDirectory(), e);
+        }
+        log.info("Ledger journal opened in {}, replayed {} unflushed authorizations", settings.getDirectory(), replayed);
+    }
+
+    private int replay(LedgerJournal journal, int batchSize) throws IOException {
+        List<JournalRecord> records = journal.recover();
+        int written = 0;
+        for (int from = 0; from < records.size(); from += batchSize) {
+            written += writer.writeJournaled(records.subList(from, Math.min(from + batchSize, records.size())));
+        }
+        journal.markRecovered();
+        return written;
+    }
+
+    private LedgerShard shardFor(Long cardId) {
+        if (shards == null) {
+            throw new IllegalStateException("Ledger is not enabled");
+        }
+        return shards[Math.floorMod(Long.hashCode(cardId), shards.length)];
+    }
+
+    private void submit(LedgerShard shard, Runnable command) {
+        try {
+            shard.submit(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting to ledger", e);
+        }
+    }
+}
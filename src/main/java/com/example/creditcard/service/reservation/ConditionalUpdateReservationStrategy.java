@@ -0,0 +1,48 @@
+package com.example.creditcard.service.reservation;
+
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Checks and reserves the limit in one statement:
+ * {@code UPDATE credit_cards SET available_limit = available_limit - ? WHERE id = ? AND available_limit >= ?}.
+ *
+ * There is no read-modify-write in Java; the row lock is held only from the
+ * update until commit. The card is not loaded, the authorization references it
+ * by id.
+ */
+@Component
+@ConditionalOnProperty(name = "creditcard.reservation.strategy", havingValue = "conditional-update")
+@RequiredArgsConstructor
+@Slf4j
+public class ConditionalUpdateReservationStrategy implements LimitReservationStrategy {
+
+    private final CardRepository cardRepository;
+
+    @Override
+    public Optional<CreditCard> reserve(Long cardId, Money amount) {
+        if (cardRepository.reserveIfAvailable(cardId, amount.toBigDecimal()) == 0) {
+            if (!cardRepository.existsById(cardId)) {
+                throw new NoSuchElementException("Card not found with id: " + cardId);
+            }
+            log.debug("Insufficient available limit for cardId: {}", cardId);
+            return Optional.empty();
+        }
+
+        log.debug("Reserved amount {} for cardId: {}", amount, cardId);
+        return Optional.of(cardRepository.getReferenceById(cardId));
+    }
+
+    @Override
+    public String name() {
+        return "conditional-update";
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.creditcard.service.reservation;
+
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Reserves an authorization amount from a card's available limit.
+ *
+ * Implementations run inside the caller's transaction, so the reservation
+ * commits or rolls back together with the authorization record.
+ * The strategy is chosen with {@code creditcard.reservation.strategy}.
+ */
+public interface LimitReservationStrategy {
+
+    /**
+     * Reduce the card's available limit by the given amount.
+     *
+     * @param cardId the credit card ID
+     * @param amount the amount to reserve
+     * @return the card the authorization belongs to, or empty if amount exceeds
+     *         available limit, in which case nothing is reserved
+     * @throws NoSuchElementException if card not found
+     */
+    Optional<CreditCard> reserve(Long cardId, Money amount);
+
+    /**
+     * @return the configuration name of this strategy
+     */
+    String name();
+}
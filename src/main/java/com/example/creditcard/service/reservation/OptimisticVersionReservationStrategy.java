@@ -0,0 +1,85 @@
+package com.example.creditcard.service.reservation;
+
+import com.example.creditcard.config.ReservationProperties;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.service.CardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reads the card without a lock and writes the new limit only if the card's
+ * {@code version} is still the one that was read. A lost race is retried with
+ * exponential backoff and jitter.
+ *
+ * The version check is an explicit conditional update rather than a flush of
+ * the managed entity: a failed flush would mark the whole transaction for
+ * rollback, while a zero-row update can simply be retried.
+ */
+@Component
+@ConditionalOnProperty(name = "creditcard.reservation.strategy", havingValue = "optimistic")
+@RequiredArgsConstructor
+@Slf4j
+public class OptimisticVersionReservationStrategy implements LimitReservationStrategy {
+
+    private final CardService cardService;
+    private final CardRepository cardRepository;
+    private final ReservationProperties properties;
+
+    @Override
+    public Optional<CreditCard> reserve(Long cardId, Money amount) {
+        ReservationProperties.Optimistic settings = properties.getOptimistic();
+        long backoffNanos = settings.getInitialBackoff().toNanos();
+
+        for (int attempt = 1; attempt <= settings.getMaxAttempts(); attempt++) {
+            CreditCard card = cardService.getCardById(cardId);
+
+            if (card.getAvailableLimit().isLessThan(amount)) {
+                log.debug("Insufficient available limit for cardId: {}", cardId);
+                return Optional.empty();
+            }
+
+            Money newLimit = card.getAvailableLimit().minus(amount);
+            if (cardRepository.updateAvailableLimitIfVersion(cardId, newLimit, card.getVersion()) == 1) {
+                card.setAvailableLimit(newLimit);
+                card.setVersion(card.getVersion() + 1);
+                log.debug("Reserved amount {} for cardId: {} on attempt {}, new available limit: {}",
+                    amount, cardId, attempt, newLimit);
+                return Optional.of(card);
+            }
+
+            log.debug("Version conflict reserving on cardId: {}, attempt {}", cardId, attempt);
+            backoff(backoffNanos);
+            backoffNanos = Math.min(backoffNanos * 2, settings.getMaxBackoff().toNanos());
+        }
+
+        throw new OptimisticLockingFailureException(
+            "Could not reserve limit on card " + cardId + " after " + settings.getMaxAttempts() + " attempts");
+    }
+
+    @Override
+    public String name() {
+        return "optimistic";
+    }
+
+    private void backoff(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        // Full jitter: sleep anywhere between zero and the current backoff
+        long sleepNanos = ThreadLocalRandom.current().nextLong(nanos + 1);
+        try {
+            Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+}
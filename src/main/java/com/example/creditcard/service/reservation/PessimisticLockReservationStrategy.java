@@ -0,0 +1,48 @@
+package com.example.creditcard.service.reservation;
+
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.CardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Locks the card row with {@code SELECT ... FOR UPDATE}, checks and changes the
+ * limit in Java and saves the card. The row stays locked until the surrounding
+ * transaction commits, so concurrent authorizations for a card run one at a time.
+ */
+@Component
+@ConditionalOnProperty(name = "creditcard.reservation.strategy", havingValue = "pessimistic", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class PessimisticLockReservationStrategy implements LimitReservationStrategy {
+
+    private final CardService cardService;
+
+    @Override
+    public Optional<CreditCard> reserve(Long cardId, Money amount) {
+        // Load card with pessimistic lock to prevent concurrent authorization race condition
+        CreditCard card = cardService.getCardByIdForUpdate(cardId);
+
+        if (card.getAvailableLimit().isLessThan(amount)) {
+            log.debug("Insufficient available limit for cardId: {}", cardId);
+            return Optional.empty();
+        }
+
+        // Reserve the amount (reduce available limit)
+        card.setAvailableLimit(card.getAvailableLimit().minus(amount));
+        cardService.saveCard(card);
+        log.debug("Reserved amount {} for cardId: {}, new available limit: {}",
+            amount, cardId, card.getAvailableLimit());
+        return Optional.of(card);
+    }
+
+    @Override
+    public String name() {
+        return "pessimistic";
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.creditcard.service.token;
+
+import com.example.creditcard.config.CardTokenProperties;
+import com.example.creditcard.repository.CardRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Resolves card numbers to card ids, for the endpoints keyed by card number.
+ *
+ * The card number is tokenized by {@link CardNumberTokenizer} and the token is
+ * looked up in a bounded cache in front of the unique index on
+ * {@code credit_cards.card_token}, so a resolution costs one hash and, for a
+ * card seen recently, no query. Unknown card numbers are not cached. Error
+ * messages never include the card number.
+ *
+ * Hit, miss and eviction counts are published as {@code cache.*} meters
+ * tagged {@code cache=cardToken}.
+ */
+@Service
+public class CardLookupService {
+
+    private static final int MIN_LENGTH = 12;
+    private static final int MAX_LENGTH = 19;
+
+    private final CardRepository cardRepository;
+    private final CardNumberTokenizer tokenizer;
+    private final Cache<String, Long> cardIds;
+
+    public CardLookupService(CardRepository cardRepository, CardNumberTokenizer tokenizer,
+                             CardTokenProperties properties, MeterRegistry meterRegistry) {
+        this.cardRepository = cardRepository;
+        this.tokenizer = tokenizer;
+        this.cardIds = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaximumSize())
+                .expireAfterAccess(properties.getCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cardIds, "cardToken");
+    }
+
+    /**
+     * Find the id of the card with a card number.
+     *
+     * @param cardNumber the card number, 12 to 19 digits
+     * @return the card ID
+     * @throws IllegalArgumentException if the card number is not 12 to 19 digits
+     * @throws NoSuchElementException if no card has this card number
+     */
+    public Long resolveCardId(String cardNumber) {
+        checkFormat(cardNumber);
+        Long cardId = cardIds.get(tokenizer.tokenize(cardNumber),
+                token -> cardRepository.findIdByCardToken(token).orElse(null));
+        if (cardId == null) {
+            throw new NoSuchElementException("Card not found for the given card number");
+        }
+        return cardId;
+    }
+
+    private static void checkFormat(String cardNumber) {
+        boolean valid = cardNumber != null
+                && cardNumber.length() >= MIN_LENGTH && cardNumber.length() <= MAX_LENGTH;
+        for (int i = 0; valid && i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            valid = c >= '0' && c <= '9';
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("cardNumber must be " + MIN_LENGTH + " to " + MAX_LENGTH + " digits");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.creditcard.service.token;
+
+import com.example.creditcard.config.CardTokenProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Turns card numbers into the tokens stored in {@code credit_cards.card_token}.
+ *
+ * A token is the HMAC-SHA256 of the card number under a secret key, in
+ * URL-safe Base64 without padding (43 characters). Without the key a token
+ * cannot be checked against guessed card numbers, so the column can be indexed
+ * and compared in SQL while plaintext card numbers never are.
+ */
+@Component
+public class CardNumberTokenizer {
+
+    static final int MIN_KEY_BYTES = 32;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Mac prototype;
+
+    public CardNumberTokenizer(CardTokenProperties properties) {
+        if (properties.getKey() == null || properties.getKey().isBlank()) {
+            throw new IllegalStateException("creditcard.card-token.key is not set: set CARD_TOKEN_KEY, "
+                    + "or run with the dev profile for a development-only key");
+        }
+        if (properties.getKey().getBytes(StandardCharsets.UTF_8).length < MIN_KEY_BYTES) {
+            throw new IllegalStateException("creditcard.card-token.key must be at least " + MIN_KEY_BYTES + " bytes");
+        }
+        try {
+            prototype = Mac.getInstance(ALGORITHM);
+            prototype.init(new SecretKeySpec(properties.getKey().getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    /**
+     * @param cardNumber the card number
+     * @return its token
+     */
+    public String tokenize(String cardNumber) {
+        byte[] digest = mac().doFinal(cardNumber.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    /**
+     * A Mac is not thread-safe; a clone of the keyed prototype skips the key setup.
+     */
+    private Mac mac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(ALGORITHM + " cannot be cloned", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.creditcard.service.token;
+
+import com.example.creditcard.config.CardTokenProperties;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Fills in {@code credit_cards.card_token} for cards that have none, one chunk
+ * per short transaction. The tokens are set with an update of that column
+ * alone, which leaves the card's version unchanged and so does not conflict
+ * with authorizations running at the same time.
+ *
+ * Runs at startup when {@code creditcard.card-token.backfill-on-startup} is set.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CardTokenBackfill implements ApplicationRunner {
+
+    private final CardRepository cardRepository;
+    private final CardNumberTokenizer tokenizer;
+    private final CardTokenProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (properties.isBackfillOnStartup()) {
+            backfill();
+        }
+    }
+
+    /**
+     * Tokenize every card without a token.
+     *
+     * @return the number of cards tokenized
+     */
+    public int backfill() {
+        long startedAt = System.nanoTime();
+        int tokenized = 0;
+        while (true) {
+            Integer chunk = transactionTemplate.execute(status -> {
+                List<CreditCard> cards = cardRepository.findWithoutCardToken(
+                        PageRequest.of(0, properties.getChunkSize()));
+                cards.forEach(card -> cardRepository.setCardToken(card.getId(), tokenizer.tokenize(card.getCardNumber())));
+                return cards.size();
+            });
+            if (chunk == null || chunk == 0) {
+                break;
+            }
+            tokenized += chunk;
+        }
+        log.info("Card token backfill tokenized {} cards in {} ms",
+            tokenized, (System.nanoTime() - startedAt) / 1_000_000);
+        return tokenized;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.creditcard.service.token;
+
+import com.example.creditcard.domain.CreditCard;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills in the token of a card saved through JPA. Hibernate obtains the
+ * listener from the Spring context, so it can use the configured key.
+ *
+ * Cards inserted with plain SQL have no token until their row is next
+ * updated through JPA or {@link CardTokenBackfill} runs.
+ */
+@Component
+@RequiredArgsConstructor
+public class CardTokenListener {
+
+    private final CardNumberTokenizer tokenizer;
+
+    @PrePersist
+    @PreUpdate
+    void tokenize(CreditCard card) {
+        if (card.getCardToken() == null && card.getCardNumber() != null) {
+            card.setCardToken(tokenizer.tokenize(card.getCardNumber()));
+        }
+    }
+}
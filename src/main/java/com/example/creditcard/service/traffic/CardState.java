@@ -0,0 +1,11 @@
+package com.example.creditcard.service.traffic;
+
+import com.example.creditcard.domain.Money;
+
+/**
+ * A card's limits when a traffic recording started or ended.
+ *
+ * @param availableLimit the card's whole available limit, including any escrow stripes
+ */
+public record CardState(long cardId, Money creditLimit, Money availableLimit) {
+}
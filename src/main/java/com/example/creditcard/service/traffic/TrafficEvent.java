@@ -0,0 +1,69 @@
+package com.example.creditcard.service.traffic;
+
+import com.example.creditcard.domain.Money;
+
+import java.util.List;
+
+/**
+ * One request, or the outcome of one authorization, in a traffic recording.
+ * Times are in microseconds since the recording started.
+ */
+public sealed interface TrafficEvent {
+
+    long time();
+
+    /**
+     * {@code POST /transactions/authorize}.
+     *
+     * @param index the authorization's number in the recording, counting batch entries
+     * @param idempotencyKey the request's {@code Idempotency-Key}, null if it had none
+     */
+    record Authorize(long time, long index, long cardId, Money amount, String idempotencyKey)
+            implements TrafficEvent {
+    }
+
+    /**
+     * {@code POST /transactions/authorize/batch}, with the entries that passed validation.
+     *
+     * @param firstIndex the number of the first entry; the others follow it
+     */
+    record AuthorizeBatch(long time, long firstIndex, List<Entry> entries) implements TrafficEvent {
+
+        public record Entry(long cardId, Money amount) {
+        }
+    }
+
+    /**
+     * An authorization was approved.
+     *
+     * @param index the number of the {@link Authorize} or batch entry
+     * @param transactionId the ID of the authorized transaction
+     */
+    record Authorized(long time, long index, long transactionId) implements TrafficEvent {
+    }
+
+    /**
+     * {@code POST /transactions/capture/{transactionId}}, with {@code ?mode=async} if {@code async}.
+     */
+    record Capture(long time, long transactionId, boolean async) implements TrafficEvent {
+    }
+
+    /**
+     * {@code GET /cards/{cardId}/summary}.
+     */
+    record Summary(long time, long cardId) implements TrafficEvent {
+    }
+
+    /**
+     * {@code GET /cards/{cardId}/transactions}. Only the page size is kept: cursors
+     * name transactions of the recorded instance.
+     */
+    record History(long time, long cardId, int limit) implements TrafficEvent {
+    }
+
+    /**
+     * {@code PUT /cards/{cardId}/escrow}, or {@code DELETE} when {@code stripes} is 0.
+     */
+    record Escrow(long time, long cardId, int stripes) implements TrafficEvent {
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.creditcard.service.traffic;
+
+import com.example.creditcard.config.TrafficCaptureProperties;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.AuthorizationCommand;
+import com.example.creditcard.service.ledger.ShardedLedger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Records the requests that reach the API to a compact binary file, for
+ * {@code TrafficReplay} to send again to a fresh instance.
+ *
+ * Recording starts once the application is ready, with the limits of every
+ * card, and each request is appended as it arrives with its time, card id and
+ * amount; authorizations are followed by the transaction id they were given,
+ * so that captures can be replayed against the replay's own transactions. On
+ * shutdown, after the web server has stopped taking requests, the limits of
+ * every card are appended again for the replay to compare its own with.
+ *
+ * Card numbers are never recorded: cards are known by their surrogate id, and
+ * the replay gives them generated numbers.
+ *
+ * Events are appended under one lock to a buffered stream, which costs each
+ * request a few hundred nanoseconds while recording and a volatile read
+ * otherwise. If the file cannot be written the recording stops and requests
+ * carry on.
+ */
+@Service
+@Slf4j
+public class TrafficRecorder implements SmartLifecycle {
+
+    /**
+     * Returned for a request that was not recorded.
+     */
+    public static final long NOT_RECORDED = -1;
+
+    private static final String CARDS_QUERY = "SELECT c.id, c.credit_limit, "
+            + "c.available_limit + COALESCE((SELECT SUM(s.available_limit) FROM card_limit_stripes s "
+            + "WHERE s.card_id = c.id), 0) AS available_limit "
+            + "FROM credit_cards c ORDER BY c.id";
+
+    private final TrafficCaptureProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardedLedger ledger;
+
+    private volatile boolean recording;
+    private TrafficRecordingWriter writer; // guarded by this
+    private long startNanos;
+    private long nextIndex;
+
+    public TrafficRecorder(TrafficCaptureProperties properties, JdbcTemplate jdbcTemplate, ShardedLedger ledger) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledger = ledger;
+    }
+
+    /**
+     * Open the recording once the cards have been initialized.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void open() {
+        if (!properties.isEnabled() || writer != null) {
+            return;
+        }
+        Path file = properties.getFile();
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            OutputStream output = Files.newOutputStream(file);
+            writer = new TrafficRecordingWriter(output, System.currentTimeMillis());
+            writeCards();
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not start the traffic recording in {}", file, e);
+            closeQuietly();
+            return;
+        }
+        startNanos = System.nanoTime();
+        recording = true;
+        log.info("Recording traffic to {}", file);
+    }
+
+    /**
+     * Record an authorization request.
+     *
+     * @return the authorization's number, to be passed to {@link #authorized}, or
+     *         {@link #NOT_RECORDED} if traffic is not being recorded
+     */
+    public long authorize(Long cardId, Money amount, String idempotencyKey) {
+        if (!recording || cardId == null || amount == null) {
+            return NOT_RECORDED;
+        }
+        synchronized (this) {
+            long index = nextIndex;
+            if (append(writer -> writer.authorize(now(), cardId, amount, idempotencyKey))) {
+                nextIndex++;
+                return index;
+            }
+            return NOT_RECORDED;
+        }
+    }
+
+    /**
+     * Record a batch authorization request.
+     *
+     * @param commands the entries that passed validation, in request order
+     * @return the number of the first entry, the others following it, or {@link #NOT_RECORDED}
+     */
+    public long authorizeBatch(List<AuthorizationCommand> commands) {
+        if (!recording || commands.isEmpty()) {
+            return NOT_RECORDED;
+        }
+        List<TrafficEvent.AuthorizeBatch.Entry> entries = commands.stream()
+                .map(command -> new TrafficEvent.AuthorizeBatch.Entry(command.getCardId(), command.getAmount()))
+                .toList();
+        synchronized (this) {
+            long index = nextIndex;
+            if (append(writer -> writer.authorizeBatch(now(), entries))) {
+                nextIndex += entries.size();
+                return index;
+            }
+            return NOT_RECORDED;
+        }
+    }
+
+    /**
+     * Record the transaction an authorization was approved with.
+     *
+     * @param index the number returned by {@link #authorize} or {@link #authorizeBatch}
+     * @param transactionId the ID of the authorized transaction
+     */
+    public void authorized(long index, Long transactionId) {
+        if (index != NOT_RECORDED) {
+            append(writer -> writer.authorized(now(), index, transactionId));
+        }
+    }
+
+    public void capture(Long transactionId, boolean async) {
+        if (recording) {
+            append(writer -> writer.capture(now(), transactionId, async));
+        }
+    }
+
+    public void summary(Long cardId) {
+        if (recording) {
+            append(writer -> writer.summary(now(), cardId));
+        }
+    }
+
+    public void history(Long cardId, int limit) {
+        if (recording) {
+            append(writer -> writer.history(now(), cardId, limit));
+        }
+    }
+
+    /**
+     * @param stripes the requested stripe count, 0 when escrow mode is turned off
+     */
+    public void escrow(Long cardId, int stripes) {
+        if (recording) {
+            append(writer -> writer.escrow(now(), cardId, stripes));
+        }
+    }
+
+    /**
+     * Read the limits of every card, in card id order, the available limit
+     * including any escrow stripes.
+     *
+     * @param cards receives each card
+     */
+    public void readCards(Consumer<CardState> cards) {
+        jdbcTemplate.query(CARDS_QUERY, row -> {
+            cards.accept(new CardState(row.getLong(1), Money.of(row.getBigDecimal(2)), Money.of(row.getBigDecimal(3))));
+        });
+    }
+
+    @Override
+    public void start() {
+        // Recording starts on ApplicationReadyEvent, once the cards have been initialized
+    }
+
+    /**
+     * Write the final limits of every card and close the recording.
+     */
+    @Override
+    public synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        recording = false;
+        try {
+            if (ledger.isJournaled()) {
+                // The final limits must include the authorizations still in the journal
+                ledger.awaitFlushed();
+            }
+            writer.end();
+            writeCards();
+            writer.close();
+            log.info("Traffic recording closed - {} authorizations recorded", nextIndex);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not finish the traffic recording", e);
+            closeQuietly();
+        }
+        writer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return recording;
+    }
+
+    /**
+     * Stop after the web server and before the capture queue and the ledger: the
+     * final limits are read once the last request has been answered, while the
+     * ledger can still flush its journal.
+     */
+    @Override
+    public int getPhase() {
+        return 2;
+    }
+
+    private long now() {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    private synchronized boolean append(RecordingAction action) {
+        if (writer == null) {
+            return false;
+        }
+        try {
+            action.write(writer);
+            return true;
+        } catch (IOException e) {
+            log.error("Could not write the traffic recording, recording stopped", e);
+            recording = false;
+            closeQuietly();
+            return false;
+        }
+    }
+
+    private void writeCards() throws IOException {
+        try {
+            readCards(card -> {
+                try {
+                    writer.card(card);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.endCards();
+        writer.flush();
+    }
+
+    private void closeQuietly() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Could not close the traffic recording", e);
+            }
+            writer = null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordingAction {
+        void write(TrafficRecordingWriter writer) throws IOException;
+    }
+}
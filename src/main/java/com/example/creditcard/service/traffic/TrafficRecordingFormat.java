@@ -0,0 +1,67 @@
+package com.example.creditcard.service.traffic;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Layout of a traffic recording.
+ *
+ * A recording starts with the magic bytes {@code CCTR}, a format version and the
+ * epoch milliseconds it was started at, followed by the limits of every card at
+ * that time. Events follow, each a type byte, the microseconds since the
+ * previous event and the event's fields; a recording closed cleanly ends with
+ * an end byte and the limits of every card at that time. Card lists are
+ * entries of card id, credit limit and available limit terminated by a 0 card
+ * id. Numbers are unsigned LEB128 varints, amounts zigzag-encoded minor units,
+ * so that a typical authorization takes 6 to 8 bytes.
+ *
+ * Card numbers are never written: cards are identified by their surrogate id only.
+ */
+final class TrafficRecordingFormat {
+
+    static final int MAGIC = 0x43435452; // "CCTR"
+    static final int VERSION = 1;
+
+    static final int END = 0;
+    static final int AUTHORIZE = 1;
+    static final int AUTHORIZE_BATCH = 2;
+    static final int AUTHORIZED = 3;
+    static final int CAPTURE = 4;
+    static final int CAPTURE_ASYNC = 5;
+    static final int SUMMARY = 6;
+    static final int HISTORY = 7;
+    static final int ESCROW = 8;
+
+    private TrafficRecordingFormat() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in traffic recording");
+    }
+
+    static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(DataInput in) throws IOException {
+        long encoded = readVarLong(in);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+}
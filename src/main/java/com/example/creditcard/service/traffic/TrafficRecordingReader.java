@@ -0,0 +1,153 @@
+package com.example.creditcard.service.traffic;
+
+import com.example.creditcard.domain.Money;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.creditcard.service.traffic.TrafficRecordingFormat.*;
+
+/**
+ * Reads a traffic recording written by {@link TrafficRecorder}, one event at a time.
+ */
+public class TrafficRecordingReader implements Closeable {
+
+    private final DataInputStream in;
+    private final Instant startedAt;
+    private final List<CardState> initialCards;
+    private List<CardState> finalCards;
+    private long time;
+    private long nextIndex;
+    private boolean ended;
+
+    /**
+     * Open a recording and read its header.
+     *
+     * @param file the recording
+     * @throws IOException if the file cannot be read or is not a traffic recording
+     */
+    public TrafficRecordingReader(Path file) throws IOException {
+        this(Files.newInputStream(file));
+    }
+
+    TrafficRecordingReader(InputStream input) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+        if (in.readInt() != MAGIC) {
+            in.close();
+            throw new IOException("Not a traffic recording");
+        }
+        long version = readVarLong(in);
+        if (version != VERSION) {
+            in.close();
+            throw new IOException("Unsupported traffic recording version: " + version);
+        }
+        this.startedAt = Instant.ofEpochMilli(readVarLong(in));
+        this.initialCards = readCards();
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return the limits of every card when the recording started
+     */
+    public List<CardState> getInitialCards() {
+        return initialCards;
+    }
+
+    /**
+     * @return the limits of every card when the recording ended, once {@link #next()}
+     *         has returned null; empty if the recording was not closed cleanly
+     */
+    public Optional<List<CardState>> getFinalCards() {
+        return Optional.ofNullable(finalCards);
+    }
+
+    /**
+     * @return the next event, or null after the last one
+     * @throws IOException if the recording cannot be read or is malformed
+     */
+    public TrafficEvent next() throws IOException {
+        if (ended) {
+            return null;
+        }
+        try {
+            return readEvent();
+        } catch (EOFException e) {
+            // The recording was cut short, by a crash for instance
+            ended = true;
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private TrafficEvent readEvent() throws IOException {
+        int type = in.readUnsignedByte();
+        if (type == END) {
+            ended = true;
+            finalCards = readCards();
+            return null;
+        }
+
+        time += readVarLong(in);
+        return switch (type) {
+            case AUTHORIZE -> new TrafficEvent.Authorize(time, nextIndex++, readVarLong(in), readAmount(), readKey());
+            case AUTHORIZE_BATCH -> readBatch();
+            case AUTHORIZED -> new TrafficEvent.Authorized(time, readVarLong(in), readVarLong(in));
+            case CAPTURE, CAPTURE_ASYNC -> new TrafficEvent.Capture(time, readVarLong(in), type == CAPTURE_ASYNC);
+            case SUMMARY -> new TrafficEvent.Summary(time, readVarLong(in));
+            case HISTORY -> new TrafficEvent.History(time, readVarLong(in), (int) readSignedVarLong(in));
+            case ESCROW -> new TrafficEvent.Escrow(time, readVarLong(in), (int) readSignedVarLong(in));
+            default -> throw new IOException("Unknown event type in traffic recording: " + type);
+        };
+    }
+
+    private TrafficEvent.AuthorizeBatch readBatch() throws IOException {
+        int size = Math.toIntExact(readVarLong(in));
+        List<TrafficEvent.AuthorizeBatch.Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new TrafficEvent.AuthorizeBatch.Entry(readVarLong(in), readAmount()));
+        }
+        TrafficEvent.AuthorizeBatch batch = new TrafficEvent.AuthorizeBatch(time, nextIndex, List.copyOf(entries));
+        nextIndex += size;
+        return batch;
+    }
+
+    private List<CardState> readCards() throws IOException {
+        List<CardState> cards = new ArrayList<>();
+        for (long cardId = readVarLong(in); cardId != 0; cardId = readVarLong(in)) {
+            cards.add(new CardState(cardId, readAmount(), readAmount()));
+        }
+        return List.copyOf(cards);
+    }
+
+    private String readKey() throws IOException {
+        int length = Math.toIntExact(readVarLong(in));
+        if (length == 0) {
+            return null;
+        }
+        byte[] key = new byte[length - 1];
+        in.readFully(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private Money readAmount() throws IOException {
+        return Money.ofMinor(readSignedVarLong(in));
+    }
+}
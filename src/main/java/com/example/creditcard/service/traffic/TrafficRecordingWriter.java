@@ -0,0 +1,130 @@
+package com.example.creditcard.service.traffic;
+
+import com.example.creditcard.domain.Money;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.example.creditcard.service.traffic.TrafficRecordingFormat.*;
+
+/**
+ * Writes a traffic recording in the {@link TrafficRecordingFormat}. Not thread-safe:
+ * {@link TrafficRecorder} serializes the calls, so that events are written in the
+ * order their times were taken.
+ */
+class TrafficRecordingWriter implements Closeable {
+
+    private final DataOutputStream out;
+    private long lastTime;
+
+    /**
+     * Write the header of a recording.
+     *
+     * @param output where the recording is written; closed with the writer
+     * @param startedAt epoch milliseconds the recording starts at
+     */
+    TrafficRecordingWriter(OutputStream output, long startedAt) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+        out.writeInt(MAGIC);
+        writeVarLong(out, VERSION);
+        writeVarLong(out, startedAt);
+    }
+
+    /**
+     * Write a card of a card list; {@link #endCards()} terminates the list.
+     */
+    void card(CardState card) throws IOException {
+        if (card.cardId() <= 0) {
+            throw new IllegalArgumentException("Card ids must be positive: " + card.cardId());
+        }
+        writeVarLong(out, card.cardId());
+        writeAmount(card.creditLimit());
+        writeAmount(card.availableLimit());
+    }
+
+    void endCards() throws IOException {
+        writeVarLong(out, 0);
+    }
+
+    void authorize(long time, long cardId, Money amount, String idempotencyKey) throws IOException {
+        event(AUTHORIZE, time);
+        writeVarLong(out, cardId);
+        writeAmount(amount);
+        if (idempotencyKey == null) {
+            writeVarLong(out, 0);
+        } else {
+            byte[] key = idempotencyKey.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, key.length + 1L);
+            out.write(key);
+        }
+    }
+
+    void authorizeBatch(long time, List<TrafficEvent.AuthorizeBatch.Entry> entries) throws IOException {
+        event(AUTHORIZE_BATCH, time);
+        writeVarLong(out, entries.size());
+        for (TrafficEvent.AuthorizeBatch.Entry entry : entries) {
+            writeVarLong(out, entry.cardId());
+            writeAmount(entry.amount());
+        }
+    }
+
+    void authorized(long time, long index, long transactionId) throws IOException {
+        event(AUTHORIZED, time);
+        writeVarLong(out, index);
+        writeVarLong(out, transactionId);
+    }
+
+    void capture(long time, long transactionId, boolean async) throws IOException {
+        event(async ? CAPTURE_ASYNC : CAPTURE, time);
+        writeVarLong(out, transactionId);
+    }
+
+    void summary(long time, long cardId) throws IOException {
+        event(SUMMARY, time);
+        writeVarLong(out, cardId);
+    }
+
+    void history(long time, long cardId, int limit) throws IOException {
+        event(HISTORY, time);
+        writeVarLong(out, cardId);
+        writeSignedVarLong(out, limit);
+    }
+
+    void escrow(long time, long cardId, int stripes) throws IOException {
+        event(ESCROW, time);
+        writeVarLong(out, cardId);
+        writeSignedVarLong(out, stripes);
+    }
+
+    /**
+     * End the events; the final card list follows.
+     */
+    void end() throws IOException {
+        out.writeByte(END);
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void event(int type, long time) throws IOException {
+        out.writeByte(type);
+        // Times are taken under the recorder's lock, so they never go backwards
+        writeVarLong(out, Math.max(0, time - lastTime));
+        lastTime = Math.max(lastTime, time);
+    }
+
+    private void writeAmount(Money amount) throws IOException {
+        writeSignedVarLong(out, amount.getMinorUnits());
+    }
+}
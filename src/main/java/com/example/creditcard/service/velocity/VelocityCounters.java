@@ -0,0 +1,372 @@
+package com.example.creditcard.service.velocity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Sliding-window authorization counts and amounts per card, in minor units.
+ *
+ * Each card has one {@code long[]} holding a ring of buckets per window. A
+ * bucket covers {@code window / buckets} of time and is a single word packing
+ * the low 16 bits of its epoch (the time divided by the bucket width), the
+ * number of authorizations and their total amount, so that it is updated with
+ * one compare-and-set and nothing is allocated after a card's array exists. A
+ * bucket whose epoch has left the window counts as empty and is overwritten by
+ * the next authorization that falls into it.
+ *
+ * {@link #tryAdd} adds first and checks afterwards, taking the addition back
+ * if a limit is exceeded. Concurrent authorizations of the same card can
+ * therefore decline each other near a limit, but never exceed it together.
+ *
+ * Cards are spread over striped maps. {@link #sweep} must run at least every
+ * few hours: it clears buckets that have left their window, so that the 16-bit
+ * epochs never wrap around onto live ones, and evicts cards with every bucket
+ * empty, that is cards idle for the longest window. An evicted array is first
+ * filled with {@link #DEAD} words so that an authorization racing with the
+ * eviction waits and moves to the card's new array instead of being lost.
+ */
+public class VelocityCounters {
+
+    /**
+     * Largest amount a bucket can hold. An authorization that would take a bucket
+     * past it is declined as exceeding that window.
+     */
+    public static final long MAX_AMOUNT = 0xFFFF_FFFFL;
+
+    static final long DEAD = -1L;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int STAMP_SHIFT = 48;
+    private static final int COUNT_SHIFT = 32;
+    private static final long STAMP_MASK = 0xFFFF;
+    private static final long COUNT_MASK = 0xFFFF;
+    // One below the mask, so that no live bucket can equal DEAD
+    private static final long MAX_COUNT = COUNT_MASK - 1;
+    private static final long EPOCH_RANGE = STAMP_MASK + 1;
+
+    private static final int ADDED = 0;
+    private static final int FULL = 1;
+    private static final int KILLED = 2;
+
+    private final long[] bucketMillis;
+    private final int buckets;
+    private final ConcurrentHashMap<Long, long[]>[] stripes;
+    private final Function<Long, long[]> newSlots;
+
+    /**
+     * @param windows the window lengths, one ring of buckets each
+     * @param buckets buckets per window
+     * @param stripes number of stripes, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public VelocityCounters(Duration[] windows, int buckets, int stripes) {
+        if (buckets < 2 || buckets >= EPOCH_RANGE) {
+            throw new IllegalArgumentException("Buckets must be between 2 and " + (EPOCH_RANGE - 1));
+        }
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes must be a power of two");
+        }
+        this.buckets = buckets;
+        this.bucketMillis = new long[windows.length];
+        for (int w = 0; w < windows.length; w++) {
+            bucketMillis[w] = windows[w].toMillis() / buckets;
+            if (bucketMillis[w] < 1) {
+                throw new IllegalArgumentException("Window " + windows[w] + " is shorter than one millisecond per bucket");
+            }
+        }
+        this.newSlots = cardId -> new long[windows.length * buckets];
+        @SuppressWarnings("unchecked")
+        ConcurrentHashMap<Long, long[]>[] maps = (ConcurrentHashMap<Long, long[]>[]) new ConcurrentHashMap<?, ?>[stripes];
+        for (int i = 0; i < stripes; i++) {
+            maps[i] = new ConcurrentHashMap<>();
+        }
+        this.stripes = maps;
+    }
+
+    /**
+     * @return the longest time {@link #sweep} can be left without running
+     */
+    public Duration maxSweepInterval() {
+        long shortest = Long.MAX_VALUE;
+        for (long millis : bucketMillis) {
+            shortest = Math.min(shortest, millis);
+        }
+        // The stamps of expired buckets wrap onto live epochs after EPOCH_RANGE - buckets epochs
+        return Duration.ofMillis(shortest * (EPOCH_RANGE - buckets) / 2);
+    }
+
+    /**
+     * Count an authorization in every window, unless that takes a window past its limit.
+     *
+     * @param cardId the card ID
+     * @param amount the amount in minor units
+     * @param now the current time in epoch milliseconds
+     * @param maxCounts the most authorizations allowed in each window
+     * @param maxAmounts the largest total amount allowed in each window
+     * @return -1 if the authorization was counted, otherwise the index of the first window
+     *         whose limit it would exceed, in which case nothing was counted
+     */
+    public int tryAdd(long cardId, long amount, long now, long[] maxCounts, long[] maxAmounts) {
+        long[] slots = slots(cardId);
+        while (true) {
+            int exceeded = -1;
+            int added = 0;
+            boolean killed = false;
+            for (; added < bucketMillis.length; added++) {
+                int result = addToBucket(slots, added, epoch(added, now), 1, amount);
+                if (result == KILLED) {
+                    killed = true;
+                    break;
+                }
+                if (result == FULL) {
+                    exceeded = added;
+                    break;
+                }
+            }
+            if (!killed && exceeded < 0) {
+                for (int w = 0; w < bucketMillis.length; w++) {
+                    if (count(slots, w, now) > maxCounts[w] || amount(slots, w, now) > maxAmounts[w]) {
+                        exceeded = w;
+                        break;
+                    }
+                }
+                if (exceeded < 0) {
+                    return -1;
+                }
+                added = bucketMillis.length;
+            }
+            for (int w = 0; w < added; w++) {
+                removeFromBucket(slots, w, epoch(w, now), amount);
+            }
+            if (!killed) {
+                return exceeded;
+            }
+            // The sweeper is evicting this array: wait until it is gone or given back
+            Thread.onSpinWait();
+            slots = slots(cardId);
+        }
+    }
+
+    /**
+     * Take back an authorization counted by {@link #tryAdd}, from the windows it is still in.
+     *
+     * @param cardId the card ID
+     * @param amount the amount in minor units
+     * @param addedAt the {@code now} it was counted at
+     */
+    public void remove(long cardId, long amount, long addedAt) {
+        long[] slots = stripe(cardId).get(cardId);
+        if (slots == null) {
+            return;
+        }
+        for (int w = 0; w < bucketMillis.length; w++) {
+            removeFromBucket(slots, w, epoch(w, addedAt), amount);
+        }
+    }
+
+    /**
+     * Count an authorization made in the past, without checking limits, in the
+     * windows that still cover it.
+     *
+     * @param cardId the card ID
+     * @param amount the amount in minor units
+     * @param at when it was made, in epoch milliseconds
+     * @param now the current time in epoch milliseconds
+     * @return whether any window still covers it
+     */
+    public boolean add(long cardId, long amount, long at, long now) {
+        at = Math.min(at, now);
+        long[] slots = null;
+        boolean counted = false;
+        for (int w = 0; w < bucketMillis.length; w++) {
+            long epoch = epoch(w, at);
+            if (epoch(w, now) - epoch >= buckets) {
+                continue;
+            }
+            if (slots == null) {
+                slots = slots(cardId);
+            }
+            while (addToBucket(slots, w, epoch, 1, amount) == KILLED) {
+                Thread.onSpinWait();
+                slots = slots(cardId);
+            }
+            counted = true;
+        }
+        return counted;
+    }
+
+    /**
+     * @param cardId the card ID
+     * @param window the window index
+     * @param now the current time in epoch milliseconds
+     * @return the authorizations counted in the window
+     */
+    public long count(long cardId, int window, long now) {
+        long[] slots = stripe(cardId).get(cardId);
+        return slots == null ? 0 : count(slots, window, now);
+    }
+
+    /**
+     * @param cardId the card ID
+     * @param window the window index
+     * @param now the current time in epoch milliseconds
+     * @return the total amount counted in the window, in minor units
+     */
+    public long amount(long cardId, int window, long now) {
+        long[] slots = stripe(cardId).get(cardId);
+        return slots == null ? 0 : amount(slots, window, now);
+    }
+
+    /**
+     * @return the number of cards held
+     */
+    public long size() {
+        long size = 0;
+        for (ConcurrentHashMap<Long, long[]> stripe : stripes) {
+            size += stripe.mappingCount();
+        }
+        return size;
+    }
+
+    /**
+     * Clear the buckets that have left their window, and evict the cards left with none.
+     *
+     * @param now the current time in epoch milliseconds
+     * @return the number of cards evicted
+     */
+    public int sweep(long now) {
+        int evicted = 0;
+        for (ConcurrentHashMap<Long, long[]> stripe : stripes) {
+            for (Map.Entry<Long, long[]> entry : stripe.entrySet()) {
+                long[] slots = entry.getValue();
+                if (clearExpired(slots, now) && kill(slots)) {
+                    stripe.remove(entry.getKey(), slots);
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    private long[] slots(long cardId) {
+        ConcurrentHashMap<Long, long[]> stripe = stripe(cardId);
+        long[] slots = stripe.get(cardId);
+        return slots != null ? slots : stripe.computeIfAbsent(cardId, newSlots);
+    }
+
+    private ConcurrentHashMap<Long, long[]> stripe(long cardId) {
+        return stripes[(int) ((cardId * 0x9E3779B97F4A7C15L) >>> 40) & (stripes.length - 1)];
+    }
+
+    private long epoch(int window, long time) {
+        return time / bucketMillis[window];
+    }
+
+    private int slot(int window, long epoch) {
+        return window * buckets + (int) (epoch % buckets);
+    }
+
+    private boolean isLive(long word, long epoch) {
+        return word != DEAD && ((epoch - (word >>> STAMP_SHIFT)) & STAMP_MASK) < buckets;
+    }
+
+    private int addToBucket(long[] slots, int window, long epoch, long count, long amount) {
+        int slot = slot(window, epoch);
+        long stamp = epoch & STAMP_MASK;
+        while (true) {
+            long word = (long) SLOTS.getVolatile(slots, slot);
+            if (word == DEAD) {
+                return KILLED;
+            }
+            boolean current = word >>> STAMP_SHIFT == stamp;
+            long newCount = (current ? (word >>> COUNT_SHIFT) & COUNT_MASK : 0) + count;
+            long newAmount = (current ? word & MAX_AMOUNT : 0) + amount;
+            if (newCount > MAX_COUNT || newAmount > MAX_AMOUNT) {
+                return FULL;
+            }
+            long updated = stamp << STAMP_SHIFT | newCount << COUNT_SHIFT | newAmount;
+            if (SLOTS.compareAndSet(slots, slot, word, updated)) {
+                return ADDED;
+            }
+        }
+    }
+
+    private void removeFromBucket(long[] slots, int window, long epoch, long amount) {
+        int slot = slot(window, epoch);
+        long stamp = epoch & STAMP_MASK;
+        while (true) {
+            long word = (long) SLOTS.getVolatile(slots, slot);
+            // Cleared, or reused for a later epoch: the authorization has left this window anyway
+            if (word == DEAD || word >>> STAMP_SHIFT != stamp
+                    || ((word >>> COUNT_SHIFT) & COUNT_MASK) == 0 || (word & MAX_AMOUNT) < amount) {
+                return;
+            }
+            if (SLOTS.compareAndSet(slots, slot, word, word - (1L << COUNT_SHIFT) - amount)) {
+                return;
+            }
+        }
+    }
+
+    private long count(long[] slots, int window, long now) {
+        long epoch = epoch(window, now);
+        long count = 0;
+        for (int slot = window * buckets; slot < (window + 1) * buckets; slot++) {
+            long word = (long) SLOTS.getVolatile(slots, slot);
+            if (isLive(word, epoch)) {
+                count += (word >>> COUNT_SHIFT) & COUNT_MASK;
+            }
+        }
+        return count;
+    }
+
+    private long amount(long[] slots, int window, long now) {
+        long epoch = epoch(window, now);
+        long amount = 0;
+        for (int slot = window * buckets; slot < (window + 1) * buckets; slot++) {
+            long word = (long) SLOTS.getVolatile(slots, slot);
+            if (isLive(word, epoch)) {
+                amount += word & MAX_AMOUNT;
+            }
+        }
+        return amount;
+    }
+
+    /**
+     * @return whether every bucket is now empty
+     */
+    private boolean clearExpired(long[] slots, long now) {
+        boolean empty = true;
+        for (int w = 0; w < bucketMillis.length; w++) {
+            long epoch = epoch(w, now);
+            for (int slot = w * buckets; slot < (w + 1) * buckets; slot++) {
+                long word = (long) SLOTS.getVolatile(slots, slot);
+                if (word == 0 || word == DEAD) {
+                    continue;
+                }
+                if (isLive(word, epoch) || !SLOTS.compareAndSet(slots, slot, word, 0L)) {
+                    empty = false;
+                }
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * Mark every bucket of an empty array dead, or none if an authorization got in first.
+     */
+    private boolean kill(long[] slots) {
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (!SLOTS.compareAndSet(slots, slot, 0L, DEAD)) {
+                for (int killed = 0; killed < slot; killed++) {
+                    SLOTS.setVolatile(slots, killed, 0L);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.creditcard.service.velocity;
+
+import com.example.creditcard.config.VelocityProperties;
+import com.example.creditcard.domain.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-card velocity limits, such as at most 10 authorizations or 2000.00 in
+ * one minute, checked in memory before an authorization reserves any limit.
+ *
+ * Every card has the limits of {@code creditcard.velocity.limits}, one per
+ * window, unless {@code creditcard.velocity.cards} overrides some of them. The
+ * counts are kept in {@link VelocityCounters} and rebuilt from the recent rows
+ * of {@code card_transactions} at startup, after the ledger has flushed its
+ * journal and before the web server takes requests. They are per instance:
+ * with several instances behind a load balancer each enforces its limits on
+ * the authorizations it receives.
+ *
+ * An authorization counted by {@link #acquire} and then declined or rolled
+ * back must be given back with {@link #release}.
+ */
+@Service
+@Slf4j
+public class VelocityLimiter implements SmartLifecycle {
+
+    /**
+     * Returned by {@link #acquire} when velocity limits are disabled.
+     */
+    public static final long NOT_ACQUIRED = -1;
+
+    private final VelocityProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration[] windows;
+    private final Limits defaultLimits;
+    private final Map<Long, Limits> cardLimits = new HashMap<>();
+    private final VelocityCounters counters;
+    private final Counter[] declinedCounters;
+    private volatile boolean running;
+
+    public VelocityLimiter(VelocityProperties properties, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        List<VelocityProperties.Limit> limits = properties.getLimits();
+        this.windows = limits.stream()
+                .map(VelocityProperties.Limit::getWindow)
+                .toArray(Duration[]::new);
+        if (Arrays.stream(windows).distinct().count() != windows.length) {
+            throw new IllegalStateException("Velocity limits must have distinct windows: " + Arrays.toString(windows));
+        }
+        this.defaultLimits = new Limits(windows.length);
+        limits.forEach(limit -> defaultLimits.set(indexOf(limit.getWindow(), null), limit));
+        properties.getCards().forEach((cardId, overrides) -> {
+            Limits card = defaultLimits.copy();
+            overrides.forEach(limit -> card.set(indexOf(limit.getWindow(), cardId), limit));
+            cardLimits.put(cardId, card);
+        });
+        this.counters = new VelocityCounters(windows, properties.getBuckets(), properties.getStripes());
+        if (properties.getSweepInterval().compareTo(counters.maxSweepInterval()) > 0) {
+            throw new IllegalStateException("Velocity sweep interval must not exceed " + counters.maxSweepInterval());
+        }
+
+        this.declinedCounters = new Counter[windows.length];
+        for (int w = 0; w < windows.length; w++) {
+            declinedCounters[w] = Counter.builder("creditcard.velocity.declined")
+                    .description("Authorizations declined for exceeding a velocity limit")
+                    .tag("window", describe(windows[w]))
+                    .register(meterRegistry);
+        }
+        Gauge.builder("creditcard.velocity.cards", counters, VelocityCounters::size)
+                .description("Cards with authorizations within the longest velocity window")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Count an authorization against the card's velocity limits.
+     *
+     * @param cardId the credit card ID
+     * @param amount the transaction amount
+     * @return the time it was counted at, to be passed to {@link #release}, or
+     *         {@link #NOT_ACQUIRED} if velocity limits are disabled
+     * @throws IllegalArgumentException if it would exceed one of the card's limits
+     */
+    public long acquire(Long cardId, Money amount) {
+        if (!properties.isEnabled()) {
+            return NOT_ACQUIRED;
+        }
+        Limits limits = cardLimits.getOrDefault(cardId, defaultLimits);
+        long now = System.currentTimeMillis();
+        int exceeded = counters.tryAdd(cardId, amount.getMinorUnits(), now, limits.maxCounts, limits.maxAmounts);
+        if (exceeded >= 0) {
+            declinedCounters[exceeded].increment();
+            throw new IllegalArgumentException("Velocity limit exceeded for " + describe(windows[exceeded]));
+        }
+        return now;
+    }
+
+    /**
+     * Give back an authorization counted by {@link #acquire} that was not made.
+     *
+     * @param cardId the credit card ID
+     * @param amount the transaction amount
+     * @param acquiredAt what {@link #acquire} returned
+     */
+    public void release(Long cardId, Money amount, long acquiredAt) {
+        if (acquiredAt != NOT_ACQUIRED) {
+            counters.remove(cardId, amount.getMinorUnits(), acquiredAt);
+        }
+    }
+
+    /**
+     * Count every authorization made within the longest window, from {@code card_transactions}.
+     * Declined authorizations were given back when they were declined, and are left out.
+     *
+     * @return the number of authorizations counted
+     */
+    public long rebuild() {
+        long startedAt = System.nanoTime();
+        long now = System.currentTimeMillis();
+        Duration longest = Arrays.stream(windows).max(Duration::compareTo).orElse(Duration.ZERO);
+        long[] counted = new long[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT card_id, amount, created_at FROM card_transactions WHERE created_at > ? AND type <> 'DECLINED'");
+            statement.setTimestamp(1, new Timestamp(now - longest.toMillis()));
+            statement.setFetchSize(1000);
+            return statement;
+        }, resultSet -> {
+            if (counters.add(resultSet.getLong(1), Money.of(resultSet.getBigDecimal(2)).getMinorUnits(),
+                    resultSet.getTimestamp(3).getTime(), now)) {
+                counted[0]++;
+            }
+        });
+        log.info("Velocity counters rebuilt from {} authorizations on {} cards in {} ms",
+            counted[0], counters.size(), (System.nanoTime() - startedAt) / 1_000_000);
+        return counted[0];
+    }
+
+    /**
+     * Clear expired buckets and evict idle cards. Run every {@code creditcard.velocity.sweep-interval}.
+     */
+    public void sweep() {
+        int evicted = counters.sweep(System.currentTimeMillis());
+        log.debug("Velocity sweep evicted {} idle cards, {} left", evicted, counters.size());
+    }
+
+    /**
+     * @return the number of cards with authorizations within the longest window
+     */
+    public long size() {
+        return counters.size();
+    }
+
+    @Override
+    public void start() {
+        if (properties.isEnabled()) {
+            rebuild();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * After the ledger, whose journal must be in {@code card_transactions} before the rebuild.
+     */
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+
+    private int indexOf(Duration window, Long cardId) {
+        for (int w = 0; w < windows.length; w++) {
+            if (windows[w].equals(window)) {
+                return w;
+            }
+        }
+        throw new IllegalStateException("Velocity limit of card " + cardId + " has window " + window
+                + ", which is not one of " + Arrays.toString(windows));
+    }
+
+    private static String describe(Duration window) {
+        if (window.toSeconds() % 86_400 == 0) {
+            return window.toDays() + "d";
+        }
+        if (window.toSeconds() % 3_600 == 0) {
+            return window.toHours() + "h";
+        }
+        if (window.toSeconds() % 60 == 0) {
+            return window.toMinutes() + "m";
+        }
+        if (window.toMillis() % 1_000 == 0) {
+            return window.toSeconds() + "s";
+        }
+        return window.toMillis() + "ms";
+    }
+
+    /**
+     * The limits of one card, by window index, in minor units.
+     */
+    private static final class Limits {
+
+        private final long[] maxCounts;
+        private final long[] maxAmounts;
+
+        private Limits(int windows) {
+            this.maxCounts = new long[windows];
+            this.maxAmounts = new long[windows];
+        }
+
+        private Limits copy() {
+            Limits copy = new Limits(maxCounts.length);
+            System.arraycopy(maxCounts, 0, copy.maxCounts, 0, maxCounts.length);
+            System.arraycopy(maxAmounts, 0, copy.maxAmounts, 0, maxAmounts.length);
+            return copy;
+        }
+
+        private void set(int window, VelocityProperties.Limit limit) {
+            maxCounts[window] = limit.getMaxCount() != null ? limit.getMaxCount() : Long.MAX_VALUE;
+            maxAmounts[window] = limit.getMaxAmount() != null
+                    ? Money.of(limit.getMaxAmount()).getMinorUnits()
+                    : Long.MAX_VALUE;
+        }
+    }
+}
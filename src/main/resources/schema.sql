@@ -1,12 +1,21 @@
+-- Ids come from sequences with an increment of 50 so Hibernate can allocate
+-- them in blocks and batch inserts (IDENTITY columns disable insert batching)
+CREATE SEQUENCE IF NOT EXISTS credit_cards_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS card_transactions_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS credit_cards (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT DEFAULT NEXT VALUE FOR credit_cards_seq PRIMARY KEY,
     card_number VARCHAR(16) NOT NULL UNIQUE,
+    card_token VARCHAR(64) UNIQUE,
     credit_limit DECIMAL(19, 2) NOT NULL,
-    available_limit DECIMAL(19, 2) NOT NULL
+    available_limit DECIMAL(19, 2) NOT NULL,
+    captured_total DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    escrow_stripes INT NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS card_transactions (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT DEFAULT NEXT VALUE FOR card_transactions_seq PRIMARY KEY,
     card_id BIGINT NOT NULL,
     amount DECIMAL(19, 2) NOT NULL,
     type VARCHAR(255) NOT NULL,
@@ -14,8 +23,57 @@ CREATE TABLE IF NOT EXISTS card_transactions (
     FOREIGN KEY (card_id) REFERENCES credit_cards(id)
 );
 
+-- Escrow stripes of hot cards: each holds a share of the card's available limit
+CREATE TABLE IF NOT EXISTS card_limit_stripes (
+    card_id BIGINT NOT NULL,
+    stripe INT NOT NULL,
+    available_limit DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (card_id, stripe),
+    FOREIGN KEY (card_id) REFERENCES credit_cards(id)
+);
+
 -- Index for efficient queries filtering by card_id
 CREATE INDEX IF NOT EXISTS idx_card_transactions_card_id ON card_transactions(card_id);
 
 -- Composite index for aggregation queries (card_id + type for SUM operations)
 CREATE INDEX IF NOT EXISTS idx_card_transactions_card_type ON card_transactions(card_id, type);
+
+-- Keyset index for transaction history: seeks to a (created_at, id) position within a card
+CREATE INDEX IF NOT EXISTS idx_card_transactions_card_created ON card_transactions(card_id, created_at, id);
+
+-- Hold expiry index: finds the oldest authorizations that were never captured
+CREATE INDEX IF NOT EXISTS idx_card_transactions_type_created ON card_transactions(type, created_at);
+
+-- Outcome of authorizations made with an Idempotency-Key header
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    card_id BIGINT NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    transaction_id BIGINT NOT NULL,
+    transaction_created_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+-- Prune index: finds the oldest stored keys
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys(created_at);
+
+-- CAPTURED transactions moved out of card_transactions once older than the archive retention
+CREATE TABLE IF NOT EXISTS card_transaction_archive (
+    id BIGINT PRIMARY KEY,
+    card_id BIGINT NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_card_transaction_archive_card_created ON card_transaction_archive(card_id, created_at, id);
+
+-- Count and sum of each card's archived captures per month, added to its live CAPTURED rows for its captured total
+CREATE TABLE IF NOT EXISTS card_capture_rollups (
+    card_id BIGINT NOT NULL,
+    month_start DATE NOT NULL,
+    capture_count BIGINT NOT NULL,
+    captured_amount DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (card_id, month_start)
+);
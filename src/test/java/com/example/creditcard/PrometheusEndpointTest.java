@@ -0,0 +1,48 @@
+package com.example.creditcard;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.TransactionService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration test for the Prometheus scrape endpoint.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:prometheus-endpoint")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@DisplayName("Prometheus Endpoint Tests")
+class PrometheusEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Test
+    @DisplayName("Should expose hot-path, Hibernate and connection pool metrics")
+    void testScrapeContainsHotPathMetrics() throws Exception {
+        // Card 1 is created by the data initializer
+        transactionService.authorize(1L, Money.parse("10.00"));
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "creditcard_authorizations_total{outcome=\"approved\",tier=\"gold\"")))
+                .andExpect(content().string(containsString("creditcard_authorization_reservation_seconds_bucket")))
+                .andExpect(content().string(containsString("creditcard_authorization_commit_seconds_count")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")));
+    }
+}
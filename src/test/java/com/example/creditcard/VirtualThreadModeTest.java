@@ -0,0 +1,52 @@
+package com.example.creditcard;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Integration test for running request handlers on virtual threads.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:virtual-threads",
+        "spring.threads.virtual.enabled=true"
+})
+@DisplayName("Virtual Thread Mode Tests")
+class VirtualThreadModeTest {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    @DisplayName("Should serve authorizations and summaries from virtual threads")
+    void testRequestsServedOnVirtualThreads() {
+        TomcatWebServer webServer = (TomcatWebServer) context.getWebServer();
+        assertInstanceOf(VirtualThreadExecutor.class,
+                webServer.getTomcat().getConnector().getProtocolHandler().getExecutor());
+
+        // Card 1 is created by the data initializer
+        ResponseEntity<JsonNode> authorized = restTemplate.postForEntity("/transactions/authorize",
+                Map.of("cardId", 1, "amount", 10.00), JsonNode.class);
+        ResponseEntity<JsonNode> summary = restTemplate.getForEntity("/cards/1/summary", JsonNode.class);
+
+        assertEquals(HttpStatus.CREATED, authorized.getStatusCode());
+        assertEquals(HttpStatus.OK, summary.getStatusCode());
+        assertEquals(9990.0, summary.getBody().get("availableLimit").asDouble());
+    }
+}
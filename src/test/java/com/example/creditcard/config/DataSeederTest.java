@@ -0,0 +1,116 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.service.CapturedTotalReconciler;
+import com.example.creditcard.service.token.CardLookupService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for seeding a synthetic dataset at startup.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:dataseedertest",
+        "creditcard.seed.enabled=true",
+        "creditcard.seed.cards=250",
+        "creditcard.seed.transactions-per-card=6",
+        "creditcard.seed.chunk-size=40",
+        "creditcard.seed.batch-size=64",
+        "creditcard.seed.threads=3"
+})
+@DirtiesContext
+@DisplayName("DataSeeder Tests")
+class DataSeederTest {
+
+    private static final String FINGERPRINT = "SELECT COUNT(*) || ':' || SUM(t.id * t.amount) || ':' "
+            + "|| SUM(t.card_id * LENGTH(t.type)) || ':' || (SELECT SUM(c.id * c.credit_limit) FROM credit_cards c) "
+            + "FROM card_transactions t";
+
+    @Autowired
+    private DataSeeder dataSeeder;
+
+    @Autowired
+    private SeedProperties properties;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CapturedTotalReconciler reconciler;
+
+    @Autowired
+    private CardLookupService cardLookupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    @DisplayName("Should seed cards whose limits and captured totals match their transactions")
+    void testSeededCardsConsistent() {
+        // Assert
+        assertEquals(250L, cardRepository.count());
+        assertTrue(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_transactions", Long.class) > 0);
+        assertEquals(List.of(), reconciler.verify());
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM credit_cards c "
+                + "WHERE c.available_limit < 0 OR c.available_limit <> c.credit_limit - (SELECT COALESCE(SUM(t.amount), 0) "
+                + "FROM card_transactions t WHERE t.card_id = c.id AND t.type IN ('AUTHORIZED', 'CAPTURED'))", Long.class));
+        assertEquals(7L, cardLookupService.resolveCardId(DataSeeder.cardNumber(7)));
+    }
+
+    @Test
+    @DisplayName("Should move the id sequences past the seeded rows")
+    void testSequencesAdvanced() {
+        // Act
+        CreditCard card = cardRepository.save(CreditCard.builder()
+                .cardNumber("5425233430109903")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+
+        // Assert
+        assertTrue(card.getId() > 250);
+        cardRepository.delete(card);
+    }
+
+    @Test
+    @DisplayName("Should seed the same rows and ids whatever the number of threads")
+    void testDeterministic() {
+        // Arrange
+        String seeded = jdbcTemplate.queryForObject(FINGERPRINT, String.class);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM card_transactions");
+            jdbcTemplate.update("DELETE FROM credit_cards");
+        });
+        properties.setThreads(1);
+
+        // Act
+        long rows = dataSeeder.seed();
+
+        // Assert
+        assertEquals(seeded, jdbcTemplate.queryForObject(FINGERPRINT, String.class));
+        assertEquals(rows, 250 + jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_transactions", Long.class));
+    }
+
+    @Test
+    @DisplayName("Should give seeded cards valid, distinct card numbers")
+    void testCardNumbers() {
+        // Assert
+        assertEquals("4000000000000010", DataSeeder.cardNumber(1));
+        assertEquals(16, DataSeeder.cardNumber(99_999_999_999_999L).length());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.IdempotentAuthorizationService;
+import com.example.creditcard.service.TransactionArchiver;
+import com.example.creditcard.service.TransactionService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration tests for the scheduled prune job, with archiving left disabled.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pruneschedulingtest",
+        "creditcard.hold-expiry.enabled=false",
+        "creditcard.prune.interval=50ms"
+})
+@DisplayName("PruneScheduling Tests")
+class PruneSchedulingTest {
+
+    @SpyBean
+    private TransactionArchiver archiver;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    @DisplayName("Should delete old declines on schedule with archiving disabled")
+    void testPrunesWithoutArchiving() throws InterruptedException {
+        // Arrange
+        CreditCard card = cardRepository.save(CreditCard.builder()
+                .cardNumber("5425233430109903")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+        AuthorizationResult declined = transactionService.authorize(card.getId(), Money.parse("2000.00"));
+        CardTransaction captured = transactionService.authorize(card.getId(), Money.parse("10.00")).transaction();
+        transactionService.captureTransaction(captured.getId());
+        backdate(declined.transaction(), LocalDateTime.now().minusDays(45));
+        backdate(captured, LocalDateTime.now().minusDays(120));
+
+        // Act
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (transactionRepository.existsById(declined.transaction().getId()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertFalse(transactionRepository.existsById(declined.transaction().getId()));
+        assertTrue(transactionRepository.existsById(captured.getId()));
+        verify(archiver, never()).archive();
+    }
+
+    @Test
+    @DisplayName("Should prune idempotency keys when deleting declines fails, and not let the failure escape")
+    void testFailedPruneContained() {
+        // Arrange
+        TransactionArchiver failing = mock(TransactionArchiver.class);
+        when(failing.pruneDeclined()).thenThrow(new IllegalStateException("Database unavailable"));
+        IdempotentAuthorizationService idempotency = mock(IdempotentAuthorizationService.class);
+        ScheduledTaskRegistrar registrar = new ScheduledTaskRegistrar();
+        new PruneScheduling(failing, idempotency, new PruneProperties()).configureTasks(registrar);
+
+        // Act & Assert
+        assertDoesNotThrow(() -> registrar.getFixedDelayTaskList().forEach(task -> task.getRunnable().run()));
+        verify(failing).pruneDeclined();
+        verify(idempotency).pruneExpired();
+    }
+
+    private void backdate(CardTransaction transaction, LocalDateTime createdAt) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE card_transactions SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(createdAt), transaction.getId()));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.creditcard.config;
+
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.CardService;
+import com.example.creditcard.service.CardSummary;
+import com.example.creditcard.service.CardSummaryService;
+import com.example.creditcard.service.TransactionService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for sending read-only transactions to the read pool, and
+ * authorizations and card summary loads to the write pool.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:readwriteroutingtest",
+        "creditcard.hold-expiry.enabled=false",
+        "creditcard.read-datasource.hikari.maximum-pool-size=2",
+        "creditcard.read-datasource.hikari.connection-timeout=250"
+})
+@DisplayName("Read/write routing Tests")
+class ReadWriteRoutingTest {
+
+    @Autowired
+    @Qualifier("writeDataSource")
+    private HikariDataSource writeDataSource;
+
+    @Autowired
+    @Qualifier("readDataSource")
+    private HikariDataSource readDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardSummaryService cardSummaryService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CreditCard card;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        card = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should read on the read pool in a read-only transaction and write on the write pool")
+    void testRouting() {
+        // Arrange
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        // Act & Assert
+        readOnly.executeWithoutResult(status -> {
+            cardService.getCardById(card.getId());
+            assertEquals(1, readDataSource.getHikariPoolMXBean().getActiveConnections());
+            assertEquals(0, writeDataSource.getHikariPoolMXBean().getActiveConnections());
+        });
+        readWrite.executeWithoutResult(status -> {
+            cardService.getCardById(card.getId());
+            assertEquals(0, readDataSource.getHikariPoolMXBean().getActiveConnections());
+            assertEquals(1, writeDataSource.getHikariPoolMXBean().getActiveConnections());
+        });
+    }
+
+    @Test
+    @DisplayName("Should authorize while every read connection is taken")
+    void testReadsCannotStarveAuthorizations() throws Exception {
+        // Act
+        whileReadConnectionsTaken(() -> transactionService.authorize(card.getId(), Money.parse("10.00")));
+
+        // Assert
+        assertEquals(Money.parse("990.00"), cardRepository.findById(card.getId()).orElseThrow().getAvailableLimit());
+    }
+
+    @Test
+    @DisplayName("Should load card summaries on the write pool")
+    void testSummariesLoadedOnWritePool() throws Exception {
+        // Arrange
+        transactionService.authorize(card.getId(), Money.parse("10.00"));
+
+        // Act
+        CardSummary[] summary = new CardSummary[1];
+        whileReadConnectionsTaken(() -> summary[0] = cardSummaryService.getCardSummary(card.getId()));
+
+        // Assert
+        assertEquals(Money.parse("990.00"), summary[0].getAvailableLimit());
+    }
+
+    /**
+     * Run an action while two read-only transactions hold both read connections.
+     */
+    private void whileReadConnectionsTaken(Runnable action) throws InterruptedException {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        CountDownLatch held = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread reader = new Thread(() -> readOnly.executeWithoutResult(status -> {
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM credit_cards", Long.class);
+                held.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            reader.start();
+            readers.add(reader);
+        }
+        assertTrue(held.await(10, TimeUnit.SECONDS));
+
+        try {
+            action.run();
+            assertEquals(2, readDataSource.getHikariPoolMXBean().getActiveConnections());
+        } finally {
+            release.countDown();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+    }
+}
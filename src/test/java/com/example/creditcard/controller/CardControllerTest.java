@@ -1,8 +1,15 @@
 package com.example.creditcard.controller;
 
-import com.example.creditcard.domain.CreditCard;
-import com.example.creditcard.service.CardService;
-import com.example.creditcard.service.TransactionService;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardTransactionView;
+import com.example.creditcard.service.CardSummary;
+import com.example.creditcard.service.CardSummaryService;
+import com.example.creditcard.service.TransactionHistoryService;
+import com.example.creditcard.service.TransactionPage;
+import com.example.creditcard.service.escrow.EscrowService;
+import com.example.creditcard.service.token.CardLookupService;
+import com.example.creditcard.service.traffic.TrafficRecorder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -11,12 +18,28 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(CardController.class)
@@ -27,29 +50,34 @@ class CardControllerTest {
     private MockMvc mockMvc;
 
     @MockBean
-    private CardService cardService;
+    private CardSummaryService cardSummaryService;
 
     @MockBean
-    private TransactionService transactionService;
+    private TransactionHistoryService transactionHistoryService;
 
-    private CreditCard testCard;
+    @MockBean
+    private EscrowService escrowService;
+
+    @MockBean
+    private TrafficRecorder trafficRecorder;
+
+    @MockBean
+    private CardLookupService cardLookupService;
+
+    private CardSummary testCard;
 
     @BeforeEach
     void setUp() {
-        testCard = CreditCard.builder()
-                .id(1L)
-                .cardNumber("4532015112830366")
-                .creditLimit(new BigDecimal("10000.00"))
-                .availableLimit(new BigDecimal("9900.00"))
-                .build();
+        testCard = new CardSummary(1L, "4532****0366",
+                Money.parse("10000.00"), Money.parse("9900.00"), Money.ZERO);
     }
 
     @Test
     @DisplayName("Should return card summary successfully")
     void testGetCardSummarySuccess() throws Exception {
         // Arrange
-        when(cardService.getCardById(1L)).thenReturn(testCard);
-        when(transactionService.getTotalCapturedAmount(1L)).thenReturn(new BigDecimal("100.00"));
+        when(cardSummaryService.getCardSummary(1L)).thenReturn(new CardSummary(1L, "4532****0366",
+                Money.parse("10000.00"), Money.parse("9900.00"), Money.parse("100.00")));
 
         // Act & Assert
         mockMvc.perform(get("/cards/1/summary")
@@ -62,11 +90,25 @@ class CardControllerTest {
                 .andExpect(jsonPath("$.totalCapturedAmount").value(100.00));
     }
 
+    @Test
+    @DisplayName("Should write the card summary with its fields in wire order")
+    void testGetCardSummaryWireFormat() throws Exception {
+        // Arrange
+        when(cardSummaryService.getCardSummary(1L)).thenReturn(new CardSummary(1L, "4532****0366",
+                Money.parse("10000.00"), Money.parse("9900.00"), Money.parse("100.00")));
+
+        // Act & Assert
+        mockMvc.perform(get("/cards/1/summary"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"cardId\":1,\"cardNumber\":\"4532****0366\",\"creditLimit\":10000.00,"
+                        + "\"availableLimit\":9900.00,\"totalCapturedAmount\":100.00}"));
+    }
+
     @Test
     @DisplayName("Should return 404 when card not found")
     void testGetCardSummaryNotFound() throws Exception {
         // Arrange
-        when(cardService.getCardById(anyLong())).thenThrow(new java.util.NoSuchElementException("Card not found"));
+        when(cardSummaryService.getCardSummary(anyLong())).thenThrow(new java.util.NoSuchElementException("Card not found"));
 
         // Act & Assert
         mockMvc.perform(get("/cards/999/summary")
@@ -78,8 +120,7 @@ class CardControllerTest {
     @DisplayName("Should return zero total captured amount when no transactions captured")
     void testGetCardSummaryNoTransactions() throws Exception {
         // Arrange
-        when(cardService.getCardById(1L)).thenReturn(testCard);
-        when(transactionService.getTotalCapturedAmount(1L)).thenReturn(BigDecimal.ZERO);
+        when(cardSummaryService.getCardSummary(1L)).thenReturn(testCard);
 
         // Act & Assert
         mockMvc.perform(get("/cards/1/summary")
@@ -92,8 +133,7 @@ class CardControllerTest {
     @DisplayName("Should mask card number in response for security")
     void testCardNumberMaskedInResponse() throws Exception {
         // Arrange
-        when(cardService.getCardById(1L)).thenReturn(testCard);
-        when(transactionService.getTotalCapturedAmount(1L)).thenReturn(BigDecimal.ZERO);
+        when(cardSummaryService.getCardSummary(1L)).thenReturn(testCard);
 
         // Act & Assert - Verify card number is masked (format: 4532****0366)
         mockMvc.perform(get("/cards/1/summary")
@@ -101,4 +141,163 @@ class CardControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.cardNumber").value("4532****0366"));
     }
+
+    @Test
+    @DisplayName("Should return the card summary of a card number")
+    void testGetCardSummaryByCardNumber() throws Exception {
+        // Arrange
+        when(cardLookupService.resolveCardId("4532015112830366")).thenReturn(1L);
+        when(cardSummaryService.getCardSummary(1L)).thenReturn(testCard);
+
+        // Act & Assert
+        mockMvc.perform(post("/cards/summary/by-card-number")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardNumber\":\"4532015112830366\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardId").value(1))
+                .andExpect(jsonPath("$.cardNumber").value("4532****0366"));
+        verify(trafficRecorder).summary(1L);
+    }
+
+    @Test
+    @DisplayName("Should return 404 without the card number for an unknown card number")
+    void testGetCardSummaryByUnknownCardNumber() throws Exception {
+        // Arrange
+        when(cardLookupService.resolveCardId("4000000000000002"))
+                .thenThrow(new NoSuchElementException("Card not found for the given card number"));
+
+        // Act & Assert
+        mockMvc.perform(post("/cards/summary/by-card-number")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardNumber\":\"4000000000000002\"}"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Card not found for the given card number"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 for a card number that is not 12 to 19 digits")
+    void testGetCardSummaryByInvalidCardNumber() throws Exception {
+        // Arrange
+        when(cardLookupService.resolveCardId("4532-0151"))
+                .thenThrow(new IllegalArgumentException("cardNumber must be 12 to 19 digits"));
+
+        // Act & Assert
+        mockMvc.perform(post("/cards/summary/by-card-number")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardNumber\":\"4532-0151\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("cardNumber must be 12 to 19 digits"));
+        verify(cardSummaryService, never()).getCardSummary(any());
+    }
+
+    @Test
+    @DisplayName("Should return a page of transactions with the next cursor")
+    void testGetTransactionsPage() throws Exception {
+        // Arrange
+        when(transactionHistoryService.getTransactions(1L, null, 2)).thenReturn(new TransactionPage(
+                List.of(view(3L, TransactionType.CAPTURED), view(2L, TransactionType.AUTHORIZED)), "next"));
+
+        // Act & Assert
+        mockMvc.perform(get("/cards/1/transactions").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardId").value(1))
+                .andExpect(jsonPath("$.transactions.length()").value(2))
+                .andExpect(jsonPath("$.transactions[0].transactionId").value(3))
+                .andExpect(jsonPath("$.transactions[0].type").value("CAPTURED"))
+                .andExpect(jsonPath("$.transactions[1].transactionId").value(2))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 for a malformed cursor")
+    void testGetTransactionsInvalidCursor() throws Exception {
+        // Arrange
+        when(transactionHistoryService.getTransactions(1L, "bogus", 50))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        // Act & Assert
+        mockMvc.perform(get("/cards/1/transactions").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid cursor"));
+    }
+
+    @Test
+    @DisplayName("Should stream transactions as newline-delimited JSON")
+    void testExportTransactions() throws Exception {
+        // Arrange
+        doAnswer(invocation -> {
+            Consumer<CardTransactionView> consumer = invocation.getArgument(1);
+            consumer.accept(view(2L, TransactionType.AUTHORIZED));
+            consumer.accept(view(1L, TransactionType.CAPTURED));
+            return 2L;
+        }).when(transactionHistoryService).exportTransactions(eq(1L), any());
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/cards/1/transactions/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"transactionId\":2,\"cardId\":1,"));
+        assertTrue(lines[1].contains("\"type\":\"CAPTURED\""));
+    }
+
+    @Test
+    @DisplayName("Should return 404 when exporting transactions of a non-existent card")
+    void testExportTransactionsCardNotFound() throws Exception {
+        // Arrange
+        doThrow(new NoSuchElementException("Card not found")).when(transactionHistoryService).checkCardExists(999L);
+
+        // Act & Assert
+        mockMvc.perform(get("/cards/999/transactions/export"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should put a card in escrow mode")
+    void testEnableEscrow() throws Exception {
+        // Act & Assert
+        mockMvc.perform(put("/cards/1/escrow").param("stripes", "8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardId").value(1))
+                .andExpect(jsonPath("$.escrowStripes").value(8));
+        verify(escrowService).enable(1L, 8);
+    }
+
+    @Test
+    @DisplayName("Should return 400 for an out of range stripe count")
+    void testEnableEscrowInvalidStripes() throws Exception {
+        // Arrange
+        doThrow(new IllegalArgumentException("Stripes must be between 1 and 64")).when(escrowService).enable(1L, 65);
+
+        // Act & Assert
+        mockMvc.perform(put("/cards/1/escrow").param("stripes", "65"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should take a card out of escrow mode")
+    void testDisableEscrow() throws Exception {
+        // Act & Assert
+        mockMvc.perform(delete("/cards/1/escrow"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.escrowStripes").value(0));
+        verify(escrowService).disable(1L);
+    }
+
+    private static CardTransactionView view(Long id, TransactionType type) {
+        return new CardTransactionView() {
+            public Long getId() { return id; }
+            public Long getCardId() { return 1L; }
+            public Money getAmount() { return Money.parse("100.00"); }
+            public TransactionType getType() { return type; }
+            public LocalDateTime getCreatedAt() { return LocalDateTime.of(2026, 2, 5, 20, 10, 30); }
+        };
+    }
 }
@@ -2,8 +2,16 @@ package com.example.creditcard.controller;
 
 import com.example.creditcard.domain.CreditCard;
 import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
 import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.BatchAuthorizationResult;
+import com.example.creditcard.service.IdempotentAuthorizationService;
 import com.example.creditcard.service.TransactionService;
+import com.example.creditcard.service.capture.AsyncCaptureService;
+import com.example.creditcard.service.capture.CaptureStatus;
+import com.example.creditcard.service.token.CardLookupService;
+import com.example.creditcard.service.traffic.TrafficRecorder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,15 +19,25 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -33,6 +51,18 @@ class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private IdempotentAuthorizationService idempotentAuthorizationService;
+
+    @MockBean
+    private AsyncCaptureService asyncCaptureService;
+
+    @MockBean
+    private TrafficRecorder trafficRecorder;
+
+    @MockBean
+    private CardLookupService cardLookupService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -45,14 +75,14 @@ class TransactionControllerTest {
         testCard = CreditCard.builder()
                 .id(1L)
                 .cardNumber("4532015112830366")
-                .creditLimit(new BigDecimal("10000.00"))
-                .availableLimit(new BigDecimal("9900.00"))
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("9900.00"))
                 .build();
 
         authorizedTransaction = CardTransaction.builder()
                 .id(1L)
                 .card(testCard)
-                .amount(new BigDecimal("100.00"))
+                .amount(Money.parse("100.00"))
                 .type(TransactionType.AUTHORIZED)
                 .createdAt(LocalDateTime.now())
                 .build();
@@ -60,7 +90,7 @@ class TransactionControllerTest {
         capturedTransaction = CardTransaction.builder()
                 .id(1L)
                 .card(testCard)
-                .amount(new BigDecimal("100.00"))
+                .amount(Money.parse("100.00"))
                 .type(TransactionType.CAPTURED)
                 .createdAt(LocalDateTime.now())
                 .build();
@@ -70,9 +100,9 @@ class TransactionControllerTest {
     @DisplayName("Should authorize transaction successfully")
     void testAuthorizeTransactionSuccess() throws Exception {
         // Arrange
-        TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, new BigDecimal("100.00"));
-        when(transactionService.authorizeTransaction(1L, new BigDecimal("100.00")))
-                .thenReturn(authorizedTransaction);
+        TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, Money.parse("100.00"));
+        when(transactionService.authorize(1L, Money.parse("100.00")))
+                .thenReturn(new AuthorizationResult.Approved(authorizedTransaction));
 
         // Act & Assert
         mockMvc.perform(post("/transactions/authorize")
@@ -86,18 +116,218 @@ class TransactionControllerTest {
     }
 
     @Test
-    @DisplayName("Should return 400 when authorization fails due to insufficient limit")
+    @DisplayName("Should record an authorization and the transaction it was approved with")
+    void testAuthorizeRecorded() throws Exception {
+        // Arrange
+        when(trafficRecorder.authorize(1L, Money.parse("100.00"), null)).thenReturn(7L);
+        when(transactionService.authorize(1L, Money.parse("100.00")))
+                .thenReturn(new AuthorizationResult.Approved(authorizedTransaction));
+
+        // Act
+        mockMvc.perform(post("/transactions/authorize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardId\":1,\"amount\":100.00}"))
+                .andExpect(status().isCreated());
+
+        // Assert
+        verify(trafficRecorder).authorized(7L, 1L);
+    }
+
+    @Test
+    @DisplayName("Should authorize through the idempotency service when a key is given")
+    void testAuthorizeTransactionWithIdempotencyKey() throws Exception {
+        // Arrange
+        TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, Money.parse("100.00"));
+        when(idempotentAuthorizationService.authorize("retry-1", 1L, Money.parse("100.00")))
+                .thenReturn(new AuthorizationResult.Approved(authorizedTransaction));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize")
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.transactionId").value(1))
+                .andExpect(jsonPath("$.type").value("AUTHORIZED"));
+        verify(transactionService, never()).authorize(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should return 400 for a decline through the idempotency service")
+    void testAuthorizeTransactionWithIdempotencyKeyDeclined() throws Exception {
+        // Arrange
+        TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, Money.parse("15000.00"));
+        when(trafficRecorder.authorize(1L, Money.parse("15000.00"), "retry-1")).thenReturn(7L);
+        when(idempotentAuthorizationService.authorize("retry-1", 1L, Money.parse("15000.00")))
+                .thenReturn(declined(Money.parse("15000.00")));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize")
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Insufficient available limit"));
+        verify(transactionService, never()).authorize(anyLong(), any());
+        verify(trafficRecorder, never()).authorized(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should authorize on the card resolved from a card number")
+    void testAuthorizeByCardNumber() throws Exception {
+        // Arrange
+        when(cardLookupService.resolveCardId("4532015112830366")).thenReturn(1L);
+        when(trafficRecorder.authorize(1L, Money.parse("100.00"), null)).thenReturn(7L);
+        when(transactionService.authorize(1L, Money.parse("100.00")))
+                .thenReturn(new AuthorizationResult.Approved(authorizedTransaction));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize/by-card-number")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardNumber\":\"4532015112830366\",\"amount\":100.00}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.transactionId").value(1))
+                .andExpect(jsonPath("$.cardId").value(1));
+        verify(trafficRecorder).authorized(7L, 1L);
+    }
+
+    @Test
+    @DisplayName("Should return 404 when no card has the card number")
+    void testAuthorizeByUnknownCardNumber() throws Exception {
+        // Arrange
+        when(cardLookupService.resolveCardId("4000000000000002"))
+                .thenThrow(new NoSuchElementException("Card not found for the given card number"));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize/by-card-number")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardNumber\":\"4000000000000002\",\"amount\":100.00}"))
+                .andExpect(status().isNotFound());
+        verify(transactionService, never()).authorize(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should read amounts given as numbers or strings into minor units")
+    void testAuthorizeReadsMoney() throws Exception {
+        // Arrange
+        when(transactionService.authorize(1L, Money.parse("12.30")))
+                .thenReturn(new AuthorizationResult.Approved(authorizedTransaction));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardId\": 1, \"amount\": 12.3}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/transactions/authorize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardId\": 1, \"amount\": \"12.30\"}"))
+                .andExpect(status().isCreated());
+        verify(transactionService, times(2)).authorize(1L, Money.parse("12.30"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 for an amount with fractions of a cent")
+    void testAuthorizeRejectsFractionalCents() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardId\": 1, \"amount\": 1.005}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Malformed request body"));
+        verify(transactionService, never()).authorize(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should return 400 for a zero or negative amount")
+    void testAuthorizeRejectsNonPositiveAmounts() throws Exception {
+        // Act & Assert
+        for (String amount : new String[] {"0", "0.00", "-10.00"}) {
+            mockMvc.perform(post("/transactions/authorize")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"cardId\": 1, \"amount\": " + amount + "}"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("amount must be at least 0.01"));
+        }
+        verify(transactionService, never()).authorize(anyLong(), any());
+        verify(trafficRecorder, never()).authorize(anyLong(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should return 400 for a zero or negative amount on a card number")
+    void testAuthorizeByCardNumberRejectsNonPositiveAmounts() throws Exception {
+        // Arrange
+        when(cardLookupService.resolveCardId("4532015112830366")).thenReturn(1L);
+
+        // Act & Assert
+        for (String amount : new String[] {"0", "0.00", "-10.00"}) {
+            mockMvc.perform(post("/transactions/authorize/by-card-number")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("Idempotency-Key", "key-" + amount)
+                    .content("{\"cardNumber\":\"4532015112830366\",\"amount\":" + amount + "}"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("amount must be at least 0.01"));
+        }
+        verify(transactionService, never()).authorize(anyLong(), any());
+        verify(idempotentAuthorizationService, never()).authorize(any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should return 400 when authorization is declined due to insufficient limit")
     void testAuthorizeTransactionInsufficientLimit() throws Exception {
         // Arrange
-        TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, new BigDecimal("15000.00"));
-        when(transactionService.authorizeTransaction(anyLong(), any()))
-                .thenThrow(new IllegalArgumentException("Insufficient available limit"));
+        TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, Money.parse("15000.00"));
+        when(trafficRecorder.authorize(1L, Money.parse("15000.00"), null)).thenReturn(7L);
+        when(transactionService.authorize(anyLong(), any()))
+                .thenReturn(declined(Money.parse("15000.00")));
 
         // Act & Assert
         mockMvc.perform(post("/transactions/authorize")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Insufficient available limit"));
+        verify(trafficRecorder, never()).authorized(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should write the authorization and error bodies with their fields in wire order")
+    void testAuthorizeResponseWireFormat() throws Exception {
+        // Arrange
+        authorizedTransaction.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30, 0));
+        when(transactionService.authorize(1L, Money.parse("100.00")))
+                .thenReturn(new AuthorizationResult.Approved(authorizedTransaction));
+        when(transactionService.authorize(1L, Money.parse("15000.00")))
+                .thenReturn(declined(Money.parse("15000.00")));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardId\": 1, \"amount\": 100.00}"))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("{\"transactionId\":1,\"cardId\":1,\"amount\":100.00,"
+                        + "\"type\":\"AUTHORIZED\",\"createdAt\":\"2024-01-15T10:30:00\"}"));
+        mockMvc.perform(post("/transactions/authorize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardId\": 1, \"amount\": 15000.00}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(matchesPattern("\\{\"timestamp\":\"[^\"]+\",\"status\":400,"
+                        + "\"error\":\"Bad Request\",\"message\":\"Insufficient available limit\"}")));
+    }
+
+    @Test
+    @DisplayName("Should return 503 when no database connection is available")
+    void testAuthorizeTransactionPoolExhausted() throws Exception {
+        // Arrange
+        TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, Money.parse("100.00"));
+        when(transactionService.authorize(anyLong(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Unable to acquire JDBC Connection"));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("Service Unavailable"));
     }
 
     @Test
@@ -147,7 +377,7 @@ class TransactionControllerTest {
     @DisplayName("Should handle different transaction amounts")
     void testAuthorizeWithDifferentAmounts() throws Exception {
         // Arrange
-        BigDecimal amount = new BigDecimal("500.00");
+        Money amount = Money.parse("500.00");
         CardTransaction transaction = CardTransaction.builder()
                 .id(2L)
                 .card(testCard)
@@ -157,8 +387,8 @@ class TransactionControllerTest {
                 .build();
 
         TransactionController.AuthorizeRequest request = new TransactionController.AuthorizeRequest(1L, amount);
-        when(transactionService.authorizeTransaction(1L, amount))
-                .thenReturn(transaction);
+        when(transactionService.authorize(1L, amount))
+                .thenReturn(new AuthorizationResult.Approved(transaction));
 
         // Act & Assert
         mockMvc.perform(post("/transactions/authorize")
@@ -167,4 +397,91 @@ class TransactionControllerTest {
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.amount").value(500.00));
     }
+
+    @Test
+    @DisplayName("Should return one result per batch request in request order")
+    void testAuthorizeBatch() throws Exception {
+        // Arrange
+        List<TransactionController.AuthorizeRequest> requests = List.of(
+                new TransactionController.AuthorizeRequest(1L, Money.parse("100.00")),
+                new TransactionController.AuthorizeRequest(1L, Money.parse("0.00")),
+                new TransactionController.AuthorizeRequest(1L, Money.parse("15000.00")),
+                new TransactionController.AuthorizeRequest(999L, Money.parse("10.00")));
+        when(transactionService.authorizeBatch(argThat(commands -> commands.size() == 3)))
+                .thenReturn(List.of(
+                        BatchAuthorizationResult.approved(authorizedTransaction),
+                        BatchAuthorizationResult.declined(declined(Money.parse("15000.00")).transaction(),
+                                AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT),
+                        BatchAuthorizationResult.failed(999L, Money.parse("10.00"),
+                                new NoSuchElementException("Card not found with id: 999"))));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].transactionId").value(1))
+                .andExpect(jsonPath("$[0].type").value("AUTHORIZED"))
+                .andExpect(jsonPath("$[1].status").value(400))
+                .andExpect(jsonPath("$[1].message").value("amount must be at least 0.01"))
+                .andExpect(jsonPath("$[2].status").value(400))
+                .andExpect(jsonPath("$[2].message").value("Insufficient available limit"))
+                .andExpect(jsonPath("$[3].status").value(404))
+                .andExpect(jsonPath("$[3].cardId").value(999));
+    }
+
+    @Test
+    @DisplayName("Should return 400 for an empty batch")
+    void testAuthorizeEmptyBatch() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/transactions/authorize/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+        verify(transactionService, never()).authorizeBatch(anyList());
+    }
+
+    @Test
+    @DisplayName("Should accept an asynchronous capture with 202 and report its status")
+    void testCaptureAsync() throws Exception {
+        // Arrange
+        when(asyncCaptureService.submit(1L))
+                .thenReturn(new CaptureStatus(1L, CaptureStatus.State.PENDING, null));
+        when(asyncCaptureService.getStatus(1L))
+                .thenReturn(new CaptureStatus(1L, CaptureStatus.State.CAPTURED, null));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/capture/1").param("mode", "async"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.transactionId").value(1))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+        mockMvc.perform(get("/transactions/capture/1/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CAPTURED"));
+        verify(transactionService, never()).captureTransaction(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should return 503 when the capture queue is full")
+    void testCaptureAsyncQueueFull() throws Exception {
+        // Arrange
+        when(asyncCaptureService.submit(1L))
+                .thenThrow(new RejectedExecutionException("Capture queue is full, please retry"));
+
+        // Act & Assert
+        mockMvc.perform(post("/transactions/capture/1").param("mode", "async"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.message").value("Capture queue is full, please retry"));
+    }
+
+    private AuthorizationResult.Declined declined(Money amount) {
+        return new AuthorizationResult.Declined(CardTransaction.builder()
+                .id(2L)
+                .card(testCard)
+                .amount(amount)
+                .type(TransactionType.DECLINED)
+                .createdAt(LocalDateTime.now())
+                .build(), AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT);
+    }
 }
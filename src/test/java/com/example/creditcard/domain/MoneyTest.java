@@ -0,0 +1,70 @@
+package com.example.creditcard.domain;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the minor-unit money type.
+ */
+@DisplayName("Money Tests")
+class MoneyTest {
+
+    @Test
+    @DisplayName("Should parse plain decimals into minor units")
+    void testParse() {
+        assertEquals(123456, Money.parse("1234.56").getMinorUnits());
+        assertEquals(1200, Money.parse("12").getMinorUnits());
+        assertEquals(50, Money.parse("0.5").getMinorUnits());
+        assertEquals(-5, Money.parse("-0.05").getMinorUnits());
+        assertEquals(100, Money.parse("+1.").getMinorUnits());
+        assertEquals(Money.ZERO, Money.parse("0.00"));
+    }
+
+    @Test
+    @DisplayName("Should reject malformed amounts, fractions of a cent and overflow")
+    void testParseRejects() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1.005"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("-"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1.2.3"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("1e3"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+    }
+
+    @Test
+    @DisplayName("Should format with two decimal places")
+    void testToString() {
+        assertEquals("1234.05", Money.ofMinor(123405).toString());
+        assertEquals("-0.50", Money.ofMinor(-50).toString());
+        assertEquals("0.00", Money.ZERO.toString());
+    }
+
+    @Test
+    @DisplayName("Should convert to and from DECIMAL(19, 2) values")
+    void testBigDecimal() {
+        assertEquals(new BigDecimal("10.10"), Money.parse("10.1").toBigDecimal());
+        assertEquals(Money.parse("10.10"), Money.of(new BigDecimal("10.1000")));
+    }
+
+    @Test
+    @DisplayName("Should do exact arithmetic and comparisons in minor units")
+    void testArithmetic() {
+        Money limit = Money.parse("100.00");
+        Money amount = Money.parse("33.33");
+
+        assertEquals(Money.parse("66.67"), limit.minus(amount));
+        assertEquals(Money.parse("133.33"), limit.plus(amount));
+        assertEquals(Money.parse("33.33"), limit.divide(3));
+        assertEquals(Money.parse("99.99"), amount.times(3));
+        assertTrue(amount.isLessThan(limit));
+        assertTrue(limit.minus(amount.times(4)).isNegative());
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for the incrementally maintained captured total and its backfill.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:capturedtotaltest",
+        "creditcard.captured-total.chunk-size=2"
+})
+@DisplayName("CapturedTotalReconciler Tests")
+class CapturedTotalReconcilerTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CapturedTotalReconciler reconciler;
+
+    private CreditCard testCard;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        testCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("10000.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should add captured amounts to the card's captured total")
+    void testCaptureMaintainsTotal() {
+        CardTransaction first = transactionService.authorize(testCard.getId(), Money.parse("100.00")).transaction();
+        CardTransaction second = transactionService.authorize(testCard.getId(), Money.parse("50.50")).transaction();
+        transactionService.authorize(testCard.getId(), Money.parse("10.00"));
+
+        transactionService.captureTransaction(first.getId());
+        transactionService.captureTransaction(second.getId());
+
+        assertEquals(Money.parse("150.50"), cardRepository.findById(testCard.getId()).get().getCapturedTotal());
+        assertEquals(Money.parse("150.50"), transactionService.getTotalCapturedAmount(testCard.getId()));
+        assertTrue(reconciler.verify().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should backfill captured totals of existing cards in chunks")
+    void testBackfill() {
+        List<CreditCard> cards = List.of(testCard,
+                cardRepository.save(CreditCard.builder()
+                        .cardNumber("5555555555554444")
+                        .creditLimit(Money.parse("5000.00"))
+                        .availableLimit(Money.parse("5000.00"))
+                        .build()),
+                cardRepository.save(CreditCard.builder()
+                        .cardNumber("4111111111111111")
+                        .creditLimit(Money.parse("5000.00"))
+                        .availableLimit(Money.parse("5000.00"))
+                        .build()));
+        // Rows written as if they predate the captured_total column
+        for (CreditCard card : cards) {
+            transactionRepository.save(CardTransaction.builder()
+                    .card(card).amount(Money.parse("20.00")).type(TransactionType.CAPTURED).build());
+            transactionRepository.save(CardTransaction.builder()
+                    .card(card).amount(Money.parse("5.00")).type(TransactionType.CAPTURED).build());
+            transactionRepository.save(CardTransaction.builder()
+                    .card(card).amount(Money.parse("7.00")).type(TransactionType.AUTHORIZED).build());
+        }
+        assertEquals(3, reconciler.verify().size());
+
+        int updated = reconciler.backfill();
+
+        assertEquals(3, updated);
+        assertTrue(reconciler.verify().isEmpty());
+        for (CreditCard card : cards) {
+            assertEquals(Money.parse("25.00"), cardRepository.findById(card.getId()).get().getCapturedTotal());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.creditcard.service;
 
 import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
 import com.example.creditcard.repository.CardRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -10,7 +11,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
@@ -36,8 +36,8 @@ class CardServiceTest {
         testCard = CreditCard.builder()
                 .id(1L)
                 .cardNumber("4532015112830366")
-                .creditLimit(new BigDecimal("10000.00"))
-                .availableLimit(new BigDecimal("10000.00"))
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("10000.00"))
                 .build();
     }
 
@@ -54,7 +54,7 @@ class CardServiceTest {
         assertNotNull(result);
         assertEquals(1L, result.getId());
         assertEquals("4532015112830366", result.getCardNumber());
-        assertEquals(new BigDecimal("10000.00"), result.getCreditLimit());
+        assertEquals(Money.parse("10000.00"), result.getCreditLimit());
         verify(cardRepository, times(1)).findById(1L);
     }
 
@@ -91,8 +91,8 @@ class CardServiceTest {
         // Arrange
         CreditCard newCard = CreditCard.builder()
                 .cardNumber("5432109876543210")
-                .creditLimit(new BigDecimal("20000.00"))
-                .availableLimit(new BigDecimal("20000.00"))
+                .creditLimit(Money.parse("20000.00"))
+                .availableLimit(Money.parse("20000.00"))
                 .build();
 
         when(cardRepository.save(any(CreditCard.class))).thenReturn(newCard);
@@ -103,6 +103,6 @@ class CardServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals("5432109876543210", result.getCardNumber());
-        assertEquals(new BigDecimal("20000.00"), result.getCreditLimit());
+        assertEquals(Money.parse("20000.00"), result.getCreditLimit());
     }
 }
@@ -0,0 +1,134 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.config.SummaryCacheProperties;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CardSummaryService Tests")
+class CardSummaryServiceTest {
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardSummaryService cardSummaryService;
+    private CreditCard testCard;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cardSummaryService = new CardSummaryService(cardService, new SummaryCacheProperties(), meterRegistry, transactionManager);
+
+        testCard = CreditCard.builder()
+                .id(1L)
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("9900.00"))
+                .capturedTotal(Money.parse("100.00"))
+                .build();
+        lenient().when(cardService.getAvailableLimit(any(CreditCard.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, CreditCard.class).getAvailableLimit());
+    }
+
+    @Test
+    @DisplayName("Should load the summary once and then serve it from the cache")
+    void testReadThrough() {
+        // Arrange
+        when(cardService.getCardById(1L)).thenReturn(testCard);
+
+        // Act
+        CardSummary first = cardSummaryService.getCardSummary(1L);
+        CardSummary second = cardSummaryService.getCardSummary(1L);
+
+        // Assert
+        assertEquals(Money.parse("9900.00"), first.getAvailableLimit());
+        assertEquals(Money.parse("100.00"), first.getTotalCapturedAmount());
+        assertEquals("4532****0366", first.getMaskedCardNumber());
+        assertSame(first, second);
+        verify(cardService, times(1)).getCardById(1L);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "cardSummary").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should reload the summary after the card is evicted")
+    void testEviction() {
+        // Arrange
+        when(cardService.getCardById(1L)).thenReturn(testCard);
+        cardSummaryService.getCardSummary(1L);
+
+        // Act
+        testCard.setAvailableLimit(Money.parse("9800.00"));
+        cardSummaryService.evictAfterCommit(1L);
+        CardSummary reloaded = cardSummaryService.getCardSummary(1L);
+
+        // Assert
+        assertEquals(Money.parse("9800.00"), reloaded.getAvailableLimit());
+        verify(cardService, times(2)).getCardById(1L);
+    }
+
+    @Test
+    @DisplayName("Should not cache a summary loaded while the card was being invalidated")
+    void testInvalidationDuringLoadIsNotCached() {
+        // Arrange: a write commits while the summary is being read
+        when(cardService.getCardById(1L)).thenAnswer(invocation -> {
+            cardSummaryService.evictAfterCommit(1L);
+            return testCard;
+        });
+
+        // Act
+        cardSummaryService.getCardSummary(1L);
+        cardSummaryService.getCardSummary(1L);
+
+        // Assert
+        verify(cardService, times(2)).getCardById(1L);
+    }
+
+    @Test
+    @DisplayName("Should always read the database when the cache is disabled")
+    void testDisabled() {
+        // Arrange
+        SummaryCacheProperties properties = new SummaryCacheProperties();
+        properties.setEnabled(false);
+        cardSummaryService = new CardSummaryService(cardService, properties, meterRegistry, transactionManager);
+        when(cardService.getCardById(1L)).thenReturn(testCard);
+
+        // Act
+        cardSummaryService.getCardSummary(1L);
+        cardSummaryService.getCardSummary(1L);
+
+        // Assert
+        verify(cardService, times(2)).getCardById(1L);
+    }
+
+    @Test
+    @DisplayName("Should not cache missing cards")
+    void testCardNotFound() {
+        // Arrange
+        when(cardService.getCardById(anyLong())).thenThrow(new NoSuchElementException("Card not found"));
+
+        // Act & Assert
+        assertThrows(NoSuchElementException.class, () -> cardSummaryService.getCardSummary(999L));
+        assertThrows(NoSuchElementException.class, () -> cardSummaryService.getCardSummary(999L));
+        verify(cardService, times(2)).getCardById(999L);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Integration tests for expiring authorization holds.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:holdexpirytest",
+        "creditcard.hold-expiry.enabled=false",
+        "creditcard.hold-expiry.ttl=1h",
+        "creditcard.hold-expiry.chunk-size=2"
+})
+@DisplayName("HoldExpirySweeper Tests")
+class HoldExpirySweeperTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardSummaryService cardSummaryService;
+
+    @Autowired
+    private HoldExpirySweeper sweeper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private CreditCard firstCard;
+    private CreditCard secondCard;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        firstCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+        secondCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830367")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should expire stale holds and return their amounts to the cards")
+    void testSweepReleasesStaleHolds() {
+        CardTransaction staleFirst = authorize(firstCard, "100.00", 3);
+        CardTransaction staleSecond = authorize(firstCard, "50.00", 2);
+        CardTransaction staleOther = authorize(secondCard, "30.00", 2);
+        CardTransaction fresh = authorize(firstCard, "20.00", 0);
+        CardTransaction captured = authorize(secondCard, "40.00", 5);
+        transactionService.captureTransaction(captured.getId());
+        // Cache the summary so the test also sees it being evicted
+        cardSummaryService.getCardSummary(firstCard.getId());
+
+        int expired = sweeper.sweep();
+
+        assertEquals(3, expired);
+        assertEquals(TransactionType.EXPIRED, typeOf(staleFirst));
+        assertEquals(TransactionType.EXPIRED, typeOf(staleSecond));
+        assertEquals(TransactionType.EXPIRED, typeOf(staleOther));
+        assertEquals(TransactionType.AUTHORIZED, typeOf(fresh));
+        assertEquals(TransactionType.CAPTURED, typeOf(captured));
+        assertEquals(0, Money.parse("980.00").compareTo(
+                cardSummaryService.getCardSummary(firstCard.getId()).getAvailableLimit()));
+        assertEquals(0, Money.parse("960.00").compareTo(
+                cardRepository.findById(secondCard.getId()).orElseThrow().getAvailableLimit()));
+    }
+
+    @Test
+    @DisplayName("Should do nothing on a second sweep")
+    void testSweepIsIdempotent() {
+        authorize(firstCard, "100.00", 2);
+
+        assertEquals(1, sweeper.sweep());
+        assertEquals(0, sweeper.sweep());
+        assertEquals(0, Money.parse("1000.00").compareTo(
+                cardRepository.findById(firstCard.getId()).orElseThrow().getAvailableLimit()));
+    }
+
+    @Test
+    @DisplayName("Should not capture an expired hold")
+    void testExpiredHoldCannotBeCaptured() {
+        CardTransaction stale = authorize(firstCard, "100.00", 2);
+        sweeper.sweep();
+
+        assertThrows(IllegalArgumentException.class, () -> transactionService.captureTransaction(stale.getId()));
+    }
+
+    private CardTransaction authorize(CreditCard card, String amount, int hoursAgo) {
+        CardTransaction transaction = transactionService.authorize(card.getId(), Money.parse(amount)).transaction();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE card_transactions SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(hoursAgo).minusMinutes(1)), transaction.getId()));
+        return transaction;
+    }
+
+    private TransactionType typeOf(CardTransaction transaction) {
+        return transactionRepository.findById(transaction.getId()).orElseThrow().getType();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.IdempotencyRecordRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Integration tests for idempotent authorization against the database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotencytest",
+        "creditcard.idempotency.maximum-size=0",
+        "creditcard.idempotency.chunk-size=2",
+        "creditcard.prune.enabled=false"
+})
+@DisplayName("Idempotent Authorization Integration Tests")
+class IdempotentAuthorizationIntegrationTest {
+
+    @SpyBean
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private IdempotentAuthorizationService service;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private CreditCard testCard;
+
+    @BeforeEach
+    void setUp() {
+        // Not deleteAll(): records are always new to Spring Data, so it would skip them
+        idempotencyRecordRepository.deleteAllInBatch();
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        testCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should reserve once and replay from the table when the key is not cached")
+    void testRetryReplayedFromTable() {
+        CardTransaction original = service.authorize("retry-1", testCard.getId(), Money.parse("100.00")).transaction();
+        clearInvocations(cardRepository);
+
+        // The in-memory cache holds nothing, so the retry is answered from idempotency_keys
+        CardTransaction retried = service.authorize("retry-1", testCard.getId(), Money.parse("100.00")).transaction();
+
+        assertEquals(original.getId(), retried.getId());
+        verify(cardRepository, never()).findByIdForUpdate(anyLong());
+        assertEquals(1, transactionRepository.count());
+        assertEquals(0, Money.parse("900.00").compareTo(
+                cardRepository.findById(testCard.getId()).orElseThrow().getAvailableLimit()));
+    }
+
+    @Test
+    @DisplayName("Should keep the DECLINED transaction of a decline and run a retry again")
+    void testDeclineCommittedAndNotRemembered() {
+        AuthorizationResult first = service.authorize("decline-1", testCard.getId(), Money.parse("1000.01"));
+        AuthorizationResult retried = service.authorize("decline-1", testCard.getId(), Money.parse("1000.01"));
+
+        assertInstanceOf(AuthorizationResult.Declined.class, first);
+        assertInstanceOf(AuthorizationResult.Declined.class, retried);
+        assertNotEquals(first.transaction().getId(), retried.transaction().getId());
+        assertEquals(TransactionType.DECLINED,
+                transactionRepository.findById(first.transaction().getId()).orElseThrow().getType());
+        assertEquals(2, transactionRepository.count());
+        assertEquals(0, idempotencyRecordRepository.count());
+        assertEquals(0, Money.parse("1000.00").compareTo(
+                cardRepository.findById(testCard.getId()).orElseThrow().getAvailableLimit()));
+    }
+
+    @Test
+    @DisplayName("Should delete stored keys older than the retention in chunks and authorize a later retry again")
+    void testExpiredKeysPruned() {
+        CardTransaction expired = service.authorize("old-1", testCard.getId(), Money.parse("10.00")).transaction();
+        service.authorize("old-2", testCard.getId(), Money.parse("10.00"));
+        service.authorize("old-3", testCard.getId(), Money.parse("10.00"));
+        service.authorize("recent-1", testCard.getId(), Money.parse("10.00"));
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE idempotency_keys SET created_at = ? WHERE idempotency_key LIKE 'old-%'",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(8))));
+
+        assertEquals(3, service.pruneExpired());
+        assertEquals(0, service.pruneExpired());
+        assertTrue(idempotencyRecordRepository.existsById("recent-1"));
+        assertEquals(1, idempotencyRecordRepository.count());
+
+        CardTransaction retried = service.authorize("old-1", testCard.getId(), Money.parse("10.00")).transaction();
+        assertNotEquals(expired.getId(), retried.getId());
+    }
+}
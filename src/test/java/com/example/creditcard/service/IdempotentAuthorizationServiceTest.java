@@ -0,0 +1,205 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.config.IdempotencyProperties;
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.IdempotencyRecord;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("IdempotentAuthorizationService Tests")
+class IdempotentAuthorizationServiceTest {
+
+    private static final Money AMOUNT = Money.parse("100.00");
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotentAuthorizationService service;
+
+    private CardTransaction authorized;
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotentAuthorizationService(transactionService, idempotencyRecordRepository,
+                new TransactionTemplate(transactionManager), new IdempotencyProperties(), new SimpleMeterRegistry());
+
+        authorized = CardTransaction.builder()
+                .id(7L)
+                .card(CreditCard.builder().id(1L).build())
+                .amount(AMOUNT)
+                .type(TransactionType.AUTHORIZED)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should authorize once and store the outcome for a new key")
+    void testFirstRequestAuthorizesAndStores() {
+        // Arrange
+        when(transactionService.authorize(1L, AMOUNT)).thenReturn(new AuthorizationResult.Approved(authorized));
+
+        // Act
+        AuthorizationResult result = service.authorize("key-1", 1L, AMOUNT);
+
+        // Assert
+        assertSame(authorized, result.transaction());
+        verify(idempotencyRecordRepository).save(argThat(record ->
+                record.getIdempotencyKey().equals("key-1") && record.getTransactionId().equals(7L)));
+    }
+
+    @Test
+    @DisplayName("Should answer a completed retry without authorizing again")
+    void testRetryAfterCompletionIsReplayed() {
+        // Arrange
+        when(transactionService.authorize(1L, AMOUNT)).thenReturn(new AuthorizationResult.Approved(authorized));
+        service.authorize("key-1", 1L, AMOUNT);
+
+        // Act
+        CardTransaction retried = service.authorize("key-1", 1L, Money.parse("100.0")).transaction();
+
+        // Assert
+        assertEquals(7L, retried.getId());
+        verify(transactionService, times(1)).authorize(anyLong(), any());
+        verify(idempotencyRecordRepository, times(1)).findById("key-1");
+    }
+
+    @Test
+    @DisplayName("Should make a concurrent retry wait for the original instead of authorizing")
+    void testConcurrentRetryWaitsForOriginal() throws Exception {
+        // Arrange
+        CountDownLatch originalStarted = new CountDownLatch(1);
+        CountDownLatch releaseOriginal = new CountDownLatch(1);
+        when(transactionService.authorize(1L, AMOUNT)).thenAnswer(invocation -> {
+            originalStarted.countDown();
+            releaseOriginal.await(5, TimeUnit.SECONDS);
+            return new AuthorizationResult.Approved(authorized);
+        });
+        CompletableFuture<CardTransaction> original = CompletableFuture.supplyAsync(
+                () -> service.authorize("key-1", 1L, AMOUNT).transaction());
+        assertTrue(originalStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<CardTransaction> retry = CompletableFuture.supplyAsync(
+                () -> service.authorize("key-1", 1L, AMOUNT).transaction());
+        Thread.sleep(100);
+        assertFalse(retry.isDone());
+        releaseOriginal.countDown();
+
+        // Assert
+        assertEquals(7L, original.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(7L, retry.get(5, TimeUnit.SECONDS).getId());
+        verify(transactionService, times(1)).authorize(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Should run a retry again when the original failed")
+    void testFailedAuthorizationIsNotRemembered() {
+        // Arrange
+        when(transactionService.authorize(1L, AMOUNT))
+                .thenThrow(new IllegalArgumentException("Velocity limit exceeded for 1m"))
+                .thenReturn(new AuthorizationResult.Approved(authorized));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.authorize("key-1", 1L, AMOUNT));
+        assertEquals(7L, service.authorize("key-1", 1L, AMOUNT).transaction().getId());
+        verify(idempotencyRecordRepository, times(1)).save(any());
+    }
+
+    @Test
+    @DisplayName("Should run a retry again when the original was declined")
+    void testDeclinedAuthorizationIsNotRemembered() {
+        // Arrange
+        CardTransaction declined = CardTransaction.builder()
+                .id(6L)
+                .card(CreditCard.builder().id(1L).build())
+                .amount(AMOUNT)
+                .type(TransactionType.DECLINED)
+                .createdAt(LocalDateTime.now())
+                .build();
+        when(transactionService.authorize(1L, AMOUNT))
+                .thenReturn(new AuthorizationResult.Declined(declined, AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT))
+                .thenReturn(new AuthorizationResult.Approved(authorized));
+
+        // Act
+        AuthorizationResult first = service.authorize("key-1", 1L, AMOUNT);
+        AuthorizationResult retried = service.authorize("key-1", 1L, AMOUNT);
+
+        // Assert
+        assertInstanceOf(AuthorizationResult.Declined.class, first);
+        assertEquals(7L, retried.transaction().getId());
+        verify(idempotencyRecordRepository, times(1)).save(any());
+    }
+
+    @Test
+    @DisplayName("Should replay a stored outcome when the key is no longer in memory")
+    void testStoredOutcomeIsReplayed() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(30);
+        when(idempotencyRecordRepository.findById("key-1")).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .idempotencyKey("key-1")
+                .cardId(1L)
+                .amount(AMOUNT)
+                .transactionId(7L)
+                .transactionCreatedAt(createdAt)
+                .build()));
+
+        // Act
+        CardTransaction replayed = service.authorize("key-1", 1L, AMOUNT).transaction();
+
+        // Assert
+        assertEquals(7L, replayed.getId());
+        assertEquals(1L, replayed.getCard().getId());
+        assertEquals(TransactionType.AUTHORIZED, replayed.getType());
+        assertEquals(createdAt, replayed.getCreatedAt());
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    @DisplayName("Should reject a key reused for a different request")
+    void testKeyReusedForDifferentRequest() {
+        // Arrange
+        when(transactionService.authorize(1L, AMOUNT)).thenReturn(new AuthorizationResult.Approved(authorized));
+        service.authorize("key-1", 1L, AMOUNT);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> service.authorize("key-1", 1L, Money.parse("200.00")));
+        assertEquals("Idempotency-Key was already used for a different request", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should reject blank keys")
+    void testBlankKeyRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.authorize(" ", 1L, AMOUNT));
+        verifyNoInteractions(transactionService);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Integration tests for archiving old captured transactions.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transactionarchivertest",
+        "creditcard.archive.retention=30d",
+        "creditcard.archive.chunk-size=2",
+        "creditcard.prune.enabled=false"
+})
+@DisplayName("TransactionArchiver Tests")
+class TransactionArchiverTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CapturedTotalReconciler reconciler;
+
+    @Autowired
+    private TransactionArchiver archiver;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private CreditCard card;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM card_transaction_archive");
+            jdbcTemplate.update("DELETE FROM card_capture_rollups");
+        });
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        card = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("10000.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should move old captures to the archive without changing the captured total")
+    void testArchiveKeepsCapturedTotal() {
+        // Arrange
+        capture("100.00", LocalDateTime.now().minusDays(70));
+        capture("50.25", LocalDateTime.now().minusDays(65));
+        capture("30.00", LocalDateTime.now().minusDays(40));
+        CardTransaction recent = capture("20.00", LocalDateTime.now().minusDays(1));
+        CardTransaction oldHold = authorize("10.00", LocalDateTime.now().minusDays(70));
+        Money before = transactionService.getTotalCapturedAmount(card.getId());
+
+        // Act
+        int archived = archiver.archive();
+
+        // Assert
+        assertEquals(3, archived);
+        assertEquals(Money.parse("200.25"), before);
+        assertEquals(before, transactionService.getTotalCapturedAmount(card.getId()));
+        assertEquals(List.of(recent.getId(), oldHold.getId()), jdbcTemplate.queryForList(
+                "SELECT id FROM card_transactions ORDER BY id", Long.class));
+        assertEquals(3L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_transaction_archive", Long.class));
+        assertEquals(3L, jdbcTemplate.queryForObject(
+                "SELECT SUM(capture_count) FROM card_capture_rollups WHERE card_id = ?", Long.class, card.getId()));
+        assertEquals(List.of(), reconciler.verify());
+    }
+
+    @Test
+    @DisplayName("Should keep captured totals when they are recomputed after archiving")
+    void testRecomputeAfterArchive() {
+        // Arrange
+        capture("100.00", LocalDateTime.now().minusDays(70));
+        capture("20.00", LocalDateTime.now().minusDays(1));
+        archiver.archive();
+
+        // Act
+        reconciler.backfill();
+
+        // Assert
+        assertEquals(Money.parse("120.00"), cardRepository.findById(card.getId()).orElseThrow().getCapturedTotal());
+    }
+
+    @Test
+    @DisplayName("Should add later archived captures to the existing monthly rollup")
+    void testRollupAccumulates() {
+        // Arrange
+        LocalDateTime month = LocalDateTime.now().minusMonths(3).withDayOfMonth(2);
+        capture("10.00", month);
+        archiver.archive();
+        capture("15.00", month.plusDays(1));
+
+        // Act
+        int archived = archiver.archive();
+
+        // Assert
+        assertEquals(1, archived);
+        assertEquals(0, archiver.archive());
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_capture_rollups", Long.class));
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT capture_count FROM card_capture_rollups", Long.class));
+        assertEquals(Money.parse("25.00"), transactionService.getTotalCapturedAmount(card.getId()));
+    }
+
+    @Test
+    @DisplayName("Should delete old declines and leave recent ones and other transactions alone")
+    void testPruneDeclined() {
+        // Arrange
+        decline(LocalDateTime.now().minusDays(45));
+        decline(LocalDateTime.now().minusDays(40));
+        decline(LocalDateTime.now().minusDays(35));
+        CardTransaction recentDecline = decline(LocalDateTime.now().minusDays(1));
+        CardTransaction oldHold = authorize("10.00", LocalDateTime.now().minusDays(70));
+
+        // Act
+        int deleted = archiver.pruneDeclined();
+
+        // Assert
+        assertEquals(3, deleted);
+        assertEquals(0, archiver.pruneDeclined());
+        assertEquals(List.of(recentDecline.getId(), oldHold.getId()), jdbcTemplate.queryForList(
+                "SELECT id FROM card_transactions ORDER BY id", Long.class));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_transaction_archive", Long.class));
+        assertEquals(Money.parse("9990.00"), cardRepository.findById(card.getId()).orElseThrow().getAvailableLimit());
+    }
+
+    private CardTransaction capture(String amount, LocalDateTime createdAt) {
+        CardTransaction transaction = authorize(amount, createdAt);
+        transactionService.captureTransaction(transaction.getId());
+        return transaction;
+    }
+
+    private CardTransaction authorize(String amount, LocalDateTime createdAt) {
+        return backdate(transactionService.authorize(card.getId(), Money.parse(amount)).transaction(), createdAt);
+    }
+
+    private CardTransaction decline(LocalDateTime createdAt) {
+        AuthorizationResult result = transactionService.authorize(card.getId(), Money.parse("20000.00"));
+        assertInstanceOf(AuthorizationResult.Declined.class, result);
+        return backdate(result.transaction(), createdAt);
+    }
+
+    private CardTransaction backdate(CardTransaction transaction, LocalDateTime createdAt) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE card_transactions SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(createdAt), transaction.getId()));
+        return transaction;
+    }
+}
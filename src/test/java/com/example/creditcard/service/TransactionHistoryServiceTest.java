@@ -0,0 +1,141 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.CardTransactionView;
+import com.example.creditcard.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Integration tests for keyset-paginated and streamed transaction history.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:transactionhistorytest")
+@DisplayName("TransactionHistoryService Tests")
+class TransactionHistoryServiceTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2026, 2, 5, 20, 0);
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionHistoryService transactionHistoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private CreditCard testCard;
+    private List<Long> expectedOrder;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        testCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("10000.00"))
+                .build());
+        CreditCard otherCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830367")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("10000.00"))
+                .build());
+
+        // Ids 1..7; 3, 4 and 5 share a timestamp, so the id decides their order
+        int[] minutes = {0, 1, 2, 2, 2, 3, 4};
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < minutes.length; i++) {
+                insert(1000L + i + 1, testCard.getId(), BASE_TIME.plusMinutes(minutes[i]));
+            }
+            insert(2000L, otherCard.getId(), BASE_TIME.plusMinutes(10));
+        });
+        expectedOrder = List.of(1007L, 1006L, 1005L, 1004L, 1003L, 1002L, 1001L);
+    }
+
+    @Test
+    @DisplayName("Should page through every transaction newest first without gaps or repeats")
+    void testKeysetPagination() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransactionPage page = transactionHistoryService.getTransactions(testCard.getId(), cursor, 2);
+            page.getTransactions().forEach(transaction -> seen.add(transaction.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expectedOrder, seen);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    @DisplayName("Should return no next cursor when the page holds the rest of the history")
+    void testLastPageHasNoCursor() {
+        TransactionPage page = transactionHistoryService.getTransactions(testCard.getId(), null, 7);
+
+        assertEquals(7, page.getTransactions().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Should reject malformed cursors and out of range limits")
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionHistoryService.getTransactions(testCard.getId(), "not-a-cursor", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionHistoryService.getTransactions(testCard.getId(), null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionHistoryService.getTransactions(testCard.getId(), null,
+                        TransactionHistoryService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    @DisplayName("Should throw when the card does not exist")
+    void testUnknownCard() {
+        assertThrows(NoSuchElementException.class,
+                () -> transactionHistoryService.getTransactions(999_999L, null, 10));
+    }
+
+    @Test
+    @DisplayName("Should export every transaction of the card in history order")
+    void testExport() {
+        List<Long> exported = new ArrayList<>();
+
+        long count = transactionHistoryService.exportTransactions(testCard.getId(),
+                (CardTransactionView transaction) -> exported.add(transaction.getId()));
+
+        assertEquals(7, count);
+        assertEquals(expectedOrder, exported);
+    }
+
+    private void insert(Long id, Long cardId, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO card_transactions (id, card_id, amount, type, created_at) "
+                + "VALUES (?, ?, 10.00, 'AUTHORIZED', ?)", id, cardId, Timestamp.valueOf(createdAt));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.creditcard.service;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardCreditLimitView;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.service.TransactionMetrics.CardTier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TransactionMetrics Tests")
+class TransactionMetricsTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new TransactionMetrics(meterRegistry, cardRepository, transactionManager);
+    }
+
+    @Test
+    @DisplayName("Should tag outcomes with the tier of the card's credit limit")
+    void testOutcomesTaggedByTier() {
+        when(cardRepository.findCreditLimitById(1L)).thenReturn(Optional.of(Money.parse("1000.00")));
+        when(cardRepository.findCreditLimitById(2L)).thenReturn(Optional.of(Money.parse("25000.00")));
+
+        metrics.recordApproved(metrics.tier(1L));
+        metrics.recordDeclined(metrics.tier(1L));
+        metrics.recordApproved(metrics.tier(2L));
+
+        assertEquals(1, outcomeCount("approved", "standard"));
+        assertEquals(1, outcomeCount("declined", "standard"));
+        assertEquals(1, outcomeCount("approved", "platinum"));
+        assertEquals(0, outcomeCount("approved", "gold"));
+    }
+
+    @Test
+    @DisplayName("Should look up a card's tier once")
+    void testTierIsCached() {
+        when(cardRepository.findCreditLimitById(1L)).thenReturn(Optional.of(Money.parse("10000.00")));
+
+        metrics.recordApproved(metrics.tier(1L));
+        metrics.recordApproved(metrics.tier(1L));
+
+        assertEquals(2, outcomeCount("approved", "gold"));
+        verify(cardRepository, times(1)).findCreditLimitById(1L);
+    }
+
+    @Test
+    @DisplayName("Should look up a missing card's tier again rather than cache it as unknown")
+    void testUnknownTierNotCached() {
+        when(cardRepository.findCreditLimitById(1L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(Money.parse("10000.00")));
+
+        assertEquals(CardTier.UNKNOWN, metrics.tier(1L));
+        assertEquals(CardTier.GOLD, metrics.tier(1L));
+        assertEquals(CardTier.GOLD, metrics.tier(1L));
+
+        verify(cardRepository, times(2)).findCreditLimitById(1L);
+    }
+
+    @Test
+    @DisplayName("Should look up the tiers of several cards in one query")
+    void testTiersLoadedTogether() {
+        CardCreditLimitView gold = mock(CardCreditLimitView.class);
+        when(gold.getId()).thenReturn(1L);
+        when(gold.getCreditLimit()).thenReturn(Money.parse("5000.00"));
+        when(cardRepository.findCreditLimitsByIdIn(Set.of(1L, 2L))).thenReturn(List.of(gold));
+
+        Map<Long, CardTier> tiers = metrics.tiers(List.of(1L, 2L));
+
+        assertEquals(Map.of(1L, CardTier.GOLD, 2L, CardTier.UNKNOWN), tiers);
+        assertEquals(CardTier.GOLD, metrics.tier(1L));
+        verify(cardRepository, times(1)).findCreditLimitsByIdIn(Set.of(1L, 2L));
+
+        // The missing card is looked up again
+        metrics.tiers(List.of(1L, 2L));
+        verify(cardRepository, times(1)).findCreditLimitsByIdIn(Set.of(2L));
+    }
+
+    @Test
+    @DisplayName("Should count an approval only once its transaction commits")
+    void testApprovalCountedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            metrics.recordApproved(CardTier.GOLD);
+            assertEquals(0, outcomeCount("approved", "gold"));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(1, outcomeCount("approved", "gold"));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should not count an approval whose transaction rolls back")
+    void testRolledBackApprovalNotCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            metrics.recordApproved(CardTier.GOLD);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertEquals(0, outcomeCount("approved", "gold"));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should time reservations per strategy")
+    void testReservationTimedPerStrategy() {
+        String result = metrics.timeReservation("optimistic", () -> "reserved");
+
+        assertEquals("reserved", result);
+        assertEquals(1, meterRegistry.get("creditcard.authorization.reservation")
+                .tag("strategy", "optimistic").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should time batches of asynchronous captures")
+    void testCaptureBatchTimed() {
+        Integer captured = metrics.timeCaptureBatch(() -> 3);
+
+        assertEquals(3, captured);
+        assertEquals(1, meterRegistry.get("creditcard.capture.batch").timer().count());
+    }
+
+    private double outcomeCount(String outcome, String tier) {
+        return meterRegistry.get("creditcard.authorizations")
+                .tags("outcome", outcome, "tier", tier)
+                .counter()
+                .count();
+    }
+}
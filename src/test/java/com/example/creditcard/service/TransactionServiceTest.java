@@ -2,18 +2,30 @@ package com.example.creditcard.service;
 
 import com.example.creditcard.domain.CreditCard;
 import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
 import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
 import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.escrow.EscrowService;
+import com.example.creditcard.service.ledger.ShardedLedger;
+import com.example.creditcard.service.reservation.PessimisticLockReservationStrategy;
+import com.example.creditcard.service.velocity.VelocityLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
@@ -32,7 +44,26 @@ class TransactionServiceTest {
     @Mock
     private CardService cardService;
 
-    @InjectMocks
+    @Mock
+    private ShardedLedger ledger;
+
+    @Mock
+    private CardSummaryService cardSummaryService;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private EscrowService escrowService;
+
+    @Mock
+    private VelocityLimiter velocityLimiter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
     private TransactionService transactionService;
 
     private CreditCard testCard;
@@ -40,17 +71,23 @@ class TransactionServiceTest {
 
     @BeforeEach
     void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionService = new TransactionService(transactionRepository, cardService, ledger,
+                new PessimisticLockReservationStrategy(cardService), cardSummaryService,
+                new TransactionMetrics(meterRegistry, cardRepository, transactionManager), escrowService, velocityLimiter,
+                new TransactionTemplate(transactionManager));
+
         testCard = CreditCard.builder()
                 .id(1L)
                 .cardNumber("4532015112830366")
-                .creditLimit(new BigDecimal("10000.00"))
-                .availableLimit(new BigDecimal("10000.00"))
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("10000.00"))
                 .build();
 
         testTransaction = CardTransaction.builder()
                 .id(1L)
                 .card(testCard)
-                .amount(new BigDecimal("100.00"))
+                .amount(Money.parse("100.00"))
                 .type(TransactionType.AUTHORIZED)
                 .createdAt(LocalDateTime.now())
                 .build();
@@ -60,13 +97,13 @@ class TransactionServiceTest {
     @DisplayName("Should authorize transaction successfully")
     void testAuthorizeTransactionSuccess() {
         // Arrange
-        BigDecimal amount = new BigDecimal("100.00");
+        Money amount = Money.parse("100.00");
         when(cardService.getCardByIdForUpdate(1L)).thenReturn(testCard);
         when(cardService.saveCard(any(CreditCard.class))).thenReturn(testCard);
         when(transactionRepository.save(any(CardTransaction.class))).thenReturn(testTransaction);
 
         // Act
-        CardTransaction result = transactionService.authorizeTransaction(1L, amount);
+        CardTransaction result = transactionService.authorize(1L, amount).transaction();
 
         // Assert
         assertNotNull(result);
@@ -76,14 +113,16 @@ class TransactionServiceTest {
         verify(cardService, times(1)).getCardByIdForUpdate(1L);
         verify(cardService, times(1)).saveCard(any(CreditCard.class));
         verify(transactionRepository, times(1)).save(any(CardTransaction.class));
+        assertEquals(1, meterRegistry.get("creditcard.authorization.reservation")
+                .tag("strategy", "pessimistic").timer().count());
     }
 
     @Test
     @DisplayName("Should reduce available limit when authorizing transaction")
     void testAuthorizeTransactionReducesLimit() {
         // Arrange
-        BigDecimal amount = new BigDecimal("500.00");
-        BigDecimal expectedLimit = testCard.getAvailableLimit().subtract(amount);
+        Money amount = Money.parse("500.00");
+        Money expectedLimit = testCard.getAvailableLimit().minus(amount);
 
         when(cardService.getCardByIdForUpdate(1L)).thenReturn(testCard);
         when(cardService.saveCard(any(CreditCard.class))).thenAnswer(invocation -> {
@@ -93,7 +132,7 @@ class TransactionServiceTest {
         when(transactionRepository.save(any(CardTransaction.class))).thenReturn(testTransaction);
 
         // Act
-        transactionService.authorizeTransaction(1L, amount);
+        transactionService.authorize(1L, amount);
 
         // Assert
         verify(cardService).saveCard(argThat(card -> 
@@ -102,23 +141,134 @@ class TransactionServiceTest {
     }
 
     @Test
-    @DisplayName("Should throw exception when insufficient available limit")
-    void testAuthorizeTransactionInsufficientLimit() {
+    @DisplayName("Should decline and save a DECLINED transaction when insufficient available limit")
+    void testAuthorizeInsufficientLimit() {
         // Arrange
-        BigDecimal amount = new BigDecimal("15000.00"); // Greater than available limit
+        Money amount = Money.parse("15000.00"); // Greater than available limit
         when(cardService.getCardByIdForUpdate(1L)).thenReturn(testCard);
+        when(cardService.getCardReference(1L)).thenReturn(testCard);
+        when(transactionRepository.save(any(CardTransaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cardRepository.findCreditLimitById(1L)).thenReturn(Optional.of(testCard.getCreditLimit()));
+
+        // Act
+        AuthorizationResult result = transactionService.authorize(1L, amount);
+
+        // Assert
+        AuthorizationResult.Declined declined = assertInstanceOf(AuthorizationResult.Declined.class, result);
+        assertEquals(AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT, declined.reason());
+        assertEquals(TransactionType.DECLINED, declined.transaction().getType());
+        assertEquals(amount, declined.transaction().getAmount());
+        assertEquals(Money.parse("10000.00"), testCard.getAvailableLimit());
+        verify(cardService, never()).saveCard(any());
+        verify(cardSummaryService, never()).evictAfterCommit(anyLong());
+        assertEquals(1, meterRegistry.get("creditcard.authorizations")
+                .tags("outcome", "declined", "tier", "gold").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should decline over a velocity limit without locking the card")
+    void testAuthorizeTransactionVelocityExceeded() {
+        // Arrange
+        Money amount = Money.parse("100.00");
+        when(velocityLimiter.acquire(1L, amount))
+                .thenThrow(new IllegalArgumentException("Velocity limit exceeded for 1m"));
+        when(cardRepository.findCreditLimitById(1L)).thenReturn(Optional.of(testCard.getCreditLimit()));
 
         // Act & Assert
-        assertThrows(IllegalArgumentException.class, 
-            () -> transactionService.authorizeTransaction(1L, amount));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> transactionService.authorize(1L, amount));
+        assertEquals("Velocity limit exceeded for 1m", exception.getMessage());
+        verify(cardService, never()).getCardByIdForUpdate(anyLong());
+        verify(velocityLimiter, never()).release(anyLong(), any(), anyLong());
+        assertEquals(1, meterRegistry.get("creditcard.authorizations")
+                .tags("outcome", "declined", "tier", "gold").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should reject a zero or negative amount before counting velocity or locking the card")
+    void testAuthorizeRejectsNonPositiveAmount() {
+        for (Money amount : List.of(Money.ZERO, Money.parse("-10.00"))) {
+            // Act & Assert
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> transactionService.authorize(1L, amount));
+            assertEquals("amount must be at least 0.01", exception.getMessage());
+        }
+        verify(velocityLimiter, never()).acquire(anyLong(), any());
+        verify(cardService, never()).getCardByIdForUpdate(anyLong());
         verify(transactionRepository, never()).save(any());
     }
 
+    @Test
+    @DisplayName("Should give back the velocity counted for an authorization declined for insufficient limit")
+    void testAuthorizeTransactionInsufficientLimitReleasesVelocity() {
+        // Arrange
+        Money amount = Money.parse("15000.00");
+        when(velocityLimiter.acquire(1L, amount)).thenReturn(1234L);
+        when(cardService.getCardByIdForUpdate(1L)).thenReturn(testCard);
+        when(cardService.getCardReference(1L)).thenReturn(testCard);
+        when(transactionRepository.save(any(CardTransaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cardRepository.findCreditLimitById(1L)).thenReturn(Optional.of(testCard.getCreditLimit()));
+
+        // Act
+        AuthorizationResult result = transactionService.authorize(1L, amount);
+
+        // Assert
+        assertInstanceOf(AuthorizationResult.Declined.class, result);
+        verify(velocityLimiter).release(1L, amount, 1234L);
+    }
+
+    @Test
+    @DisplayName("Should give back the velocity counted for an approval whose transaction rolls back")
+    void testAuthorizeTransactionRollbackReleasesVelocity() {
+        // Arrange
+        Money amount = Money.parse("100.00");
+        when(velocityLimiter.acquire(1L, amount)).thenReturn(1234L);
+        when(cardService.getCardByIdForUpdate(1L)).thenReturn(testCard);
+        when(cardService.saveCard(any(CreditCard.class))).thenReturn(testCard);
+        when(transactionRepository.save(any(CardTransaction.class))).thenReturn(testTransaction);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            transactionService.authorize(1L, amount);
+            verify(velocityLimiter, never()).release(anyLong(), any(), anyLong());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        verify(velocityLimiter).release(1L, amount, 1234L);
+    }
+
+    @Test
+    @DisplayName("Should give back the velocity of a declined authorization once, even if its transaction rolls back")
+    void testAuthorizeTransactionDeclinedRollbackReleasesVelocityOnce() {
+        // Arrange
+        Money amount = Money.parse("15000.00");
+        when(velocityLimiter.acquire(1L, amount)).thenReturn(1234L);
+        when(cardService.getCardByIdForUpdate(1L)).thenReturn(testCard);
+        when(cardService.getCardReference(1L)).thenReturn(testCard);
+        when(transactionRepository.save(any(CardTransaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            transactionService.authorize(1L, amount);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        verify(velocityLimiter, times(1)).release(1L, amount, 1234L);
+    }
+
     @Test
     @DisplayName("Should capture authorized transaction successfully")
     void testCaptureTransactionSuccess() {
         // Arrange
-        when(transactionRepository.findById(1L)).thenReturn(Optional.of(testTransaction));
+        when(transactionRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(testTransaction));
         when(transactionRepository.save(any(CardTransaction.class))).thenReturn(testTransaction);
 
         // Act
@@ -127,15 +277,33 @@ class TransactionServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(TransactionType.CAPTURED, result.getType());
-        verify(transactionRepository, times(1)).findById(1L);
+        verify(transactionRepository, times(1)).findByIdForUpdate(1L);
         verify(transactionRepository, times(1)).save(any(CardTransaction.class));
+        verify(cardService, times(1)).addCapturedAmount(1L, Money.parse("100.00"));
+    }
+
+    @Test
+    @DisplayName("Should wait for the ledger journal before starting the capture transaction")
+    void testCaptureWaitsForJournalOutsideTransaction() {
+        // Arrange
+        when(transactionRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(testTransaction));
+        when(transactionRepository.save(any(CardTransaction.class))).thenReturn(testTransaction);
+
+        // Act
+        transactionService.captureTransaction(1L);
+
+        // Assert
+        InOrder inOrder = inOrder(ledger, transactionManager, transactionRepository);
+        inOrder.verify(ledger).awaitFlushed(1L);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(transactionRepository).findByIdForUpdate(1L);
     }
 
     @Test
     @DisplayName("Should throw exception when capturing non-existent transaction")
     void testCaptureTransactionNotFound() {
         // Arrange
-        when(transactionRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(transactionRepository.findByIdForUpdate(anyLong())).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(NoSuchElementException.class, 
@@ -149,46 +317,103 @@ class TransactionServiceTest {
         CardTransaction capturedTransaction = CardTransaction.builder()
                 .id(2L)
                 .card(testCard)
-                .amount(new BigDecimal("100.00"))
+                .amount(Money.parse("100.00"))
                 .type(TransactionType.CAPTURED)
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        when(transactionRepository.findById(2L)).thenReturn(Optional.of(capturedTransaction));
+        when(transactionRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(capturedTransaction));
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, 
             () -> transactionService.captureTransaction(2L));
         verify(transactionRepository, never()).save(any());
+        verify(cardService, never()).addCapturedAmount(anyLong(), any());
     }
 
     @Test
     @DisplayName("Should return total captured amount for card")
     void testGetTotalCapturedAmount() {
         // Arrange
-        BigDecimal expectedTotal = new BigDecimal("500.00");
-        when(transactionRepository.sumByCardIdAndType(1L, TransactionType.CAPTURED))
-                .thenReturn(expectedTotal);
+        Money expectedTotal = Money.parse("500.00");
+        when(transactionRepository.sumCaptured(1L))
+                .thenReturn(new BigDecimal("500.00"));
 
         // Act
-        BigDecimal result = transactionService.getTotalCapturedAmount(1L);
+        Money result = transactionService.getTotalCapturedAmount(1L);
 
         // Assert
         assertEquals(expectedTotal, result);
-        verify(transactionRepository, times(1)).sumByCardIdAndType(1L, TransactionType.CAPTURED);
+        verify(transactionRepository, times(1)).sumCaptured(1L);
     }
 
     @Test
     @DisplayName("Should return zero when no captured transactions exist")
     void testGetTotalCapturedAmountZero() {
         // Arrange
-        when(transactionRepository.sumByCardIdAndType(1L, TransactionType.CAPTURED))
+        when(transactionRepository.sumCaptured(1L))
                 .thenReturn(BigDecimal.ZERO);
 
         // Act
-        BigDecimal result = transactionService.getTotalCapturedAmount(1L);
+        Money result = transactionService.getTotalCapturedAmount(1L);
+
+        // Assert
+        assertEquals(Money.ZERO, result);
+    }
+
+    @Test
+    @DisplayName("Should authorize a batch against cards locked once")
+    void testAuthorizeBatch() {
+        // Arrange
+        when(cardService.getCardsByIdForUpdate(any())).thenReturn(List.of(testCard));
+        List<AuthorizationCommand> commands = List.of(
+                new AuthorizationCommand(1L, Money.parse("6000.00")),
+                new AuthorizationCommand(1L, Money.parse("5000.00")),
+                new AuthorizationCommand(2L, Money.parse("10.00")),
+                new AuthorizationCommand(1L, Money.parse("4000.00")));
+
+        // Act
+        List<BatchAuthorizationResult> results = transactionService.authorizeBatch(commands);
+
+        // Assert
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isApproved());
+        assertTrue(results.get(1).isDeclined());
+        assertEquals(TransactionType.DECLINED, results.get(1).getTransaction().getType());
+        assertInstanceOf(NoSuchElementException.class, results.get(2).getError());
+        assertTrue(results.get(3).isApproved());
+        assertEquals(Money.parse("0.00"), testCard.getAvailableLimit());
+        verify(cardService, times(1)).getCardsByIdForUpdate(any());
+        verify(transactionRepository, times(1)).saveAll(argThat(transactions ->
+                ((List<CardTransaction>) transactions).size() == 3));
+    }
+
+    @Test
+    @DisplayName("Should fail batch commands over a velocity limit and give back those declined later")
+    void testAuthorizeBatchVelocityExceeded() {
+        // Arrange
+        Money approved = Money.parse("10.00");
+        Money exceeding = Money.parse("20.00");
+        Money insufficient = Money.parse("20000.00");
+        when(velocityLimiter.acquire(1L, approved)).thenReturn(1000L);
+        when(velocityLimiter.acquire(1L, exceeding))
+                .thenThrow(new IllegalArgumentException("Velocity limit exceeded for 1h"));
+        when(velocityLimiter.acquire(1L, insufficient)).thenReturn(1234L);
+        when(cardService.getCardsByIdForUpdate(any())).thenReturn(List.of(testCard));
+        List<AuthorizationCommand> commands = List.of(
+                new AuthorizationCommand(1L, approved),
+                new AuthorizationCommand(1L, exceeding),
+                new AuthorizationCommand(1L, insufficient));
+
+        // Act
+        List<BatchAuthorizationResult> results = transactionService.authorizeBatch(commands);
 
         // Assert
-        assertEquals(BigDecimal.ZERO, result);
+        assertTrue(results.get(0).isApproved());
+        assertEquals("Velocity limit exceeded for 1h", results.get(1).getError().getMessage());
+        assertEquals(AuthorizationResult.DeclineReason.INSUFFICIENT_LIMIT, results.get(2).getDeclineReason());
+        assertEquals(Money.parse("9990.00"), testCard.getAvailableLimit());
+        verify(velocityLimiter).release(1L, insufficient, 1234L);
+        verify(velocityLimiter, never()).release(1L, approved, 1000L);
     }
 }
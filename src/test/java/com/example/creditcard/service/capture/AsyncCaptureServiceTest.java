@@ -0,0 +1,120 @@
+package com.example.creditcard.service.capture;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for asynchronous captures against the database.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:asynccapturetest")
+@DisplayName("AsyncCaptureService Tests")
+class AsyncCaptureServiceTest {
+
+    @Autowired
+    private AsyncCaptureService asyncCaptureService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CreditCard firstCard;
+    private CreditCard secondCard;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        firstCard = cardRepository.save(card("4532015112830366"));
+        secondCard = cardRepository.save(card("5425233430109903"));
+    }
+
+    @Test
+    @DisplayName("Should capture queued transactions and add them to each card's captured total")
+    void testCapturesApplied() throws InterruptedException {
+        CardTransaction first = transactionService.authorize(firstCard.getId(), Money.parse("100.00")).transaction();
+        CardTransaction second = transactionService.authorize(firstCard.getId(), Money.parse("50.00")).transaction();
+        CardTransaction third = transactionService.authorize(secondCard.getId(), Money.parse("25.00")).transaction();
+
+        assertEquals(CaptureStatus.State.PENDING, asyncCaptureService.submit(first.getId()).getState());
+        asyncCaptureService.submit(second.getId());
+        asyncCaptureService.submit(third.getId());
+
+        assertEquals(CaptureStatus.State.CAPTURED, awaitApplied(first.getId()).getState());
+        assertEquals(CaptureStatus.State.CAPTURED, awaitApplied(second.getId()).getState());
+        assertEquals(CaptureStatus.State.CAPTURED, awaitApplied(third.getId()).getState());
+        assertEquals(TransactionType.CAPTURED, transactionRepository.findTypeById(first.getId()).orElseThrow());
+        assertEquals(Money.parse("150.00"), cardRepository.findById(firstCard.getId()).orElseThrow().getCapturedTotal());
+        assertEquals(Money.parse("25.00"), cardRepository.findById(secondCard.getId()).orElseThrow().getCapturedTotal());
+        assertEquals(Money.parse("850.00"), cardRepository.findById(firstCard.getId()).orElseThrow().getAvailableLimit());
+        assertTrue(meterRegistry.get("creditcard.capture.batch").timer().count() > 0);
+    }
+
+    @Test
+    @DisplayName("Should reject captures of transactions that are missing or already captured")
+    void testCapturesRejected() throws InterruptedException {
+        CardTransaction captured = transactionService.authorize(firstCard.getId(), Money.parse("100.00")).transaction();
+        transactionService.captureTransaction(captured.getId());
+
+        asyncCaptureService.submit(captured.getId());
+        asyncCaptureService.submit(999_999L);
+
+        CaptureStatus twice = awaitApplied(captured.getId());
+        assertEquals(CaptureStatus.State.REJECTED, twice.getState());
+        assertEquals("Only AUTHORIZED transactions can be captured", twice.getMessage());
+        CaptureStatus missing = awaitApplied(999_999L);
+        assertEquals(CaptureStatus.State.REJECTED, missing.getState());
+        assertEquals("Transaction not found with id: 999999", missing.getMessage());
+        assertEquals(Money.parse("100.00"), cardRepository.findById(firstCard.getId()).orElseThrow().getCapturedTotal());
+    }
+
+    @Test
+    @DisplayName("Should report no status for a transaction that was never captured asynchronously")
+    void testStatusUnknown() {
+        CardTransaction authorized = transactionService.authorize(firstCard.getId(), Money.parse("10.00")).transaction();
+
+        assertThrows(NoSuchElementException.class, () -> asyncCaptureService.getStatus(authorized.getId()));
+    }
+
+    private CaptureStatus awaitApplied(Long transactionId) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        CaptureStatus status = asyncCaptureService.getStatus(transactionId);
+        while (status.getState() == CaptureStatus.State.PENDING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = asyncCaptureService.getStatus(transactionId);
+        }
+        return status;
+    }
+
+    private static CreditCard card(String cardNumber) {
+        return CreditCard.builder()
+                .cardNumber(cardNumber)
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build();
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.creditcard.service.escrow;
+
+import com.example.creditcard.domain.CardLimitStripe;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardLimitStripeRepository;
+import com.example.creditcard.repository.CardLimitView;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.AuthorizationCommand;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.BatchAuthorizationResult;
+import com.example.creditcard.service.CardSummaryService;
+import com.example.creditcard.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for authorizations on cards whose limit is split into escrow stripes.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:escrowtest")
+@DisplayName("EscrowService Tests")
+class EscrowServiceTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardLimitStripeRepository stripeRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardSummaryService cardSummaryService;
+
+    @Autowired
+    private EscrowService escrowService;
+
+    private CreditCard testCard;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        stripeRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        testCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("500.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should split the available limit evenly across stripes")
+    void testEnableSplitsLimit() {
+        escrowService.enable(testCard.getId(), 8);
+
+        List<CardLimitStripe> stripes = stripes();
+        assertEquals(8, stripes.size());
+        stripes.forEach(stripe -> assertEquals(Money.parse("62.50"), stripe.getAvailableLimit()));
+        CreditCard card = cardRepository.findById(testCard.getId()).orElseThrow();
+        assertEquals(8, card.getEscrowStripes());
+        assertEquals(0, Money.ZERO.compareTo(card.getAvailableLimit()));
+        assertEquals(0, Money.parse("500.00").compareTo(cardSummaryService.getCardSummary(testCard.getId()).getAvailableLimit()));
+    }
+
+    @Test
+    @DisplayName("Should reserve from one stripe without touching the card row")
+    void testAuthorizeFromStripe() {
+        escrowService.enable(testCard.getId(), 4);
+        long version = cardRepository.findById(testCard.getId()).orElseThrow().getVersion();
+
+        transactionService.authorize(testCard.getId(), Money.parse("20.00"));
+
+        assertEquals(version, cardRepository.findById(testCard.getId()).orElseThrow().getVersion());
+        assertEquals(0, Money.parse("480.00").compareTo(totalAvailable()));
+        assertEquals(1, stripes().stream()
+                .filter(stripe -> stripe.getAvailableLimit().compareTo(Money.parse("105.00")) == 0)
+                .count());
+    }
+
+    @Test
+    @DisplayName("Should rebalance the stripes when one holds too little")
+    void testRebalance() {
+        escrowService.enable(testCard.getId(), 4);
+
+        transactionService.authorize(testCard.getId(), Money.parse("300.00"));
+
+        stripes().forEach(stripe -> assertEquals(Money.parse("50.00"), stripe.getAvailableLimit()));
+        assertEquals(0, Money.parse("200.00").compareTo(totalAvailable()));
+    }
+
+    @Test
+    @DisplayName("Should decline when all stripes and the card together hold too little")
+    void testInsufficientLimit() {
+        escrowService.enable(testCard.getId(), 4);
+
+        AuthorizationResult result = transactionService.authorize(testCard.getId(), Money.parse("500.01"));
+
+        assertInstanceOf(AuthorizationResult.Declined.class, result);
+        assertEquals(0, Money.parse("500.00").compareTo(totalAvailable()));
+        assertEquals(TransactionType.DECLINED, transactionRepository.findAll().get(0).getType());
+        assertEquals(1, transactionRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should never overbook under concurrent authorizations")
+    void testConcurrentAuthorizationsNeverOverbook() throws InterruptedException {
+        escrowService.enable(testCard.getId(), 4);
+        int concurrentRequests = 40;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch latch = new CountDownLatch(concurrentRequests);
+        AtomicInteger successCount = new AtomicInteger(0);
+
+        for (int i = 0; i < concurrentRequests; i++) {
+            executor.submit(() -> {
+                try {
+                    // Declined once the limit is used up
+                    if (transactionService.authorize(testCard.getId(), Money.parse("25.00"))
+                            instanceof AuthorizationResult.Approved) {
+                        successCount.incrementAndGet();
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        executor.shutdown();
+
+        assertEquals(20, successCount.get(), "Exactly 20 authorizations of 25.00 fit into 500.00");
+        assertEquals(40, transactionRepository.count());
+        assertEquals(0, Money.ZERO.compareTo(totalAvailable()));
+    }
+
+    @Test
+    @DisplayName("Should collect the stripes for a batch authorization")
+    void testBatchCollectsStripes() {
+        escrowService.enable(testCard.getId(), 4);
+
+        List<BatchAuthorizationResult> results = transactionService.authorizeBatch(List.of(
+                new AuthorizationCommand(testCard.getId(), Money.parse("450.00"))));
+
+        assertTrue(results.get(0).isApproved());
+        assertEquals(0, Money.parse("50.00").compareTo(totalAvailable()));
+    }
+
+    @Test
+    @DisplayName("Should move the stripes back onto the card when leaving escrow mode")
+    void testDisable() {
+        escrowService.enable(testCard.getId(), 4);
+        transactionService.authorize(testCard.getId(), Money.parse("10.00"));
+
+        escrowService.disable(testCard.getId());
+
+        assertTrue(stripes().isEmpty());
+        CreditCard card = cardRepository.findById(testCard.getId()).orElseThrow();
+        assertEquals(0, card.getEscrowStripes());
+        assertEquals(0, Money.parse("490.00").compareTo(card.getAvailableLimit()));
+    }
+
+    @Test
+    @DisplayName("Should include stripes in the limits the ledger loads")
+    void testLedgerLimitsIncludeStripes() {
+        escrowService.enable(testCard.getId(), 3);
+
+        CardLimitView limit = cardRepository.findAllAvailableLimits().stream()
+                .filter(view -> view.getId().equals(testCard.getId()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(0, new BigDecimal("500.00").compareTo(limit.getAvailableLimit()));
+        assertEquals(0, new BigDecimal("500.00").compareTo(cardRepository.findAvailableLimitById(testCard.getId()).orElseThrow()));
+    }
+
+    private List<CardLimitStripe> stripes() {
+        return stripeRepository.findAll().stream()
+                .filter(stripe -> stripe.getCardId().equals(testCard.getId()))
+                .toList();
+    }
+
+    private Money totalAvailable() {
+        return stripes().stream()
+                .map(CardLimitStripe::getAvailableLimit)
+                .reduce(cardRepository.findById(testCard.getId()).orElseThrow().getAvailableLimit(), Money::plus);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the in-memory card limits of a ledger shard.
+ */
+@DisplayName("CardLimits Tests")
+class CardLimitsTest {
+
+    private static final Long CARD_ID = 1L;
+
+    @Test
+    @DisplayName("Should reserve while the limit covers the amount and release back")
+    void testReserveAndRelease() {
+        CardLimits limits = new CardLimits();
+        limits.load(CARD_ID, Money.parse("100.00"));
+
+        assertTrue(limits.tryReserve(CARD_ID, Money.parse("60.00")));
+        assertFalse(limits.tryReserve(CARD_ID, Money.parse("40.01")));
+        assertTrue(limits.tryReserve(CARD_ID, Money.parse("40.00")));
+        limits.release(CARD_ID, Money.parse("25.00"));
+
+        assertEquals(Optional.of(Money.parse("25.00")), limits.get(CARD_ID));
+        limits.remove(CARD_ID);
+        assertFalse(limits.isLoaded(CARD_ID));
+        limits.release(CARD_ID, Money.parse("1.00"));
+        assertEquals(Optional.empty(), limits.get(CARD_ID));
+    }
+
+    @Test
+    @DisplayName("Should not allocate when reserving and releasing")
+    void testAllocationFree() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CardLimits limits = new CardLimits();
+        limits.load(CARD_ID, Money.parse("100.00"));
+        Money amount = Money.parse("1.25");
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            limits.tryReserve(CARD_ID, amount);
+            limits.release(CARD_ID, amount);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Far below the 16 bytes per operation of even one object each time
+        assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+        assertEquals(Optional.of(Money.parse("100.00")), limits.get(CARD_ID));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the ledger with journal durability.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:journaledledgertest",
+        "creditcard.ledger.enabled=true",
+        "creditcard.ledger.shards=2",
+        "creditcard.ledger.durability=journal",
+        "creditcard.ledger.journal.segment-size=4KB"
+})
+@DisplayName("Journaled ShardedLedger Tests")
+class JournaledLedgerTest {
+
+    private static Path journalDirectory;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ShardedLedger ledger;
+
+    @Autowired
+    private LedgerWriter writer;
+
+    private CreditCard testCard;
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws IOException {
+        journalDirectory = Files.createTempDirectory("ledger-journal");
+        registry.add("creditcard.ledger.journal.directory", journalDirectory::toString);
+    }
+
+    @BeforeEach
+    void setUp() {
+        ledger.awaitFlushed();
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        testCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("500.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should confirm from the journal and write the authorization to the database in the background")
+    void testAuthorizeIsFlushed() {
+        CardTransaction transaction = transactionService.authorize(testCard.getId(), Money.parse("120.00")).transaction();
+
+        assertNotNull(transaction.getId());
+        assertEquals(TransactionType.AUTHORIZED, transaction.getType());
+        assertEquals(Money.parse("380.00"), ledger.getAvailableLimit(testCard.getId()).orElseThrow());
+
+        ledger.awaitFlushed();
+        CardTransaction stored = transactionRepository.findById(transaction.getId()).orElseThrow();
+        assertEquals(0, Money.parse("120.00").compareTo(stored.getAmount()));
+        assertEquals(transaction.getCreatedAt(), stored.getCreatedAt());
+        assertEquals(Money.parse("380.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+    }
+
+    @Test
+    @DisplayName("Should capture an authorization right after it was confirmed")
+    void testCaptureAfterAuthorize() {
+        CardTransaction transaction = transactionService.authorize(testCard.getId(), Money.parse("50.00")).transaction();
+
+        CardTransaction captured = transactionService.captureTransaction(transaction.getId());
+
+        assertEquals(TransactionType.CAPTURED, captured.getType());
+    }
+
+    @Test
+    @DisplayName("Should wait for one authorization to reach the database")
+    void testAwaitOneFlushed() {
+        CardTransaction transaction = transactionService.authorize(testCard.getId(), Money.parse("30.00")).transaction();
+
+        ledger.awaitFlushed(transaction.getId());
+
+        assertTrue(transactionRepository.existsById(transaction.getId()));
+        // Ids the ledger has not journaled, or has already written, are not waited for
+        ledger.awaitFlushed(transaction.getId() + LedgerWriter.TRANSACTION_ID_BLOCK_SIZE * 100L);
+        ledger.awaitFlushed(transaction.getId());
+    }
+
+    @Test
+    @DisplayName("Should replay unflushed journal records into the database before restarting")
+    void testReplayOnRestart() throws IOException {
+        ledger.stop();
+        long transactionId = transactionRepository.nextIdBlock();
+        JournalRecord unflushed = new JournalRecord(transactionId, testCard.getId(), Money.parse("75.50"),
+                TransactionType.AUTHORIZED, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        // As left behind by a crash between the journal sync and the database flush
+        try (LedgerJournal journal = new LedgerJournal(journalDirectory.resolve("shard-0"), 4096)) {
+            journal.append(List.of(unflushed));
+            journal.sync();
+        }
+
+        ledger.start();
+
+        CardTransaction replayed = transactionRepository.findById(transactionId).orElseThrow();
+        assertEquals(0, Money.parse("75.50").compareTo(replayed.getAmount()));
+        assertEquals(Money.parse("424.50"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+        assertEquals(Money.parse("424.50"), ledger.getAvailableLimit(testCard.getId()).orElseThrow());
+
+        // Replaying the same record again changes nothing
+        assertEquals(0, writer.writeJournaled(List.of(unflushed)));
+        assertEquals(Money.parse("424.50"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the memory-mapped ledger journal.
+ */
+@DisplayName("LedgerJournal Tests")
+class LedgerJournalTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 3, 14, 9, 26, 53, 589_793_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should recover appended records across segments after reopening")
+    void testRecoverAcrossSegments() throws IOException {
+        List<JournalRecord> records = records(1, 8);
+        try (LedgerJournal journal = new LedgerJournal(directory, 3L * LedgerJournal.RECORD_SIZE)) {
+            journal.append(records.subList(0, 5));
+            journal.append(records.subList(5, 8));
+            journal.sync();
+        }
+
+        assertEquals(3, segmentCount());
+        assertEquals(records, new LedgerJournal(directory, 3L * LedgerJournal.RECORD_SIZE).recover());
+    }
+
+    @Test
+    @DisplayName("Should skip records before the checkpoint and delete segments behind it")
+    void testCheckpoint() throws IOException {
+        List<JournalRecord> records = records(1, 8);
+        try (LedgerJournal journal = new LedgerJournal(directory, 3L * LedgerJournal.RECORD_SIZE)) {
+            JournalPosition flushed = journal.append(records.subList(0, 4));
+            journal.append(records.subList(4, 8));
+            journal.sync();
+            journal.checkpoint(flushed);
+        }
+
+        assertEquals(2, segmentCount());
+        assertEquals(records.subList(4, 8), new LedgerJournal(directory, 3L * LedgerJournal.RECORD_SIZE).recover());
+    }
+
+    @Test
+    @DisplayName("Should append after the recovered records in a new segment once marked recovered")
+    void testAppendAfterRecovery() throws IOException {
+        try (LedgerJournal journal = new LedgerJournal(directory, 1024)) {
+            journal.append(records(1, 2));
+            journal.sync();
+        }
+        try (LedgerJournal journal = new LedgerJournal(directory, 1024)) {
+            assertEquals(2, journal.recover().size());
+            journal.markRecovered();
+            journal.append(records(3, 4));
+            journal.sync();
+        }
+
+        assertEquals(records(3, 4), new LedgerJournal(directory, 1024).recover());
+    }
+
+    @Test
+    @DisplayName("Should stop at a torn record")
+    void testTornRecord() throws IOException {
+        try (LedgerJournal journal = new LedgerJournal(directory, 1024)) {
+            journal.append(records(1, 3));
+            journal.sync();
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".journal")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Corrupt the card id of the last record
+            file.seek(2L * LedgerJournal.RECORD_SIZE + 10);
+            file.write(0x7f);
+        }
+
+        assertEquals(records(1, 2), new LedgerJournal(directory, 1024).recover());
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).count();
+        }
+    }
+
+    private static List<JournalRecord> records(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId)
+                .mapToObj(id -> new JournalRecord(id, 100 + id % 3, Money.ofMinor(id * 100 + 25),
+                        TransactionType.AUTHORIZED, CREATED_AT.plusSeconds(id)))
+                .toList();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.creditcard.service.ledger;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.CardSummaryService;
+import com.example.creditcard.service.HoldExpirySweeper;
+import com.example.creditcard.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Integration tests for authorizations routed through the sharded in-memory ledger.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledgertest",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "creditcard.ledger.enabled=true",
+        "creditcard.ledger.shards=4",
+        "creditcard.hold-expiry.enabled=false"
+})
+@DisplayName("ShardedLedger Tests")
+class ShardedLedgerTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ShardedLedger ledger;
+
+    @Autowired
+    private HoldExpirySweeper sweeper;
+
+    @SpyBean
+    private CardSummaryService cardSummaryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private CreditCard testCard;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+
+        testCard = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("10000.00"))
+                .availableLimit(Money.parse("500.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should authorize through the ledger and persist the reservation")
+    void testAuthorizePersistsReservation() {
+        CardTransaction transaction = transactionService.authorize(testCard.getId(), Money.parse("120.00")).transaction();
+
+        assertNotNull(transaction.getId());
+        assertEquals(TransactionType.AUTHORIZED, transaction.getType());
+        assertEquals(testCard.getId(), transaction.getCard().getId());
+        assertEquals(Money.parse("380.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+        assertEquals(Money.parse("380.00"), ledger.getAvailableLimit(testCard.getId()).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should decline authorization exceeding the in-memory limit and persist the decline")
+    void testInsufficientLimit() {
+        AuthorizationResult result = transactionService.authorize(testCard.getId(), Money.parse("500.01"));
+
+        assertInstanceOf(AuthorizationResult.Declined.class, result);
+        assertEquals(TransactionType.DECLINED,
+                transactionRepository.findById(result.transaction().getId()).orElseThrow().getType());
+        assertEquals(Money.parse("500.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+        assertEquals(Money.parse("500.00"), ledger.getAvailableLimit(testCard.getId()).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should reject authorization for unknown card")
+    void testUnknownCard() {
+        assertThrows(NoSuchElementException.class,
+                () -> transactionService.authorize(999_999L, Money.parse("1.00")));
+    }
+
+    @Test
+    @DisplayName("Should never overbook under concurrent authorizations")
+    void testConcurrentAuthorizationsNeverOverbook() throws InterruptedException {
+        int concurrentRequests = 40;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch latch = new CountDownLatch(concurrentRequests);
+        AtomicInteger successCount = new AtomicInteger(0);
+
+        for (int i = 0; i < concurrentRequests; i++) {
+            executor.submit(() -> {
+                try {
+                    if (transactionService.authorize(testCard.getId(), Money.parse("25.00"))
+                            instanceof AuthorizationResult.Approved) {
+                        successCount.incrementAndGet();
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        executor.shutdown();
+
+        assertEquals(20, successCount.get(), "Exactly 20 authorizations of 25.00 fit into 500.00");
+        assertEquals(40, transactionRepository.count());
+        assertEquals(Money.parse("0.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+    }
+
+    @Test
+    @DisplayName("Should give an expired hold back once when the card is loaded just after the expiry commits")
+    void testHoldExpiryCreditsLoadedCardOnce() {
+        CardTransaction stale = transactionService.authorize(testCard.getId(), Money.parse("100.00")).transaction();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE card_transactions SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(8)), stale.getId()));
+        // Unload the card, and have an authorization load it again right after the expiry commits
+        ledger.invalidate(testCard.getId());
+        assertTrue(ledger.getAvailableLimit(testCard.getId()).isEmpty());
+        AtomicBoolean expiryCommitting = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            // Only for the expiry: the shard evicts the same card when it writes the authorization
+            if (!expiryCommitting.getAndSet(false)) {
+                return null;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ledger.authorizeAndWait(testCard.getId(), Money.parse("1.00"));
+                }
+            });
+            return null;
+        }).when(cardSummaryService).evictAfterCommit(testCard.getId());
+
+        assertEquals(1, sweeper.sweep());
+
+        assertEquals(Money.parse("499.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+        transactionService.authorize(testCard.getId(), Money.parse("1.00"));
+        assertEquals(Money.parse("498.00"), ledger.getAvailableLimit(testCard.getId()).orElseThrow());
+        assertEquals(Money.parse("498.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+    }
+
+    @Test
+    @DisplayName("Should rebuild in-memory limits from the database on restart")
+    void testRecoveryAfterRestart() {
+        transactionService.authorize(testCard.getId(), Money.parse("200.00"));
+
+        ledger.stop();
+        ledger.start();
+
+        assertEquals(Money.parse("300.00"), ledger.getAvailableLimit(testCard.getId()).orElseThrow());
+        assertInstanceOf(AuthorizationResult.Declined.class,
+                transactionService.authorize(testCard.getId(), Money.parse("300.01")));
+    }
+}
@@ -0,0 +1,455 @@
+package com.example.creditcard.service.reservation;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.TransactionService;
+import com.example.creditcard.service.escrow.EscrowService;
+import com.example.creditcard.service.ledger.ShardedLedger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests of the limit invariants under mixed authorize and capture
+ * traffic, run against every reservation engine.
+ *
+ * Tagged {@code stress} and left out of the default build; run them with
+ * {@code mvn -Pstress test}. Each engine gets {@code stress.threads} threads
+ * sending traffic to {@code stress.cards} cards for {@code stress.duration},
+ * then every card must satisfy, from the database:
+ * <ul>
+ *   <li>credit limit - available limit (card and stripes) = sum of its AUTHORIZED and CAPTURED amounts,</li>
+ *   <li>no negative available limit on the card or any stripe,</li>
+ *   <li>captured total = sum of its CAPTURED amounts,</li>
+ *   <li>the authorizations and captures the threads were told succeeded, and only those, are stored.</li>
+ * </ul>
+ * Completed operations per second are written to {@code target/stress/throughput.properties}.
+ * Once every engine has run, each must reach its share in
+ * {@code stress/throughput-ratios.properties} of the throughput the pessimistic
+ * engine reached in the same run, so the check does not depend on the machine.
+ * An engine with no ratio fails, as does a {@link LimitReservationStrategy} with
+ * no stress run, so that a new engine is stress tested and measured before it
+ * can be selected.
+ */
+@Tag("stress")
+@DisplayName("Limit invariant stress tests")
+class LimitInvariantStressTest {
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 1000);
+    private static final int CARDS = Integer.getInteger("stress.cards", 2000);
+    private static final Duration DURATION = DurationStyle.detectAndParse(System.getProperty("stress.duration", "10s"));
+    private static final Money CREDIT_LIMIT = Money.parse(System.getProperty("stress.credit-limit", "100.00"));
+    private static final double CAPTURE_SHARE = 0.3;
+    private static final Path RESULTS = Path.of("target/stress/throughput.properties");
+    private static final String RATIOS = "/stress/throughput-ratios.properties";
+    private static final String REFERENCE_ENGINE = "pessimistic";
+
+    private static final Map<String, Double> THROUGHPUTS = new ConcurrentHashMap<>();
+
+    private static final Set<Class<?>> STRESSED_STRATEGIES = Set.of(
+            PessimisticLockReservationStrategy.class,
+            OptimisticVersionReservationStrategy.class,
+            ConditionalUpdateReservationStrategy.class);
+
+    @Test
+    @DisplayName("Should stress every reservation strategy")
+    void testEveryStrategyStressed() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AssignableTypeFilter(LimitReservationStrategy.class));
+        for (BeanDefinition candidate : scanner.findCandidateComponents(LimitReservationStrategy.class.getPackageName())) {
+            Class<?> strategy = Class.forName(candidate.getBeanClassName());
+            assertTrue(STRESSED_STRATEGIES.contains(strategy),
+                    strategy.getSimpleName() + " has no stress run in " + LimitInvariantStressTest.class.getSimpleName());
+        }
+    }
+
+    /**
+     * Runs after the nested engine runs. Skipped when the pessimistic engine was not run.
+     */
+    @AfterAll
+    static void assertThroughputRelativeToPessimistic() throws IOException {
+        Double reference = THROUGHPUTS.get(REFERENCE_ENGINE);
+        if (reference == null) {
+            return;
+        }
+        Properties ratios = ratios();
+        List<String> slow = new ArrayList<>();
+        THROUGHPUTS.forEach((engine, throughput) -> {
+            if (engine.equals(REFERENCE_ENGINE)) {
+                return;
+            }
+            double ratio = Double.parseDouble(ratios.getProperty(engine));
+            if (throughput < reference * ratio) {
+                slow.add(String.format("%s reached %.0f operations/s, below %.2f of %s's %.0f",
+                        engine, throughput, ratio, REFERENCE_ENGINE, reference));
+            }
+        });
+        assertTrue(slow.isEmpty(), String.join("; ", slow));
+    }
+
+    private static Properties ratios() throws IOException {
+        Properties ratios = new Properties();
+        try (InputStream in = LimitInvariantStressTest.class.getResourceAsStream(RATIOS)) {
+            assertNotNull(in, RATIOS + " is missing");
+            ratios.load(in);
+        }
+        return ratios;
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:pessimisticstresstest",
+            "creditcard.reservation.strategy=pessimistic",
+            "creditcard.hold-expiry.enabled=false"
+    })
+    @DisplayName("Pessimistic lock")
+    class Pessimistic extends StressRun {
+
+        @Override
+        String engine() {
+            return "pessimistic";
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:optimisticstresstest",
+            "creditcard.reservation.strategy=optimistic",
+            "creditcard.reservation.optimistic.max-attempts=50",
+            "creditcard.hold-expiry.enabled=false"
+    })
+    @DisplayName("Optimistic version check")
+    class Optimistic extends StressRun {
+
+        @Override
+        String engine() {
+            return "optimistic";
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:conditionalstresstest",
+            "creditcard.reservation.strategy=conditional-update",
+            "creditcard.hold-expiry.enabled=false"
+    })
+    @DisplayName("Conditional update")
+    class ConditionalUpdate extends StressRun {
+
+        @Override
+        String engine() {
+            return "conditional-update";
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:escrowstresstest",
+            "creditcard.hold-expiry.enabled=false"
+    })
+    @DisplayName("Escrow stripes")
+    class Escrow extends StressRun {
+
+        @Autowired
+        private EscrowService escrowService;
+
+        @Override
+        String engine() {
+            return "escrow";
+        }
+
+        @Override
+        void prepare(List<Long> cardIds) {
+            cardIds.forEach(cardId -> escrowService.enable(cardId, 4));
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:ledgerstresstest",
+            "creditcard.ledger.enabled=true",
+            "creditcard.hold-expiry.enabled=false"
+    })
+    @DisplayName("Sharded ledger")
+    class Ledger extends StressRun {
+
+        @Override
+        String engine() {
+            return "ledger";
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:journaledstresstest",
+            "creditcard.ledger.enabled=true",
+            "creditcard.ledger.durability=journal",
+            // A fresh directory, so that no earlier run's authorizations are recovered
+            "creditcard.ledger.journal.directory=target/stress/ledger-journal-${random.uuid}",
+            "creditcard.hold-expiry.enabled=false"
+    })
+    @DisplayName("Journaled ledger")
+    class JournaledLedger extends StressRun {
+
+        @Override
+        String engine() {
+            return "journaled-ledger";
+        }
+    }
+
+    abstract static class StressRun {
+
+        @Autowired
+        protected TransactionService transactionService;
+
+        @Autowired
+        protected JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        protected TransactionTemplate transactionTemplate;
+
+        @Autowired
+        protected ShardedLedger ledger;
+
+        private final Map<Long, Tally> tallies = new ConcurrentHashMap<>();
+        private final LongAdder operations = new LongAdder();
+        private final LongAdder declined = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Queue<String> refusedCaptures = new ConcurrentLinkedQueue<>();
+
+        /**
+         * @return the engine's name in the throughput files
+         */
+        abstract String engine();
+
+        /**
+         * Set the engine up once the cards exist.
+         */
+        void prepare(List<Long> cardIds) {
+        }
+
+        @Test
+        @DisplayName("Should keep every card's limits consistent and measure the engine's throughput")
+        void testLimitInvariants() throws Exception {
+            // Arrange
+            List<Long> cardIds = transactionTemplate.execute(status -> seedCards());
+            prepare(cardIds);
+
+            // Act
+            long elapsed = runTraffic(cardIds);
+            if (ledger.isJournaled()) {
+                ledger.awaitFlushed();
+            }
+
+            // Assert
+            double throughput = operations.sum() / (elapsed / 1e9);
+            System.out.printf("Stress %s: %d threads, %d cards, %d operations (%.0f/s), %d declined, %d errors%n",
+                    engine(), THREADS, CARDS, operations.sum(), throughput, declined.sum(), errors.sum());
+            assertInvariants();
+            recordThroughput(throughput);
+        }
+
+        private List<Long> seedCards() {
+            jdbcTemplate.update("DELETE FROM card_limit_stripes");
+            jdbcTemplate.update("DELETE FROM card_transactions");
+            jdbcTemplate.update("DELETE FROM credit_cards");
+            List<Object[]> batch = new ArrayList<>();
+            for (int i = 0; i < CARDS; i++) {
+                batch.add(new Object[]{String.format("7%015d", i),
+                        CREDIT_LIMIT.toBigDecimal(), CREDIT_LIMIT.toBigDecimal()});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO credit_cards "
+                    + "(id, card_number, credit_limit, available_limit, captured_total, escrow_stripes, version) "
+                    + "VALUES (NEXT VALUE FOR credit_cards_seq, ?, ?, ?, 0, 0, 0)", batch);
+            List<Long> cardIds = jdbcTemplate.queryForList("SELECT id FROM credit_cards ORDER BY id", Long.class);
+            cardIds.forEach(cardId -> tallies.put(cardId, new Tally()));
+            return cardIds;
+        }
+
+        /**
+         * @return the nanoseconds the traffic ran for
+         */
+        private long runTraffic(List<Long> cardIds) throws InterruptedException {
+            long start = System.nanoTime();
+            long deadline = start + DURATION.toNanos();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                executor.execute(() -> sendUntil(deadline, cardIds));
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(DURATION.toSeconds() + 60, TimeUnit.SECONDS),
+                    "Stress threads did not finish");
+            return System.nanoTime() - start;
+        }
+
+        /**
+         * Authorize on random cards, and capture this thread's own earlier authorizations.
+         */
+        private void sendUntil(long deadline, List<Long> cardIds) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Deque<CardTransaction> authorized = new ArrayDeque<>();
+            while (System.nanoTime() < deadline) {
+                if (!authorized.isEmpty() && random.nextDouble() < CAPTURE_SHARE) {
+                    capture(authorized.poll());
+                } else {
+                    Long cardId = cardIds.get(random.nextInt(cardIds.size()));
+                    Money amount = Money.ofMinor(random.nextLong(100, 5001));
+                    CardTransaction transaction = authorize(cardId, amount);
+                    if (transaction != null) {
+                        authorized.add(transaction);
+                    }
+                }
+                operations.increment();
+            }
+        }
+
+        private CardTransaction authorize(Long cardId, Money amount) {
+            Tally tally = tallies.get(cardId);
+            try {
+                AuthorizationResult result = transactionService.authorize(cardId, amount);
+                if (result instanceof AuthorizationResult.Declined) {
+                    declined.increment();
+                    return null;
+                }
+                tally.held.add(amount.getMinorUnits());
+                tally.authorizations.increment();
+                return result.transaction();
+            } catch (RuntimeException e) {
+                errors.increment();
+                tally.errors.increment();
+            }
+            return null;
+        }
+
+        private void capture(CardTransaction transaction) {
+            Tally tally = tallies.get(transaction.getCard().getId());
+            try {
+                transactionService.captureTransaction(transaction.getId());
+                tally.captured.add(transaction.getAmount().getMinorUnits());
+            } catch (NoSuchElementException | IllegalArgumentException e) {
+                refusedCaptures.add(transaction.getId() + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                errors.increment();
+                tally.errors.increment();
+            }
+        }
+
+        private void assertInvariants() {
+            List<String> violations = new ArrayList<>();
+            jdbcTemplate.query("SELECT c.id, c.credit_limit, c.available_limit, c.captured_total, "
+                    + "COALESCE((SELECT SUM(s.available_limit) FROM card_limit_stripes s WHERE s.card_id = c.id), 0), "
+                    + "COALESCE((SELECT MIN(s.available_limit) FROM card_limit_stripes s WHERE s.card_id = c.id), 0), "
+                    + "COALESCE((SELECT SUM(t.amount) FROM card_transactions t "
+                    + "WHERE t.card_id = c.id AND t.type IN ('AUTHORIZED', 'CAPTURED')), 0), "
+                    + "COALESCE((SELECT SUM(t.amount) FROM card_transactions t "
+                    + "WHERE t.card_id = c.id AND t.type = 'CAPTURED'), 0), "
+                    + "(SELECT COUNT(*) FROM card_transactions t WHERE t.card_id = c.id AND t.type <> 'DECLINED') "
+                    + "FROM credit_cards c", row -> {
+                long cardId = row.getLong(1);
+                Money creditLimit = Money.of(row.getBigDecimal(2));
+                Money available = Money.of(row.getBigDecimal(3)).plus(Money.of(row.getBigDecimal(5)));
+                Money capturedTotal = Money.of(row.getBigDecimal(4));
+                Money held = Money.of(row.getBigDecimal(7));
+                Money captured = Money.of(row.getBigDecimal(8));
+                long transactions = row.getLong(9);
+
+                if (!creditLimit.minus(available).equals(held)) {
+                    violations.add("card " + cardId + ": limit " + creditLimit + " - available " + available
+                            + " != held " + held);
+                }
+                if (row.getBigDecimal(3).signum() < 0 || row.getBigDecimal(6).signum() < 0) {
+                    violations.add("card " + cardId + ": negative available limit " + row.getBigDecimal(3)
+                            + ", smallest stripe " + row.getBigDecimal(6));
+                }
+                if (!capturedTotal.equals(captured)) {
+                    violations.add("card " + cardId + ": captured total " + capturedTotal + " != captured " + captured);
+                }
+                Tally tally = tallies.get(cardId);
+                if (tally != null && tally.errors.sum() == 0) {
+                    // Without errors every outcome is known, so the card must hold exactly what the threads were told
+                    if (held.getMinorUnits() != tally.held.sum() || transactions != tally.authorizations.sum()) {
+                        violations.add("card " + cardId + ": " + transactions + " transactions holding " + held
+                                + ", approved " + tally.authorizations.sum() + " holding " + Money.ofMinor(tally.held.sum()));
+                    }
+                    if (captured.getMinorUnits() != tally.captured.sum()) {
+                        violations.add("card " + cardId + ": captured " + captured
+                                + ", confirmed " + Money.ofMinor(tally.captured.sum()));
+                    }
+                }
+            });
+
+            assertTrue(refusedCaptures.isEmpty(), refusedCaptures.size() + " captures of approved authorizations refused, first: "
+                    + refusedCaptures.stream().limit(10).collect(Collectors.joining("; ")));
+            assertTrue(violations.isEmpty(), violations.size() + " limit invariant violations, first: "
+                    + violations.stream().limit(10).collect(Collectors.joining("; ")));
+            assertTrue(errors.sum() <= operations.sum() / 100,
+                    "More than 1% of operations failed: " + errors.sum() + " of " + operations.sum());
+        }
+
+        private void recordThroughput(double throughput) throws IOException {
+            synchronized (LimitInvariantStressTest.class) {
+                Properties results = new Properties();
+                if (Files.exists(RESULTS)) {
+                    try (InputStream in = Files.newInputStream(RESULTS)) {
+                        results.load(in);
+                    }
+                }
+                results.setProperty(engine(), String.valueOf(Math.round(throughput)));
+                Files.createDirectories(RESULTS.getParent());
+                try (OutputStream out = Files.newOutputStream(RESULTS)) {
+                    results.store(out, "Operations per second of the last stress run of each engine");
+                }
+            }
+
+            if (!engine().equals(REFERENCE_ENGINE)) {
+                assertNotNull(ratios().getProperty(engine()), "No throughput ratio for " + engine() + " in " + RATIOS
+                        + "; compare its figure in " + RESULTS + " with " + REFERENCE_ENGINE + "'s");
+            }
+            THROUGHPUTS.put(engine(), throughput);
+        }
+    }
+
+    private static final class Tally {
+        final LongAdder held = new LongAdder();
+        final LongAdder authorizations = new LongAdder();
+        final LongAdder captured = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.creditcard.service.reservation;
+
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.domain.TransactionType;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests running the same authorization scenarios against every
+ * {@link LimitReservationStrategy}.
+ */
+@DisplayName("LimitReservationStrategy Tests")
+class LimitReservationStrategyTest {
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:pessimistictest",
+            "creditcard.reservation.strategy=pessimistic"
+    })
+    @DisplayName("Pessimistic lock")
+    class Pessimistic extends StrategyScenarios {
+
+        @Test
+        @DisplayName("Should use the pessimistic strategy")
+        void testStrategySelected() {
+            assertEquals("pessimistic", strategy.name());
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:optimistictest",
+            "creditcard.reservation.strategy=optimistic",
+            "creditcard.reservation.optimistic.max-attempts=200"
+    })
+    @DisplayName("Optimistic version check")
+    class Optimistic extends StrategyScenarios {
+
+        @Test
+        @DisplayName("Should use the optimistic strategy and bump the card version")
+        void testStrategySelectedAndVersionBumped() {
+            long versionBefore = cardRepository.findById(testCard.getId()).get().getVersion();
+
+            transactionService.authorize(testCard.getId(), Money.parse("10.00"));
+
+            assertEquals("optimistic", strategy.name());
+            assertEquals(versionBefore + 1, cardRepository.findById(testCard.getId()).get().getVersion());
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:conditionaltest",
+            "creditcard.reservation.strategy=conditional-update"
+    })
+    @DisplayName("Conditional update")
+    class ConditionalUpdate extends StrategyScenarios {
+
+        @Test
+        @DisplayName("Should use the conditional-update strategy")
+        void testStrategySelected() {
+            assertEquals("conditional-update", strategy.name());
+        }
+    }
+
+    abstract static class StrategyScenarios {
+
+        @Autowired
+        protected CardRepository cardRepository;
+
+        @Autowired
+        protected TransactionRepository transactionRepository;
+
+        @Autowired
+        protected TransactionService transactionService;
+
+        @Autowired
+        protected LimitReservationStrategy strategy;
+
+        protected CreditCard testCard;
+
+        @BeforeEach
+        void setUp() {
+            transactionRepository.deleteAll();
+            cardRepository.deleteAll();
+
+            testCard = cardRepository.save(CreditCard.builder()
+                    .cardNumber("4532015112830366")
+                    .creditLimit(Money.parse("10000.00"))
+                    .availableLimit(Money.parse("500.00"))
+                    .build());
+        }
+
+        @Test
+        @DisplayName("Should reserve the amount from the available limit")
+        void testReserve() {
+            transactionService.authorize(testCard.getId(), Money.parse("120.00"));
+
+            assertEquals(Money.parse("380.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+            assertEquals(1, transactionRepository.count());
+        }
+
+        @Test
+        @DisplayName("Should decline an amount exceeding the available limit")
+        void testInsufficientLimit() {
+            AuthorizationResult result = transactionService.authorize(testCard.getId(), Money.parse("500.01"));
+
+            assertInstanceOf(AuthorizationResult.Declined.class, result);
+            assertEquals(TransactionType.DECLINED,
+                    transactionRepository.findById(result.transaction().getId()).orElseThrow().getType());
+            assertEquals(Money.parse("500.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+        }
+
+        @Test
+        @DisplayName("Should reject an unknown card")
+        void testUnknownCard() {
+            assertThrows(NoSuchElementException.class,
+                    () -> transactionService.authorize(999_999L, Money.parse("1.00")));
+        }
+
+        @Test
+        @DisplayName("Should never overbook under concurrent authorizations")
+        void testConcurrentAuthorizationsNeverOverbook() throws InterruptedException {
+            int concurrentRequests = 30;
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            CountDownLatch latch = new CountDownLatch(concurrentRequests);
+            AtomicInteger successCount = new AtomicInteger(0);
+
+            for (int i = 0; i < concurrentRequests; i++) {
+                executor.submit(() -> {
+                    try {
+                        // Declined once the limit is used up
+                        if (transactionService.authorize(testCard.getId(), Money.parse("25.00"))
+                                instanceof AuthorizationResult.Approved) {
+                            successCount.incrementAndGet();
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+
+            latch.await();
+            executor.shutdown();
+
+            assertEquals(20, successCount.get(), "Exactly 20 authorizations of 25.00 fit into 500.00");
+            assertEquals(30, transactionRepository.count());
+            assertEquals(Money.parse("0.00"), cardRepository.findById(testCard.getId()).get().getAvailableLimit());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.creditcard.service.token;
+
+import com.example.creditcard.config.CardTokenProperties;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for resolving card numbers to cards through their tokens.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:cardlookupservicetest")
+@DisplayName("CardLookupService Tests")
+class CardLookupServiceTest {
+
+    @Autowired
+    private CardLookupService cardLookupService;
+
+    @Autowired
+    private CardNumberTokenizer tokenizer;
+
+    @Autowired
+    private CardTokenBackfill backfill;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should store a token instead of the card number and resolve it from the cache")
+    void testResolveSavedCard() {
+        // Arrange
+        CreditCard card = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+        String token = jdbcTemplate.queryForObject(
+                "SELECT card_token FROM credit_cards WHERE id = ?", String.class, card.getId());
+        double hits = cacheHits();
+
+        // Act
+        Long first = cardLookupService.resolveCardId("4532015112830366");
+        Long second = cardLookupService.resolveCardId("4532015112830366");
+
+        // Assert
+        assertEquals(tokenizer.tokenize("4532015112830366"), token);
+        assertEquals(card.getId(), first);
+        assertEquals(card.getId(), second);
+        assertEquals(hits + 1, cacheHits());
+    }
+
+    @Test
+    @DisplayName("Should find a card inserted with plain SQL only once the backfill tokenizes it")
+    void testBackfill() {
+        // Arrange
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("INSERT INTO credit_cards "
+                + "(id, card_number, credit_limit, available_limit, captured_total, escrow_stripes, version) "
+                + "VALUES (900001, '5425233430109903', 1000.00, 1000.00, 0, 0, 3)"));
+        assertThrows(NoSuchElementException.class, () -> cardLookupService.resolveCardId("5425233430109903"));
+
+        // Act
+        int tokenized = backfill.backfill();
+
+        // Assert
+        assertEquals(1, tokenized);
+        assertEquals(900_001L, cardLookupService.resolveCardId("5425233430109903"));
+        assertEquals(3L, jdbcTemplate.queryForObject(
+                "SELECT version FROM credit_cards WHERE id = 900001", Long.class));
+    }
+
+    @Test
+    @DisplayName("Should keep card numbers out of error messages")
+    void testErrorMessages() {
+        // Act & Assert
+        IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class,
+                () -> cardLookupService.resolveCardId("4532-0151-1283-0366"));
+        assertFalse(invalid.getMessage().contains("0366"));
+        NoSuchElementException notFound = assertThrows(NoSuchElementException.class,
+                () -> cardLookupService.resolveCardId("4000000000000002"));
+        assertFalse(notFound.getMessage().contains("0002"));
+    }
+
+    @Test
+    @DisplayName("Should give different card numbers different fixed-length tokens")
+    void testTokens() {
+        // Act & Assert
+        assertNotEquals(tokenizer.tokenize("4532015112830366"), tokenizer.tokenize("4532015112830367"));
+        assertEquals(43, tokenizer.tokenize("4532015112830366").length());
+    }
+
+    @Test
+    @DisplayName("Should refuse to start without a card token key")
+    void testKeyRequired() {
+        // Arrange
+        CardTokenProperties blank = new CardTokenProperties();
+        blank.setKey(" ");
+
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> new CardNumberTokenizer(blank));
+        assertTrue(exception.getMessage().startsWith("creditcard.card-token.key is not set"));
+        assertThrows(IllegalStateException.class, () -> new CardNumberTokenizer(new CardTokenProperties()));
+    }
+
+    private double cacheHits() {
+        return meterRegistry.get("cache.gets").tag("cache", "cardToken").tag("result", "hit")
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.creditcard.service.traffic;
+
+import com.example.creditcard.domain.CardTransaction;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.service.TransactionService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Integration test of a recording taken from a running application.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:trafficrecordertest",
+        "creditcard.traffic-capture.enabled=true",
+        "creditcard.traffic-capture.file=target/traffic-recorder-test.bin"
+})
+@DisplayName("TrafficRecorder Tests")
+class TrafficRecorderTest {
+
+    @Autowired
+    private TrafficRecorder trafficRecorder;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Test
+    @DisplayName("Should record requests between the card limits at start and at shutdown")
+    void testRecording() throws IOException {
+        // Arrange
+        Long cardId = cardRepository.findAll().get(0).getId();
+        Money initialLimit = cardRepository.findById(cardId).orElseThrow().getAvailableLimit();
+
+        // Act
+        long index = trafficRecorder.authorize(cardId, Money.parse("25.00"), null);
+        CardTransaction transaction = transactionService.authorize(cardId, Money.parse("25.00")).transaction();
+        trafficRecorder.authorized(index, transaction.getId());
+        trafficRecorder.summary(cardId);
+        trafficRecorder.stop();
+
+        // Assert
+        assertFalse(trafficRecorder.isRunning());
+        try (TrafficRecordingReader reader = new TrafficRecordingReader(Path.of("target/traffic-recorder-test.bin"))) {
+            assertEquals(List.of(new CardState(cardId, Money.parse("10000.00"), initialLimit)), reader.getInitialCards());
+            TrafficEvent.Authorize authorize = (TrafficEvent.Authorize) reader.next();
+            assertEquals(cardId, authorize.cardId());
+            assertEquals(Money.parse("25.00"), authorize.amount());
+            assertEquals(transaction.getId(), ((TrafficEvent.Authorized) reader.next()).transactionId());
+            assertEquals(cardId, ((TrafficEvent.Summary) reader.next()).cardId());
+            assertNull(reader.next());
+            assertEquals(initialLimit.minus(Money.parse("25.00")),
+                    reader.getFinalCards().orElseThrow().get(0).availableLimit());
+        }
+    }
+}
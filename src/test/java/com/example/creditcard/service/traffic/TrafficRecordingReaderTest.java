@@ -0,0 +1,100 @@
+package com.example.creditcard.service.traffic;
+
+import com.example.creditcard.domain.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("TrafficRecordingReader Tests")
+class TrafficRecordingReaderTest {
+
+    private static final CardState CARD = new CardState(1L, Money.parse("10000.00"), Money.parse("9900.00"));
+
+    @Test
+    @DisplayName("Should read back every event written, with its time and authorization number")
+    void testRoundTrip() throws IOException {
+        // Arrange
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TrafficRecordingWriter writer = new TrafficRecordingWriter(output, 1_760_000_000_000L)) {
+            writer.card(CARD);
+            writer.endCards();
+            writer.authorize(100, 1L, Money.parse("12.34"), "order-1");
+            writer.authorized(150, 0, 41L);
+            writer.authorizeBatch(200, List.of(
+                    new TrafficEvent.AuthorizeBatch.Entry(1L, Money.parse("1.00")),
+                    new TrafficEvent.AuthorizeBatch.Entry(2L, Money.parse("2.00"))));
+            writer.authorized(210, 2, 43L);
+            writer.authorize(300, 2L, Money.parse("5.00"), null);
+            writer.capture(400, 41L, false);
+            writer.capture(410, 43L, true);
+            writer.summary(500, 1L);
+            writer.history(600, 1L, 20);
+            writer.escrow(700, 1L, 0);
+            writer.end();
+            writer.card(new CardState(1L, Money.parse("10000.00"), Money.parse("9886.66")));
+            writer.endCards();
+        }
+
+        // Act
+        try (TrafficRecordingReader reader = new TrafficRecordingReader(new ByteArrayInputStream(output.toByteArray()))) {
+            // Assert
+            assertEquals(Instant.ofEpochMilli(1_760_000_000_000L), reader.getStartedAt());
+            assertEquals(List.of(CARD), reader.getInitialCards());
+            assertEquals(new TrafficEvent.Authorize(100, 0, 1L, Money.parse("12.34"), "order-1"), reader.next());
+            assertEquals(new TrafficEvent.Authorized(150, 0, 41L), reader.next());
+            TrafficEvent.AuthorizeBatch batch = (TrafficEvent.AuthorizeBatch) reader.next();
+            assertEquals(1, batch.firstIndex());
+            assertEquals(new TrafficEvent.AuthorizeBatch.Entry(2L, Money.parse("2.00")), batch.entries().get(1));
+            assertEquals(new TrafficEvent.Authorized(210, 2, 43L), reader.next());
+            assertEquals(new TrafficEvent.Authorize(300, 3, 2L, Money.parse("5.00"), null), reader.next());
+            assertEquals(new TrafficEvent.Capture(400, 41L, false), reader.next());
+            assertEquals(new TrafficEvent.Capture(410, 43L, true), reader.next());
+            assertEquals(new TrafficEvent.Summary(500, 1L), reader.next());
+            assertEquals(new TrafficEvent.History(600, 1L, 20), reader.next());
+            assertEquals(new TrafficEvent.Escrow(700, 1L, 0), reader.next());
+            assertNull(reader.next());
+            assertEquals(Money.parse("9886.66"), reader.getFinalCards().orElseThrow().get(0).availableLimit());
+        }
+    }
+
+    @Test
+    @DisplayName("Should end a recording that was cut short without final card limits")
+    void testTruncatedRecording() throws IOException {
+        // Arrange
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TrafficRecordingWriter writer = new TrafficRecordingWriter(output, 0)) {
+            writer.card(CARD);
+            writer.endCards();
+            writer.summary(10, 1L);
+            writer.authorize(20, 1L, Money.parse("12.34"), "order-1");
+        }
+        byte[] bytes = output.toByteArray();
+
+        // Act
+        try (TrafficRecordingReader reader = new TrafficRecordingReader(
+                new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)))) {
+            // Assert
+            assertEquals(new TrafficEvent.Summary(10, 1L), reader.next());
+            assertNull(reader.next());
+            assertTrue(reader.getFinalCards().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should refuse a file that is not a traffic recording")
+    void testNotARecording() {
+        assertThrows(IOException.class,
+                () -> new TrafficRecordingReader(new ByteArrayInputStream("{\"cardId\":1}".getBytes())));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.creditcard.service.velocity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the sliding-window velocity counters.
+ */
+@DisplayName("VelocityCounters Tests")
+class VelocityCountersTest {
+
+    private static final long CARD_ID = 1L;
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    // A bucket boundary of both windows, so that tests know which bucket each time falls into
+    private static final long START = 1_000 * HOUR;
+    private static final long[] UNLIMITED = {Long.MAX_VALUE, Long.MAX_VALUE};
+
+    private final VelocityCounters counters = new VelocityCounters(
+            new Duration[]{Duration.ofMinutes(1), Duration.ofHours(1)}, 12, 4);
+
+    @Test
+    @DisplayName("Should decline the authorization that would exceed a count or amount limit")
+    void testLimits() {
+        long[] maxCounts = {3, 5};
+        long[] maxAmounts = {100_00, 150_00};
+
+        assertEquals(-1, counters.tryAdd(CARD_ID, 40_00, START, maxCounts, maxAmounts));
+        assertEquals(-1, counters.tryAdd(CARD_ID, 40_00, START + 1_000, maxCounts, maxAmounts));
+        assertEquals(0, counters.tryAdd(CARD_ID, 30_00, START + 2_000, maxCounts, maxAmounts));
+        assertEquals(-1, counters.tryAdd(CARD_ID, 20_00, START + 3_000, maxCounts, maxAmounts));
+        assertEquals(0, counters.tryAdd(CARD_ID, 1, START + 4_000, maxCounts, maxAmounts));
+
+        assertEquals(3, counters.count(CARD_ID, 0, START + 4_000));
+        assertEquals(100_00, counters.amount(CARD_ID, 0, START + 4_000));
+        assertEquals(3, counters.count(CARD_ID, 1, START + 4_000));
+    }
+
+    @Test
+    @DisplayName("Should let authorizations leave each window as it slides")
+    void testWindowsSlide() {
+        long[] maxCounts = {2, 3};
+        long[] maxAmounts = UNLIMITED;
+
+        assertEquals(-1, counters.tryAdd(CARD_ID, 1_00, START, maxCounts, maxAmounts));
+        assertEquals(-1, counters.tryAdd(CARD_ID, 1_00, START + 30_000, maxCounts, maxAmounts));
+        assertEquals(0, counters.tryAdd(CARD_ID, 1_00, START + 59_000, maxCounts, maxAmounts));
+
+        // The first bucket of the minute window has expired, the hour window still holds both
+        assertEquals(1, counters.count(CARD_ID, 0, START + MINUTE));
+        assertEquals(-1, counters.tryAdd(CARD_ID, 1_00, START + MINUTE, maxCounts, maxAmounts));
+        assertEquals(1, counters.tryAdd(CARD_ID, 1_00, START + 2 * MINUTE, maxCounts, maxAmounts));
+
+        // Every authorization so far fell into the first bucket of the hour window
+        assertEquals(3, counters.count(CARD_ID, 1, START + HOUR - 1));
+        assertEquals(0, counters.count(CARD_ID, 1, START + HOUR + MINUTE));
+        assertEquals(-1, counters.tryAdd(CARD_ID, 1_00, START + HOUR + MINUTE, maxCounts, maxAmounts));
+    }
+
+    @Test
+    @DisplayName("Should take back an authorization from the windows it is still in")
+    void testRemove() {
+        assertEquals(-1, counters.tryAdd(CARD_ID, 25_00, START, UNLIMITED, UNLIMITED));
+        assertEquals(-1, counters.tryAdd(CARD_ID, 10_00, START + 1_000, UNLIMITED, UNLIMITED));
+
+        counters.remove(CARD_ID, 25_00, START);
+        assertEquals(1, counters.count(CARD_ID, 1, START + 1_000));
+        assertEquals(10_00, counters.amount(CARD_ID, 1, START + 1_000));
+
+        // The minute bucket has since been reused, so only the hour window gives it back
+        assertEquals(-1, counters.tryAdd(CARD_ID, 5_00, START + MINUTE, UNLIMITED, UNLIMITED));
+        counters.remove(CARD_ID, 10_00, START + 1_000);
+        assertEquals(1, counters.count(CARD_ID, 0, START + MINUTE));
+        assertEquals(5_00, counters.amount(CARD_ID, 0, START + MINUTE));
+        assertEquals(1, counters.count(CARD_ID, 1, START + MINUTE));
+        assertEquals(5_00, counters.amount(CARD_ID, 1, START + MINUTE));
+    }
+
+    @Test
+    @DisplayName("Should count past authorizations in the windows that still cover them")
+    void testAddPast() {
+        long now = START + 2 * HOUR;
+
+        assertTrue(counters.add(CARD_ID, 5_00, now - 10_000, now));
+        assertTrue(counters.add(CARD_ID, 7_00, now - 30 * MINUTE, now));
+        assertFalse(counters.add(CARD_ID, 9_00, now - 2 * HOUR, now));
+
+        assertEquals(1, counters.count(CARD_ID, 0, now));
+        assertEquals(5_00, counters.amount(CARD_ID, 0, now));
+        assertEquals(2, counters.count(CARD_ID, 1, now));
+        assertEquals(12_00, counters.amount(CARD_ID, 1, now));
+    }
+
+    @Test
+    @DisplayName("Should decline an authorization that would overflow a bucket")
+    void testBucketFull() {
+        assertEquals(0, counters.tryAdd(CARD_ID, VelocityCounters.MAX_AMOUNT + 1, START, UNLIMITED, UNLIMITED));
+        assertEquals(-1, counters.tryAdd(CARD_ID, VelocityCounters.MAX_AMOUNT, START, UNLIMITED, UNLIMITED));
+        assertEquals(0, counters.tryAdd(CARD_ID, 1, START, UNLIMITED, UNLIMITED));
+        assertEquals(1, counters.count(CARD_ID, 0, START));
+    }
+
+    @Test
+    @DisplayName("Should evict cards idle for the longest window and keep the others")
+    void testSweep() {
+        counters.tryAdd(1L, 1_00, START, UNLIMITED, UNLIMITED);
+        counters.tryAdd(2L, 1_00, START + 30 * MINUTE, UNLIMITED, UNLIMITED);
+        assertEquals(2, counters.size());
+
+        assertEquals(0, counters.sweep(START + 40 * MINUTE));
+        assertEquals(1, counters.sweep(START + HOUR));
+        assertEquals(1, counters.size());
+        assertEquals(0, counters.count(1L, 1, START + HOUR));
+        assertEquals(1, counters.count(2L, 1, START + HOUR));
+
+        // An evicted card starts again from empty
+        assertEquals(-1, counters.tryAdd(1L, 1_00, START + HOUR, new long[]{1, 1}, UNLIMITED));
+        assertEquals(2, counters.size());
+    }
+
+    @Test
+    @DisplayName("Should never let concurrent authorizations exceed a limit, while sweeps run")
+    void testConcurrentLimit() {
+        long[] maxCounts = {Long.MAX_VALUE, 1_000};
+        AtomicInteger approved = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int thread = 0; thread < 8; thread++) {
+                executor.execute(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (counters.tryAdd(CARD_ID, 1_00, START, maxCounts, UNLIMITED) < 0) {
+                            approved.incrementAndGet();
+                        }
+                        counters.sweep(START);
+                    }
+                });
+            }
+        }
+
+        assertEquals(1_000, approved.get());
+        assertEquals(1_000, counters.count(CARD_ID, 1, START));
+        assertEquals(1_000 * 1_00, counters.amount(CARD_ID, 1, START));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.creditcard.service.velocity;
+
+import com.example.creditcard.config.VelocityProperties;
+import com.example.creditcard.domain.CreditCard;
+import com.example.creditcard.domain.Money;
+import com.example.creditcard.repository.CardRepository;
+import com.example.creditcard.repository.TransactionRepository;
+import com.example.creditcard.service.AuthorizationResult;
+import com.example.creditcard.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Integration tests for velocity limits on authorizations against the database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:velocitylimitertest",
+        "creditcard.velocity.enabled=true",
+        "creditcard.velocity.limits[0].window=1m",
+        "creditcard.velocity.limits[0].max-count=3",
+        "creditcard.velocity.limits[1].window=1h",
+        "creditcard.velocity.limits[1].max-amount=500.00",
+        "creditcard.velocity.cards.900001[0].window=1m",
+        "creditcard.velocity.cards.900001[0].max-count=5"
+})
+@DisplayName("VelocityLimiter Tests")
+class VelocityLimiterTest {
+
+    private static final long OVERRIDDEN_CARD_ID = 900_001L;
+
+    @Autowired
+    private VelocityProperties properties;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CreditCard card;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        card = cardRepository.save(CreditCard.builder()
+                .cardNumber("4532015112830366")
+                .creditLimit(Money.parse("1000.00"))
+                .availableLimit(Money.parse("1000.00"))
+                .build());
+    }
+
+    @Test
+    @DisplayName("Should decline authorizations over the count limit before reserving any limit")
+    void testCountLimit() {
+        for (int i = 0; i < 3; i++) {
+            transactionService.authorize(card.getId(), Money.parse("10.00"));
+        }
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> transactionService.authorize(card.getId(), Money.parse("10.00")));
+        assertEquals("Velocity limit exceeded for 1m", exception.getMessage());
+        assertEquals(Money.parse("970.00"), cardRepository.findById(card.getId()).orElseThrow().getAvailableLimit());
+        assertEquals(1, meterRegistry.get("creditcard.velocity.declined").tag("window", "1m").counter().count(), 0.5);
+    }
+
+    @Test
+    @DisplayName("Should not count authorizations declined for insufficient limit")
+    void testDeclinedNotCounted() {
+        // Over the available limit but within the velocity limits
+        card.setAvailableLimit(Money.parse("450.00"));
+        card = cardRepository.save(card);
+        for (int i = 0; i < 3; i++) {
+            assertInstanceOf(AuthorizationResult.Declined.class,
+                    transactionService.authorize(card.getId(), Money.parse("460.00")));
+        }
+        card = cardRepository.findById(card.getId()).orElseThrow();
+        card.setAvailableLimit(Money.parse("1000.00"));
+        card = cardRepository.save(card);
+
+        transactionService.authorize(card.getId(), Money.parse("400.00"));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> transactionService.authorize(card.getId(), Money.parse("100.01")));
+        assertEquals("Velocity limit exceeded for 1h", exception.getMessage());
+        assertDoesNotThrow(() -> transactionService.authorize(card.getId(), Money.parse("100.00")));
+    }
+
+    @Test
+    @DisplayName("Should apply the limits configured for a particular card")
+    void testCardOverride() {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("INSERT INTO credit_cards "
+                + "(id, card_number, credit_limit, available_limit, captured_total, escrow_stripes, version) "
+                + "VALUES (?, '5425233430109903', 1000.00, 1000.00, 0, 0, 0)", OVERRIDDEN_CARD_ID));
+
+        for (int i = 0; i < 5; i++) {
+            transactionService.authorize(OVERRIDDEN_CARD_ID, Money.parse("10.00"));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.authorize(OVERRIDDEN_CARD_ID, Money.parse("10.00")));
+    }
+
+    @Test
+    @DisplayName("Should rebuild the counts of a new instance from recent transactions")
+    void testRebuild() {
+        transactionService.authorize(card.getId(), Money.parse("10.00"));
+        transactionService.authorize(card.getId(), Money.parse("20.00"));
+        transactionService.authorize(card.getId(), Money.parse("30.00"));
+
+        VelocityLimiter restarted = new VelocityLimiter(properties, jdbcTemplate, new SimpleMeterRegistry());
+        assertEquals(3, restarted.rebuild());
+
+        assertEquals(1, restarted.size());
+        assertThrows(IllegalArgumentException.class, () -> restarted.acquire(card.getId(), Money.parse("1.00")));
+        assertEquals(VelocityLimiter.NOT_ACQUIRED, new VelocityLimiter(new VelocityProperties(), jdbcTemplate,
+                new SimpleMeterRegistry()).acquire(card.getId(), Money.parse("1.00")));
+    }
+}